@@ -25,10 +25,13 @@ import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiParam;
 import io.swagger.annotations.ApiResponse;
 import io.swagger.annotations.ApiResponses;
+import java.util.Map;
 import javax.inject.Inject;
+import javax.ws.rs.DELETE;
 import javax.ws.rs.GET;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
 import javax.ws.rs.WebApplicationException;
@@ -161,6 +164,29 @@ public class PinotClientRequest {
     }
   }
 
+  @GET
+  @Produces(MediaType.APPLICATION_JSON)
+  @Path("queries")
+  @ApiOperation(value = "Get the running queries", notes = "Returns a map from the request id to the query string")
+  @ApiResponses(value = {@ApiResponse(code = 200, message = "Success")})
+  public Map<Long, String> getRunningQueries() {
+    return requestHandler.getRunningQueries();
+  }
+
+  @DELETE
+  @Produces(MediaType.APPLICATION_JSON)
+  @Path("query/{requestId}")
+  @ApiOperation(value = "Cancel a running query", notes = "Stops waiting for the query and cancels it on the servers")
+  @ApiResponses(value = {@ApiResponse(code = 200, message = "Success"), @ApiResponse(code = 404, message = "Query not found")})
+  public String cancelQuery(
+      @ApiParam(value = "Request id of the query", required = true) @PathParam("requestId") long requestId) {
+    if (requestHandler.cancelQuery(requestId)) {
+      return "Cancelled query: " + requestId;
+    } else {
+      throw new WebApplicationException("Failed to find running query: " + requestId, Response.Status.NOT_FOUND);
+    }
+  }
+
   private String constructSqlQueryOptions() {
     return Request.QueryOptionKey.GROUP_BY_MODE + "=" + Request.SQL + ";" + Request.QueryOptionKey.RESPONSE_FORMAT + "="
         + Request.SQL;
@@ -31,6 +31,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -69,6 +70,7 @@ import org.apache.pinot.common.utils.helix.TableCache;
 import org.apache.pinot.core.query.aggregation.function.AggregationFunctionUtils;
 import org.apache.pinot.core.query.reduce.BrokerReduceService;
 import org.apache.pinot.core.transport.ServerInstance;
+import org.apache.pinot.core.transport.ServerRoutingInstance;
 import org.apache.pinot.core.util.QueryOptions;
 import org.apache.pinot.spi.config.table.TableType;
 import org.apache.pinot.spi.utils.builder.TableNameBuilder;
@@ -88,7 +90,10 @@ public abstract class BaseBrokerRequestHandler implements BrokerRequestHandler {
 
   protected final AtomicLong _requestIdGenerator = new AtomicLong();
   protected final BrokerRequestOptimizer _brokerRequestOptimizer = new BrokerRequestOptimizer();
-  protected final BrokerReduceService _brokerReduceService = new BrokerReduceService();
+  protected final BrokerReduceService _brokerReduceService;
+  // Result caches, null if result cache is disabled
+  protected final QueryResultCache<String> _brokerResponseCache;
+  protected final QueryResultCache<Map<ServerRoutingInstance, byte[]>> _offlineDataTableCache;
 
   protected final String _brokerId;
   protected final long _brokerTimeoutMs;
@@ -103,6 +108,7 @@ public abstract class BaseBrokerRequestHandler implements BrokerRequestHandler {
   private final boolean _enableCaseInsensitivePql;
   private final boolean _enableQueryLimitOverride;
   private final TableCache _tableCache;
+  private final Map<Long, String> _runningQueries = new ConcurrentHashMap<>();
 
   public BaseBrokerRequestHandler(Configuration config, RoutingManager routingManager,
       AccessControlFactory accessControlFactory, QueryQuotaManager queryQuotaManager, BrokerMetrics brokerMetrics,
@@ -121,6 +127,20 @@ public abstract class BaseBrokerRequestHandler implements BrokerRequestHandler {
     }
 
     _enableQueryLimitOverride = _config.getBoolean(Broker.CONFIG_OF_ENABLE_QUERY_LIMIT_OVERRIDE, false);
+    _brokerReduceService = new BrokerReduceService(
+        _config.getInt(Broker.CONFIG_OF_MAX_REDUCE_THREADS_PER_QUERY, Broker.DEFAULT_MAX_REDUCE_THREADS_PER_QUERY));
+    if (_config.getBoolean(Broker.CONFIG_OF_ENABLE_RESULT_CACHE, Broker.DEFAULT_ENABLE_RESULT_CACHE)) {
+      long maxSizeInBytes = _config
+          .getLong(Broker.CONFIG_OF_RESULT_CACHE_MAX_SIZE_IN_BYTES, Broker.DEFAULT_RESULT_CACHE_MAX_SIZE_IN_BYTES);
+      long ttlMs = _config.getLong(Broker.CONFIG_OF_RESULT_CACHE_TTL_MS, Broker.DEFAULT_RESULT_CACHE_TTL_MS);
+      _brokerResponseCache = new QueryResultCache<>(maxSizeInBytes / 2, ttlMs,
+          brokerResponseJson -> Character.BYTES * brokerResponseJson.length());
+      _offlineDataTableCache =
+          new QueryResultCache<>(maxSizeInBytes / 2, ttlMs, BaseBrokerRequestHandler::getSerializedDataTablesSize);
+    } else {
+      _brokerResponseCache = null;
+      _offlineDataTableCache = null;
+    }
 
     _brokerId = config.getString(Broker.CONFIG_OF_BROKER_ID, getDefaultBrokerId());
     _brokerTimeoutMs = config.getLong(Broker.CONFIG_OF_BROKER_TIMEOUT_MS, Broker.DEFAULT_BROKER_TIMEOUT_MS);
@@ -146,6 +166,17 @@ public abstract class BaseBrokerRequestHandler implements BrokerRequestHandler {
     }
   }
 
+  /**
+   * Returns the total size in bytes of the given serialized data tables, used to bound the offline data table cache.
+   */
+  private static int getSerializedDataTablesSize(Map<ServerRoutingInstance, byte[]> serializedDataTables) {
+    int size = 0;
+    for (byte[] serializedDataTable : serializedDataTables.values()) {
+      size += serializedDataTable.length;
+    }
+    return size;
+  }
+
   @SuppressWarnings("Duplicates")
   @Override
   public BrokerResponse handleRequest(JsonNode request, @Nullable RequesterIdentity requesterIdentity,
@@ -282,6 +313,40 @@ public abstract class BaseBrokerRequestHandler implements BrokerRequestHandler {
       requestStatistics.setFanoutType(RequestStatistics.FanoutType.REALTIME);
     }
 
+    // Look up the result cache for the offline part of the query
+    // NOTE: Routing version must be read before calculating the routing table, so that the results computed on a stale
+    //       routing are never cached with a newer version
+    String brokerResponseCacheKey = null;
+    long offlineRoutingVersion = 0;
+    OfflineResultCacheContext offlineResultCacheContext = null;
+    if (_brokerResponseCache != null && offlineBrokerRequest != null && !brokerRequest.isEnableTrace()) {
+      Long routingVersion = _routingManager.getRoutingVersion(offlineTableName);
+      if (routingVersion != null) {
+        offlineRoutingVersion = routingVersion;
+        String queryKey = QueryResultCache.getQueryKey(offlineBrokerRequest);
+        if (realtimeBrokerRequest == null) {
+          // OFFLINE only, serve the whole response from the cache, which skips the routing and the scatter-gather
+          String cachedResponse = _brokerResponseCache.get(offlineTableName, offlineRoutingVersion, queryKey);
+          if (cachedResponse != null) {
+            _brokerMetrics.addMeteredTableValue(rawTableName, BrokerMeter.RESULT_CACHE_HITS, 1);
+            BrokerResponseNative brokerResponse = BrokerResponseNative.fromJsonString(cachedResponse);
+            long totalTimeMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - compilationStartTimeNs);
+            brokerResponse.setTimeUsedMs(totalTimeMs);
+            requestStatistics.setQueryProcessingTime(totalTimeMs);
+            requestStatistics.setStatistics(brokerResponse);
+            LOGGER.debug("Served request {} from result cache: {}", requestId, query);
+            return brokerResponse;
+          }
+          _brokerMetrics.addMeteredTableValue(rawTableName, BrokerMeter.RESULT_CACHE_MISSES, 1);
+          brokerResponseCacheKey = queryKey;
+        } else {
+          // Hybrid, the cached offline server responses are used only if the real-time part is routed below
+          offlineResultCacheContext =
+              new OfflineResultCacheContext(_offlineDataTableCache, offlineTableName, offlineRoutingVersion, queryKey);
+        }
+      }
+    }
+
     // Calculate routing table for the query
     long routingStartTimeNs = System.nanoTime();
     Map<ServerInstance, List<String>> offlineRoutingTable = null;
@@ -292,6 +357,13 @@ public abstract class BaseBrokerRequestHandler implements BrokerRequestHandler {
       RoutingTable routingTable = _routingManager.getRoutingTable(offlineBrokerRequest);
       if (routingTable != null) {
         numUnavailableSegments += routingTable.getUnavailableSegments().size();
+        if (numUnavailableSegments > 0) {
+          // Do not cache partial results
+          brokerResponseCacheKey = null;
+          if (offlineResultCacheContext != null && !offlineResultCacheContext.isCacheHit()) {
+            offlineResultCacheContext = null;
+          }
+        }
         Map<ServerInstance, List<String>> serverInstanceToSegmentsMap = routingTable.getServerInstanceToSegmentsMap();
         if (!serverInstanceToSegmentsMap.isEmpty()) {
           offlineRoutingTable = serverInstanceToSegmentsMap;
@@ -324,6 +396,20 @@ public abstract class BaseBrokerRequestHandler implements BrokerRequestHandler {
       _brokerMetrics.addMeteredTableValue(rawTableName, BrokerMeter.NO_SERVER_FOUND_EXCEPTIONS, 1);
       return BrokerResponseNative.EMPTY_RESULT;
     }
+    if (offlineResultCacheContext != null) {
+      if (offlineBrokerRequest != null && realtimeBrokerRequest != null) {
+        if (offlineResultCacheContext.isCacheHit()) {
+          // Skip the scatter-gather of the offline part, which is served from the cache
+          _brokerMetrics.addMeteredTableValue(rawTableName, BrokerMeter.RESULT_CACHE_HITS, 1);
+          offlineBrokerRequest = null;
+          offlineRoutingTable = null;
+        } else {
+          _brokerMetrics.addMeteredTableValue(rawTableName, BrokerMeter.RESULT_CACHE_MISSES, 1);
+        }
+      } else {
+        offlineResultCacheContext = null;
+      }
+    }
     long routingEndTimeNs = System.nanoTime();
     _brokerMetrics.addPhaseTiming(rawTableName, BrokerQueryPhase.QUERY_ROUTING, routingEndTimeNs - routingStartTimeNs);
 
@@ -353,9 +439,16 @@ public abstract class BaseBrokerRequestHandler implements BrokerRequestHandler {
 
     // Execute the query
     ServerStats serverStats = new ServerStats();
-    BrokerResponse brokerResponse =
-        processBrokerRequest(requestId, brokerRequest, offlineBrokerRequest, offlineRoutingTable, realtimeBrokerRequest,
-            realtimeRoutingTable, remainingTimeMs, serverStats, requestStatistics);
+    BrokerResponse brokerResponse;
+    _runningQueries.put(requestId, query);
+    try {
+      brokerResponse =
+          processBrokerRequest(requestId, brokerRequest, offlineBrokerRequest, offlineRoutingTable,
+              realtimeBrokerRequest, realtimeRoutingTable, remainingTimeMs, serverStats, requestStatistics,
+              offlineResultCacheContext);
+    } finally {
+      _runningQueries.remove(requestId);
+    }
     long executionEndTimeNs = System.nanoTime();
     _brokerMetrics
         .addPhaseTiming(rawTableName, BrokerQueryPhase.QUERY_EXECUTION, executionEndTimeNs - routingEndTimeNs);
@@ -365,6 +458,13 @@ public abstract class BaseBrokerRequestHandler implements BrokerRequestHandler {
       _brokerMetrics.addMeteredTableValue(rawTableName, BrokerMeter.BROKER_RESPONSES_WITH_NUM_GROUPS_LIMIT_REACHED, 1);
     }
 
+    // Cache the response of OFFLINE only query when it is complete
+    if (brokerResponseCacheKey != null && brokerResponse.getExceptionsSize() == 0
+        && brokerResponse.getNumServersResponded() == brokerResponse.getNumServersQueried()) {
+      _brokerResponseCache
+          .put(offlineTableName, offlineRoutingVersion, brokerResponseCacheKey, brokerResponse.toJsonString());
+    }
+
     // Set total query processing time
     long totalTimeMs = TimeUnit.NANOSECONDS.toMillis(executionEndTimeNs - compilationStartTimeNs);
     brokerResponse.setTimeUsedMs(totalTimeMs);
@@ -817,13 +917,22 @@ public abstract class BaseBrokerRequestHandler implements BrokerRequestHandler {
     }
   }
 
+  @Override
+  public Map<Long, String> getRunningQueries() {
+    return Collections.unmodifiableMap(_runningQueries);
+  }
+
   /**
    * Processes the optimized broker requests for both OFFLINE and REALTIME table.
+   * <p>For hybrid queries with result cache enabled, the offline result cache context is passed. On a cache hit, the
+   * offline broker request is {@code null} and the cached offline server responses should be reduced together with the
+   * real-time ones. On a cache miss, the offline server responses should be cached when complete.
    */
   protected abstract BrokerResponse processBrokerRequest(long requestId, BrokerRequest originalBrokerRequest,
       @Nullable BrokerRequest offlineBrokerRequest, @Nullable Map<ServerInstance, List<String>> offlineRoutingTable,
       @Nullable BrokerRequest realtimeBrokerRequest, @Nullable Map<ServerInstance, List<String>> realtimeRoutingTable,
-      long timeoutMs, ServerStats serverStats, RequestStatistics requestStatistics)
+      long timeoutMs, ServerStats serverStats, RequestStatistics requestStatistics,
+      @Nullable OfflineResultCacheContext offlineResultCacheContext)
       throws Exception;
 
   /**
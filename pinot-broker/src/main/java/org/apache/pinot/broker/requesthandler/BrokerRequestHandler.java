@@ -19,6 +19,7 @@
 package org.apache.pinot.broker.requesthandler;
 
 import com.fasterxml.jackson.databind.JsonNode;
+import java.util.Map;
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.ThreadSafe;
 import org.apache.pinot.broker.api.RequestStatistics;
@@ -36,4 +37,16 @@ public interface BrokerRequestHandler {
   BrokerResponse handleRequest(JsonNode request, @Nullable RequesterIdentity requesterIdentity,
       RequestStatistics requestStatistics)
       throws Exception;
+
+  /**
+   * Returns a map from the request id to the query string for the queries currently running on the broker.
+   */
+  Map<Long, String> getRunningQueries();
+
+  /**
+   * Cancels the running query with the given request id.
+   *
+   * @return Whether the query is found and cancelled
+   */
+  boolean cancelQuery(long requestId);
 }
@@ -0,0 +1,85 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.broker.requesthandler;
+
+import java.util.HashMap;
+import java.util.Map;
+import javax.annotation.Nullable;
+import org.apache.pinot.common.utils.DataTable;
+import org.apache.pinot.common.utils.HashUtil;
+import org.apache.pinot.core.common.datatable.DataTableFactory;
+import org.apache.pinot.core.transport.ServerRoutingInstance;
+
+
+/**
+ * Context of the result cache for the offline part of a hybrid query. The offline part is split from the real-time
+ * part by the time boundary, so its server responses can be cached until the routing of the offline table changes,
+ * while the real-time part is always queried.
+ * <p>On a cache hit, the cached server responses replace the scatter-gather of the offline part. On a cache miss, the
+ * server responses of the offline part can be cached with {@link #cacheDataTables(Map)} once all the offline servers
+ * responded without exceptions.
+ */
+public class OfflineResultCacheContext {
+  private final QueryResultCache<Map<ServerRoutingInstance, byte[]>> _cache;
+  private final String _offlineTableName;
+  private final long _routingVersion;
+  private final String _queryKey;
+  private final Map<ServerRoutingInstance, byte[]> _cachedDataTables;
+
+  public OfflineResultCacheContext(QueryResultCache<Map<ServerRoutingInstance, byte[]>> cache, String offlineTableName,
+      long routingVersion, String queryKey) {
+    _cache = cache;
+    _offlineTableName = offlineTableName;
+    _routingVersion = routingVersion;
+    _queryKey = queryKey;
+    _cachedDataTables = cache.get(offlineTableName, routingVersion, queryKey);
+  }
+
+  public String getOfflineTableName() {
+    return _offlineTableName;
+  }
+
+  public boolean isCacheHit() {
+    return _cachedDataTables != null;
+  }
+
+  /**
+   * Returns the cached data tables of the offline servers, or {@code null} on a cache miss.
+   */
+  @Nullable
+  public Map<ServerRoutingInstance, DataTable> getCachedDataTables()
+      throws Exception {
+    if (_cachedDataTables == null) {
+      return null;
+    }
+    Map<ServerRoutingInstance, DataTable> dataTableMap =
+        new HashMap<>(HashUtil.getHashMapCapacity(_cachedDataTables.size()));
+    for (Map.Entry<ServerRoutingInstance, byte[]> entry : _cachedDataTables.entrySet()) {
+      dataTableMap.put(entry.getKey(), DataTableFactory.getDataTable(entry.getValue()));
+    }
+    return dataTableMap;
+  }
+
+  /**
+   * Caches the serialized data tables of all the offline servers queried.
+   */
+  public void cacheDataTables(Map<ServerRoutingInstance, byte[]> serializedDataTables) {
+    _cache.put(_offlineTableName, _routingVersion, _queryKey, serializedDataTables);
+  }
+}
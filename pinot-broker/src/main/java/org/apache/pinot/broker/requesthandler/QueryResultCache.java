@@ -0,0 +1,110 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.broker.requesthandler;
+
+import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToIntFunction;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import org.apache.pinot.common.request.BrokerRequest;
+import org.apache.pinot.common.utils.request.RequestUtils;
+
+
+/**
+ * Cache of query results on the broker, keyed by the table and the normalized broker request, and bounded by the
+ * estimated size of the cached keys and results in bytes (least recently used entries are evicted first).
+ * <p>Each entry is tagged with the routing version of the table (see
+ * {@link org.apache.pinot.broker.routing.RoutingManager#getRoutingVersion(String)}) at the time the query was routed.
+ * An entry is invalidated on lookup once the routing version of the table changes (external view change or segment
+ * refresh), or once it expires.
+ *
+ * @param <V> type of the cached results
+ */
+@ThreadSafe
+public class QueryResultCache<V> {
+  private final Cache<String, Entry<V>> _cache;
+  private final ToIntFunction<V> _valueSizeFunction;
+
+  /**
+   * @param maxSizeInBytes Max estimated size in bytes of all the cached entries
+   * @param ttlMs Time to live of the cached entries in milliseconds
+   * @param valueSizeFunction Function to estimate the size in bytes of a cached result
+   */
+  public QueryResultCache(long maxSizeInBytes, long ttlMs, ToIntFunction<V> valueSizeFunction) {
+    Preconditions.checkArgument(maxSizeInBytes > 0, "Max size in bytes must be positive");
+    _cache = CacheBuilder.newBuilder().maximumWeight(maxSizeInBytes)
+        .weigher((String key, Entry<V> entry) -> Character.BYTES * key.length() + entry._sizeInBytes)
+        .expireAfterWrite(ttlMs, TimeUnit.MILLISECONDS).build();
+    _valueSizeFunction = valueSizeFunction;
+  }
+
+  /**
+   * Returns the cached result for the given table and query key if it was cached with the given routing version and
+   * has not expired, or {@code null} otherwise.
+   */
+  @Nullable
+  public V get(String tableNameWithType, long routingVersion, String queryKey) {
+    String key = getKey(tableNameWithType, queryKey);
+    Entry<V> entry = _cache.getIfPresent(key);
+    if (entry == null) {
+      return null;
+    }
+    if (entry._routingVersion != routingVersion) {
+      // Only remove this entry, but not the one cached concurrently with the new routing version
+      _cache.asMap().remove(key, entry);
+      return null;
+    }
+    return entry._value;
+  }
+
+  public void put(String tableNameWithType, long routingVersion, String queryKey, V value) {
+    _cache.put(getKey(tableNameWithType, queryKey),
+        new Entry<>(routingVersion, value, _valueSizeFunction.applyAsInt(value)));
+  }
+
+  public long size() {
+    return _cache.size();
+  }
+
+  private static String getKey(String tableNameWithType, String queryKey) {
+    return tableNameWithType + '\0' + queryKey;
+  }
+
+  /**
+   * Returns the key of the given (optimized) broker request, see {@link RequestUtils#getQueryFingerprint(BrokerRequest)}.
+   */
+  public static String getQueryKey(BrokerRequest brokerRequest) {
+    return RequestUtils.getQueryFingerprint(brokerRequest);
+  }
+
+  private static class Entry<V> {
+    final long _routingVersion;
+    final V _value;
+    final int _sizeInBytes;
+
+    Entry(long routingVersion, V value, int sizeInBytes) {
+      _routingVersion = routingVersion;
+      _value = value;
+      _sizeInBytes = sizeInBytes;
+    }
+  }
+}
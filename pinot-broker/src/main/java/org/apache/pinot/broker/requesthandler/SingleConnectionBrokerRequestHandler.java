@@ -18,9 +18,15 @@
  */
 package org.apache.pinot.broker.requesthandler;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BiConsumer;
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.ThreadSafe;
 import org.apache.commons.configuration.Configuration;
@@ -30,19 +36,29 @@ import org.apache.pinot.broker.api.RequestStatistics;
 import org.apache.pinot.broker.broker.AccessControlFactory;
 import org.apache.pinot.broker.queryquota.QueryQuotaManager;
 import org.apache.pinot.broker.routing.RoutingManager;
+import org.apache.pinot.broker.routing.instanceselector.ServerLatencyStats;
+import org.apache.pinot.common.exception.QueryException;
 import org.apache.pinot.common.metrics.BrokerMeter;
 import org.apache.pinot.common.metrics.BrokerMetrics;
 import org.apache.pinot.common.metrics.BrokerQueryPhase;
 import org.apache.pinot.common.request.BrokerRequest;
 import org.apache.pinot.common.response.BrokerResponse;
 import org.apache.pinot.common.response.broker.BrokerResponseNative;
+import org.apache.pinot.common.response.broker.QueryProcessingException;
+import org.apache.pinot.common.utils.CommonConstants.Broker;
 import org.apache.pinot.common.utils.DataTable;
 import org.apache.pinot.common.utils.HashUtil;
+import org.apache.pinot.core.query.reduce.StreamingBrokerReduce;
 import org.apache.pinot.core.transport.AsyncQueryResponse;
+import org.apache.pinot.core.transport.HedgedRequestManager;
+import org.apache.pinot.core.transport.HedgedServerSelector;
 import org.apache.pinot.core.transport.QueryRouter;
 import org.apache.pinot.core.transport.ServerInstance;
 import org.apache.pinot.core.transport.ServerResponse;
+import org.apache.pinot.core.transport.ServerResponseListener;
 import org.apache.pinot.core.transport.ServerRoutingInstance;
+import org.apache.pinot.core.util.SerialExecutor;
+import org.apache.pinot.spi.config.table.TableType;
 import org.apache.pinot.spi.utils.builder.TableNameBuilder;
 
 
@@ -53,12 +69,40 @@ import org.apache.pinot.spi.utils.builder.TableNameBuilder;
 @ThreadSafe
 public class SingleConnectionBrokerRequestHandler extends BaseBrokerRequestHandler {
   private final QueryRouter _queryRouter;
+  private final boolean _enableStreamingReduce;
+  // Broker-wide pool to reduce the data tables off the Netty event loop threads when streaming reduce is enabled
+  private final ExecutorService _streamingReduceExecutorService;
+  private final ServerLatencyStats _serverLatencyStats;
+  private final boolean _enableHedgedRequests;
 
   public SingleConnectionBrokerRequestHandler(Configuration config, RoutingManager routingManager,
       AccessControlFactory accessControlFactory, QueryQuotaManager queryQuotaManager, BrokerMetrics brokerMetrics,
       ZkHelixPropertyStore<ZNRecord> propertyStore) {
     super(config, routingManager, accessControlFactory, queryQuotaManager, brokerMetrics, propertyStore);
-    _queryRouter = new QueryRouter(_brokerId, brokerMetrics);
+    _enableHedgedRequests =
+        config.getBoolean(Broker.CONFIG_OF_ENABLE_HEDGED_REQUESTS, Broker.DEFAULT_ENABLE_HEDGED_REQUESTS);
+    HedgedRequestManager hedgedRequestManager = null;
+    if (_enableHedgedRequests) {
+      hedgedRequestManager = new HedgedRequestManager(
+          config.getDouble(Broker.CONFIG_OF_HEDGED_REQUESTS_DELAY_PERCENTILE,
+              Broker.DEFAULT_HEDGED_REQUESTS_DELAY_PERCENTILE),
+          config.getLong(Broker.CONFIG_OF_HEDGED_REQUESTS_MIN_DELAY_MS, Broker.DEFAULT_HEDGED_REQUESTS_MIN_DELAY_MS),
+          config.getDouble(Broker.CONFIG_OF_HEDGED_REQUESTS_BUDGET_RATIO, Broker.DEFAULT_HEDGED_REQUESTS_BUDGET_RATIO));
+    }
+    _queryRouter = new QueryRouter(_brokerId, brokerMetrics,
+        config.getBoolean(Broker.CONFIG_OF_ENABLE_QUERY_CANCELLATION, Broker.DEFAULT_ENABLE_QUERY_CANCELLATION),
+        config.getInt(Broker.CONFIG_OF_DATA_TABLE_VERSION, Broker.DEFAULT_DATA_TABLE_VERSION),
+        config.getBoolean(Broker.CONFIG_OF_ENABLE_NATIVE_TRANSPORT, Broker.DEFAULT_ENABLE_NATIVE_TRANSPORT),
+        hedgedRequestManager);
+    _enableStreamingReduce =
+        config.getBoolean(Broker.CONFIG_OF_ENABLE_STREAMING_REDUCE, Broker.DEFAULT_ENABLE_STREAMING_REDUCE);
+    if (_enableStreamingReduce) {
+      _streamingReduceExecutorService = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
+          new ThreadFactoryBuilder().setDaemon(true).setNameFormat("streaming-reduce-%d").build());
+    } else {
+      _streamingReduceExecutorService = null;
+    }
+    _serverLatencyStats = routingManager.getServerLatencyStats();
   }
 
   @Override
@@ -68,21 +112,73 @@ public class SingleConnectionBrokerRequestHandler extends BaseBrokerRequestHandl
   @Override
   public synchronized void shutDown() {
     _queryRouter.shutDown();
+    _brokerReduceService.shutDown();
+    if (_streamingReduceExecutorService != null) {
+      _streamingReduceExecutorService.shutdownNow();
+    }
+  }
+
+  @Override
+  public boolean cancelQuery(long requestId) {
+    return _queryRouter.cancelQuery(requestId);
   }
 
   @Override
   protected BrokerResponse processBrokerRequest(long requestId, BrokerRequest originalBrokerRequest,
       @Nullable BrokerRequest offlineBrokerRequest, @Nullable Map<ServerInstance, List<String>> offlineRoutingTable,
       @Nullable BrokerRequest realtimeBrokerRequest, @Nullable Map<ServerInstance, List<String>> realtimeRoutingTable,
-      long timeoutMs, ServerStats serverStats, RequestStatistics requestStatistics)
+      long timeoutMs, ServerStats serverStats, RequestStatistics requestStatistics,
+      @Nullable OfflineResultCacheContext offlineResultCacheContext)
       throws Exception {
     assert offlineBrokerRequest != null || realtimeBrokerRequest != null;
 
+    // On result cache hit, the offline server responses come from the cache; on cache miss, collect the serialized
+    // offline server responses to be cached
+    Map<ServerRoutingInstance, DataTable> cachedOfflineDataTables = null;
+    Map<ServerRoutingInstance, byte[]> offlineDataTablesToCache = null;
+    if (offlineResultCacheContext != null) {
+      if (offlineResultCacheContext.isCacheHit()) {
+        cachedOfflineDataTables = offlineResultCacheContext.getCachedDataTables();
+      } else {
+        offlineDataTablesToCache = new ConcurrentHashMap<>();
+      }
+    }
+
     String rawTableName = TableNameBuilder.extractRawTableName(originalBrokerRequest.getQuerySource().getTableName());
     long scatterGatherStartTimeNs = System.nanoTime();
+    // When streaming reduce is enabled, data tables are reduced as they arrive, and only the final trim and formatting
+    // are left for the reduce phase
+    StreamingBrokerReduce streamingBrokerReduce =
+        _enableStreamingReduce ? _brokerReduceService.startStreamingReduce(originalBrokerRequest) : null;
+    BiConsumer<ServerRoutingInstance, DataTable> dataTableConsumer = null;
+    SerialExecutor dataTableConsumerExecutor = null;
+    if (streamingBrokerReduce != null) {
+      if (cachedOfflineDataTables != null) {
+        streamingBrokerReduce.reduce(cachedOfflineDataTables);
+      }
+      dataTableConsumer = streamingBrokerReduce::reduce;
+      if (offlineDataTablesToCache != null) {
+        // Data tables are released right after being consumed, so they must be serialized before being reduced
+        Map<ServerRoutingInstance, byte[]> finalOfflineDataTablesToCache = offlineDataTablesToCache;
+        dataTableConsumer = (serverRoutingInstance, dataTable) -> {
+          collectOfflineDataTableToCache(finalOfflineDataTablesToCache, serverRoutingInstance, dataTable);
+          streamingBrokerReduce.reduce(serverRoutingInstance, dataTable);
+        };
+      }
+      // Reduce the data tables of the query one at a time on the streaming reduce threads, so that the Netty event loop
+      // threads are not blocked by the reduce (which might wait for the parallel group-by reduce tasks)
+      dataTableConsumerExecutor = new SerialExecutor(_streamingReduceExecutorService);
+    }
+    HedgedServerSelector hedgedServerSelector = null;
+    if (_enableHedgedRequests) {
+      hedgedServerSelector = (tableType, stragglingServer, segments) -> _routingManager
+          .getHedgedServerInstance(TableNameBuilder.forType(tableType).tableNameWithType(rawTableName),
+              stragglingServer, segments);
+    }
     AsyncQueryResponse asyncQueryResponse = _queryRouter
         .submitQuery(requestId, rawTableName, offlineBrokerRequest, offlineRoutingTable, realtimeBrokerRequest,
-            realtimeRoutingTable, timeoutMs);
+            realtimeRoutingTable, timeoutMs, dataTableConsumer, dataTableConsumerExecutor, hedgedServerSelector,
+            new ServerLatencyRecorder(_serverLatencyStats, timeoutMs));
     Map<ServerRoutingInstance, ServerResponse> response = asyncQueryResponse.getResponse();
     _brokerMetrics
         .addPhaseTiming(rawTableName, BrokerQueryPhase.SCATTER_GATHER, System.nanoTime() - scatterGatherStartTimeNs);
@@ -101,16 +197,44 @@ public class SingleConnectionBrokerRequestHandler extends BaseBrokerRequestHandl
       }
     }
     int numServersResponded = dataTableMap.size();
+    if (cachedOfflineDataTables != null) {
+      numServersQueried += cachedOfflineDataTables.size();
+      numServersResponded += cachedOfflineDataTables.size();
+      if (streamingBrokerReduce == null) {
+        dataTableMap.putAll(cachedOfflineDataTables);
+      }
+    }
+    if (offlineDataTablesToCache != null && streamingBrokerReduce == null) {
+      for (Map.Entry<ServerRoutingInstance, DataTable> entry : dataTableMap.entrySet()) {
+        collectOfflineDataTableToCache(offlineDataTablesToCache, entry.getKey(), entry.getValue());
+      }
+    }
 
     long reduceStartTimeNs = System.nanoTime();
-    BrokerResponseNative brokerResponse =
-        _brokerReduceService.reduceOnDataTable(originalBrokerRequest, dataTableMap, _brokerMetrics);
+    BrokerResponseNative brokerResponse;
+    try {
+      if (streamingBrokerReduce != null) {
+        brokerResponse = streamingBrokerReduce.finish(_brokerMetrics);
+      } else {
+        brokerResponse = _brokerReduceService.reduceOnDataTable(originalBrokerRequest, dataTableMap, _brokerMetrics);
+      }
+    } finally {
+      // Data tables might hold references to the network buffers, which can be released once the query is reduced
+      asyncQueryResponse.releaseDataTables();
+    }
     final long reduceTimeNanos = System.nanoTime() - reduceStartTimeNs;
     requestStatistics.setReduceTimeNanos(reduceTimeNanos);
     _brokerMetrics.addPhaseTiming(rawTableName, BrokerQueryPhase.REDUCE, reduceTimeNanos);
 
     brokerResponse.setNumServersQueried(numServersQueried);
     brokerResponse.setNumServersResponded(numServersResponded);
+    if (asyncQueryResponse.isCancelled()) {
+      brokerResponse.addToExceptions(new QueryProcessingException(QueryException.QUERY_CANCELLATION_ERROR_CODE,
+          "Query is cancelled"));
+    } else if (offlineDataTablesToCache != null && offlineDataTablesToCache.size() == offlineRoutingTable.size()) {
+      // Cache the offline server responses only when all the offline servers responded without exceptions
+      offlineResultCacheContext.cacheDataTables(offlineDataTablesToCache);
+    }
 
     if (brokerResponse.getExceptionsSize() > 0) {
       _brokerMetrics.addMeteredTableValue(rawTableName, BrokerMeter.BROKER_RESPONSES_WITH_PROCESSING_EXCEPTIONS, 1);
@@ -122,4 +246,61 @@ public class SingleConnectionBrokerRequestHandler extends BaseBrokerRequestHandl
 
     return brokerResponse;
   }
+
+  /**
+   * Records the requests sent to the servers into the server latency stats as each server responds. Error responses
+   * and the servers not responding before the query times out are recorded with the timeout as the latency, as a
+   * penalty for the server. Servers not responding for other reasons (e.g. query failed on other servers or got
+   * cancelled) are dropped, where the elapsed time does not reflect the server latency.
+   */
+  private static class ServerLatencyRecorder implements ServerResponseListener {
+    final ServerLatencyStats _serverLatencyStats;
+    final long _timeoutMs;
+
+    ServerLatencyRecorder(ServerLatencyStats serverLatencyStats, long timeoutMs) {
+      _serverLatencyStats = serverLatencyStats;
+      _timeoutMs = timeoutMs;
+    }
+
+    @Override
+    public void onRequestSent(ServerInstance serverInstance) {
+      _serverLatencyStats.recordQuerySubmitted(serverInstance.getInstanceId());
+    }
+
+    @Override
+    public void onResponseReceived(ServerInstance serverInstance, long latencyMs, boolean hasException) {
+      _serverLatencyStats.recordQueryCompleted(serverInstance.getInstanceId(),
+          hasException ? Math.max(latencyMs, _timeoutMs) : latencyMs);
+    }
+
+    @Override
+    public void onRequestDropped(ServerInstance serverInstance, boolean timedOut) {
+      if (timedOut) {
+        _serverLatencyStats.recordQueryCompleted(serverInstance.getInstanceId(), _timeoutMs);
+      } else {
+        _serverLatencyStats.recordQueryDropped(serverInstance.getInstanceId());
+      }
+    }
+  }
+
+  /**
+   * Serializes the data table into the given map if it is an offline server response without exceptions. Skipped data
+   * tables leave the offline server responses incomplete, so that they are not cached.
+   */
+  private static void collectOfflineDataTableToCache(Map<ServerRoutingInstance, byte[]> offlineDataTablesToCache,
+      ServerRoutingInstance serverRoutingInstance, DataTable dataTable) {
+    if (serverRoutingInstance.getTableType() != TableType.OFFLINE) {
+      return;
+    }
+    for (String key : dataTable.getMetadata().keySet()) {
+      if (key.startsWith(DataTable.EXCEPTION_METADATA_KEY)) {
+        return;
+      }
+    }
+    try {
+      offlineDataTablesToCache.put(serverRoutingInstance, dataTable.toBytes());
+    } catch (IOException e) {
+      // Skip caching the data table
+    }
+  }
 }
@@ -27,6 +27,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import javax.annotation.Nullable;
 import org.apache.helix.AccessOption;
 import org.apache.helix.BaseDataAccessor;
@@ -40,6 +41,7 @@ import org.apache.helix.store.zk.ZkHelixPropertyStore;
 import org.apache.pinot.broker.broker.helix.ClusterChangeHandler;
 import org.apache.pinot.broker.routing.instanceselector.InstanceSelector;
 import org.apache.pinot.broker.routing.instanceselector.InstanceSelectorFactory;
+import org.apache.pinot.broker.routing.instanceselector.ServerLatencyStats;
 import org.apache.pinot.broker.routing.segmentpruner.SegmentPruner;
 import org.apache.pinot.broker.routing.segmentpruner.SegmentPrunerFactory;
 import org.apache.pinot.broker.routing.segmentselector.SegmentSelector;
@@ -74,6 +76,10 @@ import org.slf4j.LoggerFactory;
  *   <li>{@link #getRoutingTable(BrokerRequest)}: Returns the routing table for a query</li>
  *   <li>{@link #getTimeBoundaryInfo(String)}: Returns the time boundary info for a table</li>
  *   <li>{@link #getQueryTimeoutMs(String)}: Returns the table-level query timeout in milliseconds for a table</li>
+ *   <li>{@link #getRoutingVersion(String)}: Returns the version of the data served by the routing for a table</li>
+ *   <li>{@link #getServerLatencyStats()}: Returns the latency stats of the servers used by the instance selectors</li>
+ *   <li>{@link #getHedgedServerInstance(String, ServerInstance, List)}: Returns the server to re-issue the request of
+ *   a straggling server to</li>
  * </ul>
  *
  * TODO: Expose RoutingEntry class to get a consistent view in the broker request handler and save the redundant map
@@ -85,6 +91,10 @@ public class RoutingManager implements ClusterChangeHandler {
   private final BrokerMetrics _brokerMetrics;
   private final Map<String, RoutingEntry> _routingEntryMap = new ConcurrentHashMap<>();
   private final Map<String, ServerInstance> _enabledServerInstanceMap = new ConcurrentHashMap<>();
+  // Shared by all the tables so that a rebuilt routing never reuses a version
+  private final AtomicLong _routingVersionGenerator = new AtomicLong();
+  // Shared by all the tables, updated by the broker request handler with the server response latency
+  private final ServerLatencyStats _serverLatencyStats = new ServerLatencyStats();
 
   private BaseDataAccessor<ZNRecord> _zkDataAccessor;
   private String _externalViewPathPrefix;
@@ -158,7 +168,7 @@ public class RoutingManager implements ClusterChangeHandler {
                   .warn("Failed to find ideal state for table: {}, skipping updating routing entry", tableNameWithType);
               continue;
             }
-            routingEntry.onExternalViewChange(externalView, onlineSegments);
+            routingEntry.onExternalViewChange(externalView, onlineSegments, _routingVersionGenerator.incrementAndGet());
           } catch (Exception e) {
             LOGGER
                 .error("Caught unexpected exception while updating routing entry on external view change for table: {}",
@@ -318,7 +328,8 @@ public class RoutingManager implements ClusterChangeHandler {
     for (SegmentPruner segmentPruner : segmentPruners) {
       segmentPruner.init(externalView, onlineSegments);
     }
-    InstanceSelector instanceSelector = InstanceSelectorFactory.getInstanceSelector(tableConfig, _brokerMetrics);
+    InstanceSelector instanceSelector =
+        InstanceSelectorFactory.getInstanceSelector(tableConfig, _brokerMetrics, _serverLatencyStats);
     instanceSelector.init(enabledInstances, externalView, onlineSegments);
 
     // Add time boundary manager if both offline and real-time part exist for a hybrid table
@@ -364,7 +375,7 @@ public class RoutingManager implements ClusterChangeHandler {
 
     RoutingEntry routingEntry =
         new RoutingEntry(tableNameWithType, segmentSelector, segmentPruners, instanceSelector, externalViewVersion,
-            timeBoundaryManager, queryTimeoutMs);
+            timeBoundaryManager, queryTimeoutMs, _routingVersionGenerator.incrementAndGet());
     if (_routingEntryMap.put(tableNameWithType, routingEntry) == null) {
       LOGGER.info("Built routing for table: {}", tableNameWithType);
     } else {
@@ -403,7 +414,7 @@ public class RoutingManager implements ClusterChangeHandler {
     LOGGER.info("Refreshing segment: {} for table: {}", segment, tableNameWithType);
     RoutingEntry routingEntry = _routingEntryMap.get(tableNameWithType);
     if (routingEntry != null) {
-      routingEntry.refreshSegment(segment);
+      routingEntry.refreshSegment(segment, _routingVersionGenerator.incrementAndGet());
       LOGGER.info("Refreshed segment: {} for table: {}", segment, tableNameWithType);
     } else {
       LOGGER.warn("Routing does not exist for table: {}, skipping refreshing segment", tableNameWithType);
@@ -444,6 +455,23 @@ public class RoutingManager implements ClusterChangeHandler {
     return new RoutingTable(serverInstanceToSegmentsMap, selectionResult.getUnavailableSegments());
   }
 
+  /**
+   * Returns the server instance selected by the instance selector of the given table to re-issue (hedge) the request
+   * for the given segments sent to the given straggling server, or {@code null} if the routing does not exist or there
+   * is no other enabled server serving all the segments.
+   */
+  @Nullable
+  public ServerInstance getHedgedServerInstance(String tableNameWithType, ServerInstance stragglingServer,
+      List<String> segments) {
+    RoutingEntry routingEntry = _routingEntryMap.get(tableNameWithType);
+    if (routingEntry == null) {
+      return null;
+    }
+    String hedgedInstance =
+        routingEntry.getInstanceSelector().selectHedgedInstance(segments, stragglingServer.getInstanceId());
+    return hedgedInstance != null ? _enabledServerInstanceMap.get(hedgedInstance) : null;
+  }
+
   /**
    * Returns the time boundary info for the given offline table, or {@code null} if the routing or time boundary does
    * not exist.
@@ -469,6 +497,26 @@ public class RoutingManager implements ClusterChangeHandler {
     return routingEntry != null ? routingEntry.getQueryTimeoutMs() : null;
   }
 
+  /**
+   * Returns the version of the data served by the routing for the given table, or {@code null} if the routing does not
+   * exist. The version changes whenever the external view or the segment metadata (e.g. CRC on segment refresh) of the
+   * table changes, so results cached with the version can be served until the version changes.
+   * <p>NOTE: The version does not change when the instance configs change, as that only changes the servers picked
+   * for the same data.
+   */
+  @Nullable
+  public Long getRoutingVersion(String tableNameWithType) {
+    RoutingEntry routingEntry = _routingEntryMap.get(tableNameWithType);
+    return routingEntry != null ? routingEntry.getRoutingVersion() : null;
+  }
+
+  /**
+   * Returns the latency stats of the servers, which should be updated with the server response latency of the queries.
+   */
+  public ServerLatencyStats getServerLatencyStats() {
+    return _serverLatencyStats;
+  }
+
   private static class RoutingEntry {
     final String _tableNameWithType;
     final SegmentSelector _segmentSelector;
@@ -480,10 +528,12 @@ public class RoutingManager implements ClusterChangeHandler {
     transient int _lastUpdateExternalViewVersion;
     // Time boundary manager is only available for the offline part of the hybrid table
     transient TimeBoundaryManager _timeBoundaryManager;
+    // Version of the data served by the routing, changed on external view change and segment refresh
+    transient volatile long _routingVersion;
 
     RoutingEntry(String tableNameWithType, SegmentSelector segmentSelector, List<SegmentPruner> segmentPruners,
         InstanceSelector instanceSelector, int lastUpdateExternalViewVersion,
-        @Nullable TimeBoundaryManager timeBoundaryManager, @Nullable Long queryTimeoutMs) {
+        @Nullable TimeBoundaryManager timeBoundaryManager, @Nullable Long queryTimeoutMs, long routingVersion) {
       _tableNameWithType = tableNameWithType;
       _segmentSelector = segmentSelector;
       _segmentPruners = segmentPruners;
@@ -491,6 +541,7 @@ public class RoutingManager implements ClusterChangeHandler {
       _lastUpdateExternalViewVersion = lastUpdateExternalViewVersion;
       _timeBoundaryManager = timeBoundaryManager;
       _queryTimeoutMs = queryTimeoutMs;
+      _routingVersion = routingVersion;
     }
 
     String getTableNameWithType() {
@@ -506,6 +557,10 @@ public class RoutingManager implements ClusterChangeHandler {
     }
 
     @Nullable
+    InstanceSelector getInstanceSelector() {
+      return _instanceSelector;
+    }
+
     TimeBoundaryManager getTimeBoundaryManager() {
       return _timeBoundaryManager;
     }
@@ -514,10 +569,14 @@ public class RoutingManager implements ClusterChangeHandler {
       return _queryTimeoutMs;
     }
 
+    long getRoutingVersion() {
+      return _routingVersion;
+    }
+
     // NOTE: The change gets applied in sequence, and before change applied to all components, there could be some
     // inconsistency between components, which is fine because the inconsistency only exists for the newly changed
     // segments and only lasts for a very short time.
-    void onExternalViewChange(ExternalView externalView, Set<String> onlineSegments) {
+    void onExternalViewChange(ExternalView externalView, Set<String> onlineSegments, long routingVersion) {
       _segmentSelector.onExternalViewChange(externalView, onlineSegments);
       for (SegmentPruner segmentPruner : _segmentPruners) {
         segmentPruner.onExternalViewChange(externalView, onlineSegments);
@@ -527,19 +586,21 @@ public class RoutingManager implements ClusterChangeHandler {
         _timeBoundaryManager.onExternalViewChange(externalView, onlineSegments);
       }
       _lastUpdateExternalViewVersion = externalView.getStat().getVersion();
+      _routingVersion = routingVersion;
     }
 
     void onInstancesChange(Set<String> enabledInstances, List<String> changedInstances) {
       _instanceSelector.onInstancesChange(enabledInstances, changedInstances);
     }
 
-    void refreshSegment(String segment) {
+    void refreshSegment(String segment, long routingVersion) {
       for (SegmentPruner segmentPruner : _segmentPruners) {
         segmentPruner.refreshSegment(segment);
       }
       if (_timeBoundaryManager != null) {
         _timeBoundaryManager.refreshSegment(segment);
       }
+      _routingVersion = routingVersion;
     }
 
     InstanceSelector.SelectionResult calculateRouting(BrokerRequest brokerRequest) {
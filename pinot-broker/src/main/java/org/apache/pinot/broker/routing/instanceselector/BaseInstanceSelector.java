@@ -236,6 +236,41 @@ abstract class BaseInstanceSelector implements InstanceSelector {
     }
   }
 
+  @Nullable
+  @Override
+  public String selectHedgedInstance(List<String> segments, String stragglingInstance) {
+    Map<String, List<String>> segmentToEnabledInstancesMap = _segmentToEnabledInstancesMap;
+    List<String> candidateInstances = null;
+    for (String segment : segments) {
+      List<String> enabledInstances = segmentToEnabledInstancesMap.get(segment);
+      if (enabledInstances == null) {
+        return null;
+      }
+      if (candidateInstances == null) {
+        candidateInstances = new ArrayList<>(enabledInstances);
+        candidateInstances.remove(stragglingInstance);
+      } else {
+        candidateInstances.retainAll(enabledInstances);
+      }
+      if (candidateInstances.isEmpty()) {
+        return null;
+      }
+    }
+    if (candidateInstances == null) {
+      return null;
+    }
+    return selectHedgedInstance(candidateInstances, (int) (_requestId.get() % MAX_REQUEST_ID));
+  }
+
+  /**
+   * Selects the server instance for the hedged request from the given candidate instances (not empty, each serving all
+   * the segments of the request) based on the request id. By default, the candidate instances are selected in a
+   * round-robin fashion.
+   */
+  String selectHedgedInstance(List<String> candidateInstances, int requestId) {
+    return candidateInstances.get(requestId % candidateInstances.size());
+  }
+
   /**
    * Selects the server instances for the given segments based on the request id and segment to enabled ONLINE/CONSUMING
    * instances map, returns a map from segment to selected server instance hosting the segment.
@@ -21,6 +21,7 @@ package org.apache.pinot.broker.routing.instanceselector;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import javax.annotation.Nullable;
 import org.apache.helix.model.ExternalView;
 import org.apache.pinot.common.request.BrokerRequest;
 
@@ -59,6 +60,14 @@ public interface InstanceSelector {
    */
   SelectionResult select(BrokerRequest brokerRequest, List<String> segments);
 
+  /**
+   * Selects a server instance other than the given straggling instance that serves all the given segments, to which
+   * the request to the straggling instance can be re-issued (hedged), or returns {@code null} if there is no such
+   * server instance.
+   */
+  @Nullable
+  String selectHedgedInstance(List<String> segments, String stragglingInstance);
+
   class SelectionResult {
     private final Map<String, String> _segmentToInstanceMap;
     private final List<String> _unavailableSegments;
@@ -35,9 +35,15 @@ public class InstanceSelectorFactory {
   public static final String LEGACY_REPLICA_GROUP_OFFLINE_ROUTING = "PartitionAwareOffline";
   public static final String LEGACY_REPLICA_GROUP_REALTIME_ROUTING = "PartitionAwareRealtime";
 
-  public static InstanceSelector getInstanceSelector(TableConfig tableConfig, BrokerMetrics brokerMetrics) {
+  public static InstanceSelector getInstanceSelector(TableConfig tableConfig, BrokerMetrics brokerMetrics,
+      ServerLatencyStats serverLatencyStats) {
     String tableNameWithType = tableConfig.getTableName();
     RoutingConfig routingConfig = tableConfig.getRoutingConfig();
+    if (routingConfig != null && RoutingConfig.LATENCY_AWARE_INSTANCE_SELECTOR_TYPE
+        .equalsIgnoreCase(routingConfig.getInstanceSelectorType())) {
+      LOGGER.info("Using LatencyAwareInstanceSelector for table: {}", tableNameWithType);
+      return new LatencyAwareInstanceSelector(tableNameWithType, brokerMetrics, serverLatencyStats);
+    }
     if (routingConfig != null && (
         RoutingConfig.REPLICA_GROUP_INSTANCE_SELECTOR_TYPE.equalsIgnoreCase(routingConfig.getInstanceSelectorType())
             || (tableConfig.getTableType() == TableType.OFFLINE && LEGACY_REPLICA_GROUP_OFFLINE_ROUTING
@@ -0,0 +1,106 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.broker.routing.instanceselector;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.pinot.common.metrics.BrokerMetrics;
+import org.apache.pinot.common.utils.HashUtil;
+
+
+/**
+ * Instance selector that routes each segment to the replica with the best expected latency.
+ * <p>The expected latency of each server instance is estimated by the {@link ServerLatencyStats} from the EWMA of the
+ * server response latency and the number of in-flight queries on the server, so that slow servers (e.g. because of GC,
+ * hot segments or noisy neighbours) and overloaded servers get less traffic. Ties are broken by rotating the start
+ * index with the request id, so that the traffic is evenly distributed among the servers with the same expected latency
+ * (e.g. when the broker starts).
+ * <p>A slow server gets little traffic, so its EWMA latency is rarely updated. To let the recovered servers get the
+ * traffic back, one in every {@link #EXPLORATION_INTERVAL} requests is routed the same way as the
+ * {@link BalancedInstanceSelector}, which refreshes the latency of all the replicas.
+ * <p>Hedged requests are sent to the candidate instance with the best expected latency.
+ */
+public class LatencyAwareInstanceSelector extends BaseInstanceSelector {
+  static final int EXPLORATION_INTERVAL = 20;
+
+  private final ServerLatencyStats _serverLatencyStats;
+
+  public LatencyAwareInstanceSelector(String tableNameWithType, BrokerMetrics brokerMetrics,
+      ServerLatencyStats serverLatencyStats) {
+    super(tableNameWithType, brokerMetrics);
+    _serverLatencyStats = serverLatencyStats;
+  }
+
+  @Override
+  Map<String, String> select(List<String> segments, int requestId,
+      Map<String, List<String>> segmentToEnabledInstancesMap) {
+    Map<String, String> segmentToSelectedInstanceMap = new HashMap<>(HashUtil.getHashMapCapacity(segments.size()));
+    if (requestId % EXPLORATION_INTERVAL == EXPLORATION_INTERVAL - 1) {
+      for (String segment : segments) {
+        List<String> enabledInstances = segmentToEnabledInstancesMap.get(segment);
+        // NOTE: enabledInstances can be null when there is no enabled instances for the segment, or the instance
+        // selector has not been updated (we update all components for routing in sequence)
+        if (enabledInstances != null) {
+          int numEnabledInstances = enabledInstances.size();
+          segmentToSelectedInstanceMap.put(segment, enabledInstances.get(requestId++ % numEnabledInstances));
+        }
+      }
+    } else {
+      // Cache the expected latency so that it is computed only once per instance for the request
+      Map<String, Double> instanceToExpectedLatencyMap = new HashMap<>();
+      for (String segment : segments) {
+        List<String> enabledInstances = segmentToEnabledInstancesMap.get(segment);
+        // NOTE: enabledInstances can be null when there is no enabled instances for the segment, or the instance
+        // selector has not been updated (we update all components for routing in sequence)
+        if (enabledInstances != null) {
+          int numEnabledInstances = enabledInstances.size();
+          int startIndex = requestId % numEnabledInstances;
+          String selectedInstance = null;
+          double minExpectedLatencyMs = Double.MAX_VALUE;
+          for (int i = 0; i < numEnabledInstances; i++) {
+            String instance = enabledInstances.get((startIndex + i) % numEnabledInstances);
+            double expectedLatencyMs = instanceToExpectedLatencyMap
+                .computeIfAbsent(instance, _serverLatencyStats::getExpectedLatencyMs);
+            if (expectedLatencyMs < minExpectedLatencyMs) {
+              selectedInstance = instance;
+              minExpectedLatencyMs = expectedLatencyMs;
+            }
+          }
+          segmentToSelectedInstanceMap.put(segment, selectedInstance);
+        }
+      }
+    }
+    return segmentToSelectedInstanceMap;
+  }
+
+  @Override
+  String selectHedgedInstance(List<String> candidateInstances, int requestId) {
+    String selectedInstance = null;
+    double minExpectedLatencyMs = Double.MAX_VALUE;
+    for (String instance : candidateInstances) {
+      double expectedLatencyMs = _serverLatencyStats.getExpectedLatencyMs(instance);
+      if (expectedLatencyMs < minExpectedLatencyMs) {
+        selectedInstance = instance;
+        minExpectedLatencyMs = expectedLatencyMs;
+      }
+    }
+    return selectedInstance;
+  }
+}
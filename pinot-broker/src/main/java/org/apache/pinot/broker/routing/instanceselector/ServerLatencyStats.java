@@ -0,0 +1,110 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.broker.routing.instanceselector;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.concurrent.ThreadSafe;
+
+
+/**
+ * The {@code ServerLatencyStats} class tracks the exponentially weighted moving average (EWMA) of the query latency and
+ * the number of in-flight queries for each server instance, which are used by the
+ * {@link LatencyAwareInstanceSelector} to estimate the expected latency of the server instances.
+ * <p>The stats are shared by all the tables because the latency of a server is mostly affected by the server itself
+ * (e.g. GC, hot segments, noisy neighbours).
+ */
+@ThreadSafe
+public class ServerLatencyStats {
+  // Weight of the latest latency in the EWMA
+  private static final double ALPHA = 0.3;
+
+  private final Map<String, InstanceStats> _instanceStatsMap = new ConcurrentHashMap<>();
+
+  /**
+   * Records that a query is sent to the given server instance.
+   */
+  public void recordQuerySubmitted(String instanceId) {
+    _instanceStatsMap.computeIfAbsent(instanceId, k -> new InstanceStats())._numInFlightQueries.incrementAndGet();
+  }
+
+  /**
+   * Records that the given server instance responded to a query with the given latency.
+   */
+  public void recordQueryCompleted(String instanceId, long latencyMs) {
+    InstanceStats instanceStats = _instanceStatsMap.computeIfAbsent(instanceId, k -> new InstanceStats());
+    instanceStats._numInFlightQueries.decrementAndGet();
+    instanceStats.updateLatency(latencyMs);
+  }
+
+  /**
+   * Records that a query sent to the given server instance finished without a meaningful latency (e.g. the query was
+   * cancelled before the server responded).
+   */
+  public void recordQueryDropped(String instanceId) {
+    _instanceStatsMap.computeIfAbsent(instanceId, k -> new InstanceStats())._numInFlightQueries.decrementAndGet();
+  }
+
+  /**
+   * Returns the expected latency in milliseconds of a new query sent to the given server instance, which is the EWMA
+   * latency scaled by the number of queries queued on the server (including the new one). Returns 0 for server
+   * instances without latency recorded so that they get queries and start being tracked.
+   */
+  public double getExpectedLatencyMs(String instanceId) {
+    InstanceStats instanceStats = _instanceStatsMap.get(instanceId);
+    if (instanceStats == null) {
+      return 0;
+    }
+    double ewmaLatencyMs = instanceStats._ewmaLatencyMs;
+    if (ewmaLatencyMs < 0) {
+      return 0;
+    }
+    return ewmaLatencyMs * (Math.max(instanceStats._numInFlightQueries.get(), 0) + 1);
+  }
+
+  /**
+   * Returns the EWMA latency in milliseconds of the given server instance, or -1 if no latency is recorded.
+   */
+  public double getEwmaLatencyMs(String instanceId) {
+    InstanceStats instanceStats = _instanceStatsMap.get(instanceId);
+    return instanceStats != null ? instanceStats._ewmaLatencyMs : -1;
+  }
+
+  /**
+   * Returns the number of in-flight queries of the given server instance.
+   */
+  public int getNumInFlightQueries(String instanceId) {
+    InstanceStats instanceStats = _instanceStatsMap.get(instanceId);
+    return instanceStats != null ? instanceStats._numInFlightQueries.get() : 0;
+  }
+
+  private static class InstanceStats {
+    final AtomicInteger _numInFlightQueries = new AtomicInteger();
+    volatile double _ewmaLatencyMs = -1;
+
+    synchronized void updateLatency(long latencyMs) {
+      if (_ewmaLatencyMs < 0) {
+        _ewmaLatencyMs = latencyMs;
+      } else {
+        _ewmaLatencyMs = ALPHA * latencyMs + (1 - ALPHA) * _ewmaLatencyMs;
+      }
+    }
+  }
+}
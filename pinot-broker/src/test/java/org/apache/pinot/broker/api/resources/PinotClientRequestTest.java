@@ -0,0 +1,102 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.broker.api.resources;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Collections;
+import org.apache.pinot.broker.broker.BrokerAdminApiApplication;
+import org.apache.pinot.broker.requesthandler.BrokerRequestHandler;
+import org.apache.pinot.broker.routing.RoutingManager;
+import org.apache.pinot.common.metrics.BrokerMetrics;
+import org.apache.pinot.spi.utils.JsonUtils;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+
+
+public class PinotClientRequestTest {
+  private static final int TEST_PORT = 18099;
+  private static final String BASE_URL = "http://localhost:" + TEST_PORT + "/";
+  private static final long RUNNING_REQUEST_ID = 123L;
+  private static final String RUNNING_QUERY = "SELECT * FROM testTable";
+
+  private final BrokerRequestHandler _requestHandler = mock(BrokerRequestHandler.class);
+  private BrokerAdminApiApplication _brokerAdminApiApplication;
+
+  @BeforeClass
+  public void setUp() {
+    when(_requestHandler.getRunningQueries())
+        .thenReturn(Collections.singletonMap(RUNNING_REQUEST_ID, RUNNING_QUERY));
+    when(_requestHandler.cancelQuery(RUNNING_REQUEST_ID)).thenReturn(true);
+    _brokerAdminApiApplication =
+        new BrokerAdminApiApplication(mock(RoutingManager.class), _requestHandler, mock(BrokerMetrics.class));
+    _brokerAdminApiApplication.start(TEST_PORT);
+  }
+
+  @Test
+  public void testGetRunningQueries()
+      throws Exception {
+    HttpURLConnection connection = (HttpURLConnection) new URL(BASE_URL + "queries").openConnection();
+    assertEquals(connection.getResponseCode(), 200);
+    try (InputStream inputStream = connection.getInputStream()) {
+      JsonNode runningQueries = JsonUtils.inputStreamToJsonNode(inputStream);
+      assertEquals(runningQueries.size(), 1);
+      assertEquals(runningQueries.get(Long.toString(RUNNING_REQUEST_ID)).asText(), RUNNING_QUERY);
+    }
+  }
+
+  @Test
+  public void testCancelQuery()
+      throws Exception {
+    // Running query should be cancelled
+    assertEquals(sendDeleteRequest("query/" + RUNNING_REQUEST_ID), 200);
+    verify(_requestHandler).cancelQuery(RUNNING_REQUEST_ID);
+
+    // Unknown query should not be found
+    assertEquals(sendDeleteRequest("query/" + (RUNNING_REQUEST_ID + 1)), 404);
+    verify(_requestHandler).cancelQuery(RUNNING_REQUEST_ID + 1);
+
+    // Invalid request id should not be found
+    assertEquals(sendDeleteRequest("query/invalid"), 404);
+  }
+
+  private static int sendDeleteRequest(String path)
+      throws Exception {
+    HttpURLConnection connection = (HttpURLConnection) new URL(BASE_URL + path).openConnection();
+    connection.setRequestMethod("DELETE");
+    try {
+      return connection.getResponseCode();
+    } finally {
+      connection.disconnect();
+    }
+  }
+
+  @AfterClass
+  public void tearDown() {
+    _brokerAdminApiApplication.stop();
+  }
+}
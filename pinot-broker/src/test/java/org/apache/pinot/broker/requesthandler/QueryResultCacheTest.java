@@ -0,0 +1,228 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.broker.requesthandler;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nullable;
+import org.apache.commons.configuration.Configuration;
+import org.apache.commons.configuration.PropertiesConfiguration;
+import org.apache.pinot.broker.api.RequestStatistics;
+import org.apache.pinot.broker.broker.AllowAllAccessControlFactory;
+import org.apache.pinot.broker.queryquota.QueryQuotaManager;
+import org.apache.pinot.broker.routing.RoutingManager;
+import org.apache.pinot.broker.routing.RoutingTable;
+import org.apache.pinot.common.metrics.BrokerMeter;
+import org.apache.pinot.common.metrics.BrokerMetrics;
+import org.apache.pinot.common.request.BrokerRequest;
+import org.apache.pinot.common.response.BrokerResponse;
+import org.apache.pinot.common.response.broker.BrokerResponseNative;
+import org.apache.pinot.common.utils.CommonConstants.Broker;
+import org.apache.pinot.common.utils.CommonConstants.Broker.Request.QueryOptionKey;
+import org.apache.pinot.core.transport.ServerInstance;
+import org.apache.pinot.spi.utils.JsonUtils;
+import org.testng.annotations.Test;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+
+public class QueryResultCacheTest {
+  private static final String RAW_TABLE_NAME = "testTable";
+  private static final String TABLE_NAME = "testTable_OFFLINE";
+
+  @Test
+  public void testRoutingVersionInvalidation() {
+    QueryResultCache<String> cache = new QueryResultCache<>(1024, Long.MAX_VALUE, String::length);
+    cache.put(TABLE_NAME, 1L, "query", "result");
+    assertEquals(cache.get(TABLE_NAME, 1L, "query"), "result");
+    assertNull(cache.get("otherTable_OFFLINE", 1L, "query"));
+    assertNull(cache.get(TABLE_NAME, 1L, "otherQuery"));
+
+    // Entry should be removed once the routing version changes
+    assertNull(cache.get(TABLE_NAME, 2L, "query"));
+    assertEquals(cache.size(), 0);
+    assertNull(cache.get(TABLE_NAME, 1L, "query"));
+  }
+
+  @Test
+  public void testEviction()
+      throws Exception {
+    // Entry larger than the cache should not be cached
+    QueryResultCache<String> cache = new QueryResultCache<>(1024, Long.MAX_VALUE, String::length);
+    cache.put(TABLE_NAME, 1L, "query", new String(new char[2048]));
+    assertNull(cache.get(TABLE_NAME, 1L, "query"));
+    assertEquals(cache.size(), 0);
+
+    // Entries should be evicted to keep the total size within the max size
+    int resultSize = 1024;
+    String result = new String(new char[resultSize]);
+    int maxNumEntries = 16;
+    cache = new QueryResultCache<>(maxNumEntries * resultSize, Long.MAX_VALUE, String::length);
+    for (int i = 0; i < 10 * maxNumEntries; i++) {
+      cache.put(TABLE_NAME, 1L, "query" + i, result);
+    }
+    assertTrue(cache.size() > 0 && cache.size() < maxNumEntries);
+    // The last entry should not be evicted
+    assertEquals(cache.get(TABLE_NAME, 1L, "query" + (10 * maxNumEntries - 1)), result);
+
+    // Expired entry
+    QueryResultCache<String> expiringCache = new QueryResultCache<>(1024, 10L, String::length);
+    expiringCache.put(TABLE_NAME, 1L, "query", "result");
+    Thread.sleep(20L);
+    assertNull(expiringCache.get(TABLE_NAME, 1L, "query"));
+  }
+
+  @Test
+  public void testQueryKey() {
+    BrokerRequest brokerRequest = new BrokerRequest();
+    brokerRequest.setLimit(10);
+    Map<String, String> queryOptions = new HashMap<>();
+    queryOptions.put(QueryOptionKey.GROUP_BY_MODE, "sql");
+    queryOptions.put(QueryOptionKey.TIMEOUT_MS, "1000");
+    brokerRequest.setQueryOptions(queryOptions);
+    String queryKey = QueryResultCache.getQueryKey(brokerRequest);
+
+    // Timeout should not affect the key, and the request should not be modified
+    queryOptions.put(QueryOptionKey.TIMEOUT_MS, "2000");
+    assertEquals(QueryResultCache.getQueryKey(brokerRequest), queryKey);
+    assertEquals(brokerRequest.getQueryOptions().get(QueryOptionKey.TIMEOUT_MS), "2000");
+
+    queryOptions.put(QueryOptionKey.RESPONSE_FORMAT, "sql");
+    assertNotEquals(QueryResultCache.getQueryKey(brokerRequest), queryKey);
+    queryOptions.remove(QueryOptionKey.RESPONSE_FORMAT);
+    brokerRequest.setLimit(20);
+    assertNotEquals(QueryResultCache.getQueryKey(brokerRequest), queryKey);
+  }
+
+  @Test
+  public void testBrokerRequestHandler()
+      throws Exception {
+    RoutingManager routingManager = mock(RoutingManager.class);
+    when(routingManager.routingExists(TABLE_NAME)).thenReturn(true);
+    when(routingManager.getRoutingVersion(TABLE_NAME)).thenReturn(1L);
+    // No table-level timeout, use the broker timeout
+    when(routingManager.getQueryTimeoutMs(anyString())).thenReturn(null);
+    ServerInstance serverInstance = mock(ServerInstance.class);
+    RoutingTable routingTable =
+        new RoutingTable(Collections.singletonMap(serverInstance, Collections.singletonList("segment")),
+            Collections.emptyList());
+    when(routingManager.getRoutingTable(any(BrokerRequest.class))).thenReturn(routingTable);
+    BrokerMetrics brokerMetrics = mock(BrokerMetrics.class);
+    Configuration config = new PropertiesConfiguration();
+    config.setProperty(Broker.CONFIG_OF_ENABLE_RESULT_CACHE, true);
+    CountingBrokerRequestHandler requestHandler =
+        new CountingBrokerRequestHandler(config, routingManager, brokerMetrics);
+
+    ObjectNode request = JsonUtils.newObjectNode();
+    request.put(Broker.Request.PQL, "SELECT COUNT(*) FROM " + RAW_TABLE_NAME);
+
+    // Cache miss, then the cached response should be served without processing the request
+    assertEquals(handleRequest(requestHandler, request).getNumDocsScanned(), 1);
+    assertEquals(handleRequest(requestHandler, request).getNumDocsScanned(), 1);
+    assertEquals(requestHandler._numRequestsProcessed, 1);
+    verify(brokerMetrics).addMeteredTableValue(RAW_TABLE_NAME, BrokerMeter.RESULT_CACHE_MISSES, 1);
+    verify(brokerMetrics).addMeteredTableValue(RAW_TABLE_NAME, BrokerMeter.RESULT_CACHE_HITS, 1);
+
+    // Routing version change should invalidate the cached response
+    when(routingManager.getRoutingVersion(TABLE_NAME)).thenReturn(2L);
+    assertEquals(handleRequest(requestHandler, request).getNumDocsScanned(), 2);
+    assertEquals(handleRequest(requestHandler, request).getNumDocsScanned(), 2);
+    assertEquals(requestHandler._numRequestsProcessed, 2);
+    verify(brokerMetrics, times(2)).addMeteredTableValue(RAW_TABLE_NAME, BrokerMeter.RESULT_CACHE_MISSES, 1);
+    verify(brokerMetrics, times(2)).addMeteredTableValue(RAW_TABLE_NAME, BrokerMeter.RESULT_CACHE_HITS, 1);
+
+    // Partial results (unavailable segments) should not be cached
+    when(routingManager.getRoutingVersion(TABLE_NAME)).thenReturn(3L);
+    when(routingManager.getRoutingTable(any(BrokerRequest.class))).thenReturn(
+        new RoutingTable(routingTable.getServerInstanceToSegmentsMap(), Collections.singletonList("missingSegment")));
+    assertEquals(handleRequest(requestHandler, request).getNumDocsScanned(), 3);
+    assertEquals(handleRequest(requestHandler, request).getNumDocsScanned(), 4);
+    assertEquals(requestHandler._numRequestsProcessed, 4);
+
+    // Traced queries should bypass the cache
+    when(routingManager.getRoutingTable(any(BrokerRequest.class))).thenReturn(routingTable);
+    ObjectNode tracedRequest = request.deepCopy();
+    tracedRequest.put(Broker.Request.TRACE, true);
+    assertEquals(handleRequest(requestHandler, tracedRequest).getNumDocsScanned(), 5);
+    assertEquals(handleRequest(requestHandler, tracedRequest).getNumDocsScanned(), 6);
+    assertEquals(requestHandler._numRequestsProcessed, 6);
+  }
+
+  private static BrokerResponse handleRequest(BrokerRequestHandler requestHandler, ObjectNode request)
+      throws Exception {
+    return requestHandler.handleRequest(request, null, new RequestStatistics());
+  }
+
+  /**
+   * Request handler that counts the processed requests, and returns the count as the number of documents scanned.
+   */
+  private static class CountingBrokerRequestHandler extends BaseBrokerRequestHandler {
+    int _numRequestsProcessed;
+
+    CountingBrokerRequestHandler(Configuration config, RoutingManager routingManager, BrokerMetrics brokerMetrics) {
+      super(config, routingManager, new AllowAllAccessControlFactory(), createQueryQuotaManager(), brokerMetrics,
+          null);
+    }
+
+    private static QueryQuotaManager createQueryQuotaManager() {
+      QueryQuotaManager queryQuotaManager = mock(QueryQuotaManager.class);
+      when(queryQuotaManager.acquire(anyString())).thenReturn(true);
+      return queryQuotaManager;
+    }
+
+    @Override
+    public void start() {
+    }
+
+    @Override
+    public void shutDown() {
+    }
+
+    @Override
+    public boolean cancelQuery(long requestId) {
+      return false;
+    }
+
+    @Override
+    protected BrokerResponse processBrokerRequest(long requestId, BrokerRequest originalBrokerRequest,
+        @Nullable BrokerRequest offlineBrokerRequest, @Nullable Map<ServerInstance, List<String>> offlineRoutingTable,
+        @Nullable BrokerRequest realtimeBrokerRequest,
+        @Nullable Map<ServerInstance, List<String>> realtimeRoutingTable, long timeoutMs, ServerStats serverStats,
+        RequestStatistics requestStatistics, @Nullable OfflineResultCacheContext offlineResultCacheContext) {
+      _numRequestsProcessed++;
+      BrokerResponseNative brokerResponse = new BrokerResponseNative();
+      brokerResponse.setNumServersQueried(1);
+      brokerResponse.setNumServersResponded(1);
+      brokerResponse.setNumDocsScanned(_numRequestsProcessed);
+      return brokerResponse;
+    }
+  }
+}
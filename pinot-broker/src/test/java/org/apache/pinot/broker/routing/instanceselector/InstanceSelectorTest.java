@@ -41,6 +41,7 @@ import static org.apache.pinot.common.utils.CommonConstants.Helix.StateModel.Rea
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
 import static org.testng.Assert.assertTrue;
 
 
@@ -50,21 +51,27 @@ public class InstanceSelectorTest {
   public void testInstanceSelectorFactory() {
     TableConfig tableConfig = mock(TableConfig.class);
     BrokerMetrics brokerMetrics = mock(BrokerMetrics.class);
+    ServerLatencyStats serverLatencyStats = new ServerLatencyStats();
 
     // Routing config is missing
-    assertTrue(
-        InstanceSelectorFactory.getInstanceSelector(tableConfig, brokerMetrics) instanceof BalancedInstanceSelector);
+    assertTrue(InstanceSelectorFactory
+        .getInstanceSelector(tableConfig, brokerMetrics, serverLatencyStats) instanceof BalancedInstanceSelector);
 
     // Instance selector type is not configured
     RoutingConfig routingConfig = mock(RoutingConfig.class);
     when(tableConfig.getRoutingConfig()).thenReturn(routingConfig);
-    assertTrue(
-        InstanceSelectorFactory.getInstanceSelector(tableConfig, brokerMetrics) instanceof BalancedInstanceSelector);
+    assertTrue(InstanceSelectorFactory
+        .getInstanceSelector(tableConfig, brokerMetrics, serverLatencyStats) instanceof BalancedInstanceSelector);
 
     // Replica-group instance selector should be returned
     when(routingConfig.getInstanceSelectorType()).thenReturn(RoutingConfig.REPLICA_GROUP_INSTANCE_SELECTOR_TYPE);
     assertTrue(InstanceSelectorFactory
-        .getInstanceSelector(tableConfig, brokerMetrics) instanceof ReplicaGroupInstanceSelector);
+        .getInstanceSelector(tableConfig, brokerMetrics, serverLatencyStats) instanceof ReplicaGroupInstanceSelector);
+
+    // Latency-aware instance selector should be returned
+    when(routingConfig.getInstanceSelectorType()).thenReturn(RoutingConfig.LATENCY_AWARE_INSTANCE_SELECTOR_TYPE);
+    assertTrue(InstanceSelectorFactory
+        .getInstanceSelector(tableConfig, brokerMetrics, serverLatencyStats) instanceof LatencyAwareInstanceSelector);
 
     // Should be backward-compatible with legacy config
     when(routingConfig.getInstanceSelectorType()).thenReturn(null);
@@ -72,12 +79,12 @@ public class InstanceSelectorTest {
     when(routingConfig.getRoutingTableBuilderName())
         .thenReturn(InstanceSelectorFactory.LEGACY_REPLICA_GROUP_OFFLINE_ROUTING);
     assertTrue(InstanceSelectorFactory
-        .getInstanceSelector(tableConfig, brokerMetrics) instanceof ReplicaGroupInstanceSelector);
+        .getInstanceSelector(tableConfig, brokerMetrics, serverLatencyStats) instanceof ReplicaGroupInstanceSelector);
     when(tableConfig.getTableType()).thenReturn(TableType.REALTIME);
     when(routingConfig.getRoutingTableBuilderName())
         .thenReturn(InstanceSelectorFactory.LEGACY_REPLICA_GROUP_REALTIME_ROUTING);
     assertTrue(InstanceSelectorFactory
-        .getInstanceSelector(tableConfig, brokerMetrics) instanceof ReplicaGroupInstanceSelector);
+        .getInstanceSelector(tableConfig, brokerMetrics, serverLatencyStats) instanceof ReplicaGroupInstanceSelector);
   }
 
   @Test
@@ -561,4 +568,122 @@ public class InstanceSelectorTest {
       assertEquals(selectionResult.getUnavailableSegments(), Collections.singletonList(segment));
     }
   }
+
+  @Test
+  public void testLatencyAwareInstanceSelector() {
+    String offlineTableName = "testTable_OFFLINE";
+    BrokerMetrics brokerMetrics = mock(BrokerMetrics.class);
+    ServerLatencyStats serverLatencyStats = new ServerLatencyStats();
+    LatencyAwareInstanceSelector instanceSelector =
+        new LatencyAwareInstanceSelector(offlineTableName, brokerMetrics, serverLatencyStats);
+
+    // [segment0, segment1] -> [instance0, instance1]
+    String instance0 = "instance0";
+    String instance1 = "instance1";
+    Set<String> enabledInstances = new HashSet<>(Arrays.asList(instance0, instance1));
+    ExternalView externalView = new ExternalView(offlineTableName);
+    Map<String, String> instanceStateMap = new TreeMap<>();
+    instanceStateMap.put(instance0, ONLINE);
+    instanceStateMap.put(instance1, ONLINE);
+    String segment0 = "segment0";
+    String segment1 = "segment1";
+    externalView.getRecord().getMapFields().put(segment0, instanceStateMap);
+    externalView.getRecord().getMapFields().put(segment1, instanceStateMap);
+    List<String> segments = Arrays.asList(segment0, segment1);
+    instanceSelector.init(enabledInstances, externalView, Collections.emptySet());
+    BrokerRequest brokerRequest = mock(BrokerRequest.class);
+
+    // Without latency recorded, ties should be broken by the request id:
+    //   segment0 -> instance0
+    //   segment1 -> instance0
+    Map<String, String> expectedResult = new HashMap<>();
+    expectedResult.put(segment0, instance0);
+    expectedResult.put(segment1, instance0);
+    assertEquals(instanceSelector.select(brokerRequest, segments).getSegmentToInstanceMap(), expectedResult);
+
+    // instance0 is slower than instance1, all segments should be routed to instance1
+    serverLatencyStats.recordQuerySubmitted(instance0);
+    serverLatencyStats.recordQueryCompleted(instance0, 100);
+    serverLatencyStats.recordQuerySubmitted(instance1);
+    serverLatencyStats.recordQueryCompleted(instance1, 10);
+    assertEquals(serverLatencyStats.getEwmaLatencyMs(instance0), 100.0);
+    assertEquals(serverLatencyStats.getNumInFlightQueries(instance0), 0);
+    expectedResult.put(segment0, instance1);
+    expectedResult.put(segment1, instance1);
+    for (int requestId = 1; requestId < LatencyAwareInstanceSelector.EXPLORATION_INTERVAL - 1; requestId++) {
+      assertEquals(instanceSelector.select(brokerRequest, segments).getSegmentToInstanceMap(), expectedResult);
+    }
+
+    // Exploration request should be balanced across the replicas:
+    //   segment0 -> instance1
+    //   segment1 -> instance0
+    expectedResult.put(segment1, instance0);
+    assertEquals(instanceSelector.select(brokerRequest, segments).getSegmentToInstanceMap(), expectedResult);
+
+    // instance1 has too many in-flight queries, all segments should be routed to instance0
+    for (int i = 0; i < 20; i++) {
+      serverLatencyStats.recordQuerySubmitted(instance1);
+    }
+    expectedResult.put(segment0, instance0);
+    assertEquals(instanceSelector.select(brokerRequest, segments).getSegmentToInstanceMap(), expectedResult);
+
+    // instance1 recovered
+    for (int i = 0; i < 20; i++) {
+      serverLatencyStats.recordQueryDropped(instance1);
+    }
+    expectedResult.put(segment0, instance1);
+    expectedResult.put(segment1, instance1);
+    assertEquals(instanceSelector.select(brokerRequest, segments).getSegmentToInstanceMap(), expectedResult);
+
+    // Hedged request for instance1 should be sent to instance0
+    assertEquals(instanceSelector.selectHedgedInstance(segments, instance1), instance0);
+    assertEquals(instanceSelector.selectHedgedInstance(segments, instance0), instance1);
+  }
+
+  @Test
+  public void testSelectHedgedInstance() {
+    String offlineTableName = "testTable_OFFLINE";
+    BalancedInstanceSelector instanceSelector =
+        new BalancedInstanceSelector(offlineTableName, mock(BrokerMetrics.class));
+
+    //   segment0 -> [instance0, instance1, instance2]
+    //   segment1 -> [instance0, instance1]
+    //   segment2 -> [instance2]
+    String instance0 = "instance0";
+    String instance1 = "instance1";
+    String instance2 = "instance2";
+    Set<String> enabledInstances = new HashSet<>(Arrays.asList(instance0, instance1, instance2));
+    ExternalView externalView = new ExternalView(offlineTableName);
+    Map<String, Map<String, String>> segmentAssignment = externalView.getRecord().getMapFields();
+    Map<String, String> instanceStateMap0 = new TreeMap<>();
+    instanceStateMap0.put(instance0, ONLINE);
+    instanceStateMap0.put(instance1, ONLINE);
+    instanceStateMap0.put(instance2, ONLINE);
+    String segment0 = "segment0";
+    segmentAssignment.put(segment0, instanceStateMap0);
+    Map<String, String> instanceStateMap1 = new TreeMap<>();
+    instanceStateMap1.put(instance0, ONLINE);
+    instanceStateMap1.put(instance1, ONLINE);
+    String segment1 = "segment1";
+    segmentAssignment.put(segment1, instanceStateMap1);
+    String segment2 = "segment2";
+    segmentAssignment.put(segment2, Collections.singletonMap(instance2, ONLINE));
+    instanceSelector.init(enabledInstances, externalView, Collections.emptySet());
+
+    // Only instance1 serves both segment0 and segment1 other than instance0
+    assertEquals(instanceSelector.selectHedgedInstance(Arrays.asList(segment0, segment1), instance0), instance1);
+
+    // No other instance serves segment2
+    assertNull(instanceSelector.selectHedgedInstance(Collections.singletonList(segment2), instance2));
+    assertNull(instanceSelector.selectHedgedInstance(Arrays.asList(segment0, segment2), instance2));
+
+    // Only instance2 serves both segment0 and segment2 other than instance0
+    assertEquals(instanceSelector.selectHedgedInstance(Arrays.asList(segment0, segment2), instance0), instance2);
+
+    // Disable instance1
+    enabledInstances.remove(instance1);
+    instanceSelector.onInstancesChange(enabledInstances, Collections.singletonList(instance1));
+    assertNull(instanceSelector.selectHedgedInstance(Arrays.asList(segment0, segment1), instance0));
+    assertEquals(instanceSelector.selectHedgedInstance(Collections.singletonList(segment0), instance0), instance2);
+  }
 }
@@ -26,7 +26,10 @@ import org.apache.pinot.common.Utils;
  *
  */
 public enum BrokerGauge implements AbstractMetrics.Gauge {
-  QUERY_QUOTA_CAPACITY_UTILIZATION_RATE("tables", false), NETTY_CONNECTION_CONNECT_TIME_MS("nettyConnection", true);
+  QUERY_QUOTA_CAPACITY_UTILIZATION_RATE("tables", false), NETTY_CONNECTION_CONNECT_TIME_MS("nettyConnection", true),
+  // Netty transport
+  NETTY_EVENT_LOOP_PENDING_TASKS("tasks", true),
+  NETTY_POOLED_DIRECT_MEMORY_USED("bytes", true);
 
   private final String brokerGaugeName;
   private final String unit;
@@ -99,6 +99,19 @@ public enum BrokerMeter implements AbstractMetrics.Meter {
   NETTY_CONNECTION_BYTES_SENT("nettyConnection", true),
   NETTY_CONNECTION_BYTES_RECEIVED("nettyConnection", true),
 
+  // Queries cancelled on the broker (either explicitly or because of timeout) with cancel messages sent to servers
+  QUERIES_CANCELLED("queries", true),
+
+  // Result cache metrics, where hits on the offline part of hybrid queries are counted per offline table
+  RESULT_CACHE_HITS("queries", false),
+  RESULT_CACHE_MISSES("queries", false),
+
+  // Hedged requests re-issued to another replica for straggling servers, the ones answered before the original
+  // requests, and the ones skipped because the hedged request budget is exhausted
+  HEDGED_REQUESTS_SENT("requests", false),
+  HEDGED_REQUESTS_WON("requests", false),
+  HEDGED_REQUESTS_BUDGET_EXHAUSTED("requests", false),
+
   PROACTIVE_CLUSTER_CHANGE_CHECK("proactiveClusterChangeCheck", true);
 
   private final String brokerMeterName;
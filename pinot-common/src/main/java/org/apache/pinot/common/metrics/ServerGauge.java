@@ -39,8 +39,20 @@ public enum ServerGauge implements AbstractMetrics.Gauge {
   LAST_REALTIME_SEGMENT_CATCHUP_DURATION_SECONDS("seconds", false),
   LAST_REALTIME_SEGMENT_COMPLETION_DURATION_SECONDS("seconds", false),
   REALTIME_OFFHEAP_MEMORY_USED("bytes", false),
+  // Server-wide pool of recycled off-heap buffers for consuming segments
+  REALTIME_OFFHEAP_BUFFER_POOL_SIZE_IN_BYTES("bytes", true),
+  REALTIME_OFFHEAP_BUFFER_POOL_HITS("buffers", true),
+  REALTIME_OFFHEAP_BUFFER_POOL_MISSES("buffers", true),
+  REALTIME_OFFHEAP_BUFFER_POOL_HIT_RATE_PERCENT("percent", true),
   REALTIME_SEGMENT_NUM_PARTITIONS("realtimeSegmentNumPartitions", false),
-  LLC_SIMULTANEOUS_SEGMENT_BUILDS("llcSimultaneousSegmentBuilds", true);
+  LLC_SIMULTANEOUS_SEGMENT_BUILDS("llcSimultaneousSegmentBuilds", true),
+  // Number of threads granted to the last query of the table
+  QUERY_PARALLELISM("threads", false),
+  // Per-segment query result cache
+  SEGMENT_RESULT_CACHE_SIZE_IN_BYTES("bytes", true),
+  // Netty transport
+  NETTY_EVENT_LOOP_PENDING_TASKS("tasks", true),
+  NETTY_POOLED_DIRECT_MEMORY_USED("bytes", true);
 
   private final String gaugeName;
   private final String unit;
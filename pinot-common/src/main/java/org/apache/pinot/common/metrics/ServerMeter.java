@@ -32,6 +32,8 @@ public enum ServerMeter implements AbstractMetrics.Meter {
   RESPONSE_SERIALIZATION_EXCEPTIONS("exceptions", true),
   SCHEDULING_TIMEOUT_EXCEPTIONS("exceptions", true),
   QUERY_EXECUTION_EXCEPTIONS("exceptions", false),
+  QUERIES_CANCELLED("queries", true),
+  QUERIES_KILLED_ON_RESOURCE_LIMIT("queries", false),
   HELIX_ZOOKEEPER_RECONNECTS("reconnects", true),
   DELETED_SEGMENT_COUNT("segments", false),
   REALTIME_ROWS_CONSUMED("rows", true),
@@ -55,12 +57,19 @@ public enum ServerMeter implements AbstractMetrics.Meter {
   NUM_DOCS_SCANNED("rows", false),
   NUM_ENTRIES_SCANNED_IN_FILTER("entries", false),
   NUM_ENTRIES_SCANNED_POST_FILTER("entries", false),
+  QUERY_THREAD_CPU_TIME_NS("nanoseconds", false),
+  QUERY_THREAD_ALLOCATED_BYTES("bytes", false),
   NUM_SEGMENTS_QUERIED("numSegmentsQueried", false),
   NUM_SEGMENTS_PROCESSED("numSegmentsProcessed", false),
   NUM_SEGMENTS_MATCHED("numSegmentsMatched", false),
   NUM_MISSING_SEGMENTS("segments", false),
   RELOAD_FAILURES("segments", false),
   REFRESH_FAILURES("segments", false),
+  // Queries served by the execution of an identical query in flight
+  COALESCED_QUERIES("queries", false),
+  // Per-segment query result cache
+  SEGMENT_RESULT_CACHE_HITS("segments", true),
+  SEGMENT_RESULT_CACHE_MISSES("segments", true),
 
   // Netty connection metrics
   NETTY_CONNECTION_BYTES_RECEIVED("nettyConnection", true),
@@ -39,6 +39,7 @@ public class InstanceRequest implements org.apache.thrift.TBase<InstanceRequest,
   private static final org.apache.thrift.protocol.TField SEARCH_SEGMENTS_FIELD_DESC = new org.apache.thrift.protocol.TField("searchSegments", org.apache.thrift.protocol.TType.LIST, (short)3);
   private static final org.apache.thrift.protocol.TField ENABLE_TRACE_FIELD_DESC = new org.apache.thrift.protocol.TField("enableTrace", org.apache.thrift.protocol.TType.BOOL, (short)4);
   private static final org.apache.thrift.protocol.TField BROKER_ID_FIELD_DESC = new org.apache.thrift.protocol.TField("brokerId", org.apache.thrift.protocol.TType.STRING, (short)5);
+  private static final org.apache.thrift.protocol.TField DATA_TABLE_VERSION_FIELD_DESC = new org.apache.thrift.protocol.TField("dataTableVersion", org.apache.thrift.protocol.TType.I32, (short)6);
 
   private static final org.apache.thrift.scheme.SchemeFactory STANDARD_SCHEME_FACTORY = new InstanceRequestStandardSchemeFactory();
   private static final org.apache.thrift.scheme.SchemeFactory TUPLE_SCHEME_FACTORY = new InstanceRequestTupleSchemeFactory();
@@ -48,6 +49,7 @@ public class InstanceRequest implements org.apache.thrift.TBase<InstanceRequest,
   public @org.apache.thrift.annotation.Nullable java.util.List<java.lang.String> searchSegments; // optional
   public boolean enableTrace; // optional
   public @org.apache.thrift.annotation.Nullable java.lang.String brokerId; // optional
+  public int dataTableVersion; // optional
 
   /** The set of fields this struct contains, along with convenience methods for finding and manipulating them. */
   public enum _Fields implements org.apache.thrift.TFieldIdEnum {
@@ -55,7 +57,8 @@ public class InstanceRequest implements org.apache.thrift.TBase<InstanceRequest,
     QUERY((short)2, "query"),
     SEARCH_SEGMENTS((short)3, "searchSegments"),
     ENABLE_TRACE((short)4, "enableTrace"),
-    BROKER_ID((short)5, "brokerId");
+    BROKER_ID((short)5, "brokerId"),
+    DATA_TABLE_VERSION((short)6, "dataTableVersion");
 
     private static final java.util.Map<java.lang.String, _Fields> byName = new java.util.HashMap<java.lang.String, _Fields>();
 
@@ -81,6 +84,8 @@ public class InstanceRequest implements org.apache.thrift.TBase<InstanceRequest,
           return ENABLE_TRACE;
         case 5: // BROKER_ID
           return BROKER_ID;
+        case 6: // DATA_TABLE_VERSION
+          return DATA_TABLE_VERSION;
         default:
           return null;
       }
@@ -124,8 +129,9 @@ public class InstanceRequest implements org.apache.thrift.TBase<InstanceRequest,
   // isset id assignments
   private static final int __REQUESTID_ISSET_ID = 0;
   private static final int __ENABLETRACE_ISSET_ID = 1;
+  private static final int __DATATABLEVERSION_ISSET_ID = 2;
   private byte __isset_bitfield = 0;
-  private static final _Fields optionals[] = {_Fields.SEARCH_SEGMENTS,_Fields.ENABLE_TRACE,_Fields.BROKER_ID};
+  private static final _Fields optionals[] = {_Fields.SEARCH_SEGMENTS,_Fields.ENABLE_TRACE,_Fields.BROKER_ID,_Fields.DATA_TABLE_VERSION};
   public static final java.util.Map<_Fields, org.apache.thrift.meta_data.FieldMetaData> metaDataMap;
   static {
     java.util.Map<_Fields, org.apache.thrift.meta_data.FieldMetaData> tmpMap = new java.util.EnumMap<_Fields, org.apache.thrift.meta_data.FieldMetaData>(_Fields.class);
@@ -140,6 +146,8 @@ public class InstanceRequest implements org.apache.thrift.TBase<InstanceRequest,
         new org.apache.thrift.meta_data.FieldValueMetaData(org.apache.thrift.protocol.TType.BOOL)));
     tmpMap.put(_Fields.BROKER_ID, new org.apache.thrift.meta_data.FieldMetaData("brokerId", org.apache.thrift.TFieldRequirementType.OPTIONAL, 
         new org.apache.thrift.meta_data.FieldValueMetaData(org.apache.thrift.protocol.TType.STRING)));
+    tmpMap.put(_Fields.DATA_TABLE_VERSION, new org.apache.thrift.meta_data.FieldMetaData("dataTableVersion", org.apache.thrift.TFieldRequirementType.OPTIONAL, 
+        new org.apache.thrift.meta_data.FieldValueMetaData(org.apache.thrift.protocol.TType.I32)));
     metaDataMap = java.util.Collections.unmodifiableMap(tmpMap);
     org.apache.thrift.meta_data.FieldMetaData.addStructMetaDataMap(InstanceRequest.class, metaDataMap);
   }
@@ -174,6 +182,7 @@ public class InstanceRequest implements org.apache.thrift.TBase<InstanceRequest,
     if (other.isSetBrokerId()) {
       this.brokerId = other.brokerId;
     }
+    this.dataTableVersion = other.dataTableVersion;
   }
 
   public InstanceRequest deepCopy() {
@@ -189,6 +198,8 @@ public class InstanceRequest implements org.apache.thrift.TBase<InstanceRequest,
     setEnableTraceIsSet(false);
     this.enableTrace = false;
     this.brokerId = null;
+    setDataTableVersionIsSet(false);
+    this.dataTableVersion = 0;
   }
 
   public long getRequestId() {
@@ -328,6 +339,29 @@ public class InstanceRequest implements org.apache.thrift.TBase<InstanceRequest,
     }
   }
 
+  public int getDataTableVersion() {
+    return this.dataTableVersion;
+  }
+
+  public InstanceRequest setDataTableVersion(int dataTableVersion) {
+    this.dataTableVersion = dataTableVersion;
+    setDataTableVersionIsSet(true);
+    return this;
+  }
+
+  public void unsetDataTableVersion() {
+    __isset_bitfield = org.apache.thrift.EncodingUtils.clearBit(__isset_bitfield, __DATATABLEVERSION_ISSET_ID);
+  }
+
+  /** Returns true if field dataTableVersion is set (has been assigned a value) and false otherwise */
+  public boolean isSetDataTableVersion() {
+    return org.apache.thrift.EncodingUtils.testBit(__isset_bitfield, __DATATABLEVERSION_ISSET_ID);
+  }
+
+  public void setDataTableVersionIsSet(boolean value) {
+    __isset_bitfield = org.apache.thrift.EncodingUtils.setBit(__isset_bitfield, __DATATABLEVERSION_ISSET_ID, value);
+  }
+
   public void setFieldValue(_Fields field, @org.apache.thrift.annotation.Nullable java.lang.Object value) {
     switch (field) {
     case REQUEST_ID:
@@ -370,6 +404,14 @@ public class InstanceRequest implements org.apache.thrift.TBase<InstanceRequest,
       }
       break;
 
+    case DATA_TABLE_VERSION:
+      if (value == null) {
+        unsetDataTableVersion();
+      } else {
+        setDataTableVersion((java.lang.Integer)value);
+      }
+      break;
+
     }
   }
 
@@ -391,6 +433,9 @@ public class InstanceRequest implements org.apache.thrift.TBase<InstanceRequest,
     case BROKER_ID:
       return getBrokerId();
 
+    case DATA_TABLE_VERSION:
+      return getDataTableVersion();
+
     }
     throw new java.lang.IllegalStateException();
   }
@@ -412,6 +457,8 @@ public class InstanceRequest implements org.apache.thrift.TBase<InstanceRequest,
       return isSetEnableTrace();
     case BROKER_ID:
       return isSetBrokerId();
+    case DATA_TABLE_VERSION:
+      return isSetDataTableVersion();
     }
     throw new java.lang.IllegalStateException();
   }
@@ -476,6 +523,15 @@ public class InstanceRequest implements org.apache.thrift.TBase<InstanceRequest,
         return false;
     }
 
+    boolean this_present_dataTableVersion = true && this.isSetDataTableVersion();
+    boolean that_present_dataTableVersion = true && that.isSetDataTableVersion();
+    if (this_present_dataTableVersion || that_present_dataTableVersion) {
+      if (!(this_present_dataTableVersion && that_present_dataTableVersion))
+        return false;
+      if (this.dataTableVersion != that.dataTableVersion)
+        return false;
+    }
+
     return true;
   }
 
@@ -501,6 +557,10 @@ public class InstanceRequest implements org.apache.thrift.TBase<InstanceRequest,
     if (isSetBrokerId())
       hashCode = hashCode * 8191 + brokerId.hashCode();
 
+    hashCode = hashCode * 8191 + ((isSetDataTableVersion()) ? 131071 : 524287);
+    if (isSetDataTableVersion())
+      hashCode = hashCode * 8191 + dataTableVersion;
+
     return hashCode;
   }
 
@@ -562,6 +622,16 @@ public class InstanceRequest implements org.apache.thrift.TBase<InstanceRequest,
         return lastComparison;
       }
     }
+    lastComparison = java.lang.Boolean.valueOf(isSetDataTableVersion()).compareTo(other.isSetDataTableVersion());
+    if (lastComparison != 0) {
+      return lastComparison;
+    }
+    if (isSetDataTableVersion()) {
+      lastComparison = org.apache.thrift.TBaseHelper.compareTo(this.dataTableVersion, other.dataTableVersion);
+      if (lastComparison != 0) {
+        return lastComparison;
+      }
+    }
     return 0;
   }
 
@@ -620,6 +690,12 @@ public class InstanceRequest implements org.apache.thrift.TBase<InstanceRequest,
       }
       first = false;
     }
+    if (isSetDataTableVersion()) {
+      if (!first) sb.append(", ");
+      sb.append("dataTableVersion:");
+      sb.append(this.dataTableVersion);
+      first = false;
+    }
     sb.append(")");
     return sb.toString();
   }
@@ -723,6 +799,14 @@ public class InstanceRequest implements org.apache.thrift.TBase<InstanceRequest,
               org.apache.thrift.protocol.TProtocolUtil.skip(iprot, schemeField.type);
             }
             break;
+          case 6: // DATA_TABLE_VERSION
+            if (schemeField.type == org.apache.thrift.protocol.TType.I32) {
+              struct.dataTableVersion = iprot.readI32();
+              struct.setDataTableVersionIsSet(true);
+            } else { 
+              org.apache.thrift.protocol.TProtocolUtil.skip(iprot, schemeField.type);
+            }
+            break;
           default:
             org.apache.thrift.protocol.TProtocolUtil.skip(iprot, schemeField.type);
         }
@@ -775,6 +859,11 @@ public class InstanceRequest implements org.apache.thrift.TBase<InstanceRequest,
           oprot.writeFieldEnd();
         }
       }
+      if (struct.isSetDataTableVersion()) {
+        oprot.writeFieldBegin(DATA_TABLE_VERSION_FIELD_DESC);
+        oprot.writeI32(struct.dataTableVersion);
+        oprot.writeFieldEnd();
+      }
       oprot.writeFieldStop();
       oprot.writeStructEnd();
     }
@@ -804,7 +893,10 @@ public class InstanceRequest implements org.apache.thrift.TBase<InstanceRequest,
       if (struct.isSetBrokerId()) {
         optionals.set(2);
       }
-      oprot.writeBitSet(optionals, 3);
+      if (struct.isSetDataTableVersion()) {
+        optionals.set(3);
+      }
+      oprot.writeBitSet(optionals, 4);
       if (struct.isSetSearchSegments()) {
         {
           oprot.writeI32(struct.searchSegments.size());
@@ -820,6 +912,9 @@ public class InstanceRequest implements org.apache.thrift.TBase<InstanceRequest,
       if (struct.isSetBrokerId()) {
         oprot.writeString(struct.brokerId);
       }
+      if (struct.isSetDataTableVersion()) {
+        oprot.writeI32(struct.dataTableVersion);
+      }
     }
 
     @Override
@@ -830,7 +925,7 @@ public class InstanceRequest implements org.apache.thrift.TBase<InstanceRequest,
       struct.query = new BrokerRequest();
       struct.query.read(iprot);
       struct.setQueryIsSet(true);
-      java.util.BitSet incoming = iprot.readBitSet(3);
+      java.util.BitSet incoming = iprot.readBitSet(4);
       if (incoming.get(0)) {
         {
           org.apache.thrift.protocol.TList _list135 = new org.apache.thrift.protocol.TList(org.apache.thrift.protocol.TType.STRING, iprot.readI32());
@@ -852,6 +947,10 @@ public class InstanceRequest implements org.apache.thrift.TBase<InstanceRequest,
         struct.brokerId = iprot.readString();
         struct.setBrokerIdIsSet(true);
       }
+      if (incoming.get(3)) {
+        struct.dataTableVersion = iprot.readI32();
+        struct.setDataTableVersionIsSet(true);
+      }
     }
   }
 
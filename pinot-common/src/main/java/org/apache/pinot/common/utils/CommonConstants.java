@@ -142,6 +142,48 @@ public class CommonConstants {
         "pinot.broker.startup.minResourcePercent";
     public static final double DEFAULT_BROKER_MIN_RESOURCE_PERCENT_FOR_START = 100.0;
     public static final String CONFIG_OF_ENABLE_QUERY_LIMIT_OVERRIDE = "pinot.broker.enable.query.limit.override";
+    // Whether to send cancel messages to servers for queries that timed out or got cancelled on the broker. Only enable
+    // it after all servers are upgraded to a version that understands the cancel message.
+    public static final String CONFIG_OF_ENABLE_QUERY_CANCELLATION = "pinot.broker.enable.query.cancellation";
+    public static final boolean DEFAULT_ENABLE_QUERY_CANCELLATION = false;
+    // Version of the DataTable wire format requested from the servers. Version 3 is columnar and compressed, and servers
+    // that do not understand it respond with version 2.
+    public static final String CONFIG_OF_DATA_TABLE_VERSION = "pinot.broker.data.table.version";
+    public static final int DEFAULT_DATA_TABLE_VERSION = 2;
+    // Whether to use the native epoll transport for the connections to the servers. Falls back to NIO transport when
+    // the native library is not available.
+    public static final String CONFIG_OF_ENABLE_NATIVE_TRANSPORT = "pinot.broker.netty.native.transport.enabled";
+    public static final boolean DEFAULT_ENABLE_NATIVE_TRANSPORT = false;
+    // Whether to reduce the server responses as they arrive instead of after all of them are received. The reduce work
+    // is done on the threads receiving the responses.
+    public static final String CONFIG_OF_ENABLE_STREAMING_REDUCE = "pinot.broker.enable.streaming.reduce";
+    public static final boolean DEFAULT_ENABLE_STREAMING_REDUCE = false;
+    // Maximum number of threads used to reduce the group-by results of one query (groupByMode = sql). The threads are
+    // taken from a broker-wide pool of the same size. Set to 1 to reduce on the request thread only.
+    public static final String CONFIG_OF_MAX_REDUCE_THREADS_PER_QUERY = "pinot.broker.max.reduce.threads.per.query";
+    public static final int DEFAULT_MAX_REDUCE_THREADS_PER_QUERY = 1;
+    // Whether to cache the query results on the broker. The results are cached per table until the routing of the
+    // table changes (external view change or segment refresh) or the TTL expires. Only offline results are cached,
+    // either the whole response of an offline query or the server responses of the offline part of a hybrid query.
+    // The max size is shared evenly by the two kinds of cached results.
+    public static final String CONFIG_OF_ENABLE_RESULT_CACHE = "pinot.broker.result.cache.enabled";
+    public static final boolean DEFAULT_ENABLE_RESULT_CACHE = false;
+    public static final String CONFIG_OF_RESULT_CACHE_MAX_SIZE_IN_BYTES = "pinot.broker.result.cache.max.size.in.bytes";
+    public static final long DEFAULT_RESULT_CACHE_MAX_SIZE_IN_BYTES = 128 * 1024 * 1024L;
+    public static final String CONFIG_OF_RESULT_CACHE_TTL_MS = "pinot.broker.result.cache.ttl.ms";
+    public static final long DEFAULT_RESULT_CACHE_TTL_MS = 300_000L;
+    // Whether to re-issue the request to another replica when a server has not responded within the given percentile of
+    // the recent server latency of the table (but no less than the min delay). Hedged requests are limited to the given
+    // ratio of the requests sent to the servers.
+    public static final String CONFIG_OF_ENABLE_HEDGED_REQUESTS = "pinot.broker.hedged.requests.enabled";
+    public static final boolean DEFAULT_ENABLE_HEDGED_REQUESTS = false;
+    public static final String CONFIG_OF_HEDGED_REQUESTS_DELAY_PERCENTILE =
+        "pinot.broker.hedged.requests.delay.percentile";
+    public static final double DEFAULT_HEDGED_REQUESTS_DELAY_PERCENTILE = 95.0;
+    public static final String CONFIG_OF_HEDGED_REQUESTS_MIN_DELAY_MS = "pinot.broker.hedged.requests.min.delay.ms";
+    public static final long DEFAULT_HEDGED_REQUESTS_MIN_DELAY_MS = 10L;
+    public static final String CONFIG_OF_HEDGED_REQUESTS_BUDGET_RATIO = "pinot.broker.hedged.requests.budget.ratio";
+    public static final double DEFAULT_HEDGED_REQUESTS_BUDGET_RATIO = 0.05;
 
     public static class Request {
       public static final String PQL = "pql";
@@ -40,8 +40,13 @@ public interface DataTable {
   String TOTAL_DOCS_METADATA_KEY = "totalDocs";
   String NUM_GROUPS_LIMIT_REACHED_KEY = "numGroupsLimitReached";
   String TIME_USED_MS_METADATA_KEY = "timeUsedMs";
+  String THREAD_CPU_TIME_NS_METADATA_KEY = "threadCpuTimeNs";
+  String THREAD_ALLOCATED_BYTES_METADATA_KEY = "threadAllocatedBytes";
+  String QUERY_PARALLELISM_METADATA_KEY = "queryParallelism";
   String TRACE_INFO_METADATA_KEY = "traceInfo";
   String REQUEST_ID_METADATA_KEY = "requestId";
+  // Set to "true" when the selection order-by rows are sorted in the query order
+  String SORTED_ROWS_METADATA_KEY = "sortedRows";
 
   void addException(ProcessingException processingException);
 
@@ -77,4 +82,11 @@ public interface DataTable {
   double[] getDoubleArray(int rowId, int colId);
 
   String[] getStringArray(int rowId, int colId);
+
+  /**
+   * Releases the resources (e.g. the network buffer) backing the data table. The data table should not be accessed
+   * after being released.
+   */
+  default void release() {
+  }
 }
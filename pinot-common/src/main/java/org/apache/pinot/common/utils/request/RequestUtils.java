@@ -26,6 +26,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.Stack;
+import java.util.TreeMap;
 import org.apache.calcite.sql.SqlLiteral;
 import org.apache.calcite.sql.SqlNumericLiteral;
 import org.apache.commons.lang.mutable.MutableInt;
@@ -42,6 +43,7 @@ import org.apache.pinot.common.request.Literal;
 import org.apache.pinot.common.request.Selection;
 import org.apache.pinot.common.request.SelectionSort;
 import org.apache.pinot.common.request.transform.TransformExpressionTree;
+import org.apache.pinot.common.utils.CommonConstants.Broker.Request.QueryOptionKey;
 import org.apache.pinot.pql.parsers.pql2.ast.AstNode;
 import org.apache.pinot.pql.parsers.pql2.ast.FloatingPointLiteralAstNode;
 import org.apache.pinot.pql.parsers.pql2.ast.FunctionCallAstNode;
@@ -375,4 +377,24 @@ public class RequestUtils {
     }
     return null;
   }
+
+  /**
+   * Returns the fingerprint of the given broker request, which is the same for the requests that produce the same
+   * results. The options that do not affect the results (e.g. timeout) are removed, and the remaining options are
+   * sorted. The given broker request is not modified.
+   */
+  public static String getQueryFingerprint(BrokerRequest brokerRequest) {
+    BrokerRequest normalizedBrokerRequest = new BrokerRequest(brokerRequest);
+    Map<String, String> queryOptions = normalizedBrokerRequest.getQueryOptions();
+    if (queryOptions != null) {
+      TreeMap<String, String> sortedQueryOptions = new TreeMap<>(queryOptions);
+      sortedQueryOptions.remove(QueryOptionKey.TIMEOUT_MS);
+      normalizedBrokerRequest.setQueryOptions(sortedQueryOptions);
+    }
+    Map<String, String> debugOptions = normalizedBrokerRequest.getDebugOptions();
+    if (debugOptions != null) {
+      normalizedBrokerRequest.setDebugOptions(new TreeMap<>(debugOptions));
+    }
+    return normalizedBrokerRequest.toString();
+  }
 }
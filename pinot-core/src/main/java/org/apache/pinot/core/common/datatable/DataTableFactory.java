@@ -18,6 +18,7 @@
  */
 package org.apache.pinot.core.common.datatable;
 
+import io.netty.buffer.ByteBuf;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import org.apache.pinot.common.utils.DataTable;
@@ -31,15 +32,51 @@ public class DataTableFactory {
       throws IOException {
     int version = byteBuffer.getInt();
     switch (version) {
-      case 2:
+      case DataTableImplV2.VERSION:
         return new DataTableImplV2(byteBuffer);
+      case DataTableImplV3.VERSION:
+        return new DataTableImplV3(byteBuffer);
       default:
         throw new UnsupportedOperationException("Unsupported data table version: " + version);
     }
   }
 
+  /**
+   * Decodes the data table from the given Netty buffer without taking over the caller's reference to it.
+   * <p>Data tables in version 2 format are read directly over a retained slice of the buffer, and must be released via
+   * {@link DataTable#release()} once no longer needed. Other versions are decoded into their own memory.
+   */
+  public static DataTable getDataTable(ByteBuf byteBuf)
+      throws IOException {
+    int version = byteBuf.getInt(byteBuf.readerIndex());
+    if (version != DataTableImplV2.VERSION) {
+      return getDataTable(byteBuf.nioBuffer());
+    }
+    ByteBuf slice = byteBuf.retainedSlice();
+    try {
+      return new ZeroCopyDataTableImplV2(slice);
+    } catch (Exception e) {
+      slice.release();
+      throw e;
+    }
+  }
+
   public static DataTable getDataTable(byte[] bytes)
       throws IOException {
     return getDataTable(ByteBuffer.wrap(bytes));
   }
+
+  /**
+   * Serializes the data table with the wire format of the given version.
+   * <p>Data tables are always built in version 2 format, and are converted into version 3 (columnar) format only when
+   * requested. Unknown versions fall back to version 2, so that a broker newer than the server still gets a response
+   * it can decode.
+   */
+  public static byte[] toBytes(DataTable dataTable, int version)
+      throws IOException {
+    if (version == DataTableImplV3.VERSION && dataTable instanceof DataTableImplV2) {
+      return new DataTableImplV3((DataTableImplV2) dataTable).toBytes();
+    }
+    return dataTable.toBytes();
+  }
 }
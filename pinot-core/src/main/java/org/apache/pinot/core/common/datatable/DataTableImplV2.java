@@ -38,7 +38,7 @@ import org.apache.pinot.spi.utils.BytesUtils;
 
 
 public class DataTableImplV2 implements DataTable {
-  private static final int VERSION = 2;
+  public static final int VERSION = 2;
 
   // VERSION
   // NUM_ROWS
@@ -97,6 +97,24 @@ public class DataTableImplV2 implements DataTable {
     _metadata = new HashMap<>();
   }
 
+  /**
+   * Construct a copy of the given data table with its own metadata, which shares the data with the given data table
+   * (e.g. to return the same query results to multiple requests with different request ids). (Server side)
+   */
+  public DataTableImplV2(DataTableImplV2 dataTable) {
+    _numRows = dataTable._numRows;
+    _numColumns = dataTable._numColumns;
+    _dataSchema = dataTable._dataSchema;
+    _columnOffsets = dataTable._columnOffsets;
+    _rowSizeInBytes = dataTable._rowSizeInBytes;
+    _dictionaryMap = dataTable._dictionaryMap;
+    _fixedSizeDataBytes = dataTable._fixedSizeDataBytes;
+    _fixedSizeData = dataTable._fixedSizeData != null ? dataTable._fixedSizeData.duplicate() : null;
+    _variableSizeDataBytes = dataTable._variableSizeDataBytes;
+    _variableSizeData = dataTable._variableSizeData != null ? dataTable._variableSizeData.duplicate() : null;
+    _metadata = new HashMap<>(dataTable._metadata);
+  }
+
   /**
    * Construct data table from byte array. (broker side)
    */
@@ -361,32 +379,27 @@ public class DataTableImplV2 implements DataTable {
 
   @Override
   public int getInt(int rowId, int colId) {
-    _fixedSizeData.position(rowId * _rowSizeInBytes + _columnOffsets[colId]);
-    return _fixedSizeData.getInt();
+    return _fixedSizeData.getInt(getFixedSizeOffset(rowId, colId));
   }
 
   @Override
   public long getLong(int rowId, int colId) {
-    _fixedSizeData.position(rowId * _rowSizeInBytes + _columnOffsets[colId]);
-    return _fixedSizeData.getLong();
+    return _fixedSizeData.getLong(getFixedSizeOffset(rowId, colId));
   }
 
   @Override
   public float getFloat(int rowId, int colId) {
-    _fixedSizeData.position(rowId * _rowSizeInBytes + _columnOffsets[colId]);
-    return _fixedSizeData.getFloat();
+    return _fixedSizeData.getFloat(getFixedSizeOffset(rowId, colId));
   }
 
   @Override
   public double getDouble(int rowId, int colId) {
-    _fixedSizeData.position(rowId * _rowSizeInBytes + _columnOffsets[colId]);
-    return _fixedSizeData.getDouble();
+    return _fixedSizeData.getDouble(getFixedSizeOffset(rowId, colId));
   }
 
   @Override
   public String getString(int rowId, int colId) {
-    _fixedSizeData.position(rowId * _rowSizeInBytes + _columnOffsets[colId]);
-    int dictId = _fixedSizeData.getInt();
+    int dictId = _fixedSizeData.getInt(getFixedSizeOffset(rowId, colId));
     return _dictionaryMap.get(_dataSchema.getColumnName(colId)).get(dictId);
   }
 
@@ -398,68 +411,110 @@ public class DataTableImplV2 implements DataTable {
 
   @Override
   public <T> T getObject(int rowId, int colId) {
-    int size = positionCursorInVariableBuffer(rowId, colId);
-    int objectTypeValue = _variableSizeData.getInt();
-    ByteBuffer byteBuffer = _variableSizeData.slice();
-    byteBuffer.limit(size);
-    return ObjectSerDeUtils.deserialize(byteBuffer, objectTypeValue);
+    return ObjectSerDeUtils.deserialize(sliceObject(rowId, colId), getObjectTypeValue(rowId, colId));
   }
 
   @Override
   public int[] getIntArray(int rowId, int colId) {
-    int length = positionCursorInVariableBuffer(rowId, colId);
+    int fixedSizeOffset = getFixedSizeOffset(rowId, colId);
+    int offset = _fixedSizeData.getInt(fixedSizeOffset);
+    int length = _fixedSizeData.getInt(fixedSizeOffset + Integer.BYTES);
     int[] ints = new int[length];
     for (int i = 0; i < length; i++) {
-      ints[i] = _variableSizeData.getInt();
+      ints[i] = _variableSizeData.getInt(offset + i * Integer.BYTES);
     }
     return ints;
   }
 
   @Override
   public long[] getLongArray(int rowId, int colId) {
-    int length = positionCursorInVariableBuffer(rowId, colId);
+    int fixedSizeOffset = getFixedSizeOffset(rowId, colId);
+    int offset = _fixedSizeData.getInt(fixedSizeOffset);
+    int length = _fixedSizeData.getInt(fixedSizeOffset + Integer.BYTES);
     long[] longs = new long[length];
     for (int i = 0; i < length; i++) {
-      longs[i] = _variableSizeData.getLong();
+      longs[i] = _variableSizeData.getLong(offset + i * Long.BYTES);
     }
     return longs;
   }
 
   @Override
   public float[] getFloatArray(int rowId, int colId) {
-    int length = positionCursorInVariableBuffer(rowId, colId);
+    int fixedSizeOffset = getFixedSizeOffset(rowId, colId);
+    int offset = _fixedSizeData.getInt(fixedSizeOffset);
+    int length = _fixedSizeData.getInt(fixedSizeOffset + Integer.BYTES);
     float[] floats = new float[length];
     for (int i = 0; i < length; i++) {
-      floats[i] = _variableSizeData.getFloat();
+      floats[i] = _variableSizeData.getFloat(offset + i * Float.BYTES);
     }
     return floats;
   }
 
   @Override
   public double[] getDoubleArray(int rowId, int colId) {
-    int length = positionCursorInVariableBuffer(rowId, colId);
+    int fixedSizeOffset = getFixedSizeOffset(rowId, colId);
+    int offset = _fixedSizeData.getInt(fixedSizeOffset);
+    int length = _fixedSizeData.getInt(fixedSizeOffset + Integer.BYTES);
     double[] doubles = new double[length];
     for (int i = 0; i < length; i++) {
-      doubles[i] = _variableSizeData.getDouble();
+      doubles[i] = _variableSizeData.getDouble(offset + i * Double.BYTES);
     }
     return doubles;
   }
 
   @Override
   public String[] getStringArray(int rowId, int colId) {
-    int length = positionCursorInVariableBuffer(rowId, colId);
+    int fixedSizeOffset = getFixedSizeOffset(rowId, colId);
+    int offset = _fixedSizeData.getInt(fixedSizeOffset);
+    int length = _fixedSizeData.getInt(fixedSizeOffset + Integer.BYTES);
     String[] strings = new String[length];
     Map<Integer, String> dictionary = _dictionaryMap.get(_dataSchema.getColumnName(colId));
     for (int i = 0; i < length; i++) {
-      strings[i] = dictionary.get(_variableSizeData.getInt());
+      strings[i] = dictionary.get(_variableSizeData.getInt(offset + i * Integer.BYTES));
     }
     return strings;
   }
 
-  private int positionCursorInVariableBuffer(int rowId, int colId) {
-    _fixedSizeData.position(rowId * _rowSizeInBytes + _columnOffsets[colId]);
-    _variableSizeData.position(_fixedSizeData.getInt());
-    return _fixedSizeData.getInt();
+  /**
+   * Returns the dictionary map (from column name to dictionary), used to convert the data table into other formats.
+   */
+  Map<String, Map<Integer, String>> getDictionaryMap() {
+    return _dictionaryMap;
+  }
+
+  /**
+   * Returns the object type of the serialized object, used to convert the data table into other formats without
+   * de-serializing the object.
+   */
+  int getObjectTypeValue(int rowId, int colId) {
+    return _variableSizeData.getInt(_fixedSizeData.getInt(getFixedSizeOffset(rowId, colId)));
+  }
+
+  /**
+   * Returns the serialized object as a read-only view on the variable size data, used to convert the data table into
+   * other formats without de-serializing the object.
+   */
+  ByteBuffer getObjectBuffer(int rowId, int colId) {
+    return sliceObject(rowId, colId).asReadOnlyBuffer();
+  }
+
+  private ByteBuffer sliceObject(int rowId, int colId) {
+    int fixedSizeOffset = getFixedSizeOffset(rowId, colId);
+    // Skip the object type value
+    int offset = _fixedSizeData.getInt(fixedSizeOffset) + Integer.BYTES;
+    int size = _fixedSizeData.getInt(fixedSizeOffset + Integer.BYTES);
+    ByteBuffer byteBuffer = _variableSizeData.duplicate();
+    byteBuffer.limit(offset + size);
+    byteBuffer.position(offset);
+    return byteBuffer.slice();
+  }
+
+  /**
+   * Returns the offset of the value in the fixed size data. Values are read with absolute gets, without moving the
+   * buffer cursors, so that the data table can be read from multiple threads concurrently.
+   */
+  private int getFixedSizeOffset(int rowId, int colId) {
+    return rowId * _rowSizeInBytes + _columnOffsets[colId];
   }
 
   @Override
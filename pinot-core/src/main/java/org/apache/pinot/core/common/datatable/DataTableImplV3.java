@@ -0,0 +1,930 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.core.common.datatable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import javax.annotation.Nullable;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.pinot.common.response.ProcessingException;
+import org.apache.pinot.common.utils.DataSchema;
+import org.apache.pinot.common.utils.DataTable;
+import org.apache.pinot.common.utils.StringUtil;
+import org.apache.pinot.core.common.ObjectSerDeUtils;
+import org.apache.pinot.core.io.compression.ChunkCompressorFactory;
+import org.apache.pinot.spi.utils.ByteArray;
+import org.apache.pinot.spi.utils.BytesUtils;
+import org.xerial.snappy.Snappy;
+
+
+/**
+ * Columnar data table with per-column encoding and optional block compression of the column data.
+ * <p>Compared to {@link DataTableImplV2} which stores the values row by row, values of each column are stored together
+ * so that they can be encoded based on the values of the column:
+ * <ul>
+ *   <li>INT, LONG and the lengths/dictionary ids: bit-packed with frame of reference, or bit-packed zig-zag deltas,
+ *   whichever is smaller</li>
+ *   <li>STRING, BYTES and STRING_ARRAY: dictionary of the column + bit-packed dictionary ids</li>
+ *   <li>FLOAT, DOUBLE and OBJECT: raw</li>
+ * </ul>
+ * When the column data is large enough, it is compressed as a single block.
+ */
+public class DataTableImplV3 implements DataTable {
+  public static final int VERSION = 3;
+
+  // VERSION
+  // NUM_ROWS
+  // NUM_COLUMNS
+  // METADATA (START|SIZE)
+  // DATA_SCHEMA (START|SIZE)
+  // COMPRESSION_TYPE
+  // COLUMN_DATA (START|SIZE|UNCOMPRESSED_SIZE)
+  private static final int HEADER_SIZE = Integer.BYTES * 11;
+
+  // Only compress the column data when it is large enough to pay off the compression cost
+  static final int MIN_COLUMN_DATA_SIZE_TO_COMPRESS = 16 * 1024;
+  private static final ChunkCompressorFactory.CompressionType COMPRESSION_TYPE =
+      ChunkCompressorFactory.CompressionType.SNAPPY;
+
+  // Encodings for the streams of integer values
+  private static final byte RAW_ENCODING = 0;
+  // Minimum value + bit-packed (value - minimum value)
+  private static final byte BIT_PACKED_ENCODING = 1;
+  // First value + bit-packed zig-zag encoded deltas between consecutive values
+  private static final byte DELTA_ENCODING = 2;
+
+  private final int _numRows;
+  private final int _numColumns;
+  private final DataSchema _dataSchema;
+  // Values of each column:
+  // - INT, STRING, BYTES: int[] (dictionary ids for STRING and BYTES)
+  // - LONG: long[], FLOAT: float[], DOUBLE: double[]
+  // - Arrays: flattened values of all rows (dictionary ids for STRING_ARRAY)
+  // - OBJECT: ByteBuffer of the concatenated serialized objects
+  private final Object[] _columnValues;
+  // Dictionary for STRING, BYTES and STRING_ARRAY columns
+  private final String[][] _dictionaries;
+  // Start offset (numRows + 1 entries) of each row in the values for array and OBJECT columns
+  private final int[][] _rowOffsets;
+  // Object type of each row for OBJECT columns
+  private final int[][] _objectTypes;
+  private final Map<String, String> _metadata;
+
+  /**
+   * Construct empty data table. (Server side)
+   */
+  public DataTableImplV3() {
+    _numRows = 0;
+    _numColumns = 0;
+    _dataSchema = null;
+    _columnValues = null;
+    _dictionaries = null;
+    _rowOffsets = null;
+    _objectTypes = null;
+    _metadata = new HashMap<>();
+  }
+
+  /**
+   * Construct data table by transposing the rows of a {@link DataTableImplV2}. (Server side)
+   */
+  public DataTableImplV3(DataTableImplV2 dataTable) {
+    _numRows = dataTable.getNumberOfRows();
+    _dataSchema = dataTable.getDataSchema();
+    _numColumns = _dataSchema != null ? _dataSchema.size() : 0;
+    _columnValues = new Object[_numColumns];
+    _dictionaries = new String[_numColumns][];
+    _rowOffsets = new int[_numColumns][];
+    _objectTypes = new int[_numColumns][];
+    _metadata = new HashMap<>(dataTable.getMetadata());
+
+    Map<String, Map<Integer, String>> dictionaryMap = dataTable.getDictionaryMap();
+    for (int colId = 0; colId < _numColumns; colId++) {
+      DataSchema.ColumnDataType columnDataType = _dataSchema.getColumnDataType(colId);
+      switch (columnDataType) {
+        case INT:
+        case STRING:
+        case BYTES: {
+          // NOTE: STRING and BYTES values are stored as dictionary ids in DataTable V2
+          int[] values = new int[_numRows];
+          for (int rowId = 0; rowId < _numRows; rowId++) {
+            values[rowId] = dataTable.getInt(rowId, colId);
+          }
+          _columnValues[colId] = values;
+          if (columnDataType != DataSchema.ColumnDataType.INT) {
+            _dictionaries[colId] = getDictionary(dictionaryMap, _dataSchema.getColumnName(colId));
+          }
+          break;
+        }
+        case LONG: {
+          long[] values = new long[_numRows];
+          for (int rowId = 0; rowId < _numRows; rowId++) {
+            values[rowId] = dataTable.getLong(rowId, colId);
+          }
+          _columnValues[colId] = values;
+          break;
+        }
+        case FLOAT: {
+          float[] values = new float[_numRows];
+          for (int rowId = 0; rowId < _numRows; rowId++) {
+            values[rowId] = dataTable.getFloat(rowId, colId);
+          }
+          _columnValues[colId] = values;
+          break;
+        }
+        case DOUBLE: {
+          double[] values = new double[_numRows];
+          for (int rowId = 0; rowId < _numRows; rowId++) {
+            values[rowId] = dataTable.getDouble(rowId, colId);
+          }
+          _columnValues[colId] = values;
+          break;
+        }
+        case OBJECT: {
+          int[] objectTypes = new int[_numRows];
+          int[] rowOffsets = new int[_numRows + 1];
+          ByteBuffer[] objectBuffers = new ByteBuffer[_numRows];
+          for (int rowId = 0; rowId < _numRows; rowId++) {
+            objectTypes[rowId] = dataTable.getObjectTypeValue(rowId, colId);
+            objectBuffers[rowId] = dataTable.getObjectBuffer(rowId, colId);
+            rowOffsets[rowId + 1] = rowOffsets[rowId] + objectBuffers[rowId].remaining();
+          }
+          ByteBuffer objectData = ByteBuffer.allocate(rowOffsets[_numRows]);
+          for (ByteBuffer objectBuffer : objectBuffers) {
+            objectData.put(objectBuffer);
+          }
+          objectData.flip();
+          _columnValues[colId] = objectData;
+          _rowOffsets[colId] = rowOffsets;
+          _objectTypes[colId] = objectTypes;
+          break;
+        }
+        case INT_ARRAY:
+        case STRING_ARRAY: {
+          // NOTE: STRING_ARRAY values are stored as dictionary ids in DataTable V2
+          int[][] arrays = new int[_numRows][];
+          int[] rowOffsets = new int[_numRows + 1];
+          for (int rowId = 0; rowId < _numRows; rowId++) {
+            arrays[rowId] = dataTable.getIntArray(rowId, colId);
+            rowOffsets[rowId + 1] = rowOffsets[rowId] + arrays[rowId].length;
+          }
+          int[] values = new int[rowOffsets[_numRows]];
+          for (int rowId = 0; rowId < _numRows; rowId++) {
+            System.arraycopy(arrays[rowId], 0, values, rowOffsets[rowId], arrays[rowId].length);
+          }
+          _columnValues[colId] = values;
+          _rowOffsets[colId] = rowOffsets;
+          if (columnDataType == DataSchema.ColumnDataType.STRING_ARRAY) {
+            _dictionaries[colId] = getDictionary(dictionaryMap, _dataSchema.getColumnName(colId));
+          }
+          break;
+        }
+        case LONG_ARRAY: {
+          long[][] arrays = new long[_numRows][];
+          int[] rowOffsets = new int[_numRows + 1];
+          for (int rowId = 0; rowId < _numRows; rowId++) {
+            arrays[rowId] = dataTable.getLongArray(rowId, colId);
+            rowOffsets[rowId + 1] = rowOffsets[rowId] + arrays[rowId].length;
+          }
+          long[] values = new long[rowOffsets[_numRows]];
+          for (int rowId = 0; rowId < _numRows; rowId++) {
+            System.arraycopy(arrays[rowId], 0, values, rowOffsets[rowId], arrays[rowId].length);
+          }
+          _columnValues[colId] = values;
+          _rowOffsets[colId] = rowOffsets;
+          break;
+        }
+        case FLOAT_ARRAY: {
+          float[][] arrays = new float[_numRows][];
+          int[] rowOffsets = new int[_numRows + 1];
+          for (int rowId = 0; rowId < _numRows; rowId++) {
+            arrays[rowId] = dataTable.getFloatArray(rowId, colId);
+            rowOffsets[rowId + 1] = rowOffsets[rowId] + arrays[rowId].length;
+          }
+          float[] values = new float[rowOffsets[_numRows]];
+          for (int rowId = 0; rowId < _numRows; rowId++) {
+            System.arraycopy(arrays[rowId], 0, values, rowOffsets[rowId], arrays[rowId].length);
+          }
+          _columnValues[colId] = values;
+          _rowOffsets[colId] = rowOffsets;
+          break;
+        }
+        case DOUBLE_ARRAY: {
+          double[][] arrays = new double[_numRows][];
+          int[] rowOffsets = new int[_numRows + 1];
+          for (int rowId = 0; rowId < _numRows; rowId++) {
+            arrays[rowId] = dataTable.getDoubleArray(rowId, colId);
+            rowOffsets[rowId + 1] = rowOffsets[rowId] + arrays[rowId].length;
+          }
+          double[] values = new double[rowOffsets[_numRows]];
+          for (int rowId = 0; rowId < _numRows; rowId++) {
+            System.arraycopy(arrays[rowId], 0, values, rowOffsets[rowId], arrays[rowId].length);
+          }
+          _columnValues[colId] = values;
+          _rowOffsets[colId] = rowOffsets;
+          break;
+        }
+        default:
+          throw new IllegalStateException("Unsupported column data type: " + columnDataType);
+      }
+    }
+  }
+
+  /**
+   * Helper method to convert the dictionary (from dictionary id to value) of DataTable V2 into an array.
+   */
+  private static String[] getDictionary(@Nullable Map<String, Map<Integer, String>> dictionaryMap, String column) {
+    Map<Integer, String> dictionary = dictionaryMap != null ? dictionaryMap.get(column) : null;
+    if (dictionary == null) {
+      return new String[0];
+    }
+    int maxDictId = -1;
+    for (int dictId : dictionary.keySet()) {
+      maxDictId = Math.max(maxDictId, dictId);
+    }
+    String[] values = new String[maxDictId + 1];
+    for (Map.Entry<Integer, String> entry : dictionary.entrySet()) {
+      values[entry.getKey()] = entry.getValue();
+    }
+    return values;
+  }
+
+  /**
+   * Construct data table from byte buffer. (broker side)
+   */
+  public DataTableImplV3(ByteBuffer byteBuffer)
+      throws IOException {
+    // Read header.
+    _numRows = byteBuffer.getInt();
+    _numColumns = byteBuffer.getInt();
+    int metadataStart = byteBuffer.getInt();
+    int metadataLength = byteBuffer.getInt();
+    int dataSchemaStart = byteBuffer.getInt();
+    int dataSchemaLength = byteBuffer.getInt();
+    int compressionTypeValue = byteBuffer.getInt();
+    int columnDataStart = byteBuffer.getInt();
+    int columnDataLength = byteBuffer.getInt();
+    int uncompressedColumnDataLength = byteBuffer.getInt();
+
+    // Read metadata.
+    byteBuffer.position(metadataStart);
+    _metadata = deserializeMetadata(byteBuffer);
+    assert byteBuffer.position() == metadataStart + metadataLength;
+
+    // Read data schema.
+    if (dataSchemaLength != 0) {
+      byte[] schemaBytes = new byte[dataSchemaLength];
+      byteBuffer.position(dataSchemaStart);
+      byteBuffer.get(schemaBytes);
+      _dataSchema = DataSchema.fromBytes(schemaBytes);
+    } else {
+      _dataSchema = null;
+    }
+
+    // Read column data.
+    _columnValues = new Object[_numColumns];
+    _dictionaries = new String[_numColumns][];
+    _rowOffsets = new int[_numColumns][];
+    _objectTypes = new int[_numColumns][];
+    if (_numColumns != 0) {
+      byteBuffer.position(columnDataStart);
+      ByteBuffer columnData = byteBuffer.slice();
+      columnData.limit(columnDataLength);
+      if (compressionTypeValue != ChunkCompressorFactory.CompressionType.PASS_THROUGH.getValue()) {
+        columnData = decompress(columnData, compressionTypeValue, uncompressedColumnDataLength);
+      }
+      for (int colId = 0; colId < _numColumns; colId++) {
+        readColumn(columnData, colId);
+      }
+    }
+  }
+
+  private static ByteBuffer decompress(ByteBuffer compressedData, int compressionTypeValue, int uncompressedLength)
+      throws IOException {
+    if (compressionTypeValue != COMPRESSION_TYPE.getValue()) {
+      throw new UnsupportedOperationException("Unsupported compression type: " + compressionTypeValue);
+    }
+
+    // Decompress on heap arrays to avoid allocating direct buffers (released only on GC) for each data table
+    byte[] compressedBytes;
+    int compressedOffset;
+    int compressedLength = compressedData.remaining();
+    if (compressedData.hasArray()) {
+      compressedBytes = compressedData.array();
+      compressedOffset = compressedData.arrayOffset() + compressedData.position();
+    } else {
+      compressedBytes = new byte[compressedLength];
+      compressedOffset = 0;
+      compressedData.get(compressedBytes);
+    }
+    byte[] uncompressedBytes = new byte[uncompressedLength];
+    int actualUncompressedLength =
+        Snappy.uncompress(compressedBytes, compressedOffset, compressedLength, uncompressedBytes, 0);
+    if (actualUncompressedLength != uncompressedLength) {
+      throw new IOException(
+          "Uncompressed column data length: " + actualUncompressedLength + " does not match the expected length: "
+              + uncompressedLength);
+    }
+    return ByteBuffer.wrap(uncompressedBytes);
+  }
+
+  private void readColumn(ByteBuffer columnData, int colId)
+      throws IOException {
+    DataSchema.ColumnDataType columnDataType = _dataSchema.getColumnDataType(colId);
+    switch (columnDataType) {
+      case INT:
+        _columnValues[colId] = toInts(readIntegers(columnData, _numRows));
+        break;
+      case LONG:
+        _columnValues[colId] = readIntegers(columnData, _numRows);
+        break;
+      case FLOAT:
+        _columnValues[colId] = readFloats(columnData, _numRows);
+        break;
+      case DOUBLE:
+        _columnValues[colId] = readDoubles(columnData, _numRows);
+        break;
+      case STRING:
+      case BYTES:
+        _dictionaries[colId] = readDictionary(columnData);
+        _columnValues[colId] = toInts(readIntegers(columnData, _numRows));
+        break;
+      case OBJECT: {
+        _objectTypes[colId] = toInts(readIntegers(columnData, _numRows));
+        int[] rowOffsets = readRowOffsets(columnData, _numRows);
+        _rowOffsets[colId] = rowOffsets;
+        // NOTE: copy the object data so that the data table does not hold a reference to the received buffer
+        byte[] objectBytes = new byte[rowOffsets[_numRows]];
+        columnData.get(objectBytes);
+        _columnValues[colId] = ByteBuffer.wrap(objectBytes);
+        break;
+      }
+      case INT_ARRAY: {
+        int[] rowOffsets = readRowOffsets(columnData, _numRows);
+        _rowOffsets[colId] = rowOffsets;
+        _columnValues[colId] = toInts(readIntegers(columnData, rowOffsets[_numRows]));
+        break;
+      }
+      case LONG_ARRAY: {
+        int[] rowOffsets = readRowOffsets(columnData, _numRows);
+        _rowOffsets[colId] = rowOffsets;
+        _columnValues[colId] = readIntegers(columnData, rowOffsets[_numRows]);
+        break;
+      }
+      case FLOAT_ARRAY: {
+        int[] rowOffsets = readRowOffsets(columnData, _numRows);
+        _rowOffsets[colId] = rowOffsets;
+        _columnValues[colId] = readFloats(columnData, rowOffsets[_numRows]);
+        break;
+      }
+      case DOUBLE_ARRAY: {
+        int[] rowOffsets = readRowOffsets(columnData, _numRows);
+        _rowOffsets[colId] = rowOffsets;
+        _columnValues[colId] = readDoubles(columnData, rowOffsets[_numRows]);
+        break;
+      }
+      case STRING_ARRAY: {
+        _dictionaries[colId] = readDictionary(columnData);
+        int[] rowOffsets = readRowOffsets(columnData, _numRows);
+        _rowOffsets[colId] = rowOffsets;
+        _columnValues[colId] = toInts(readIntegers(columnData, rowOffsets[_numRows]));
+        break;
+      }
+      default:
+        throw new IllegalStateException("Unsupported column data type: " + columnDataType);
+    }
+  }
+
+  @Override
+  public void addException(ProcessingException processingException) {
+    _metadata.put(EXCEPTION_METADATA_KEY + processingException.getErrorCode(), processingException.getMessage());
+  }
+
+  @Override
+  public byte[] toBytes()
+      throws IOException {
+    byte[] metadataBytes = serializeMetadata();
+    byte[] dataSchemaBytes = _dataSchema != null ? _dataSchema.toBytes() : null;
+
+    // Encode and compress column data.
+    ChunkCompressorFactory.CompressionType compressionType = ChunkCompressorFactory.CompressionType.PASS_THROUGH;
+    byte[] columnDataBytes = null;
+    int uncompressedColumnDataLength = 0;
+    if (_numColumns != 0) {
+      ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+      DataOutputStream dataOutputStream = new DataOutputStream(byteArrayOutputStream);
+      for (int colId = 0; colId < _numColumns; colId++) {
+        writeColumn(dataOutputStream, colId);
+      }
+      columnDataBytes = byteArrayOutputStream.toByteArray();
+      uncompressedColumnDataLength = columnDataBytes.length;
+      if (uncompressedColumnDataLength >= MIN_COLUMN_DATA_SIZE_TO_COMPRESS) {
+        byte[] compressedColumnDataBytes = compress(columnDataBytes);
+        // Only use the compressed data when it is smaller
+        if (compressedColumnDataBytes.length < uncompressedColumnDataLength) {
+          compressionType = COMPRESSION_TYPE;
+          columnDataBytes = compressedColumnDataBytes;
+        }
+      }
+    }
+
+    ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+    DataOutputStream dataOutputStream = new DataOutputStream(byteArrayOutputStream);
+    dataOutputStream.writeInt(VERSION);
+    dataOutputStream.writeInt(_numRows);
+    dataOutputStream.writeInt(_numColumns);
+    int dataOffset = HEADER_SIZE;
+
+    // Write metadata.
+    dataOutputStream.writeInt(dataOffset);
+    dataOutputStream.writeInt(metadataBytes.length);
+    dataOffset += metadataBytes.length;
+
+    // Write data schema.
+    dataOutputStream.writeInt(dataOffset);
+    if (dataSchemaBytes != null) {
+      dataOutputStream.writeInt(dataSchemaBytes.length);
+      dataOffset += dataSchemaBytes.length;
+    } else {
+      dataOutputStream.writeInt(0);
+    }
+
+    // Write column data.
+    dataOutputStream.writeInt(compressionType.getValue());
+    dataOutputStream.writeInt(dataOffset);
+    if (columnDataBytes != null) {
+      dataOutputStream.writeInt(columnDataBytes.length);
+    } else {
+      dataOutputStream.writeInt(0);
+    }
+    dataOutputStream.writeInt(uncompressedColumnDataLength);
+
+    // Write actual data.
+    dataOutputStream.write(metadataBytes);
+    if (dataSchemaBytes != null) {
+      dataOutputStream.write(dataSchemaBytes);
+    }
+    if (columnDataBytes != null) {
+      dataOutputStream.write(columnDataBytes);
+    }
+
+    return byteArrayOutputStream.toByteArray();
+  }
+
+  private static byte[] compress(byte[] bytes)
+      throws IOException {
+    return Snappy.compress(bytes);
+  }
+
+  private void writeColumn(DataOutputStream dataOutputStream, int colId)
+      throws IOException {
+    DataSchema.ColumnDataType columnDataType = _dataSchema.getColumnDataType(colId);
+    Object values = _columnValues[colId];
+    switch (columnDataType) {
+      case INT:
+        writeIntegers(dataOutputStream, toLongs((int[]) values));
+        break;
+      case LONG:
+        writeIntegers(dataOutputStream, (long[]) values);
+        break;
+      case FLOAT:
+        for (float value : (float[]) values) {
+          dataOutputStream.writeFloat(value);
+        }
+        break;
+      case DOUBLE:
+        for (double value : (double[]) values) {
+          dataOutputStream.writeDouble(value);
+        }
+        break;
+      case STRING:
+      case BYTES:
+        writeDictionary(dataOutputStream, _dictionaries[colId]);
+        writeIntegers(dataOutputStream, toLongs((int[]) values));
+        break;
+      case OBJECT: {
+        writeIntegers(dataOutputStream, toLongs(_objectTypes[colId]));
+        writeRowOffsets(dataOutputStream, _rowOffsets[colId]);
+        ByteBuffer objectData = ((ByteBuffer) values).duplicate();
+        byte[] objectBytes = new byte[objectData.remaining()];
+        objectData.get(objectBytes);
+        dataOutputStream.write(objectBytes);
+        break;
+      }
+      case INT_ARRAY:
+        writeRowOffsets(dataOutputStream, _rowOffsets[colId]);
+        writeIntegers(dataOutputStream, toLongs((int[]) values));
+        break;
+      case LONG_ARRAY:
+        writeRowOffsets(dataOutputStream, _rowOffsets[colId]);
+        writeIntegers(dataOutputStream, (long[]) values);
+        break;
+      case FLOAT_ARRAY:
+        writeRowOffsets(dataOutputStream, _rowOffsets[colId]);
+        for (float value : (float[]) values) {
+          dataOutputStream.writeFloat(value);
+        }
+        break;
+      case DOUBLE_ARRAY:
+        writeRowOffsets(dataOutputStream, _rowOffsets[colId]);
+        for (double value : (double[]) values) {
+          dataOutputStream.writeDouble(value);
+        }
+        break;
+      case STRING_ARRAY:
+        writeDictionary(dataOutputStream, _dictionaries[colId]);
+        writeRowOffsets(dataOutputStream, _rowOffsets[colId]);
+        writeIntegers(dataOutputStream, toLongs((int[]) values));
+        break;
+      default:
+        throw new IllegalStateException("Unsupported column data type: " + columnDataType);
+    }
+  }
+
+  /**
+   * Writes a stream of integer values with the encoding that takes the least bits per value.
+   */
+  private static void writeIntegers(DataOutputStream dataOutputStream, long[] values)
+      throws IOException {
+    int numValues = values.length;
+    if (numValues == 0) {
+      return;
+    }
+
+    // Frame of reference
+    long minValue = values[0];
+    long maxValue = values[0];
+    for (long value : values) {
+      minValue = Math.min(minValue, value);
+      maxValue = Math.max(maxValue, value);
+    }
+    // NOTE: (maxValue - minValue) might overflow, in which case it is treated as unsigned and takes 64 bits
+    int bitPackedNumBits = getNumBits(maxValue - minValue);
+
+    // Zig-zag encoded deltas
+    long maxZigZagDelta = 0;
+    for (int i = 1; i < numValues; i++) {
+      maxZigZagDelta |= zigZagEncode(values[i] - values[i - 1]);
+    }
+    int deltaNumBits = getNumBits(maxZigZagDelta);
+
+    if (Math.min(bitPackedNumBits, deltaNumBits) >= Long.SIZE) {
+      dataOutputStream.writeByte(RAW_ENCODING);
+      for (long value : values) {
+        dataOutputStream.writeLong(value);
+      }
+    } else if (bitPackedNumBits <= deltaNumBits) {
+      dataOutputStream.writeByte(BIT_PACKED_ENCODING);
+      dataOutputStream.writeLong(minValue);
+      dataOutputStream.writeByte(bitPackedNumBits);
+      long[] valuesToPack = new long[numValues];
+      for (int i = 0; i < numValues; i++) {
+        valuesToPack[i] = values[i] - minValue;
+      }
+      writeBitPacked(dataOutputStream, valuesToPack, bitPackedNumBits);
+    } else {
+      dataOutputStream.writeByte(DELTA_ENCODING);
+      dataOutputStream.writeLong(values[0]);
+      dataOutputStream.writeByte(deltaNumBits);
+      long[] valuesToPack = new long[numValues - 1];
+      for (int i = 1; i < numValues; i++) {
+        valuesToPack[i - 1] = zigZagEncode(values[i] - values[i - 1]);
+      }
+      writeBitPacked(dataOutputStream, valuesToPack, deltaNumBits);
+    }
+  }
+
+  private static long[] readIntegers(ByteBuffer byteBuffer, int numValues)
+      throws IOException {
+    long[] values = new long[numValues];
+    if (numValues == 0) {
+      return values;
+    }
+
+    byte encoding = byteBuffer.get();
+    switch (encoding) {
+      case RAW_ENCODING:
+        for (int i = 0; i < numValues; i++) {
+          values[i] = byteBuffer.getLong();
+        }
+        return values;
+      case BIT_PACKED_ENCODING: {
+        long minValue = byteBuffer.getLong();
+        int numBits = byteBuffer.get();
+        readBitPacked(byteBuffer, values, 0, numValues, numBits);
+        for (int i = 0; i < numValues; i++) {
+          values[i] += minValue;
+        }
+        return values;
+      }
+      case DELTA_ENCODING: {
+        values[0] = byteBuffer.getLong();
+        int numBits = byteBuffer.get();
+        readBitPacked(byteBuffer, values, 1, numValues - 1, numBits);
+        for (int i = 1; i < numValues; i++) {
+          values[i] = values[i - 1] + zigZagDecode(values[i]);
+        }
+        return values;
+      }
+      default:
+        throw new IOException("Unsupported encoding: " + encoding);
+    }
+  }
+
+  private static int getNumBits(long maxValue) {
+    return Long.SIZE - Long.numberOfLeadingZeros(maxValue);
+  }
+
+  private static long zigZagEncode(long value) {
+    return (value << 1) ^ (value >> 63);
+  }
+
+  private static long zigZagDecode(long value) {
+    return (value >>> 1) ^ -(value & 1);
+  }
+
+  /**
+   * Writes the lowest numBits bits of each value, from the most significant bit to the least significant bit.
+   */
+  private static void writeBitPacked(DataOutputStream dataOutputStream, long[] values, int numBits)
+      throws IOException {
+    byte[] bytes = new byte[(int) (((long) values.length * numBits + Byte.SIZE - 1) / Byte.SIZE)];
+    long bitOffset = 0;
+    for (long value : values) {
+      int numBitsLeft = numBits;
+      while (numBitsLeft > 0) {
+        int byteIndex = (int) (bitOffset >>> 3);
+        int bitOffsetInByte = (int) (bitOffset & 7);
+        int numBitsToWrite = Math.min(Byte.SIZE - bitOffsetInByte, numBitsLeft);
+        int bitsToWrite = (int) (value >>> (numBitsLeft - numBitsToWrite)) & ((1 << numBitsToWrite) - 1);
+        bytes[byteIndex] |= bitsToWrite << (Byte.SIZE - bitOffsetInByte - numBitsToWrite);
+        numBitsLeft -= numBitsToWrite;
+        bitOffset += numBitsToWrite;
+      }
+    }
+    dataOutputStream.write(bytes);
+  }
+
+  private static void readBitPacked(ByteBuffer byteBuffer, long[] values, int startIndex, int numValues, int numBits) {
+    int startPosition = byteBuffer.position();
+    long bitOffset = 0;
+    for (int i = startIndex; i < startIndex + numValues; i++) {
+      long value = 0;
+      int numBitsLeft = numBits;
+      while (numBitsLeft > 0) {
+        int byteIndex = (int) (bitOffset >>> 3);
+        int bitOffsetInByte = (int) (bitOffset & 7);
+        int numBitsToRead = Math.min(Byte.SIZE - bitOffsetInByte, numBitsLeft);
+        int bits = ((byteBuffer.get(startPosition + byteIndex) & 0xFF) >>> (Byte.SIZE - bitOffsetInByte
+            - numBitsToRead)) & ((1 << numBitsToRead) - 1);
+        value = (value << numBitsToRead) | bits;
+        numBitsLeft -= numBitsToRead;
+        bitOffset += numBitsToRead;
+      }
+      values[i] = value;
+    }
+    byteBuffer.position(startPosition + (int) ((bitOffset + Byte.SIZE - 1) / Byte.SIZE));
+  }
+
+  private static void writeRowOffsets(DataOutputStream dataOutputStream, int[] rowOffsets)
+      throws IOException {
+    // Write the length of each row
+    int numRows = rowOffsets.length - 1;
+    long[] lengths = new long[numRows];
+    for (int i = 0; i < numRows; i++) {
+      lengths[i] = rowOffsets[i + 1] - rowOffsets[i];
+    }
+    writeIntegers(dataOutputStream, lengths);
+  }
+
+  private static int[] readRowOffsets(ByteBuffer byteBuffer, int numRows)
+      throws IOException {
+    long[] lengths = readIntegers(byteBuffer, numRows);
+    int[] rowOffsets = new int[numRows + 1];
+    for (int i = 0; i < numRows; i++) {
+      rowOffsets[i + 1] = rowOffsets[i] + (int) lengths[i];
+    }
+    return rowOffsets;
+  }
+
+  private static void writeDictionary(DataOutputStream dataOutputStream, String[] dictionary)
+      throws IOException {
+    dataOutputStream.writeInt(dictionary.length);
+    for (String value : dictionary) {
+      // NOTE: the dictionary from DataTable V2 might have holes if the dictionary ids are not contiguous
+      byte[] valueBytes = value != null ? StringUtil.encodeUtf8(value) : new byte[0];
+      dataOutputStream.writeInt(valueBytes.length);
+      dataOutputStream.write(valueBytes);
+    }
+  }
+
+  private static String[] readDictionary(ByteBuffer byteBuffer) {
+    int dictionarySize = byteBuffer.getInt();
+    String[] dictionary = new String[dictionarySize];
+    for (int i = 0; i < dictionarySize; i++) {
+      dictionary[i] = decodeString(byteBuffer);
+    }
+    return dictionary;
+  }
+
+  private static float[] readFloats(ByteBuffer byteBuffer, int numValues) {
+    float[] values = new float[numValues];
+    for (int i = 0; i < numValues; i++) {
+      values[i] = byteBuffer.getFloat();
+    }
+    return values;
+  }
+
+  private static double[] readDoubles(ByteBuffer byteBuffer, int numValues) {
+    double[] values = new double[numValues];
+    for (int i = 0; i < numValues; i++) {
+      values[i] = byteBuffer.getDouble();
+    }
+    return values;
+  }
+
+  private static long[] toLongs(int[] ints) {
+    int length = ints.length;
+    long[] longs = new long[length];
+    for (int i = 0; i < length; i++) {
+      longs[i] = ints[i];
+    }
+    return longs;
+  }
+
+  private static int[] toInts(long[] longs) {
+    int length = longs.length;
+    int[] ints = new int[length];
+    for (int i = 0; i < length; i++) {
+      ints[i] = (int) longs[i];
+    }
+    return ints;
+  }
+
+  private byte[] serializeMetadata()
+      throws IOException {
+    ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+    DataOutputStream dataOutputStream = new DataOutputStream(byteArrayOutputStream);
+
+    dataOutputStream.writeInt(_metadata.size());
+    for (Map.Entry<String, String> entry : _metadata.entrySet()) {
+      byte[] keyBytes = StringUtil.encodeUtf8(entry.getKey());
+      dataOutputStream.writeInt(keyBytes.length);
+      dataOutputStream.write(keyBytes);
+
+      byte[] valueBytes = StringUtil.encodeUtf8(entry.getValue());
+      dataOutputStream.writeInt(valueBytes.length);
+      dataOutputStream.write(valueBytes);
+    }
+
+    return byteArrayOutputStream.toByteArray();
+  }
+
+  private static Map<String, String> deserializeMetadata(ByteBuffer byteBuffer) {
+    int numEntries = byteBuffer.getInt();
+    Map<String, String> metadata = new HashMap<>(numEntries);
+    for (int i = 0; i < numEntries; i++) {
+      String key = decodeString(byteBuffer);
+      String value = decodeString(byteBuffer);
+      metadata.put(key, value);
+    }
+    return metadata;
+  }
+
+  private static String decodeString(ByteBuffer byteBuffer) {
+    int length = byteBuffer.getInt();
+    if (length == 0) {
+      return StringUtils.EMPTY;
+    } else {
+      byte[] buffer = new byte[length];
+      byteBuffer.get(buffer);
+      return StringUtil.decodeUtf8(buffer);
+    }
+  }
+
+  @Override
+  public Map<String, String> getMetadata() {
+    return _metadata;
+  }
+
+  @Override
+  public DataSchema getDataSchema() {
+    return _dataSchema;
+  }
+
+  @Override
+  public int getNumberOfRows() {
+    return _numRows;
+  }
+
+  @Override
+  public int getInt(int rowId, int colId) {
+    return ((int[]) _columnValues[colId])[rowId];
+  }
+
+  @Override
+  public long getLong(int rowId, int colId) {
+    return ((long[]) _columnValues[colId])[rowId];
+  }
+
+  @Override
+  public float getFloat(int rowId, int colId) {
+    return ((float[]) _columnValues[colId])[rowId];
+  }
+
+  @Override
+  public double getDouble(int rowId, int colId) {
+    return ((double[]) _columnValues[colId])[rowId];
+  }
+
+  @Override
+  public String getString(int rowId, int colId) {
+    return _dictionaries[colId][((int[]) _columnValues[colId])[rowId]];
+  }
+
+  @Override
+  public ByteArray getBytes(int rowId, int colId) {
+    // NOTE: Same as DataTable V2, use String to store BYTES value
+    return BytesUtils.toByteArray(getString(rowId, colId));
+  }
+
+  @Override
+  public <T> T getObject(int rowId, int colId) {
+    int[] rowOffsets = _rowOffsets[colId];
+    ByteBuffer byteBuffer = ((ByteBuffer) _columnValues[colId]).duplicate();
+    byteBuffer.position(rowOffsets[rowId]);
+    byteBuffer.limit(rowOffsets[rowId + 1]);
+    return ObjectSerDeUtils.deserialize(byteBuffer.slice(), _objectTypes[colId][rowId]);
+  }
+
+  @Override
+  public int[] getIntArray(int rowId, int colId) {
+    int[] rowOffsets = _rowOffsets[colId];
+    return Arrays.copyOfRange((int[]) _columnValues[colId], rowOffsets[rowId], rowOffsets[rowId + 1]);
+  }
+
+  @Override
+  public long[] getLongArray(int rowId, int colId) {
+    int[] rowOffsets = _rowOffsets[colId];
+    return Arrays.copyOfRange((long[]) _columnValues[colId], rowOffsets[rowId], rowOffsets[rowId + 1]);
+  }
+
+  @Override
+  public float[] getFloatArray(int rowId, int colId) {
+    int[] rowOffsets = _rowOffsets[colId];
+    return Arrays.copyOfRange((float[]) _columnValues[colId], rowOffsets[rowId], rowOffsets[rowId + 1]);
+  }
+
+  @Override
+  public double[] getDoubleArray(int rowId, int colId) {
+    int[] rowOffsets = _rowOffsets[colId];
+    return Arrays.copyOfRange((double[]) _columnValues[colId], rowOffsets[rowId], rowOffsets[rowId + 1]);
+  }
+
+  @Override
+  public String[] getStringArray(int rowId, int colId) {
+    int[] rowOffsets = _rowOffsets[colId];
+    int startOffset = rowOffsets[rowId];
+    int length = rowOffsets[rowId + 1] - startOffset;
+    int[] dictIds = (int[]) _columnValues[colId];
+    String[] dictionary = _dictionaries[colId];
+    String[] strings = new String[length];
+    for (int i = 0; i < length; i++) {
+      strings[i] = dictionary[dictIds[startOffset + i]];
+    }
+    return strings;
+  }
+
+  @Override
+  public String toString() {
+    if (_dataSchema == null) {
+      return _metadata.toString();
+    }
+
+    StringBuilder stringBuilder = new StringBuilder();
+    stringBuilder.append(_dataSchema.toString()).append('\n');
+    stringBuilder.append("numRows: ").append(_numRows).append('\n');
+    stringBuilder.append("metadata: ").append(_metadata.toString()).append('\n');
+    return stringBuilder.toString();
+  }
+}
@@ -0,0 +1,336 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.core.common.datatable;
+
+import com.google.common.base.Preconditions;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.annotation.concurrent.ThreadSafe;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.pinot.common.response.ProcessingException;
+import org.apache.pinot.common.utils.DataSchema;
+import org.apache.pinot.common.utils.DataTable;
+import org.apache.pinot.core.common.ObjectSerDeUtils;
+import org.apache.pinot.spi.utils.ByteArray;
+import org.apache.pinot.spi.utils.BytesUtils;
+
+
+/**
+ * Read-only data table in version 2 format that reads directly over the Netty buffer received from the server, instead
+ * of copying each section into new arrays. (Broker side)
+ * <p>Only the header and the data schema are decoded on construction. The metadata and the dictionary map are decoded
+ * on first access, and the values are read with absolute indexes so that the data table can be read concurrently.
+ * <p>The data table holds a reference to the buffer until {@link #release()} is called, and should not be accessed
+ * after that.
+ */
+@ThreadSafe
+public class ZeroCopyDataTableImplV2 implements DataTable {
+  private final ByteBuf _byteBuf;
+  private final int _numRows;
+  private final DataSchema _dataSchema;
+  private final int[] _columnOffsets;
+  private final int _rowSizeInBytes;
+  private final int _dictionaryMapStart;
+  private final int _dictionaryMapLength;
+  private final int _metadataStart;
+  private final int _fixedSizeDataStart;
+  private final int _variableSizeDataStart;
+  private final AtomicBoolean _released = new AtomicBoolean();
+
+  private volatile Map<String, String[]> _dictionaryMap;
+  private volatile Map<String, String> _metadata;
+
+  /**
+   * Constructs the data table over the given buffer, which should start with the version. The data table takes over
+   * the reference to the buffer, and releases it in {@link #release()}.
+   */
+  public ZeroCopyDataTableImplV2(ByteBuf byteBuf)
+      throws IOException {
+    _byteBuf = byteBuf;
+
+    // Read header.
+    byteBuf.skipBytes(Integer.BYTES);
+    _numRows = byteBuf.readInt();
+    byteBuf.skipBytes(Integer.BYTES);
+    _dictionaryMapStart = byteBuf.readInt();
+    _dictionaryMapLength = byteBuf.readInt();
+    _metadataStart = byteBuf.readInt();
+    byteBuf.skipBytes(Integer.BYTES);
+    int dataSchemaStart = byteBuf.readInt();
+    int dataSchemaLength = byteBuf.readInt();
+    _fixedSizeDataStart = byteBuf.readInt();
+    byteBuf.skipBytes(Integer.BYTES);
+    _variableSizeDataStart = byteBuf.readInt();
+
+    // Read data schema.
+    if (dataSchemaLength != 0) {
+      byte[] schemaBytes = new byte[dataSchemaLength];
+      byteBuf.getBytes(dataSchemaStart, schemaBytes);
+      _dataSchema = DataSchema.fromBytes(schemaBytes);
+      _columnOffsets = new int[_dataSchema.size()];
+      _rowSizeInBytes = DataTableUtils.computeColumnOffsets(_dataSchema, _columnOffsets);
+    } else {
+      _dataSchema = null;
+      _columnOffsets = null;
+      _rowSizeInBytes = 0;
+    }
+  }
+
+  /**
+   * Releases the reference to the underlying buffer. Only the first call takes effect.
+   */
+  @Override
+  public void release() {
+    if (_released.compareAndSet(false, true)) {
+      _byteBuf.release();
+    }
+  }
+
+  @Override
+  public void addException(ProcessingException processingException) {
+    getMetadata().put(EXCEPTION_METADATA_KEY + processingException.getErrorCode(), processingException.getMessage());
+  }
+
+  /**
+   * Returns a copy of the bytes as received from the server (e.g. to cache the data table beyond the lifetime of the
+   * network buffer). Exceptions added with {@link #addException(ProcessingException)} are not included.
+   */
+  @Override
+  public byte[] toBytes() {
+    Preconditions.checkState(!_released.get(), "Cannot serialize released data table");
+    return ByteBufUtil.getBytes(_byteBuf, 0, _byteBuf.writerIndex());
+  }
+
+  @Override
+  public Map<String, String> getMetadata() {
+    Map<String, String> metadata = _metadata;
+    if (metadata == null) {
+      synchronized (this) {
+        metadata = _metadata;
+        if (metadata == null) {
+          metadata = deserializeMetadata();
+          _metadata = metadata;
+        }
+      }
+    }
+    return metadata;
+  }
+
+  private Map<String, String> deserializeMetadata() {
+    int index = _metadataStart;
+    int numEntries = _byteBuf.getInt(index);
+    index += Integer.BYTES;
+    Map<String, String> metadata = new HashMap<>(numEntries);
+    for (int i = 0; i < numEntries; i++) {
+      int keyLength = _byteBuf.getInt(index);
+      String key = decodeString(index + Integer.BYTES, keyLength);
+      index += Integer.BYTES + keyLength;
+      int valueLength = _byteBuf.getInt(index);
+      String value = decodeString(index + Integer.BYTES, valueLength);
+      index += Integer.BYTES + valueLength;
+      metadata.put(key, value);
+    }
+    return metadata;
+  }
+
+  private String[] getDictionary(int colId) {
+    Map<String, String[]> dictionaryMap = _dictionaryMap;
+    if (dictionaryMap == null) {
+      synchronized (this) {
+        dictionaryMap = _dictionaryMap;
+        if (dictionaryMap == null) {
+          dictionaryMap = deserializeDictionaryMap();
+          _dictionaryMap = dictionaryMap;
+        }
+      }
+    }
+    return dictionaryMap.get(_dataSchema.getColumnName(colId));
+  }
+
+  /**
+   * NOTE: dictionary ids are assigned sequentially from 0 by {@link DataTableBuilder}, so each dictionary can be stored
+   * as an array indexed by the dictionary id.
+   */
+  private Map<String, String[]> deserializeDictionaryMap() {
+    if (_dictionaryMapLength == 0) {
+      return new HashMap<>();
+    }
+    int index = _dictionaryMapStart;
+    int numDictionaries = _byteBuf.getInt(index);
+    index += Integer.BYTES;
+    Map<String, String[]> dictionaryMap = new HashMap<>(numDictionaries);
+    for (int i = 0; i < numDictionaries; i++) {
+      int columnLength = _byteBuf.getInt(index);
+      String column = decodeString(index + Integer.BYTES, columnLength);
+      index += Integer.BYTES + columnLength;
+      int dictionarySize = _byteBuf.getInt(index);
+      index += Integer.BYTES;
+      String[] dictionary = new String[dictionarySize];
+      for (int j = 0; j < dictionarySize; j++) {
+        int dictId = _byteBuf.getInt(index);
+        int valueLength = _byteBuf.getInt(index + Integer.BYTES);
+        dictionary[dictId] = decodeString(index + 2 * Integer.BYTES, valueLength);
+        index += 2 * Integer.BYTES + valueLength;
+      }
+      dictionaryMap.put(column, dictionary);
+    }
+    return dictionaryMap;
+  }
+
+  private String decodeString(int index, int length) {
+    if (length == 0) {
+      return StringUtils.EMPTY;
+    } else {
+      return _byteBuf.toString(index, length, StandardCharsets.UTF_8);
+    }
+  }
+
+  @Override
+  public DataSchema getDataSchema() {
+    return _dataSchema;
+  }
+
+  @Override
+  public int getNumberOfRows() {
+    return _numRows;
+  }
+
+  private int getFixedSizeDataIndex(int rowId, int colId) {
+    return _fixedSizeDataStart + rowId * _rowSizeInBytes + _columnOffsets[colId];
+  }
+
+  @Override
+  public int getInt(int rowId, int colId) {
+    return _byteBuf.getInt(getFixedSizeDataIndex(rowId, colId));
+  }
+
+  @Override
+  public long getLong(int rowId, int colId) {
+    return _byteBuf.getLong(getFixedSizeDataIndex(rowId, colId));
+  }
+
+  @Override
+  public float getFloat(int rowId, int colId) {
+    return _byteBuf.getFloat(getFixedSizeDataIndex(rowId, colId));
+  }
+
+  @Override
+  public double getDouble(int rowId, int colId) {
+    return _byteBuf.getDouble(getFixedSizeDataIndex(rowId, colId));
+  }
+
+  @Override
+  public String getString(int rowId, int colId) {
+    return getDictionary(colId)[getInt(rowId, colId)];
+  }
+
+  @Override
+  public ByteArray getBytes(int rowId, int colId) {
+    // NOTE: DataTable V2 uses String to store BYTES value
+    return BytesUtils.toByteArray(getString(rowId, colId));
+  }
+
+  @Override
+  public <T> T getObject(int rowId, int colId) {
+    int fixedSizeDataIndex = getFixedSizeDataIndex(rowId, colId);
+    int index = _variableSizeDataStart + _byteBuf.getInt(fixedSizeDataIndex);
+    int size = _byteBuf.getInt(fixedSizeDataIndex + Integer.BYTES);
+    int objectTypeValue = _byteBuf.getInt(index);
+    return ObjectSerDeUtils.deserialize(_byteBuf.nioBuffer(index + Integer.BYTES, size), objectTypeValue);
+  }
+
+  @Override
+  public int[] getIntArray(int rowId, int colId) {
+    int fixedSizeDataIndex = getFixedSizeDataIndex(rowId, colId);
+    int index = _variableSizeDataStart + _byteBuf.getInt(fixedSizeDataIndex);
+    int length = _byteBuf.getInt(fixedSizeDataIndex + Integer.BYTES);
+    int[] ints = new int[length];
+    for (int i = 0; i < length; i++) {
+      ints[i] = _byteBuf.getInt(index);
+      index += Integer.BYTES;
+    }
+    return ints;
+  }
+
+  @Override
+  public long[] getLongArray(int rowId, int colId) {
+    int fixedSizeDataIndex = getFixedSizeDataIndex(rowId, colId);
+    int index = _variableSizeDataStart + _byteBuf.getInt(fixedSizeDataIndex);
+    int length = _byteBuf.getInt(fixedSizeDataIndex + Integer.BYTES);
+    long[] longs = new long[length];
+    for (int i = 0; i < length; i++) {
+      longs[i] = _byteBuf.getLong(index);
+      index += Long.BYTES;
+    }
+    return longs;
+  }
+
+  @Override
+  public float[] getFloatArray(int rowId, int colId) {
+    int fixedSizeDataIndex = getFixedSizeDataIndex(rowId, colId);
+    int index = _variableSizeDataStart + _byteBuf.getInt(fixedSizeDataIndex);
+    int length = _byteBuf.getInt(fixedSizeDataIndex + Integer.BYTES);
+    float[] floats = new float[length];
+    for (int i = 0; i < length; i++) {
+      floats[i] = _byteBuf.getFloat(index);
+      index += Float.BYTES;
+    }
+    return floats;
+  }
+
+  @Override
+  public double[] getDoubleArray(int rowId, int colId) {
+    int fixedSizeDataIndex = getFixedSizeDataIndex(rowId, colId);
+    int index = _variableSizeDataStart + _byteBuf.getInt(fixedSizeDataIndex);
+    int length = _byteBuf.getInt(fixedSizeDataIndex + Integer.BYTES);
+    double[] doubles = new double[length];
+    for (int i = 0; i < length; i++) {
+      doubles[i] = _byteBuf.getDouble(index);
+      index += Double.BYTES;
+    }
+    return doubles;
+  }
+
+  @Override
+  public String[] getStringArray(int rowId, int colId) {
+    int fixedSizeDataIndex = getFixedSizeDataIndex(rowId, colId);
+    int index = _variableSizeDataStart + _byteBuf.getInt(fixedSizeDataIndex);
+    int length = _byteBuf.getInt(fixedSizeDataIndex + Integer.BYTES);
+    String[] dictionary = getDictionary(colId);
+    String[] strings = new String[length];
+    for (int i = 0; i < length; i++) {
+      strings[i] = dictionary[_byteBuf.getInt(index)];
+      index += Integer.BYTES;
+    }
+    return strings;
+  }
+
+  @Override
+  public String toString() {
+    if (_dataSchema == null) {
+      return getMetadata().toString();
+    }
+    return _dataSchema.toString() + "\nnumRows: " + _numRows + '\n';
+  }
+}
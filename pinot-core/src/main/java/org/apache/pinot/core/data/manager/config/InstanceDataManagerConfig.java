@@ -49,5 +49,13 @@ public interface InstanceDataManagerConfig {
 
   boolean isDirectRealtimeOffheapAllocation();
 
+  boolean isRealtimePipelinedConsumption();
+
+  int getRealtimePipelineBufferSize();
+
+  boolean isPeerSegmentDownloadEnabled();
+
+  long getRealtimeOffHeapBufferPoolMaxBytes();
+
   int getMaxParallelSegmentBuilds();
 }
@@ -20,13 +20,17 @@ package org.apache.pinot.core.data.manager.offline;
 
 import java.util.concurrent.Semaphore;
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import org.apache.helix.HelixManager;
 import org.apache.helix.ZNRecord;
 import org.apache.helix.store.zk.ZkHelixPropertyStore;
+import org.apache.pinot.common.metrics.ServerGauge;
 import org.apache.pinot.common.metrics.ServerMetrics;
 import org.apache.pinot.core.data.manager.TableDataManager;
 import org.apache.pinot.core.data.manager.config.InstanceDataManagerConfig;
 import org.apache.pinot.core.data.manager.config.TableDataManagerConfig;
 import org.apache.pinot.core.data.manager.realtime.RealtimeTableDataManager;
+import org.apache.pinot.core.io.writer.impl.RealtimeOffHeapBufferPool;
 import org.apache.pinot.spi.config.table.TableType;
 
 
@@ -35,15 +39,32 @@ import org.apache.pinot.spi.config.table.TableType;
  */
 public class TableDataManagerProvider {
   private static Semaphore _segmentBuildSemaphore;
+  private static HelixManager _helixManager;
+  private static RealtimeOffHeapBufferPool _realtimeOffHeapBufferPool;
 
   private TableDataManagerProvider() {
   }
 
-  public static void init(InstanceDataManagerConfig instanceDataManagerConfig) {
+  public static void init(InstanceDataManagerConfig instanceDataManagerConfig, @Nullable HelixManager helixManager,
+      ServerMetrics serverMetrics) {
+    _helixManager = helixManager;
     int maxParallelBuilds = instanceDataManagerConfig.getMaxParallelSegmentBuilds();
     if (maxParallelBuilds > 0) {
       _segmentBuildSemaphore = new Semaphore(maxParallelBuilds, true);
     }
+    long offHeapBufferPoolMaxBytes = instanceDataManagerConfig.getRealtimeOffHeapBufferPoolMaxBytes();
+    if (offHeapBufferPoolMaxBytes > 0) {
+      RealtimeOffHeapBufferPool bufferPool = new RealtimeOffHeapBufferPool(offHeapBufferPoolMaxBytes);
+      serverMetrics.addCallbackGauge(ServerGauge.REALTIME_OFFHEAP_BUFFER_POOL_SIZE_IN_BYTES.getGaugeName(),
+          bufferPool::getSizeInBytes);
+      serverMetrics
+          .addCallbackGauge(ServerGauge.REALTIME_OFFHEAP_BUFFER_POOL_HITS.getGaugeName(), bufferPool::getNumHits);
+      serverMetrics
+          .addCallbackGauge(ServerGauge.REALTIME_OFFHEAP_BUFFER_POOL_MISSES.getGaugeName(), bufferPool::getNumMisses);
+      serverMetrics.addCallbackGauge(ServerGauge.REALTIME_OFFHEAP_BUFFER_POOL_HIT_RATE_PERCENT.getGaugeName(),
+          bufferPool::getHitRatePercent);
+      _realtimeOffHeapBufferPool = bufferPool;
+    }
   }
 
   public static TableDataManager getTableDataManager(@Nonnull TableDataManagerConfig tableDataManagerConfig,
@@ -55,7 +76,8 @@ public class TableDataManagerProvider {
         tableDataManager = new OfflineTableDataManager();
         break;
       case REALTIME:
-        tableDataManager = new RealtimeTableDataManager(_segmentBuildSemaphore);
+        tableDataManager =
+            new RealtimeTableDataManager(_segmentBuildSemaphore, _helixManager, _realtimeOffHeapBufferPool);
         break;
       default:
         throw new IllegalStateException();
@@ -181,12 +181,14 @@ public class HLRealtimeSegmentDataManager extends RealtimeSegmentDataManager {
             .setSchema(schema).setCapacity(capacity)
             .setAvgNumMultiValues(indexLoadingConfig.getRealtimeAvgMultiValueCount())
             .setNoDictionaryColumns(indexLoadingConfig.getNoDictionaryColumns())
+            .setNoDictionaryConfig(indexLoadingConfig.getnoDictionaryConfig())
             .setVarLengthDictionaryColumns(indexLoadingConfig.getVarLengthDictionaryColumns())
             .setInvertedIndexColumns(invertedIndexColumns).setRealtimeSegmentZKMetadata(realtimeSegmentZKMetadata)
             .setOffHeap(indexLoadingConfig.isRealtimeOffheapAllocation()).setMemoryManager(
             getMemoryManager(realtimeTableDataManager.getConsumerDir(), _segmentName,
                 indexLoadingConfig.isRealtimeOffheapAllocation(),
-                indexLoadingConfig.isDirectRealtimeOffheapAllocation(), serverMetrics))
+                indexLoadingConfig.isDirectRealtimeOffheapAllocation(), serverMetrics,
+                realtimeTableDataManager.getOffHeapBufferPool()))
             .setStatsHistory(realtimeTableDataManager.getStatsHistory())
             .setNullHandlingEnabled(indexingConfig.isNullHandlingEnabled()).build();
     _realtimeSegment = new MutableSegmentImpl(realtimeSegmentConfig);
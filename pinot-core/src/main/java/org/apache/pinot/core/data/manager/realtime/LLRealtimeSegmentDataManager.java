@@ -30,11 +30,18 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nullable;
 import org.apache.commons.io.FileUtils;
 import org.apache.pinot.common.Utils;
 import org.apache.pinot.common.metadata.segment.LLCRealtimeSegmentZKMetadata;
@@ -57,6 +64,8 @@ import org.apache.pinot.core.realtime.converter.RealtimeSegmentConverter;
 import org.apache.pinot.core.realtime.impl.RealtimeSegmentConfig;
 import org.apache.pinot.core.segment.creator.impl.V1Constants;
 import org.apache.pinot.core.segment.index.loader.IndexLoadingConfig;
+import org.apache.pinot.core.upsert.PartitionUpsertMetadataManager;
+import org.apache.pinot.core.upsert.TableUpsertMetadataManager;
 import org.apache.pinot.server.realtime.ServerSegmentCompletionProtocolHandler;
 import org.apache.pinot.spi.config.table.ColumnPartitionConfig;
 import org.apache.pinot.spi.config.table.CompletionConfig;
@@ -197,6 +206,7 @@ public class LLRealtimeSegmentDataManager extends RealtimeSegmentDataManager {
   private static final int MSG_COUNT_THRESHOLD_FOR_LOG = 100000;
   private static final int BUILD_TIME_LEASE_SECONDS = 30;
   private static final int MAX_CONSECUTIVE_ERROR_COUNT = 5;
+  private static final long DECODED_MESSAGE_POLL_TIMEOUT_MS = 100L;
 
   private final LLCRealtimeSegmentZKMetadata _segmentZKMetadata;
   private final TableConfig _tableConfig;
@@ -268,9 +278,20 @@ public class LLRealtimeSegmentDataManager extends RealtimeSegmentDataManager {
   private int _lastConsumedCount = 0;
   private String _stopReason = null;
   private final Semaphore _segBuildSemaphore;
+
+  // Pipelined consumption: the messages are decoded and transformed on the decoder thread while the consumer thread
+  // indexes them in batches, and the decoder thread prefetches the next message batch after decoding the current one
+  private final boolean _pipelinedConsumption;
+  private final int _pipelineBufferSize;
+  private ExecutorService _decoderExecutor;
+  // Only accessed by the consumer thread
+  private MessageBatch _prefetchedMessageBatch;
+  private long _prefetchedOffset;
   private final boolean _isOffHeap;
   private final boolean _nullHandlingEnabled;
   private final SegmentCommitterFactory _segmentCommitterFactory;
+  // For upsert, the column to store the stream offset of each record into
+  private final String _upsertOffsetColumn;
 
   // TODO each time this method is called, we print reason for stop. Good to print only once.
   private boolean endCriteriaReached() {
@@ -368,48 +389,69 @@ public class LLRealtimeSegmentDataManager extends RealtimeSegmentDataManager {
 
     final long _endOffset = Long.MAX_VALUE; // No upper limit on stream offset
     segmentLogger.info("Starting consumption loop start offset {}, finalOffset {}", _currentOffset, _finalOffset);
-    while (!_shouldStop && !endCriteriaReached()) {
-      // Consume for the next readTime ms, or we get to final offset, whichever happens earlier,
-      // Update _currentOffset upon return from this method
-      MessageBatch messageBatch;
-      try {
-        messageBatch = _partitionLevelConsumer
-            .fetchMessages(_currentOffset, _endOffset, _partitionLevelStreamConfig.getFetchTimeoutMillis());
-        consecutiveErrorCount = 0;
-      } catch (TimeoutException e) {
-        handleTransientStreamErrors(e);
-        continue;
-      } catch (TransientConsumerException e) {
-        handleTransientStreamErrors(e);
-        continue;
-      } catch (PermanentConsumerException e) {
-        segmentLogger.warn("Permanent exception from stream when fetching messages, stopping consumption", e);
-        throw e;
-      } catch (Exception e) {
-        // Unknown exception from stream. Treat as a transient exception.
-        // One such exception seen so far is java.net.SocketTimeoutException
-        handleTransientStreamErrors(e);
-        continue;
-      }
+    if (_pipelinedConsumption) {
+      _decoderExecutor =
+          Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, _segmentNameStr + "-decoder"));
+    }
+    try {
+      while (!_shouldStop && !endCriteriaReached()) {
+        // Consume for the next readTime ms, or we get to final offset, whichever happens earlier,
+        // Update _currentOffset upon return from this method
+        MessageBatch messageBatch;
+        try {
+          // Use the message batch prefetched by the decoder thread only if it starts from the current offset
+          if (_prefetchedMessageBatch != null && _prefetchedOffset == _currentOffset) {
+            messageBatch = _prefetchedMessageBatch;
+          } else {
+            messageBatch = _partitionLevelConsumer
+                .fetchMessages(_currentOffset, _endOffset, _partitionLevelStreamConfig.getFetchTimeoutMillis());
+          }
+          _prefetchedMessageBatch = null;
+          consecutiveErrorCount = 0;
+        } catch (TimeoutException e) {
+          handleTransientStreamErrors(e);
+          continue;
+        } catch (TransientConsumerException e) {
+          handleTransientStreamErrors(e);
+          continue;
+        } catch (PermanentConsumerException e) {
+          segmentLogger.warn("Permanent exception from stream when fetching messages, stopping consumption", e);
+          throw e;
+        } catch (Exception e) {
+          // Unknown exception from stream. Treat as a transient exception.
+          // One such exception seen so far is java.net.SocketTimeoutException
+          handleTransientStreamErrors(e);
+          continue;
+        }
 
-      processStreamEvents(messageBatch, idlePipeSleepTimeMillis);
+        processStreamEvents(messageBatch, idlePipeSleepTimeMillis);
 
-      if (_currentOffset != lastUpdatedOffset) {
-        consecutiveIdleCount = 0;
-        // We consumed something. Update the highest stream offset as well as partition-consuming metric.
-        _serverMetrics.setValueOfTableGauge(_metricKeyName, ServerGauge.HIGHEST_KAFKA_OFFSET_CONSUMED, _currentOffset);
-        _serverMetrics.setValueOfTableGauge(_metricKeyName, ServerGauge.HIGHEST_STREAM_OFFSET_CONSUMED, _currentOffset);
-        _serverMetrics.setValueOfTableGauge(_metricKeyName, ServerGauge.LLC_PARTITION_CONSUMING, 1);
-        lastUpdatedOffset = _currentOffset;
-      } else {
-        // We did not consume any rows. Update the partition-consuming metric only if we have been idling for a long time.
-        // Create a new stream consumer wrapper, in case we are stuck on something.
-        if (++consecutiveIdleCount > maxIdleCountBeforeStatUpdate) {
-          _serverMetrics.setValueOfTableGauge(_metricKeyName, ServerGauge.LLC_PARTITION_CONSUMING, 1);
+        if (_currentOffset != lastUpdatedOffset) {
           consecutiveIdleCount = 0;
-          makeStreamConsumer("Idle for too long");
+          // We consumed something. Update the highest stream offset as well as partition-consuming metric.
+          _serverMetrics
+              .setValueOfTableGauge(_metricKeyName, ServerGauge.HIGHEST_KAFKA_OFFSET_CONSUMED, _currentOffset);
+          _serverMetrics
+              .setValueOfTableGauge(_metricKeyName, ServerGauge.HIGHEST_STREAM_OFFSET_CONSUMED, _currentOffset);
+          _serverMetrics.setValueOfTableGauge(_metricKeyName, ServerGauge.LLC_PARTITION_CONSUMING, 1);
+          lastUpdatedOffset = _currentOffset;
+        } else {
+          // We did not consume any rows. Update the partition-consuming metric only if we have been idling for a long
+          // time.
+          // Create a new stream consumer wrapper, in case we are stuck on something.
+          if (++consecutiveIdleCount > maxIdleCountBeforeStatUpdate) {
+            _serverMetrics.setValueOfTableGauge(_metricKeyName, ServerGauge.LLC_PARTITION_CONSUMING, 1);
+            consecutiveIdleCount = 0;
+            makeStreamConsumer("Idle for too long");
+          }
         }
       }
+    } finally {
+      if (_decoderExecutor != null) {
+        _decoderExecutor.shutdownNow();
+        _decoderExecutor = null;
+      }
+      _prefetchedMessageBatch = null;
     }
 
     if (_numRowsErrored > 0) {
@@ -428,69 +470,135 @@ public class LLRealtimeSegmentDataManager extends RealtimeSegmentDataManager {
     boolean canTakeMore = true;
 
     GenericRow reuse = new GenericRow();
-    for (int index = 0; index < messagesAndOffsets.getMessageCount(); index++) {
-      if (_shouldStop || endCriteriaReached()) {
-        break;
-      }
-      if (!canTakeMore) {
-        // The RealtimeSegmentImpl that we are pushing rows into has indicated that it cannot accept any more
-        // rows. This can happen in one of two conditions:
-        // 1. We are in INITIAL_CONSUMING state, and we somehow exceeded the max number of rows we are allowed to consume
-        //    for this row. Something is seriously wrong, because endCriteriaReached() should have returned true when
-        //    we hit the row limit.
-        //    Throw an exception.
-        //
-        // 2. We are in CATCHING_UP state, and we legally hit this error due to unclean leader election where
-        //    offsets get changed with higher generation numbers for some pinot servers but not others. So, if another
-        //    server (who got a larger stream offset) asked us to catch up to that offset, but we are connected to a
-        //    broker who has smaller offsets, then we may try to push more rows into the buffer than maximum. This
-        //    is a rare case, and we really don't know how to handle this at this time.
-        //    Throw an exception.
-        //
-        segmentLogger
-            .error("Buffer full with {} rows consumed (row limit {}, indexed {})", _numRowsConsumed, _numRowsIndexed,
-                _segmentMaxRowCount);
-        throw new RuntimeException("Realtime segment full");
-      }
+    int numMessages = messagesAndOffsets.getMessageCount();
+    MessageDecodeTask decodeTask = null;
+    if (_decoderExecutor != null && numMessages > 0) {
+      decodeTask = new MessageDecodeTask(messagesAndOffsets);
+      decodeTask._future = _decoderExecutor.submit(decodeTask);
+    }
+    try {
+      if (decodeTask != null) {
+        // The messages are already decoded and transformed on the decoder thread, index them in batches
+        List<GenericRow> rows = new ArrayList<>(_pipelineBufferSize);
+        int index = 0;
+        while (index < numMessages) {
+          if (_shouldStop || endCriteriaReached()) {
+            break;
+          }
+          if (!canTakeMore) {
+            throw getSegmentFullException();
+          }
 
-      // Index each message
-      reuse.clear();
-      // retrieve metadata from the message batch if available
-      // this can be overridden by the decoder if there is a better indicator in the message payload
-      RowMetadata msgMetadata = messagesAndOffsets.getMetadataAtIndex(index);
+          int batchEndIndex = index + getNumMessagesToIndexInBatch(messagesAndOffsets, index);
+          int numMessagesInBatch = batchEndIndex - index;
+          long messageOffset = _currentOffset;
+          int numRowsDropped = 0;
+          rows.clear();
+          for (; index < batchEndIndex; index++) {
+            DecodedMessage decodedMessage = decodeTask.take();
+            GenericRow decodedRow = decodedMessage.getDecodedRow();
+            if (decodedRow != null) {
+              try {
+                GenericRow transformedRow = decodedMessage.getTransformedRow();
+                if (transformedRow != null) {
+                  if (_upsertOffsetColumn != null) {
+                    transformedRow.putValue(_upsertOffsetColumn, messageOffset);
+                  }
+                  rows.add(transformedRow);
+                } else {
+                  numRowsDropped++;
+                }
+              } catch (Exception e) {
+                segmentLogger.error("Caught exception while transforming the record: {}", decodedRow, e);
+                _numRowsErrored++;
+              }
+            } else {
+              numRowsDropped++;
+            }
+            messageOffset = messagesAndOffsets.getNextStreamMessageOffsetAtIndex(index);
+          }
+          if (!rows.isEmpty()) {
+            canTakeMore = indexRows(rows, messagesAndOffsets.getMetadataAtIndex(batchEndIndex - 1));
+            realtimeRowsConsumedMeter = _serverMetrics
+                .addMeteredTableValue(_metricKeyName, ServerMeter.REALTIME_ROWS_CONSUMED, rows.size(),
+                    realtimeRowsConsumedMeter);
+            indexedMessageCount += rows.size();
+          }
+          if (numRowsDropped > 0) {
+            realtimeRowsDroppedMeter = _serverMetrics
+                .addMeteredTableValue(_metricKeyName, ServerMeter.INVALID_REALTIME_ROWS_DROPPED, numRowsDropped,
+                    realtimeRowsDroppedMeter);
+          }
 
-      GenericRow decodedRow = _messageDecoder
-          .decode(messagesAndOffsets.getMessageAtIndex(index), messagesAndOffsets.getMessageOffsetAtIndex(index),
-              messagesAndOffsets.getMessageLengthAtIndex(index), reuse);
-      if (decodedRow != null) {
-        try {
-          GenericRow transformedRow = _recordTransformer.transform(decodedRow);
+          _currentOffset = messageOffset;
+          _numRowsIndexed = _realtimeSegment.getNumDocsIndexed();
+          _numRowsConsumed += numMessagesInBatch;
+          streamMessageCount += numMessagesInBatch;
+        }
+      } else {
+        for (int index = 0; index < numMessages; index++) {
+          if (_shouldStop || endCriteriaReached()) {
+            break;
+          }
+          if (!canTakeMore) {
+            throw getSegmentFullException();
+          }
 
-          if (transformedRow != null) {
-            realtimeRowsConsumedMeter = _serverMetrics
-                .addMeteredTableValue(_metricKeyName, ServerMeter.REALTIME_ROWS_CONSUMED, 1, realtimeRowsConsumedMeter);
-            indexedMessageCount++;
+          // Index each message
+          // retrieve metadata from the message batch if available
+          // this can be overridden by the decoder if there is a better indicator in the message payload
+          RowMetadata msgMetadata = messagesAndOffsets.getMetadataAtIndex(index);
+
+          reuse.clear();
+          GenericRow decodedRow = _messageDecoder
+              .decode(messagesAndOffsets.getMessageAtIndex(index), messagesAndOffsets.getMessageOffsetAtIndex(index),
+                  messagesAndOffsets.getMessageLengthAtIndex(index), reuse);
+          if (decodedRow != null) {
+            try {
+              GenericRow transformedRow = _recordTransformer.transform(decodedRow);
+
+              if (transformedRow != null) {
+                realtimeRowsConsumedMeter = _serverMetrics
+                    .addMeteredTableValue(_metricKeyName, ServerMeter.REALTIME_ROWS_CONSUMED, 1,
+                        realtimeRowsConsumedMeter);
+                indexedMessageCount++;
+              } else {
+                realtimeRowsDroppedMeter = _serverMetrics
+                    .addMeteredTableValue(_metricKeyName, ServerMeter.INVALID_REALTIME_ROWS_DROPPED, 1,
+                        realtimeRowsDroppedMeter);
+              }
+
+              if (transformedRow != null && _upsertOffsetColumn != null) {
+                transformedRow.putValue(_upsertOffsetColumn, _currentOffset);
+              }
+              canTakeMore = _realtimeSegment.index(transformedRow, msgMetadata);
+            } catch (Exception e) {
+              segmentLogger.error("Caught exception while transforming the record: {}", decodedRow, e);
+              _numRowsErrored++;
+            }
           } else {
             realtimeRowsDroppedMeter = _serverMetrics
                 .addMeteredTableValue(_metricKeyName, ServerMeter.INVALID_REALTIME_ROWS_DROPPED, 1,
                     realtimeRowsDroppedMeter);
           }
 
-          canTakeMore = _realtimeSegment.index(transformedRow, msgMetadata);
-        } catch (Exception e) {
-          segmentLogger.error("Caught exception while transforming the record: {}", decodedRow, e);
-          _numRowsErrored++;
+          _currentOffset = messagesAndOffsets.getNextStreamMessageOffsetAtIndex(index);
+          _numRowsIndexed = _realtimeSegment.getNumDocsIndexed();
+          _numRowsConsumed++;
+          streamMessageCount++;
+        }
+      }
+    } finally {
+      if (decodeTask != null) {
+        if (streamMessageCount == numMessages) {
+          // All the messages are indexed, wait for the decoder thread to finish prefetching the next message batch
+          decodeTask.awaitPrefetch();
+          _prefetchedMessageBatch = decodeTask._prefetchedMessageBatch;
+          _prefetchedOffset = decodeTask._prefetchedOffset;
+        } else {
+          decodeTask.cancel();
         }
-      } else {
-        realtimeRowsDroppedMeter = _serverMetrics
-            .addMeteredTableValue(_metricKeyName, ServerMeter.INVALID_REALTIME_ROWS_DROPPED, 1,
-                realtimeRowsDroppedMeter);
       }
-
-      _currentOffset = messagesAndOffsets.getNextStreamMessageOffsetAtIndex(index);
-      _numRowsIndexed = _realtimeSegment.getNumDocsIndexed();
-      _numRowsConsumed++;
-      streamMessageCount++;
     }
     updateCurrentDocumentCountMetrics();
     if (streamMessageCount != 0) {
@@ -502,6 +610,203 @@ public class LLRealtimeSegmentDataManager extends RealtimeSegmentDataManager {
     }
   }
 
+  /**
+   * Returns the exception to throw when the realtime segment cannot accept any more rows.
+   */
+  private RuntimeException getSegmentFullException() {
+    // The RealtimeSegmentImpl that we are pushing rows into has indicated that it cannot accept any more
+    // rows. This can happen in one of two conditions:
+    // 1. We are in INITIAL_CONSUMING state, and we somehow exceeded the max number of rows we are allowed to
+    //    consume for this row. Something is seriously wrong, because endCriteriaReached() should have returned true
+    //    when we hit the row limit.
+    //    Throw an exception.
+    //
+    // 2. We are in CATCHING_UP state, and we legally hit this error due to unclean leader election where
+    //    offsets get changed with higher generation numbers for some pinot servers but not others. So, if another
+    //    server (who got a larger stream offset) asked us to catch up to that offset, but we are connected to a
+    //    broker who has smaller offsets, then we may try to push more rows into the buffer than maximum. This
+    //    is a rare case, and we really don't know how to handle this at this time.
+    //    Throw an exception.
+    //
+    segmentLogger
+        .error("Buffer full with {} rows consumed (row limit {}, indexed {})", _numRowsConsumed, _numRowsIndexed,
+            _segmentMaxRowCount);
+    return new RuntimeException("Realtime segment full");
+  }
+
+  /**
+   * Returns the number of messages starting from the given index to index in one batch in pipelined consumption. The
+   * batch is bounded by the pipeline buffer size, and never goes past the end criteria checked per message in the
+   * serial consumption: the row limit (each message adds at most one row), and the final offset when catching up.
+   */
+  private int getNumMessagesToIndexInBatch(MessageBatch messageBatch, int startIndex) {
+    int numMessages = Math.min(messageBatch.getMessageCount() - startIndex, _pipelineBufferSize);
+    numMessages = Math.min(numMessages, Math.max(_segmentMaxRowCount - _numRowsIndexed, 1));
+    if (_state != State.INITIAL_CONSUMING) {
+      for (int i = 0; i < numMessages; i++) {
+        if (messageBatch.getNextStreamMessageOffsetAtIndex(startIndex + i) >= _finalOffset) {
+          return i + 1;
+        }
+      }
+    }
+    return numMessages;
+  }
+
+  /**
+   * Indexes a batch of rows into the realtime segment. If the batch cannot be indexed, indexes the rows one by one so
+   * that only the erroneous rows are skipped.
+   */
+  private boolean indexRows(List<GenericRow> rows, @Nullable RowMetadata rowMetadata) {
+    try {
+      return _realtimeSegment.index(rows, rowMetadata);
+    } catch (Exception e) {
+      segmentLogger.warn("Caught exception while indexing {} rows in batch, indexing them one by one", rows.size(), e);
+      boolean canTakeMore = true;
+      for (GenericRow row : rows) {
+        try {
+          canTakeMore = _realtimeSegment.index(row, rowMetadata);
+        } catch (Exception rowException) {
+          segmentLogger.error("Caught exception while indexing the record: {}", row, rowException);
+          _numRowsErrored++;
+        }
+      }
+      return canTakeMore;
+    }
+  }
+
+  /**
+   * Stream message decoded and transformed on the decoder thread in pipelined consumption.
+   */
+  private static class DecodedMessage {
+    GenericRow _decodedRow;
+    GenericRow _transformedRow;
+    Exception _decodeException;
+    Exception _transformException;
+
+    GenericRow getDecodedRow() {
+      if (_decodeException != null) {
+        throw new RuntimeException("Caught exception while decoding the message", _decodeException);
+      }
+      return _decodedRow;
+    }
+
+    GenericRow getTransformedRow()
+        throws Exception {
+      if (_transformException != null) {
+        throw _transformException;
+      }
+      return _transformedRow;
+    }
+  }
+
+  /**
+   * Task running on the decoder thread in pipelined consumption, which decodes and transforms the messages of a message
+   * batch into a bounded buffer in order, then prefetches the next message batch starting from the offset after the
+   * last message. The consumer thread takes the decoded messages from the buffer and indexes them, and only the
+   * consumer thread updates the current offset, so the offsets stay exact even if the decoded messages or the
+   * prefetched message batch are discarded.
+   */
+  private class MessageDecodeTask implements Runnable {
+    final MessageBatch _messageBatch;
+    final BlockingQueue<DecodedMessage> _decodedMessages = new ArrayBlockingQueue<>(_pipelineBufferSize);
+    volatile boolean _cancelled;
+    Future<?> _future;
+    MessageBatch _prefetchedMessageBatch;
+    long _prefetchedOffset;
+
+    MessageDecodeTask(MessageBatch messageBatch) {
+      _messageBatch = messageBatch;
+    }
+
+    @Override
+    public void run() {
+      int numMessages = _messageBatch.getMessageCount();
+      for (int index = 0; index < numMessages; index++) {
+        DecodedMessage decodedMessage = new DecodedMessage();
+        try {
+          decodedMessage._decodedRow = _messageDecoder
+              .decode(_messageBatch.getMessageAtIndex(index), _messageBatch.getMessageOffsetAtIndex(index),
+                  _messageBatch.getMessageLengthAtIndex(index), new GenericRow());
+        } catch (Exception e) {
+          decodedMessage._decodeException = e;
+        }
+        if (decodedMessage._decodedRow != null) {
+          try {
+            decodedMessage._transformedRow = _recordTransformer.transform(decodedMessage._decodedRow);
+          } catch (Exception e) {
+            decodedMessage._transformException = e;
+          }
+        }
+        if (!put(decodedMessage) || decodedMessage._decodeException != null) {
+          return;
+        }
+      }
+
+      if (!_cancelled && !_shouldStop) {
+        long nextOffset = _messageBatch.getNextStreamMessageOffsetAtIndex(numMessages - 1);
+        try {
+          _prefetchedMessageBatch = _partitionLevelConsumer
+              .fetchMessages(nextOffset, Long.MAX_VALUE, _partitionLevelStreamConfig.getFetchTimeoutMillis());
+          _prefetchedOffset = nextOffset;
+        } catch (Exception e) {
+          // The consumer thread will fetch the message batch again and handle the exception
+          segmentLogger.debug("Caught exception while prefetching messages from offset {}", nextOffset, e);
+        }
+      }
+    }
+
+    private boolean put(DecodedMessage decodedMessage) {
+      try {
+        while (!_cancelled) {
+          if (_decodedMessages.offer(decodedMessage, DECODED_MESSAGE_POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+            return true;
+          }
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      return false;
+    }
+
+    DecodedMessage take() {
+      try {
+        while (true) {
+          DecodedMessage decodedMessage =
+              _decodedMessages.poll(DECODED_MESSAGE_POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+          if (decodedMessage != null) {
+            return decodedMessage;
+          }
+          if (_future.isDone() && _decodedMessages.isEmpty()) {
+            // Should not happen as the decoder thread puts one decoded message for each message
+            throw new IllegalStateException("Decoder thread stopped before decoding all the messages");
+          }
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new RuntimeException("Interrupted while waiting for the decoded message", e);
+      }
+    }
+
+    void awaitPrefetch() {
+      try {
+        _future.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        _prefetchedMessageBatch = null;
+      } catch (ExecutionException e) {
+        segmentLogger.warn("Caught exception in the decoder thread", e.getCause());
+        _prefetchedMessageBatch = null;
+      }
+    }
+
+    void cancel() {
+      _cancelled = true;
+      _decodedMessages.clear();
+      awaitPrefetch();
+      _prefetchedMessageBatch = null;
+    }
+  }
+
   public class PartitionConsumer implements Runnable {
     public void run() {
       long initialConsumptionEnd = 0L;
@@ -1087,7 +1392,7 @@ public class LLRealtimeSegmentDataManager extends RealtimeSegmentDataManager {
     _tableStreamName = _tableNameWithType + "_" + _streamTopic;
     _memoryManager = getMemoryManager(realtimeTableDataManager.getConsumerDir(), _segmentNameStr,
         indexLoadingConfig.isRealtimeOffheapAllocation(), indexLoadingConfig.isDirectRealtimeOffheapAllocation(),
-        serverMetrics);
+        serverMetrics, realtimeTableDataManager.getOffHeapBufferPool());
 
     List<String> sortedColumns = indexLoadingConfig.getSortedColumns();
     if (sortedColumns.isEmpty()) {
@@ -1132,6 +1437,9 @@ public class LLRealtimeSegmentDataManager extends RealtimeSegmentDataManager {
 
     _isOffHeap = indexLoadingConfig.isRealtimeOffheapAllocation();
 
+    _pipelinedConsumption = indexLoadingConfig.isRealtimePipelinedConsumption();
+    _pipelineBufferSize = indexLoadingConfig.getRealtimePipelineBufferSize();
+
     _nullHandlingEnabled = indexingConfig.isNullHandlingEnabled();
 
     Set<String> textIndexColumns = indexLoadingConfig.getTextIndexColumns();
@@ -1144,6 +1452,7 @@ public class LLRealtimeSegmentDataManager extends RealtimeSegmentDataManager {
             .setSchema(_schema).setCapacity(_segmentMaxRowCount)
             .setAvgNumMultiValues(indexLoadingConfig.getRealtimeAvgMultiValueCount())
             .setNoDictionaryColumns(indexLoadingConfig.getNoDictionaryColumns())
+            .setNoDictionaryConfig(indexLoadingConfig.getnoDictionaryConfig())
             .setVarLengthDictionaryColumns(indexLoadingConfig.getVarLengthDictionaryColumns())
             .setInvertedIndexColumns(invertedIndexColumns).setTextIndexColumns(textIndexColumns)
             .setRealtimeSegmentZKMetadata(segmentZKMetadata).setOffHeap(_isOffHeap).setMemoryManager(_memoryManager)
@@ -1151,6 +1460,16 @@ public class LLRealtimeSegmentDataManager extends RealtimeSegmentDataManager {
             .setAggregateMetrics(indexingConfig.isAggregateMetrics()).setNullHandlingEnabled(_nullHandlingEnabled)
             .setConsumerDir(consumerDir);
 
+    TableUpsertMetadataManager tableUpsertMetadataManager = realtimeTableDataManager.getTableUpsertMetadataManager();
+    if (tableUpsertMetadataManager != null) {
+      PartitionUpsertMetadataManager partitionUpsertMetadataManager =
+          tableUpsertMetadataManager.getOrCreatePartitionManager(_streamPartitionId);
+      _upsertOffsetColumn = partitionUpsertMetadataManager.getOffsetColumn();
+      realtimeSegmentConfigBuilder.setPartitionUpsertMetadataManager(partitionUpsertMetadataManager);
+    } else {
+      _upsertOffsetColumn = null;
+    }
+
     // Create message decoder
     _messageDecoder =
         StreamDecoderProvider.create(_partitionLevelStreamConfig, SchemaUtils.extractSourceFields(_schema));
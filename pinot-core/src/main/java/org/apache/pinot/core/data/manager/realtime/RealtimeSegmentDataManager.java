@@ -18,12 +18,14 @@
  */
 package org.apache.pinot.core.data.manager.realtime;
 
+import javax.annotation.Nullable;
 import org.apache.pinot.common.metrics.ServerMetrics;
 import org.apache.pinot.core.data.manager.SegmentDataManager;
 import org.apache.pinot.core.indexsegment.mutable.MutableSegment;
 import org.apache.pinot.core.io.readerwriter.PinotDataBufferMemoryManager;
 import org.apache.pinot.core.io.writer.impl.DirectMemoryManager;
 import org.apache.pinot.core.io.writer.impl.MmapMemoryManager;
+import org.apache.pinot.core.io.writer.impl.RealtimeOffHeapBufferPool;
 
 
 public abstract class RealtimeSegmentDataManager extends SegmentDataManager {
@@ -32,13 +34,14 @@ public abstract class RealtimeSegmentDataManager extends SegmentDataManager {
   public abstract MutableSegment getSegment();
 
   protected static PinotDataBufferMemoryManager getMemoryManager(String consumerDir, String segmentName,
-      boolean offHeap, boolean directOffHeap, ServerMetrics serverMetrics) {
+      boolean offHeap, boolean directOffHeap, ServerMetrics serverMetrics,
+      @Nullable RealtimeOffHeapBufferPool bufferPool) {
     if (offHeap && !directOffHeap) {
       return new MmapMemoryManager(consumerDir, segmentName, serverMetrics);
     } else {
       // For on-heap allocation, we still need a memory manager for forward index.
       // Dictionary will be allocated on heap.
-      return new DirectMemoryManager(segmentName, serverMetrics);
+      return new DirectMemoryManager(segmentName, serverMetrics, bufferPool);
     }
   }
 }
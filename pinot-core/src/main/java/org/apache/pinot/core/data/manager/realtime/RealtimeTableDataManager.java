@@ -22,6 +22,7 @@ import com.google.common.base.Preconditions;
 import java.io.File;
 import java.io.FilenameFilter;
 import java.io.IOException;
+import java.net.URI;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
@@ -30,9 +31,11 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.ThreadSafe;
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.io.FileUtils;
+import org.apache.helix.HelixManager;
 import org.apache.pinot.common.Utils;
 import org.apache.pinot.common.metadata.ZKMetadataProvider;
 import org.apache.pinot.common.metadata.instance.InstanceZKMetadata;
@@ -46,14 +49,22 @@ import org.apache.pinot.common.utils.TarGzCompressionUtils;
 import org.apache.pinot.common.utils.fetcher.SegmentFetcherFactory;
 import org.apache.pinot.core.data.manager.BaseTableDataManager;
 import org.apache.pinot.core.data.manager.SegmentDataManager;
+import org.apache.pinot.core.indexsegment.immutable.ImmutableSegment;
+import org.apache.pinot.core.indexsegment.immutable.ImmutableSegmentImpl;
 import org.apache.pinot.core.indexsegment.immutable.ImmutableSegmentLoader;
+import org.apache.pinot.core.io.writer.impl.RealtimeOffHeapBufferPool;
 import org.apache.pinot.core.realtime.impl.RealtimeSegmentStatsHistory;
+import org.apache.pinot.core.realtime.impl.ThreadSafeMutableRoaringBitmap;
 import org.apache.pinot.core.segment.index.loader.IndexLoadingConfig;
 import org.apache.pinot.core.segment.index.loader.LoaderUtils;
+import org.apache.pinot.core.segment.index.metadata.SegmentMetadataImpl;
 import org.apache.pinot.core.segment.virtualcolumn.VirtualColumnProviderFactory;
+import org.apache.pinot.core.upsert.TableUpsertMetadataManager;
+import org.apache.pinot.core.util.PeerServerSegmentFinder;
 import org.apache.pinot.core.util.SchemaUtils;
 import org.apache.pinot.spi.config.table.IndexingConfig;
 import org.apache.pinot.spi.config.table.TableConfig;
+import org.apache.pinot.spi.config.table.UpsertConfig;
 import org.apache.pinot.spi.data.FieldSpec;
 import org.apache.pinot.spi.data.Schema;
 
@@ -65,12 +76,18 @@ public class RealtimeTableDataManager extends BaseTableDataManager {
   private SegmentBuildTimeLeaseExtender _leaseExtender;
   private RealtimeSegmentStatsHistory _statsHistory;
   private final Semaphore _segmentBuildSemaphore;
+  // Used to find the peer servers to download the completed segments from, null if not available
+  private final HelixManager _helixManager;
+  // Server-wide pool recycling the direct buffers of the consuming segments, null if not enabled
+  private final RealtimeOffHeapBufferPool _offHeapBufferPool;
   // Maintains a map of partitionIds to semaphores.
   // The semaphore ensures that exactly one PartitionConsumer instance consumes from any stream partition.
   // In some streams, it's possible that having multiple consumers (with the same consumer name on the same host) consuming from the same stream partition can lead to bugs.
   // The semaphores will stay in the hash map even if the consuming partitions move to a different host.
   // We expect that there will be a small number of semaphores, but that may be ok.
   private final Map<Integer, Semaphore> _partitionIdToSemaphoreMap = new ConcurrentHashMap<>();
+  // Tracks the latest record of each primary key for upsert tables, created when the first segment is added
+  private volatile TableUpsertMetadataManager _tableUpsertMetadataManager;
 
   // The old name of the stats file used to be stats.ser which we changed when we moved all packages
   // from com.linkedin to org.apache because of not being able to deserialize the old files using the newer classes
@@ -90,8 +107,11 @@ public class RealtimeTableDataManager extends BaseTableDataManager {
   // likely that we get fresh data each time instead of multiple copies of roughly same data.
   private static final int MIN_INTERVAL_BETWEEN_STATS_UPDATES_MINUTES = 30;
 
-  public RealtimeTableDataManager(Semaphore segmentBuildSemaphore) {
+  public RealtimeTableDataManager(Semaphore segmentBuildSemaphore, @Nullable HelixManager helixManager,
+      @Nullable RealtimeOffHeapBufferPool offHeapBufferPool) {
     _segmentBuildSemaphore = segmentBuildSemaphore;
+    _helixManager = helixManager;
+    _offHeapBufferPool = offHeapBufferPool;
   }
 
   @Override
@@ -166,6 +186,19 @@ public class RealtimeTableDataManager extends BaseTableDataManager {
     return _segmentBuildSemaphore;
   }
 
+  @Nullable
+  public RealtimeOffHeapBufferPool getOffHeapBufferPool() {
+    return _offHeapBufferPool;
+  }
+
+  /**
+   * Returns the upsert metadata manager for the table, or {@code null} if upsert is not enabled.
+   */
+  @Nullable
+  public TableUpsertMetadataManager getTableUpsertMetadataManager() {
+    return _tableUpsertMetadataManager;
+  }
+
   public String getConsumerDir() {
     String consumerDirPath = _tableDataManagerConfig.getConsumerDir();
     File consumerDir;
@@ -212,6 +245,13 @@ public class RealtimeTableDataManager extends BaseTableDataManager {
       return;
     }
 
+    UpsertConfig upsertConfig = tableConfig.getUpsertConfig();
+    if (upsertConfig != null) {
+      Preconditions.checkState(SegmentName.isLowLevelConsumerSegmentName(segmentName),
+          "Upsert is only supported for low-level consumer segments, got: %s", segmentName);
+      initTableUpsertMetadataManager(upsertConfig);
+    }
+
     RealtimeSegmentZKMetadata realtimeSegmentZKMetadata =
         ZKMetadataProvider.getRealtimeSegmentZKMetadata(_propertyStore, _tableNameWithType, segmentName);
     Preconditions.checkNotNull(realtimeSegmentZKMetadata);
@@ -233,7 +273,7 @@ public class RealtimeTableDataManager extends BaseTableDataManager {
       // for realtime segment here. If we wrote it on disk but could not get to commit to zk yet, we should replace the
       // on-disk segment next time
 
-      if (!isValid(schema, tableConfig.getIndexingConfig())) {
+      if (!isValid(schema, tableConfig.getIndexingConfig(), upsertConfig)) {
         _logger.error("Not adding segment {}", segmentName);
         throw new RuntimeException("Mismatching schema/table config for " + _tableNameWithType);
       }
@@ -267,6 +307,45 @@ public class RealtimeTableDataManager extends BaseTableDataManager {
     }
   }
 
+  private synchronized void initTableUpsertMetadataManager(UpsertConfig upsertConfig) {
+    if (_tableUpsertMetadataManager == null) {
+      _tableUpsertMetadataManager = new TableUpsertMetadataManager(_tableNameWithType, upsertConfig);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p>For upsert tables, adds the records of the segment to the upsert metadata of its partition before the segment
+   * becomes queryable, which takes over the records of the segment being replaced (if any).
+   */
+  @Override
+  public void addSegment(ImmutableSegment immutableSegment) {
+    if (_tableUpsertMetadataManager != null) {
+      String segmentName = immutableSegment.getSegmentName();
+      int partitionId = new LLCSegmentName(segmentName).getPartitionId();
+      ((ImmutableSegmentImpl) immutableSegment).enableUpsert(new ThreadSafeMutableRoaringBitmap());
+      _tableUpsertMetadataManager.getOrCreatePartitionManager(partitionId).addSegment(immutableSegment);
+    }
+    super.addSegment(immutableSegment);
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p>For upsert tables, also removes the records of the segment from the upsert metadata of its partition.
+   */
+  @Override
+  public void removeSegment(String segmentName) {
+    if (_tableUpsertMetadataManager != null) {
+      SegmentDataManager segmentDataManager = _segmentDataManagerMap.get(segmentName);
+      if (segmentDataManager != null) {
+        int partitionId = new LLCSegmentName(segmentName).getPartitionId();
+        _tableUpsertMetadataManager.getOrCreatePartitionManager(partitionId)
+            .removeSegment(segmentDataManager.getSegment());
+      }
+    }
+    super.removeSegment(segmentName);
+  }
+
   public void downloadAndReplaceSegment(String segmentName, LLCRealtimeSegmentZKMetadata llcSegmentMetadata,
       IndexLoadingConfig indexLoadingConfig) {
     final String uri = llcSegmentMetadata.getDownloadUrl();
@@ -275,10 +354,13 @@ public class RealtimeTableDataManager extends BaseTableDataManager {
     final File segmentFolder = new File(_indexDir, segmentName);
     FileUtils.deleteQuietly(segmentFolder);
     try {
-      SegmentFetcherFactory.fetchSegmentToLocal(uri, tempFile);
-      _logger.info("Downloaded file from {} to {}; Length of downloaded file: {}", uri, tempFile, tempFile.length());
-      TarGzCompressionUtils.unTar(tempFile, tempSegmentFolder);
-      _logger.info("Uncompressed file {} into tmp dir {}", tempFile, tempSegmentFolder);
+      if (!indexLoadingConfig.isPeerSegmentDownloadEnabled() || !downloadSegmentFromPeers(segmentName,
+          llcSegmentMetadata.getCrc(), tempFile, tempSegmentFolder)) {
+        SegmentFetcherFactory.fetchSegmentToLocal(uri, tempFile);
+        _logger.info("Downloaded file from {} to {}; Length of downloaded file: {}", uri, tempFile, tempFile.length());
+        TarGzCompressionUtils.unTar(tempFile, tempSegmentFolder);
+        _logger.info("Uncompressed file {} into tmp dir {}", tempFile, tempSegmentFolder);
+      }
       FileUtils.moveDirectory(tempSegmentFolder.listFiles()[0], segmentFolder);
       _logger.info("Replacing LLC Segment {}", segmentName);
       replaceLLSegment(segmentName, indexLoadingConfig);
@@ -290,6 +372,50 @@ public class RealtimeTableDataManager extends BaseTableDataManager {
     }
   }
 
+  /**
+   * Tries to download and uncompress the segment tarball from the peer servers hosting the segment in ONLINE state, one
+   * after another until one of them succeeds with a segment matching the expected CRC. Returns {@code true} if the
+   * segment is uncompressed into the temporary segment folder, {@code false} otherwise (the caller should fall back to
+   * the download URL).
+   */
+  private boolean downloadSegmentFromPeers(String segmentName, long expectedCrc, File tempFile,
+      File tempSegmentFolder) {
+    if (_helixManager == null) {
+      return false;
+    }
+    List<URI> peerServerURIs;
+    try {
+      peerServerURIs =
+          PeerServerSegmentFinder.getPeerServerURIs(_tableNameWithType, segmentName, _helixManager, _instanceId);
+    } catch (Exception e) {
+      _logger.warn("Caught exception while finding peer servers for segment: {}", segmentName, e);
+      return false;
+    }
+    for (URI peerServerURI : peerServerURIs) {
+      try {
+        SegmentFetcherFactory.fetchSegmentToLocal(peerServerURI, tempFile);
+        _logger.info("Downloaded file from peer server {} to {}; Length of downloaded file: {}", peerServerURI,
+            tempFile, tempFile.length());
+        TarGzCompressionUtils.unTar(tempFile, tempSegmentFolder);
+        _logger.info("Uncompressed file {} into tmp dir {}", tempFile, tempSegmentFolder);
+        // Peer servers might host a different version of the segment (e.g. built locally before the commit failed)
+        String crc = new SegmentMetadataImpl(tempSegmentFolder.listFiles()[0]).getCrc();
+        if (Long.toString(expectedCrc).equals(crc)) {
+          return true;
+        }
+        _logger.warn("Segment: {} downloaded from peer server: {} has CRC: {} different from the expected CRC: {}",
+            segmentName, peerServerURI, crc, expectedCrc);
+      } catch (Exception e) {
+        _logger.warn("Failed to download segment: {} from peer server: {}", segmentName, peerServerURI, e);
+      }
+      FileUtils.deleteQuietly(tempFile);
+      FileUtils.deleteQuietly(tempSegmentFolder);
+    }
+    _logger.info("Failed to download segment: {} from {} peer servers, falling back to download URL", segmentName,
+        peerServerURIs.size());
+    return false;
+  }
+
   /**
    * Replaces a committed HLC REALTIME segment.
    */
@@ -327,6 +453,8 @@ public class RealtimeTableDataManager extends BaseTableDataManager {
    * As of now, the following validations are done:
    * 1. Make sure that the sorted column, if specified, is not multi-valued.
    * 2. Validate the schema itself
+   * 3. For upsert, make sure that the primary key column is single-valued and the offset column is a single-valued
+   *    LONG column.
    *
    * We allow the user to specify multiple sorted columns, but only consider the first one for now.
    * (secondary sort is not yet implemented).
@@ -336,9 +464,10 @@ public class RealtimeTableDataManager extends BaseTableDataManager {
    *
    * @param schema
    * @param indexingConfig
+   * @param upsertConfig
    * @return true if schema is valid.
    */
-  private boolean isValid(Schema schema, IndexingConfig indexingConfig) {
+  private boolean isValid(Schema schema, IndexingConfig indexingConfig, @Nullable UpsertConfig upsertConfig) {
     // 1. Make sure that the sorted column is not a multi-value field.
     List<String> sortedColumns = indexingConfig.getSortedColumn();
     boolean isValid = true;
@@ -357,6 +486,28 @@ public class RealtimeTableDataManager extends BaseTableDataManager {
     if (!SchemaUtils.validate(schema, _logger)) {
       isValid = false;
     }
+    // 3. Make sure that the upsert columns exist in the schema (only single primary key column is supported)
+    if (upsertConfig != null) {
+      List<String> primaryKeyColumns = upsertConfig.getPrimaryKeyColumns();
+      if (primaryKeyColumns == null || primaryKeyColumns.size() != 1) {
+        _logger.error("Upsert must be configured with exactly one primary key column, got: {}", primaryKeyColumns);
+        isValid = false;
+      } else {
+        String primaryKeyColumn = primaryKeyColumns.get(0);
+        FieldSpec primaryKeyFieldSpec = schema.getFieldSpecFor(primaryKeyColumn);
+        if (primaryKeyFieldSpec == null || !primaryKeyFieldSpec.isSingleValueField()) {
+          _logger.error("Upsert primary key column {} must be a single-valued column", primaryKeyColumn);
+          isValid = false;
+        }
+      }
+      String offsetColumn = upsertConfig.getOffsetColumn();
+      FieldSpec offsetFieldSpec = schema.getFieldSpecFor(offsetColumn);
+      if (offsetFieldSpec == null || !offsetFieldSpec.isSingleValueField()
+          || offsetFieldSpec.getDataType() != FieldSpec.DataType.LONG) {
+        _logger.error("Upsert offset column {} must be a single-valued LONG column", offsetColumn);
+        isValid = false;
+      }
+    }
 
     return isValid;
   }
@@ -0,0 +1,198 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.core.data.table;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Iterators;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import org.apache.pinot.common.request.AggregationInfo;
+import org.apache.pinot.common.request.SelectionSort;
+import org.apache.pinot.common.utils.DataSchema;
+
+
+/**
+ * Thread safe {@link Table} implementation which hash-partitions the Records on their keys into multiple
+ * {@link ConcurrentIndexedTable}s, so that concurrent upserts contend on different maps, and the trimming and sorting
+ * in {@link #finish(boolean)} can be done in parallel on the partitions.
+ * <p>Each key lives in exactly one partition, so each partition is trimmed to the full capacity, and the final result
+ * is a k-way merge of the sorted partitions for order by, or a concatenation of the partitions otherwise.
+ */
+public class PartitionedIndexedTable extends IndexedTable {
+  private final ConcurrentIndexedTable[] _partitions;
+  private final int _numPartitions;
+  private final ExecutorService _executorService;
+
+  private Iterator<Record> _iterator;
+  private int _numFinishedRecords = -1;
+
+  /**
+   * Initializes the data structures needed for this Table
+   * @param dataSchema data schema of the record's keys and values
+   * @param aggregationInfos aggregation infos for the aggregations in record's values
+   * @param orderBy list of {@link SelectionSort} defining the order by
+   * @param capacity the capacity of the table
+   * @param numPartitions number of partitions to hash the keys into
+   * @param executorService executor service to finish the partitions in parallel
+   */
+  public PartitionedIndexedTable(DataSchema dataSchema, List<AggregationInfo> aggregationInfos,
+      List<SelectionSort> orderBy, int capacity, int numPartitions, ExecutorService executorService) {
+    super(dataSchema, aggregationInfos, orderBy, capacity);
+    Preconditions.checkArgument(numPartitions > 0, "Number of partitions must be positive");
+
+    _numPartitions = numPartitions;
+    _partitions = new ConcurrentIndexedTable[numPartitions];
+    for (int i = 0; i < numPartitions; i++) {
+      _partitions[i] = new ConcurrentIndexedTable(dataSchema, aggregationInfos, orderBy, capacity);
+    }
+    _executorService = executorService;
+  }
+
+  /**
+   * Thread safe implementation of upsert, which upserts the {@link Record} into the partition of its key
+   */
+  @Override
+  public boolean upsert(Key key, Record newRecord) {
+    Preconditions.checkNotNull(key, "Cannot upsert record with null keys");
+    return _partitions[getPartitionId(key)].upsert(key, newRecord);
+  }
+
+  private int getPartitionId(Key key) {
+    return (key.hashCode() & Integer.MAX_VALUE) % _numPartitions;
+  }
+
+  @Override
+  public int size() {
+    if (_numFinishedRecords >= 0) {
+      return _numFinishedRecords;
+    }
+    return getNumPartitionRecords();
+  }
+
+  private int getNumPartitionRecords() {
+    int numRecords = 0;
+    for (ConcurrentIndexedTable partition : _partitions) {
+      numRecords += partition.size();
+    }
+    return numRecords;
+  }
+
+  @Override
+  public Iterator<Record> iterator() {
+    return _iterator;
+  }
+
+  /**
+   * Trims (and sorts for order by) the partitions in parallel, then merges them. For order by, the merged result is
+   * always sorted and trimmed to the capacity, as the partitions cannot be trimmed together without sorting them.
+   */
+  @Override
+  public void finish(boolean sort) {
+    List<Future<?>> futures = new ArrayList<>(_numPartitions - 1);
+    for (int i = 1; i < _numPartitions; i++) {
+      ConcurrentIndexedTable partition = _partitions[i];
+      futures.add(_executorService.submit(() -> partition.finish(_isOrderBy)));
+    }
+    _partitions[0].finish(_isOrderBy);
+    try {
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException("Interrupted while finishing the partitions", e);
+    } catch (ExecutionException e) {
+      throw new RuntimeException("Caught exception while finishing the partitions", e.getCause());
+    } finally {
+      for (Future<?> future : futures) {
+        future.cancel(true);
+      }
+    }
+
+    if (_isOrderBy) {
+      List<Record> mergedRecords = mergeSortedPartitions();
+      _numFinishedRecords = mergedRecords.size();
+      _iterator = mergedRecords.iterator();
+    } else {
+      _numFinishedRecords = Math.min(getNumPartitionRecords(), _capacity);
+      List<Iterator<Record>> iterators = new ArrayList<>(_numPartitions);
+      for (ConcurrentIndexedTable partition : _partitions) {
+        iterators.add(partition.iterator());
+      }
+      _iterator = Iterators.limit(Iterators.concat(iterators.iterator()), _capacity);
+    }
+  }
+
+  /**
+   * K-way merges the sorted partitions, up to the capacity.
+   */
+  private List<Record> mergeSortedPartitions() {
+    Comparator<TableResizer.IntermediateRecord> intermediateRecordComparator =
+        _tableResizer.getIntermediateRecordComparator();
+    PriorityQueue<PartitionHead> priorityQueue = new PriorityQueue<>(_numPartitions,
+        (o1, o2) -> intermediateRecordComparator.compare(o1._intermediateRecord, o2._intermediateRecord));
+    for (ConcurrentIndexedTable partition : _partitions) {
+      Iterator<Record> iterator = partition.iterator();
+      if (iterator.hasNext()) {
+        priorityQueue.add(new PartitionHead(iterator));
+      }
+    }
+
+    List<Record> mergedRecords = new ArrayList<>(Math.min(getNumPartitionRecords(), _capacity));
+    while (mergedRecords.size() < _capacity && !priorityQueue.isEmpty()) {
+      PartitionHead partitionHead = priorityQueue.poll();
+      mergedRecords.add(partitionHead._record);
+      if (partitionHead.advance()) {
+        priorityQueue.add(partitionHead);
+      }
+    }
+    return mergedRecords;
+  }
+
+  /**
+   * Current head of a sorted partition during the k-way merge.
+   */
+  private class PartitionHead {
+    final Iterator<Record> _iterator;
+    Record _record;
+    TableResizer.IntermediateRecord _intermediateRecord;
+
+    PartitionHead(Iterator<Record> iterator) {
+      _iterator = iterator;
+      advance();
+    }
+
+    boolean advance() {
+      if (!_iterator.hasNext()) {
+        return false;
+      }
+      _record = _iterator.next();
+      Key key = new Key(Arrays.copyOf(_record.getValues(), _numKeyColumns));
+      _intermediateRecord = _tableResizer.getIntermediateRecord(key, _record);
+      return true;
+    }
+  }
+}
@@ -140,6 +140,13 @@ public class TableResizer {
     return new IntermediateRecord(key, intermediateRecordValues);
   }
 
+  /**
+   * Returns the comparator which sorts IntermediateRecords in the order by sequence
+   */
+  Comparator<IntermediateRecord> getIntermediateRecordComparator() {
+    return _intermediateRecordComparator;
+  }
+
   /**
    * Trim recordsMap to trimToSize, based on order by information
    * Resize only if number of records is greater than trimToSize
@@ -20,7 +20,9 @@ package org.apache.pinot.core.indexsegment;
 
 import java.util.List;
 import java.util.Set;
+import javax.annotation.Nullable;
 import org.apache.pinot.core.common.DataSource;
+import org.apache.pinot.core.realtime.impl.ThreadSafeMutableRoaringBitmap;
 import org.apache.pinot.core.segment.index.metadata.SegmentMetadata;
 import org.apache.pinot.core.startree.v2.StarTreeV2;
 import org.apache.pinot.spi.annotations.InterfaceAudience;
@@ -81,6 +83,15 @@ public interface IndexSegment {
    */
   GenericRow getRecord(int docId, GenericRow reuse);
 
+  /**
+   * Returns the valid document ids of the segment for upsert tables, i.e. the documents holding the latest record of
+   * their primary key, or {@code null} if upsert is not enabled for the segment.
+   *
+   * @return Valid document ids, or {@code null} if upsert is not enabled
+   */
+  @Nullable
+  ThreadSafeMutableRoaringBitmap getValidDocIds();
+
   /**
    * Destroys segment in memory and closes file handlers if in MMAP mode.
    */
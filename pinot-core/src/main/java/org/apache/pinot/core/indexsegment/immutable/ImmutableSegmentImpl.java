@@ -26,6 +26,7 @@ import javax.annotation.Nullable;
 import org.apache.pinot.core.common.DataSource;
 import org.apache.pinot.core.indexsegment.IndexSegmentUtils;
 import org.apache.pinot.core.io.reader.DataFileReader;
+import org.apache.pinot.core.realtime.impl.ThreadSafeMutableRoaringBitmap;
 import org.apache.pinot.core.segment.index.column.ColumnIndexContainer;
 import org.apache.pinot.core.segment.index.datasource.ImmutableDataSource;
 import org.apache.pinot.core.segment.index.metadata.SegmentMetadataImpl;
@@ -49,6 +50,9 @@ public class ImmutableSegmentImpl implements ImmutableSegment {
   private final Map<String, ColumnIndexContainer> _indexContainerMap;
   private final StarTreeIndexContainer _starTreeIndexContainer;
 
+  // For upsert
+  private ThreadSafeMutableRoaringBitmap _validDocIds;
+
   public ImmutableSegmentImpl(SegmentDirectory segmentDirectory, SegmentMetadataImpl segmentMetadata,
       Map<String, ColumnIndexContainer> columnIndexContainerMap,
       @Nullable StarTreeIndexContainer starTreeIndexContainer) {
@@ -58,6 +62,14 @@ public class ImmutableSegmentImpl implements ImmutableSegment {
     _starTreeIndexContainer = starTreeIndexContainer;
   }
 
+  /**
+   * Enables upsert for the segment with the given (empty) valid document ids, which should be filled before the segment
+   * is queried.
+   */
+  public void enableUpsert(ThreadSafeMutableRoaringBitmap validDocIds) {
+    _validDocIds = validDocIds;
+  }
+
   @Override
   public Dictionary getDictionary(String column) {
     return _indexContainerMap.get(column).getDictionary();
@@ -149,7 +161,17 @@ public class ImmutableSegmentImpl implements ImmutableSegment {
 
   @Override
   public List<StarTreeV2> getStarTrees() {
-    return _starTreeIndexContainer != null ? _starTreeIndexContainer.getStarTrees() : null;
+    // Star-trees pre-aggregate all the documents, including the invalid ones for upsert
+    if (_starTreeIndexContainer == null || _validDocIds != null) {
+      return null;
+    }
+    return _starTreeIndexContainer.getStarTrees();
+  }
+
+  @Nullable
+  @Override
+  public ThreadSafeMutableRoaringBitmap getValidDocIds() {
+    return _validDocIds;
   }
 
   @Override
@@ -18,6 +18,7 @@
  */
 package org.apache.pinot.core.indexsegment.mutable;
 
+import java.util.List;
 import javax.annotation.Nullable;
 import org.apache.pinot.core.indexsegment.IndexSegment;
 import org.apache.pinot.spi.data.readers.GenericRow;
@@ -35,6 +36,16 @@ public interface MutableSegment extends IndexSegment {
    */
   boolean index(GenericRow row, @Nullable RowMetadata rowMetadata);
 
+  /**
+   * Indexes a batch of records into the segment with optionally provided metadata of the last record in the batch. All
+   * the records in the batch become queryable at the same time. The records should not be reused by the caller.
+   *
+   * @param rows Records represented as {@link GenericRow}s
+   * @param rowMetadata the metadata associated with the last message in the batch
+   * @return Whether the segment is full (i.e. cannot index more record into it)
+   */
+  boolean index(List<GenericRow> rows, @Nullable RowMetadata rowMetadata);
+
   /**
    * Returns the number of records already indexed into the segment.
    *
@@ -37,14 +37,17 @@ import org.apache.commons.lang3.StringUtils;
 import org.apache.pinot.core.common.DataSource;
 import org.apache.pinot.core.data.partition.PartitionFunction;
 import org.apache.pinot.core.indexsegment.IndexSegmentUtils;
+import org.apache.pinot.core.io.compression.ChunkCompressorFactory;
 import org.apache.pinot.core.io.reader.DataFileReader;
 import org.apache.pinot.core.io.readerwriter.BaseSingleColumnSingleValueReaderWriter;
 import org.apache.pinot.core.io.readerwriter.PinotDataBufferMemoryManager;
 import org.apache.pinot.core.io.readerwriter.impl.FixedByteSingleColumnMultiValueReaderWriter;
 import org.apache.pinot.core.io.readerwriter.impl.FixedByteSingleColumnSingleValueReaderWriter;
+import org.apache.pinot.core.io.readerwriter.impl.VarByteChunkSingleColumnSingleValueReaderWriter;
 import org.apache.pinot.core.io.readerwriter.impl.VarByteSingleColumnSingleValueReaderWriter;
 import org.apache.pinot.core.realtime.impl.RealtimeSegmentConfig;
 import org.apache.pinot.core.realtime.impl.RealtimeSegmentStatsHistory;
+import org.apache.pinot.core.realtime.impl.ThreadSafeMutableRoaringBitmap;
 import org.apache.pinot.core.realtime.impl.dictionary.BaseMutableDictionary;
 import org.apache.pinot.core.realtime.impl.dictionary.BaseOffHeapMutableDictionary;
 import org.apache.pinot.core.realtime.impl.dictionary.MutableDictionaryFactory;
@@ -65,6 +68,7 @@ import org.apache.pinot.core.segment.virtualcolumn.VirtualColumnContext;
 import org.apache.pinot.core.segment.virtualcolumn.VirtualColumnProvider;
 import org.apache.pinot.core.segment.virtualcolumn.VirtualColumnProviderFactory;
 import org.apache.pinot.core.startree.v2.StarTreeV2;
+import org.apache.pinot.core.upsert.PartitionUpsertMetadataManager;
 import org.apache.pinot.core.util.FixedIntArray;
 import org.apache.pinot.core.util.FixedIntArrayOffHeapIdMap;
 import org.apache.pinot.core.util.IdMap;
@@ -108,6 +112,10 @@ public class MutableSegmentImpl implements MutableSegment {
   private final int _partitionId;
   private final boolean _nullHandlingEnabled;
 
+  // For upsert
+  private final PartitionUpsertMetadataManager _partitionUpsertMetadataManager;
+  private final ThreadSafeMutableRoaringBitmap _validDocIds;
+
   // TODO: Keep one map to store all these info
   private final Map<String, NumValuesInfo> _numValuesInfoMap = new HashMap<>();
   private final Map<String, BaseMutableDictionary> _dictionaryMap = new HashMap<>();
@@ -168,6 +176,8 @@ public class MutableSegmentImpl implements MutableSegment {
     _partitionFunction = config.getPartitionFunction();
     _partitionId = config.getPartitionId();
     _nullHandlingEnabled = config.isNullHandlingEnabled();
+    _partitionUpsertMetadataManager = config.getPartitionUpsertMetadataManager();
+    _validDocIds = _partitionUpsertMetadataManager != null ? new ThreadSafeMutableRoaringBitmap() : null;
 
     Collection<FieldSpec> allFieldSpecs = _schema.getAllFieldSpecs();
     List<FieldSpec> physicalFieldSpecs = new ArrayList<>(allFieldSpecs.size());
@@ -200,6 +210,7 @@ public class MutableSegmentImpl implements MutableSegment {
         LoggerFactory.getLogger(MutableSegmentImpl.class.getName() + "_" + _segmentName + "_" + config.getStreamName());
 
     Set<String> noDictionaryColumns = config.getNoDictionaryColumns();
+    Map<String, String> noDictionaryConfig = config.getNoDictionaryConfig();
     Set<String> invertedIndexColumns = config.getInvertedIndexColumns();
     Set<String> textIndexColumns = config.getTextIndexColumns();
 
@@ -258,9 +269,16 @@ public class MutableSegmentImpl implements MutableSegment {
         int initialCapacity = Math.min(_capacity, NODICT_VARIABLE_WIDTH_ESTIMATED_NUMBER_OF_VALUES_DEFAULT);
         String allocationContext =
             buildAllocationContext(_segmentName, column, V1Constants.Indexes.UNSORTED_SV_FORWARD_INDEX_FILE_EXTENSION);
-        indexReaderWriter =
-            new VarByteSingleColumnSingleValueReaderWriter(_memoryManager, allocationContext, initialCapacity,
-                NODICT_VARIABLE_WIDTH_ESTIMATED_AVERAGE_VALUE_LENGTH_DEFAULT);
+        String compressionType = noDictionaryConfig.get(column);
+        if (compressionType != null) {
+          // Store the values in chunks compressed once full with the same codec as the raw index of the built segment
+          indexReaderWriter = new VarByteChunkSingleColumnSingleValueReaderWriter(_memoryManager, allocationContext,
+              ChunkCompressorFactory.CompressionType.valueOf(compressionType));
+        } else {
+          indexReaderWriter =
+              new VarByteSingleColumnSingleValueReaderWriter(_memoryManager, allocationContext, initialCapacity,
+                  NODICT_VARIABLE_WIDTH_ESTIMATED_AVERAGE_VALUE_LENGTH_DEFAULT);
+        }
       } else {
         // two possible cases can lead here:
         // (1) dictionary encoded forward index
@@ -384,6 +402,10 @@ public class MutableSegmentImpl implements MutableSegment {
 
       // Update number of document indexed at last to make the latest record queryable
       canTakeMore = _numDocsIndexed++ < _capacity;
+
+      if (_partitionUpsertMetadataManager != null) {
+        addUpsertRecord(row, docId);
+      }
     } else {
       Preconditions
           .checkState(_aggregateMetrics, "Invalid document-id during indexing: " + docId + " expected: " + numDocs);
@@ -399,6 +421,164 @@ public class MutableSegmentImpl implements MutableSegment {
     return canTakeMore;
   }
 
+  /**
+   * {@inheritDoc}
+   * <p>The records are transposed into columns, and each column is indexed in a tight loop: bulk dictionary lookups,
+   * then forward index writes for all the records. The inverted indexes are updated after all the forward indexes, and
+   * the number of documents indexed is updated at last to make all the records in the batch queryable at once.
+   * <p>When metrics aggregation is enabled, the records are indexed one by one because each of them needs to look up
+   * the existing document id.
+   */
+  @Override
+  public boolean index(List<GenericRow> rows, @Nullable RowMetadata rowMetadata) {
+    int numRows = rows.size();
+    if (_aggregateMetrics && numRows > 0) {
+      for (int i = 0; i < numRows - 1; i++) {
+        index(rows.get(i), null);
+      }
+      return index(rows.get(numRows - 1), rowMetadata);
+    }
+
+    int startDocId = _numDocsIndexed;
+    if (numRows > 0) {
+      Object[] values = new Object[numRows];
+      Map<String, Object> dictIdsMap = new HashMap<>();
+
+      // Update dictionary and forward index column by column
+      for (FieldSpec fieldSpec : _physicalFieldSpecs) {
+        String column = fieldSpec.getName();
+        for (int i = 0; i < numRows; i++) {
+          values[i] = rows.get(i).getValue(column);
+        }
+        BaseMutableDictionary dictionary = _dictionaryMap.get(column);
+        NumValuesInfo numValuesInfo = _numValuesInfoMap.get(column);
+        if (fieldSpec.isSingleValueField()) {
+          if (isTimeColumn(fieldSpec)) {
+            for (Object value : values) {
+              updateMinMaxTime(value);
+            }
+          }
+          BaseSingleColumnSingleValueReaderWriter indexReaderWriter =
+              (BaseSingleColumnSingleValueReaderWriter) _indexReaderWriterMap.get(column);
+          if (dictionary != null) {
+            // SV column with dictionary
+            int[] dictIds = dictionary.index(values);
+            for (int i = 0; i < numRows; i++) {
+              indexReaderWriter.setInt(startDocId + i, dictIds[i]);
+            }
+            dictIdsMap.put(column, dictIds);
+          } else {
+            // No-dictionary SV column
+            addRawForwardIndex(fieldSpec, indexReaderWriter, startDocId, values);
+          }
+          numValuesInfo.updateSVEntries(numRows);
+        } else {
+          // MV column: always dictionary encoded
+          FixedByteSingleColumnMultiValueReaderWriter indexReaderWriter =
+              (FixedByteSingleColumnMultiValueReaderWriter) _indexReaderWriterMap.get(column);
+          int[][] dictIdsArray = new int[numRows][];
+          for (int i = 0; i < numRows; i++) {
+            int[] dictIds = dictionary.index((Object[]) values[i]);
+            indexReaderWriter.setIntArray(startDocId + i, dictIds);
+            numValuesInfo.updateMVEntry(dictIds.length);
+            dictIdsArray[i] = dictIds;
+          }
+          dictIdsMap.put(column, dictIdsArray);
+        }
+      }
+
+      // Update inverted index after all the forward indexes
+      for (FieldSpec fieldSpec : _physicalFieldSpecs) {
+        String column = fieldSpec.getName();
+        InvertedIndexReader invertedIndex = _invertedIndexMap.get(column);
+        if (invertedIndex != null) {
+          if (invertedIndex instanceof RealtimeLuceneTextIndexReader) {
+            RealtimeLuceneTextIndexReader textIndexReader = (RealtimeLuceneTextIndexReader) invertedIndex;
+            for (int i = 0; i < numRows; i++) {
+              textIndexReader.addDoc(rows.get(i).getValue(column), startDocId + i);
+            }
+          } else {
+            RealtimeInvertedIndexReader realtimeInvertedIndexReader = (RealtimeInvertedIndexReader) invertedIndex;
+            if (fieldSpec.isSingleValueField()) {
+              realtimeInvertedIndexReader.add((int[]) dictIdsMap.get(column), startDocId);
+            } else {
+              int[][] dictIdsArray = (int[][]) dictIdsMap.get(column);
+              for (int i = 0; i < numRows; i++) {
+                for (int dictId : dictIdsArray[i]) {
+                  realtimeInvertedIndexReader.add(dictId, startDocId + i);
+                }
+              }
+            }
+          }
+        }
+      }
+
+      if (_nullHandlingEnabled) {
+        for (int i = 0; i < numRows; i++) {
+          handleNullValues(rows.get(i), startDocId + i);
+        }
+      }
+
+      // Update number of document indexed at last to make the records in the batch queryable
+      _numDocsIndexed = startDocId + numRows;
+      _lastIndexedTimeMs = System.currentTimeMillis();
+
+      if (_partitionUpsertMetadataManager != null) {
+        for (int i = 0; i < numRows; i++) {
+          addUpsertRecord(rows.get(i), startDocId + i);
+        }
+      }
+    }
+
+    if (rowMetadata != null && rowMetadata.getIngestionTimeMs() != Long.MIN_VALUE) {
+      _latestIngestionTimeMs = Math.max(_latestIngestionTimeMs, rowMetadata.getIngestionTimeMs());
+    }
+    // Same as indexing the records one by one, where the last record returns whether the segment could take more
+    // before it is indexed
+    return startDocId + numRows <= _capacity;
+  }
+
+  private void addRawForwardIndex(FieldSpec fieldSpec, BaseSingleColumnSingleValueReaderWriter indexReaderWriter,
+      int startDocId, Object[] values) {
+    int numValues = values.length;
+    FieldSpec.DataType dataType = fieldSpec.getDataType();
+    switch (dataType) {
+      case INT:
+        for (int i = 0; i < numValues; i++) {
+          indexReaderWriter.setInt(startDocId + i, (Integer) values[i]);
+        }
+        break;
+      case LONG:
+        for (int i = 0; i < numValues; i++) {
+          indexReaderWriter.setLong(startDocId + i, (Long) values[i]);
+        }
+        break;
+      case FLOAT:
+        for (int i = 0; i < numValues; i++) {
+          indexReaderWriter.setFloat(startDocId + i, (Float) values[i]);
+        }
+        break;
+      case DOUBLE:
+        for (int i = 0; i < numValues; i++) {
+          indexReaderWriter.setDouble(startDocId + i, (Double) values[i]);
+        }
+        break;
+      case STRING:
+        for (int i = 0; i < numValues; i++) {
+          indexReaderWriter.setString(startDocId + i, (String) values[i]);
+        }
+        break;
+      case BYTES:
+        for (int i = 0; i < numValues; i++) {
+          indexReaderWriter.setBytes(startDocId + i, (byte[]) values[i]);
+        }
+        break;
+      default:
+        throw new UnsupportedOperationException(
+            "Unsupported data type: " + dataType + " for no-dictionary column: " + fieldSpec.getName());
+    }
+  }
+
   private Map<String, Object> updateDictionary(GenericRow row) {
     Map<String, Object> dictIdMap = new HashMap<>();
     for (FieldSpec fieldSpec : _physicalFieldSpecs) {
@@ -419,26 +599,34 @@ public class MutableSegmentImpl implements MutableSegment {
       }
 
       // Update min/max value for time column
-      FieldSpec.FieldType fieldType = fieldSpec.getFieldType();
-      if (fieldType.equals(FieldSpec.FieldType.TIME) || fieldType.equals(FieldSpec.FieldType.DATE_TIME)) {
-        long timeValue;
-        if (value instanceof Number) {
-          timeValue = ((Number) value).longValue();
-          _minTime = Math.min(_minTime, timeValue);
-          _maxTime = Math.max(_maxTime, timeValue);
-        } else {
-          String stringValue = value.toString();
-          if (StringUtils.isNumeric(stringValue)) {
-            timeValue = Long.parseLong(stringValue);
-            _minTime = Math.min(_minTime, timeValue);
-            _maxTime = Math.max(_maxTime, timeValue);
-          }
-        }
+      if (isTimeColumn(fieldSpec)) {
+        updateMinMaxTime(value);
       }
     }
     return dictIdMap;
   }
 
+  private static boolean isTimeColumn(FieldSpec fieldSpec) {
+    FieldSpec.FieldType fieldType = fieldSpec.getFieldType();
+    return fieldType.equals(FieldSpec.FieldType.TIME) || fieldType.equals(FieldSpec.FieldType.DATE_TIME);
+  }
+
+  private void updateMinMaxTime(Object value) {
+    long timeValue;
+    if (value instanceof Number) {
+      timeValue = ((Number) value).longValue();
+      _minTime = Math.min(_minTime, timeValue);
+      _maxTime = Math.max(_maxTime, timeValue);
+    } else {
+      String stringValue = value.toString();
+      if (StringUtils.isNumeric(stringValue)) {
+        timeValue = Long.parseLong(stringValue);
+        _minTime = Math.min(_minTime, timeValue);
+        _maxTime = Math.max(_maxTime, timeValue);
+      }
+    }
+  }
+
   private void addForwardIndex(GenericRow row, int docId, Map<String, Object> dictIdMap) {
     // Store dictionary Id(s) for columns with dictionary
     for (FieldSpec fieldSpec : _physicalFieldSpecs) {
@@ -628,11 +816,27 @@ public class MutableSegmentImpl implements MutableSegment {
     }
   }
 
+  /**
+   * Adds the record to the upsert metadata after it is indexed, which updates the valid document ids if it is the
+   * latest record for its primary key.
+   */
+  private void addUpsertRecord(GenericRow row, int docId) {
+    Object primaryKey = row.getValue(_partitionUpsertMetadataManager.getPrimaryKeyColumn());
+    long offset = ((Number) row.getValue(_partitionUpsertMetadataManager.getOffsetColumn())).longValue();
+    _partitionUpsertMetadataManager.addRecord(this, primaryKey, docId, offset);
+  }
+
   @Override
   public List<StarTreeV2> getStarTrees() {
     return null;
   }
 
+  @Nullable
+  @Override
+  public ThreadSafeMutableRoaringBitmap getValidDocIds() {
+    return _validDocIds;
+  }
+
   /**
    * Returns a record that contains only physical columns
    * @param docId document ID
@@ -764,7 +968,7 @@ public class MutableSegmentImpl implements MutableSegment {
     int[] docIds = new int[_numDocsIndexed];
     int docIdIndex = 0;
     for (int dictId : dictIds) {
-      IntIterator intIterator = invertedIndex.getDocIds(dictId).getIntIterator();
+      IntIterator intIterator = invertedIndex.getDocIdIterator(dictId);
       while (intIterator.hasNext()) {
         docIds[docIdIndex++] = intIterator.next();
       }
@@ -913,6 +1117,10 @@ public class MutableSegmentImpl implements MutableSegment {
       _numValues++;
     }
 
+    void updateSVEntries(int numSVEntries) {
+      _numValues += numSVEntries;
+    }
+
     void updateMVEntry(int numValuesInMVEntry) {
       _numValues += numValuesInMVEntry;
       _maxNumValuesPerMVEntry = Math.max(_maxNumValuesPerMVEntry, numValuesInMVEntry);
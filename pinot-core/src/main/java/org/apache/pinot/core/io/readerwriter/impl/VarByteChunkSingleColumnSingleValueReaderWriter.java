@@ -0,0 +1,312 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.core.io.readerwriter.impl;
+
+import com.google.common.base.Preconditions;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.pinot.common.utils.StringUtil;
+import org.apache.pinot.core.io.compression.ChunkCompressor;
+import org.apache.pinot.core.io.compression.ChunkCompressorFactory;
+import org.apache.pinot.core.io.compression.ChunkDecompressor;
+import org.apache.pinot.core.io.readerwriter.BaseSingleColumnSingleValueReaderWriter;
+import org.apache.pinot.core.io.readerwriter.PinotDataBufferMemoryManager;
+import org.apache.pinot.core.segment.memory.PinotDataBuffer;
+
+
+/**
+ * Raw forward index for var-length (STRING/BYTES) single-value columns of consuming segments, which stores the values
+ * in compressed chunks of a fixed number of rows.
+ * <p>The values of the active (last) chunk are kept uncompressed on heap. Once the chunk is full and the next row is
+ * written, it is sealed: the values are serialized as {@code [value offsets][values]}, compressed with the
+ * {@link ChunkCompressorFactory} codec, and appended to off-heap pages allocated from the memory manager. Readers decompress
+ * the sealed chunks on demand through a per-thread cache of the last decompressed chunk, shared by all the instances.
+ * <p>Values must be written in row order by a single writer, while multiple readers can read the rows already
+ * written. Rows of the active chunk can be overwritten, but the rows of the sealed chunks are immutable.
+ */
+public class VarByteChunkSingleColumnSingleValueReaderWriter extends BaseSingleColumnSingleValueReaderWriter {
+  public static final int DEFAULT_NUM_ROWS_PER_CHUNK = 1024;
+
+  private static final int MIN_PAGE_SIZE = 256 * 1024;
+  private static final int INITIAL_NUM_CHUNKS = 64;
+  private static final AtomicLong ID_GENERATOR = new AtomicLong();
+  private static final ThreadLocal<DecompressedChunk> CHUNK_CACHE = ThreadLocal.withInitial(DecompressedChunk::new);
+
+  private final long _id = ID_GENERATOR.getAndIncrement();
+  private final PinotDataBufferMemoryManager _memoryManager;
+  private final String _allocationContext;
+  private final int _numRowsPerChunk;
+  private final ChunkCompressor _compressor;
+  private final ChunkDecompressor _decompressor;
+
+  // Published to the readers through the volatile fields, the sealed chunks are immutable
+  private volatile SealedChunk[] _sealedChunks = new SealedChunk[INITIAL_NUM_CHUNKS];
+  private volatile ActiveChunk _activeChunk;
+
+  // Writer only
+  private int _numSealedChunks;
+  private int _activeChunkNumRows;
+  private int _activeChunkNumBytes;
+  private PinotDataBuffer _currentPage;
+  private int _currentPageOffset;
+  private ByteBuffer _uncompressedBuffer = ByteBuffer.allocateDirect(0);
+  private ByteBuffer _compressedBuffer = ByteBuffer.allocateDirect(0);
+
+  private int _lengthOfShortestElement = Integer.MAX_VALUE;
+  private int _lengthOfLongestElement = Integer.MIN_VALUE;
+
+  public VarByteChunkSingleColumnSingleValueReaderWriter(PinotDataBufferMemoryManager memoryManager,
+      String allocationContext, ChunkCompressorFactory.CompressionType compressionType) {
+    this(memoryManager, allocationContext, compressionType, DEFAULT_NUM_ROWS_PER_CHUNK);
+  }
+
+  public VarByteChunkSingleColumnSingleValueReaderWriter(PinotDataBufferMemoryManager memoryManager,
+      String allocationContext, ChunkCompressorFactory.CompressionType compressionType, int numRowsPerChunk) {
+    _memoryManager = memoryManager;
+    _allocationContext = allocationContext;
+    _numRowsPerChunk = numRowsPerChunk;
+    _compressor = ChunkCompressorFactory.getCompressor(compressionType);
+    _decompressor = ChunkCompressorFactory.getDecompressor(compressionType);
+    _activeChunk = new ActiveChunk(0, numRowsPerChunk);
+  }
+
+  @Override
+  public int getLengthOfShortestElement() {
+    return _lengthOfShortestElement;
+  }
+
+  @Override
+  public int getLengthOfLongestElement() {
+    return _lengthOfLongestElement;
+  }
+
+  @Override
+  public void setString(int row, String val) {
+    setBytes(row, StringUtil.encodeUtf8(val));
+  }
+
+  @Override
+  public String getString(int row) {
+    return StringUtil.decodeUtf8(getBytes(row));
+  }
+
+  @Override
+  public void setBytes(int row, byte[] value) {
+    if (_activeChunkNumRows == _numRowsPerChunk && row == (_numSealedChunks + 1) * _numRowsPerChunk) {
+      try {
+        sealActiveChunk();
+      } catch (IOException e) {
+        throw new UncheckedIOException("Caught exception while compressing chunk for: " + _allocationContext, e);
+      }
+    }
+    int rowInChunk = row - _numSealedChunks * _numRowsPerChunk;
+    Preconditions.checkArgument(rowInChunk >= 0 && rowInChunk <= _activeChunkNumRows && rowInChunk < _numRowsPerChunk,
+        "Cannot set row: %s (expected next row: %s, or a row of the active chunk) for: %s", row,
+        _numSealedChunks * _numRowsPerChunk + _activeChunkNumRows, _allocationContext);
+    byte[][] values = _activeChunk._values;
+    if (rowInChunk < _activeChunkNumRows) {
+      // Overwrite the value of a row already written
+      _activeChunkNumBytes += value.length - values[rowInChunk].length;
+      values[rowInChunk] = value;
+    } else {
+      values[_activeChunkNumRows++] = value;
+      _activeChunkNumBytes += value.length;
+    }
+    _lengthOfLongestElement = Math.max(_lengthOfLongestElement, value.length);
+    _lengthOfShortestElement = Math.min(_lengthOfShortestElement, value.length);
+  }
+
+  @Override
+  public byte[] getBytes(int row) {
+    int chunkId = row / _numRowsPerChunk;
+    int rowInChunk = row % _numRowsPerChunk;
+    ActiveChunk activeChunk = _activeChunk;
+    if (chunkId == activeChunk._chunkId) {
+      return activeChunk._values[rowInChunk];
+    }
+
+    ByteBuffer chunkBuffer;
+    try {
+      chunkBuffer = getDecompressedChunk(chunkId);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Caught exception while decompressing chunk for: " + _allocationContext, e);
+    }
+    int valueStartOffset = chunkBuffer.getInt(rowInChunk * Integer.BYTES);
+    int valueEndOffset =
+        rowInChunk == _numRowsPerChunk - 1 ? chunkBuffer.limit() : chunkBuffer.getInt((rowInChunk + 1) * Integer.BYTES);
+    byte[] value = new byte[valueEndOffset - valueStartOffset];
+    chunkBuffer.position(valueStartOffset);
+    chunkBuffer.get(value);
+    return value;
+  }
+
+  /**
+   * Compresses the values of the full active chunk into the current page, then publishes the sealed chunk and a new
+   * active chunk. The values of the previous active chunk are left untouched for the readers still holding it.
+   */
+  private void sealActiveChunk()
+      throws IOException {
+    int uncompressedSize = _numRowsPerChunk * Integer.BYTES + _activeChunkNumBytes;
+    if (_uncompressedBuffer.capacity() < uncompressedSize) {
+      _uncompressedBuffer = ByteBuffer.allocateDirect(uncompressedSize);
+    }
+    _uncompressedBuffer.clear();
+    byte[][] values = _activeChunk._values;
+    int valueOffset = _numRowsPerChunk * Integer.BYTES;
+    for (byte[] value : values) {
+      _uncompressedBuffer.putInt(valueOffset);
+      valueOffset += value.length;
+    }
+    for (byte[] value : values) {
+      _uncompressedBuffer.put(value);
+    }
+    _uncompressedBuffer.flip();
+
+    // Leave enough room for incompressible data (snappy adds at most 32 + size / 6 bytes)
+    int maxCompressedSize = uncompressedSize + uncompressedSize / 2 + 64;
+    if (_compressedBuffer.capacity() < maxCompressedSize) {
+      _compressedBuffer = ByteBuffer.allocateDirect(maxCompressedSize);
+    }
+    _compressedBuffer.clear();
+    int compressedSize = _compressor.compress(_uncompressedBuffer, _compressedBuffer);
+
+    if (_currentPage == null || _currentPageOffset + compressedSize > _currentPage.size()) {
+      _currentPage = _memoryManager.allocate(Math.max(MIN_PAGE_SIZE, compressedSize), _allocationContext);
+      _currentPageOffset = 0;
+    }
+    _currentPage.readFrom(_currentPageOffset, _compressedBuffer);
+
+    SealedChunk[] sealedChunks = _sealedChunks;
+    if (_numSealedChunks == sealedChunks.length) {
+      sealedChunks = Arrays.copyOf(sealedChunks, sealedChunks.length * 2);
+    }
+    sealedChunks[_numSealedChunks] =
+        new SealedChunk(_currentPage, _currentPageOffset, compressedSize, uncompressedSize);
+    _sealedChunks = sealedChunks;
+    _currentPageOffset += compressedSize;
+    _numSealedChunks++;
+
+    _activeChunk = new ActiveChunk(_numSealedChunks, _numRowsPerChunk);
+    _activeChunkNumRows = 0;
+    _activeChunkNumBytes = 0;
+  }
+
+  private ByteBuffer getDecompressedChunk(int chunkId)
+      throws IOException {
+    DecompressedChunk decompressedChunk = CHUNK_CACHE.get();
+    if (decompressedChunk._readerWriterId == _id && decompressedChunk._chunkId == chunkId) {
+      return decompressedChunk._buffer;
+    }
+
+    SealedChunk sealedChunk = _sealedChunks[chunkId];
+    ByteBuffer buffer = decompressedChunk._buffer;
+    if (buffer == null || buffer.capacity() < sealedChunk._uncompressedSize) {
+      buffer = ByteBuffer.allocateDirect(sealedChunk._uncompressedSize);
+      decompressedChunk._buffer = buffer;
+    }
+    buffer.clear();
+    // Invalidate the cache before decompressing in case of failure
+    decompressedChunk._readerWriterId = -1;
+    _decompressor.decompress(sealedChunk._page.toDirectByteBuffer(sealedChunk._offset, sealedChunk._compressedSize),
+        buffer);
+    decompressedChunk._readerWriterId = _id;
+    decompressedChunk._chunkId = chunkId;
+    return buffer;
+  }
+
+  @Override
+  public void close() {
+    // The pages are released by the memory manager
+    _sealedChunks = new SealedChunk[0];
+    _currentPage = null;
+  }
+
+  @Override
+  public void setInt(int row, int i) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public int getInt(int row) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public void setLong(int row, long l) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public long getLong(int row) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public void setFloat(int row, float f) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public float getFloat(int row) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public void setDouble(int row, double d) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public double getDouble(int row) {
+    throw new UnsupportedOperationException();
+  }
+
+  private static class ActiveChunk {
+    final int _chunkId;
+    final byte[][] _values;
+
+    ActiveChunk(int chunkId, int numRowsPerChunk) {
+      _chunkId = chunkId;
+      _values = new byte[numRowsPerChunk][];
+    }
+  }
+
+  private static class SealedChunk {
+    final PinotDataBuffer _page;
+    final int _offset;
+    final int _compressedSize;
+    final int _uncompressedSize;
+
+    SealedChunk(PinotDataBuffer page, int offset, int compressedSize, int uncompressedSize) {
+      _page = page;
+      _offset = offset;
+      _compressedSize = compressedSize;
+      _uncompressedSize = uncompressedSize;
+    }
+  }
+
+  private static class DecompressedChunk {
+    long _readerWriterId = -1;
+    int _chunkId;
+    ByteBuffer _buffer;
+  }
+}
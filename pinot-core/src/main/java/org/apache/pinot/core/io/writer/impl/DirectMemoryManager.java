@@ -20,19 +20,34 @@ package org.apache.pinot.core.io.writer.impl;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.yammer.metrics.core.MetricsRegistry;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import javax.annotation.Nullable;
 import org.apache.pinot.common.metrics.ServerMetrics;
 import org.apache.pinot.core.io.readerwriter.RealtimeIndexOffHeapMemoryManager;
 import org.apache.pinot.core.segment.memory.PinotDataBuffer;
 
 
-// Allocates memory using direct allocation
+// Allocates memory using direct allocation, recycling the buffers through the buffer pool if configured
 public class DirectMemoryManager extends RealtimeIndexOffHeapMemoryManager {
+  private final RealtimeOffHeapBufferPool _bufferPool;
+  private final List<PinotDataBuffer> _pooledBuffers = new ArrayList<>();
 
   /**
    * @see RealtimeIndexOffHeapMemoryManager
    */
   public DirectMemoryManager(final String segmentName, ServerMetrics serverMetrics) {
+    this(segmentName, serverMetrics, null);
+  }
+
+  /**
+   * @see RealtimeIndexOffHeapMemoryManager
+   */
+  public DirectMemoryManager(final String segmentName, ServerMetrics serverMetrics,
+      @Nullable RealtimeOffHeapBufferPool bufferPool) {
     super(serverMetrics, segmentName);
+    _bufferPool = bufferPool;
   }
 
   @VisibleForTesting
@@ -44,17 +59,27 @@ public class DirectMemoryManager extends RealtimeIndexOffHeapMemoryManager {
    *
    * @param size size of memory
    * @param allocationContext String describing context of allocation (typically segment:column name).
-   * @return PinotDataBuffer via direct allocation
+   * @return PinotDataBuffer via direct allocation, or a view of the requested size on a pooled buffer
    *
    * @see RealtimeIndexOffHeapMemoryManager#allocate(long, String)
    */
   @Override
   protected PinotDataBuffer allocateInternal(long size, String allocationContext) {
-    return PinotDataBuffer.allocateDirect(size, PinotDataBuffer.NATIVE_ORDER, allocationContext);
+    if (_bufferPool == null) {
+      return PinotDataBuffer.allocateDirect(size, PinotDataBuffer.NATIVE_ORDER, allocationContext);
+    }
+    PinotDataBuffer buffer = _bufferPool.acquire(size, allocationContext);
+    _pooledBuffers.add(buffer);
+    return buffer.view(0, size);
   }
 
   @Override
-  protected void doClose() {
-    // Nothing to do.
+  protected void doClose()
+      throws IOException {
+    // Views on the pooled buffers are not closeable, return the underlying buffers to the pool
+    for (PinotDataBuffer buffer : _pooledBuffers) {
+      _bufferPool.release(buffer);
+    }
+    _pooledBuffers.clear();
   }
 }
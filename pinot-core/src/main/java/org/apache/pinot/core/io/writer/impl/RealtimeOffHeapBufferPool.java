@@ -0,0 +1,124 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.core.io.writer.impl;
+
+import com.google.common.base.Preconditions;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.pinot.core.segment.memory.PinotDataBuffer;
+
+
+/**
+ * Server-wide pool of direct buffers recycled across consuming segments.
+ * <p>Buffers are allocated in size classes (power of 2 with quarter steps, so at most 25% larger than requested), and
+ * returned to the pool instead of being freed when the consuming segment is destroyed, so that the segments rolling
+ * over at the same time do not cause allocation spikes and memory fragmentation. Recycled buffers are zeroed before
+ * being handed out again, and buffers beyond the max pool size are freed.
+ */
+public class RealtimeOffHeapBufferPool {
+  private static final long MIN_SIZE_CLASS = 4096L;
+  private static final byte[] ZERO_BYTES = new byte[64 * 1024];
+
+  private final long _maxSizeInBytes;
+  private final Map<Long, Queue<PinotDataBuffer>> _freeBuffers = new ConcurrentHashMap<>();
+  private final AtomicLong _sizeInBytes = new AtomicLong();
+  private final AtomicLong _numHits = new AtomicLong();
+  private final AtomicLong _numMisses = new AtomicLong();
+
+  public RealtimeOffHeapBufferPool(long maxSizeInBytes) {
+    Preconditions.checkArgument(maxSizeInBytes > 0, "Max size of the buffer pool must be positive");
+    _maxSizeInBytes = maxSizeInBytes;
+  }
+
+  /**
+   * Returns a buffer of at least the given size with native byte order, recycled from the pool if available. The
+   * first {@code size} bytes of a recycled buffer are zeroed.
+   * <p>The buffer must be returned with {@link #release(PinotDataBuffer)} once it is no longer in use.
+   */
+  public PinotDataBuffer acquire(long size, String allocationContext) {
+    long sizeClass = getSizeClass(size);
+    Queue<PinotDataBuffer> freeBuffers = _freeBuffers.get(sizeClass);
+    PinotDataBuffer buffer = freeBuffers != null ? freeBuffers.poll() : null;
+    if (buffer != null) {
+      _sizeInBytes.addAndGet(-sizeClass);
+      _numHits.getAndIncrement();
+      clear(buffer, size);
+      return buffer;
+    }
+    _numMisses.getAndIncrement();
+    return PinotDataBuffer.allocateDirect(sizeClass, PinotDataBuffer.NATIVE_ORDER, allocationContext);
+  }
+
+  /**
+   * Returns a buffer acquired from the pool, or frees it if the pool is full.
+   */
+  public void release(PinotDataBuffer buffer)
+      throws IOException {
+    long sizeClass = buffer.size();
+    if (_sizeInBytes.addAndGet(sizeClass) <= _maxSizeInBytes) {
+      _freeBuffers.computeIfAbsent(sizeClass, k -> new ConcurrentLinkedQueue<>()).offer(buffer);
+    } else {
+      _sizeInBytes.addAndGet(-sizeClass);
+      buffer.close();
+    }
+  }
+
+  /**
+   * Rounds the size up to the next size class, where each power of 2 range is split into 4 size classes.
+   */
+  static long getSizeClass(long size) {
+    if (size <= MIN_SIZE_CLASS) {
+      return MIN_SIZE_CLASS;
+    }
+    int highestBit = 63 - Long.numberOfLeadingZeros(size - 1);
+    long step = 1L << (highestBit - 2);
+    return ((size - 1) / step + 1) * step;
+  }
+
+  private static void clear(PinotDataBuffer buffer, long size) {
+    for (long offset = 0; offset < size; offset += ZERO_BYTES.length) {
+      buffer.readFrom(offset, ZERO_BYTES, 0, (int) Math.min(ZERO_BYTES.length, size - offset));
+    }
+  }
+
+  public long getSizeInBytes() {
+    return _sizeInBytes.get();
+  }
+
+  public long getNumHits() {
+    return _numHits.get();
+  }
+
+  public long getNumMisses() {
+    return _numMisses.get();
+  }
+
+  /**
+   * Returns the percentage of the allocations served from the pool.
+   */
+  public long getHitRatePercent() {
+    long numHits = _numHits.get();
+    long numRequests = numHits + _numMisses.get();
+    return numRequests > 0 ? numHits * 100 / numRequests : 0;
+  }
+}
@@ -21,6 +21,7 @@ package org.apache.pinot.core.operator;
 import org.apache.pinot.core.common.Block;
 import org.apache.pinot.core.common.Operator;
 import org.apache.pinot.core.query.exception.EarlyTerminationException;
+import org.apache.pinot.core.query.request.context.QueryCancellationToken;
 import org.apache.pinot.core.util.trace.TraceContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -34,7 +35,7 @@ public abstract class BaseOperator<T extends Block> implements Operator<T> {
 
   @Override
   public final T nextBlock() {
-    if (Thread.interrupted()) {
+    if (Thread.interrupted() || QueryCancellationToken.isCurrentQueryCancelled()) {
       throw new EarlyTerminationException();
     }
     if (TraceContext.traceEnabled()) {
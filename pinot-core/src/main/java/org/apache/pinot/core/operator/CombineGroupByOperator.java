@@ -44,6 +44,7 @@ import org.apache.pinot.core.query.aggregation.groupby.AggregationGroupByResult;
 import org.apache.pinot.core.query.aggregation.groupby.AggregationGroupByTrimmingService;
 import org.apache.pinot.core.query.aggregation.groupby.GroupKeyGenerator;
 import org.apache.pinot.core.query.exception.EarlyTerminationException;
+import org.apache.pinot.core.query.request.context.QueryResourceTracker;
 import org.apache.pinot.core.util.trace.TraceRunnable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -55,6 +56,8 @@ import org.slf4j.LoggerFactory;
 public class CombineGroupByOperator extends BaseOperator<IntermediateResultsBlock> {
   private static final Logger LOGGER = LoggerFactory.getLogger(CombineGroupByOperator.class);
   private static final String OPERATOR_NAME = "CombineGroupByOperator";
+  // Number of groups merged between resource usage samples (must be power of 2)
+  private static final int NUM_GROUPS_PER_RESOURCE_SAMPLE = 1 << 14;
 
   // Use a higher limit for groups stored across segments. For most cases, most groups from each segment should be the
   // same, thus the total number of groups across segments should be equal or slightly higher than the number of groups
@@ -69,9 +72,16 @@ public class CombineGroupByOperator extends BaseOperator<IntermediateResultsBloc
   // Limit on number of groups stored, beyond which no new group will be created
   private final int _innerSegmentNumGroupsLimit;
   private final int _interSegmentNumGroupsLimit;
+  private final int _maxNumThreads;
 
   public CombineGroupByOperator(List<Operator> operators, BrokerRequest brokerRequest, ExecutorService executorService,
       long timeOutMs, int innerSegmentNumGroupsLimit) {
+    this(operators, brokerRequest, executorService, timeOutMs, innerSegmentNumGroupsLimit,
+        CombineOperator.MAX_NUM_THREADS_PER_QUERY);
+  }
+
+  public CombineGroupByOperator(List<Operator> operators, BrokerRequest brokerRequest, ExecutorService executorService,
+      long timeOutMs, int innerSegmentNumGroupsLimit, int maxNumThreads) {
     Preconditions.checkArgument(brokerRequest.isSetAggregationsInfo() && brokerRequest.isSetGroupBy());
 
     _operators = operators;
@@ -81,6 +91,7 @@ public class CombineGroupByOperator extends BaseOperator<IntermediateResultsBloc
     _innerSegmentNumGroupsLimit = innerSegmentNumGroupsLimit;
     _interSegmentNumGroupsLimit =
         (int) Math.min((long) innerSegmentNumGroupsLimit * INTER_SEGMENT_NUM_GROUPS_LIMIT_FACTOR, Integer.MAX_VALUE);
+    _maxNumThreads = Math.max(1, maxNumThreads);
   }
 
   /**
@@ -124,11 +135,13 @@ public class CombineGroupByOperator extends BaseOperator<IntermediateResultsBloc
     // segments can be released after the main thread returns, which would lead to undefined behavior (even JVM crash)
     // when executing queries against them.
     int numOperators = _operators.size();
-    CountDownLatch operatorLatch = new CountDownLatch(numOperators);
+    // Try to use all the threads available for the query, but ensure each thread has at least one operator
+    int numThreads = Math.min(numOperators, _maxNumThreads);
+    CountDownLatch operatorLatch = new CountDownLatch(numThreads);
     Phaser phaser = new Phaser(1);
 
-    Future[] futures = new Future[numOperators];
-    for (int i = 0; i < numOperators; i++) {
+    Future[] futures = new Future[numThreads];
+    for (int i = 0; i < numThreads; i++) {
       int index = i;
       futures[i] = _executorService.submit(new TraceRunnable() {
         @SuppressWarnings("unchecked")
@@ -143,47 +156,64 @@ public class CombineGroupByOperator extends BaseOperator<IntermediateResultsBloc
               return;
             }
 
-            IntermediateResultsBlock intermediateResultsBlock =
-                (IntermediateResultsBlock) _operators.get(index).nextBlock();
+            for (int operatorIndex = index; operatorIndex < numOperators; operatorIndex += numThreads) {
+              try {
+                IntermediateResultsBlock intermediateResultsBlock =
+                    (IntermediateResultsBlock) _operators.get(operatorIndex).nextBlock();
+                // Account the resource usage after processing each segment so that the budget can be enforced
+                QueryResourceTracker.sampleCurrentThread();
 
-            // Merge processing exceptions.
-            List<ProcessingException> processingExceptionsToMerge = intermediateResultsBlock.getProcessingExceptions();
-            if (processingExceptionsToMerge != null) {
-              mergedProcessingExceptions.addAll(processingExceptionsToMerge);
-            }
+                // Merge processing exceptions.
+                List<ProcessingException> processingExceptionsToMerge =
+                    intermediateResultsBlock.getProcessingExceptions();
+                if (processingExceptionsToMerge != null) {
+                  mergedProcessingExceptions.addAll(processingExceptionsToMerge);
+                }
 
-            // Merge aggregation group-by result.
-            AggregationGroupByResult aggregationGroupByResult = intermediateResultsBlock.getAggregationGroupByResult();
-            if (aggregationGroupByResult != null) {
-              // Iterate over the group-by keys, for each key, update the group-by result in the resultsMap.
-              Iterator<GroupKeyGenerator.GroupKey> groupKeyIterator = aggregationGroupByResult.getGroupKeyIterator();
-              while (groupKeyIterator.hasNext()) {
-                GroupKeyGenerator.GroupKey groupKey = groupKeyIterator.next();
-                resultsMap.compute(groupKey._stringKey, (key, value) -> {
-                  if (value == null) {
-                    if (numGroups.getAndIncrement() < _interSegmentNumGroupsLimit) {
-                      value = new Object[numAggregationFunctions];
-                      for (int i = 0; i < numAggregationFunctions; i++) {
-                        value[i] = aggregationGroupByResult.getResultForKey(groupKey, i);
-                      }
-                    }
-                  } else {
-                    for (int i = 0; i < numAggregationFunctions; i++) {
-                      value[i] = aggregationFunctions[i]
-                          .merge(value[i], aggregationGroupByResult.getResultForKey(groupKey, i));
+                // Merge aggregation group-by result.
+                AggregationGroupByResult aggregationGroupByResult =
+                    intermediateResultsBlock.getAggregationGroupByResult();
+                if (aggregationGroupByResult != null) {
+                  // Iterate over the group-by keys, for each key, update the group-by result in the resultsMap.
+                  Iterator<GroupKeyGenerator.GroupKey> groupKeyIterator =
+                      aggregationGroupByResult.getGroupKeyIterator();
+                  int numGroupsMerged = 0;
+                  while (groupKeyIterator.hasNext()) {
+                    if ((++numGroupsMerged & (NUM_GROUPS_PER_RESOURCE_SAMPLE - 1)) == 0) {
+                      QueryResourceTracker.sampleCurrentThread();
                     }
+                    GroupKeyGenerator.GroupKey groupKey = groupKeyIterator.next();
+                    resultsMap.compute(groupKey._stringKey, (key, value) -> {
+                      if (value == null) {
+                        if (numGroups.getAndIncrement() < _interSegmentNumGroupsLimit) {
+                          value = new Object[numAggregationFunctions];
+                          for (int i = 0; i < numAggregationFunctions; i++) {
+                            value[i] = aggregationGroupByResult.getResultForKey(groupKey, i);
+                          }
+                        }
+                      } else {
+                        for (int i = 0; i < numAggregationFunctions; i++) {
+                          value[i] = aggregationFunctions[i]
+                              .merge(value[i], aggregationGroupByResult.getResultForKey(groupKey, i));
+                        }
+                      }
+                      return value;
+                    });
                   }
-                  return value;
-                });
+                }
+              } catch (EarlyTerminationException e) {
+                // Early-terminated because query times out or is already satisfied
+                break;
+              } catch (Exception e) {
+                LOGGER.error("Exception processing CombineGroupBy for index {}, operator {}", operatorIndex,
+                    _operators.get(operatorIndex).getClass().getName(), e);
+                mergedProcessingExceptions
+                    .add(QueryException.getException(QueryException.QUERY_EXECUTION_ERROR, e));
               }
             }
-          } catch (EarlyTerminationException e) {
-            // Early-terminated because query times out or is already satisfied
-          } catch (Exception e) {
-            LOGGER.error("Exception processing CombineGroupBy for index {}, operator {}", index,
-                _operators.get(index).getClass().getName(), e);
-            mergedProcessingExceptions.add(QueryException.getException(QueryException.QUERY_EXECUTION_ERROR, e));
           } finally {
+            // Account the remaining resource usage before arriving so that it is included when the main thread returns
+            QueryResourceTracker.sampleCurrentThread();
             operatorLatch.countDown();
             phaser.arriveAndDeregister();
           }
@@ -44,6 +44,7 @@ import org.apache.pinot.core.operator.blocks.IntermediateResultsBlock;
 import org.apache.pinot.core.query.aggregation.groupby.AggregationGroupByResult;
 import org.apache.pinot.core.query.aggregation.groupby.GroupKeyGenerator;
 import org.apache.pinot.core.query.exception.EarlyTerminationException;
+import org.apache.pinot.core.query.request.context.QueryResourceTracker;
 import org.apache.pinot.core.util.GroupByUtils;
 import org.apache.pinot.core.util.trace.TraceRunnable;
 import org.apache.pinot.spi.utils.BytesUtils;
@@ -60,18 +61,26 @@ import org.slf4j.LoggerFactory;
 public class CombineGroupByOrderByOperator extends BaseOperator<IntermediateResultsBlock> {
   private static final Logger LOGGER = LoggerFactory.getLogger(CombineGroupByOrderByOperator.class);
   private static final String OPERATOR_NAME = "CombineGroupByOrderByOperator";
+  // Number of groups merged between resource usage samples (must be power of 2)
+  private static final int NUM_GROUPS_PER_RESOURCE_SAMPLE = 1 << 14;
 
   private final List<Operator> _operators;
   private final BrokerRequest _brokerRequest;
   private final ExecutorService _executorService;
   private final long _timeOutMs;
   private final int _indexedTableCapacity;
+  private final int _maxNumThreads;
   private Lock _initLock;
   private DataSchema _dataSchema;
   private ConcurrentIndexedTable _indexedTable;
 
   public CombineGroupByOrderByOperator(List<Operator> operators, BrokerRequest brokerRequest,
       ExecutorService executorService, long timeOutMs) {
+    this(operators, brokerRequest, executorService, timeOutMs, CombineOperator.MAX_NUM_THREADS_PER_QUERY);
+  }
+
+  public CombineGroupByOrderByOperator(List<Operator> operators, BrokerRequest brokerRequest,
+      ExecutorService executorService, long timeOutMs, int maxNumThreads) {
     Preconditions.checkArgument(brokerRequest.isSetAggregationsInfo() && brokerRequest.isSetGroupBy());
 
     _operators = operators;
@@ -80,6 +89,7 @@ public class CombineGroupByOrderByOperator extends BaseOperator<IntermediateResu
     _timeOutMs = timeOutMs;
     _initLock = new ReentrantLock();
     _indexedTableCapacity = GroupByUtils.getTableCapacity(brokerRequest.getGroupBy(), brokerRequest.getOrderBy());
+    _maxNumThreads = Math.max(1, maxNumThreads);
   }
 
   /**
@@ -111,11 +121,13 @@ public class CombineGroupByOrderByOperator extends BaseOperator<IntermediateResu
     // segments can be released after the main thread returns, which would lead to undefined behavior (even JVM crash)
     // when executing queries against them.
     int numOperators = _operators.size();
-    CountDownLatch operatorLatch = new CountDownLatch(numOperators);
+    // Try to use all the threads available for the query, but ensure each thread has at least one operator
+    int numThreads = Math.min(numOperators, _maxNumThreads);
+    CountDownLatch operatorLatch = new CountDownLatch(numThreads);
     Phaser phaser = new Phaser(1);
 
-    Future[] futures = new Future[numOperators];
-    for (int i = 0; i < numOperators; i++) {
+    Future[] futures = new Future[numThreads];
+    for (int i = 0; i < numThreads; i++) {
       int index = i;
       futures[i] = _executorService.submit(new TraceRunnable() {
         @SuppressWarnings("unchecked")
@@ -130,65 +142,82 @@ public class CombineGroupByOrderByOperator extends BaseOperator<IntermediateResu
               return;
             }
 
-            IntermediateResultsBlock intermediateResultsBlock =
-                (IntermediateResultsBlock) _operators.get(index).nextBlock();
+            for (int operatorIndex = index; operatorIndex < numOperators; operatorIndex += numThreads) {
+              try {
+                IntermediateResultsBlock intermediateResultsBlock =
+                    (IntermediateResultsBlock) _operators.get(operatorIndex).nextBlock();
+                // Account the resource usage after processing each segment so that the budget can be enforced
+                QueryResourceTracker.sampleCurrentThread();
 
-            _initLock.lock();
-            try {
-              if (_dataSchema == null) {
-                _dataSchema = intermediateResultsBlock.getDataSchema();
-                _indexedTable = new ConcurrentIndexedTable(_dataSchema, _brokerRequest.getAggregationsInfo(),
-                    _brokerRequest.getOrderBy(), _indexedTableCapacity);
-              }
-            } finally {
-              _initLock.unlock();
-            }
+                _initLock.lock();
+                try {
+                  if (_dataSchema == null) {
+                    _dataSchema = intermediateResultsBlock.getDataSchema();
+                    _indexedTable = new ConcurrentIndexedTable(_dataSchema, _brokerRequest.getAggregationsInfo(),
+                        _brokerRequest.getOrderBy(), _indexedTableCapacity);
+                  }
+                } finally {
+                  _initLock.unlock();
+                }
 
-            // Merge processing exceptions.
-            List<ProcessingException> processingExceptionsToMerge = intermediateResultsBlock.getProcessingExceptions();
-            if (processingExceptionsToMerge != null) {
-              mergedProcessingExceptions.addAll(processingExceptionsToMerge);
-            }
+                // Merge processing exceptions.
+                List<ProcessingException> processingExceptionsToMerge =
+                    intermediateResultsBlock.getProcessingExceptions();
+                if (processingExceptionsToMerge != null) {
+                  mergedProcessingExceptions.addAll(processingExceptionsToMerge);
+                }
 
-            // Merge aggregation group-by result.
-            AggregationGroupByResult aggregationGroupByResult = intermediateResultsBlock.getAggregationGroupByResult();
-            if (aggregationGroupByResult != null) {
-              // Get converter functions
-              Function[] converterFunctions = new Function[numGroupBy];
-              for (int i = 0; i < numGroupBy; i++) {
-                converterFunctions[i] = getConverterFunction(_dataSchema.getColumnDataType(i));
-              }
+                // Merge aggregation group-by result.
+                AggregationGroupByResult aggregationGroupByResult =
+                    intermediateResultsBlock.getAggregationGroupByResult();
+                if (aggregationGroupByResult != null) {
+                  // Get converter functions
+                  Function[] converterFunctions = new Function[numGroupBy];
+                  for (int i = 0; i < numGroupBy; i++) {
+                    converterFunctions[i] = getConverterFunction(_dataSchema.getColumnDataType(i));
+                  }
 
-              // Iterate over the group-by keys, for each key, update the group-by result in the indexedTable.
-              Iterator<GroupKeyGenerator.GroupKey> groupKeyIterator = aggregationGroupByResult.getGroupKeyIterator();
-              while (groupKeyIterator.hasNext()) {
-                Object[] columns = new Object[numColumns];
-                int columnIndex = 0;
-                GroupKeyGenerator.GroupKey groupKey = groupKeyIterator.next();
-                String[] stringKey = groupKey._stringKey.split(GroupKeyGenerator.DELIMITER);
-                Object[] objectKey = new Object[numGroupBy];
-                for (int i = 0; i < stringKey.length; i++) {
-                  Object convertedKey = converterFunctions[i].apply(stringKey[i]);
-                  objectKey[columnIndex] = convertedKey;
-                  columns[columnIndex] = convertedKey;
-                  columnIndex++;
-                }
-                for (int i = 0; i < numAggregationFunctions; i++) {
-                  columns[columnIndex] = aggregationGroupByResult.getResultForKey(groupKey, i);
-                  columnIndex++;
+                  // Iterate over the group-by keys, for each key, update the group-by result in the indexedTable.
+                  Iterator<GroupKeyGenerator.GroupKey> groupKeyIterator =
+                      aggregationGroupByResult.getGroupKeyIterator();
+                  int numGroupsMerged = 0;
+                  while (groupKeyIterator.hasNext()) {
+                    if ((++numGroupsMerged & (NUM_GROUPS_PER_RESOURCE_SAMPLE - 1)) == 0) {
+                      QueryResourceTracker.sampleCurrentThread();
+                    }
+                    Object[] columns = new Object[numColumns];
+                    int columnIndex = 0;
+                    GroupKeyGenerator.GroupKey groupKey = groupKeyIterator.next();
+                    String[] stringKey = groupKey._stringKey.split(GroupKeyGenerator.DELIMITER);
+                    Object[] objectKey = new Object[numGroupBy];
+                    for (int i = 0; i < stringKey.length; i++) {
+                      Object convertedKey = converterFunctions[i].apply(stringKey[i]);
+                      objectKey[columnIndex] = convertedKey;
+                      columns[columnIndex] = convertedKey;
+                      columnIndex++;
+                    }
+                    for (int i = 0; i < numAggregationFunctions; i++) {
+                      columns[columnIndex] = aggregationGroupByResult.getResultForKey(groupKey, i);
+                      columnIndex++;
+                    }
+                    Key key = new Key(objectKey);
+                    Record record = new Record(columns);
+                    _indexedTable.upsert(key, record);
+                  }
                 }
-                Key key = new Key(objectKey);
-                Record record = new Record(columns);
-                _indexedTable.upsert(key, record);
+              } catch (EarlyTerminationException e) {
+                // Early-terminated because query times out or is already satisfied
+                break;
+              } catch (Exception e) {
+                LOGGER.error("Exception processing CombineGroupByOrderBy for index {}, operator {}", operatorIndex,
+                    _operators.get(operatorIndex).getClass().getName(), e);
+                mergedProcessingExceptions
+                    .add(QueryException.getException(QueryException.QUERY_EXECUTION_ERROR, e));
               }
             }
-          } catch (EarlyTerminationException e) {
-            // Early-terminated because query times out or is already satisfied
-          } catch (Exception e) {
-            LOGGER.error("Exception processing CombineGroupByOrderBy for index {}, operator {}", index,
-                _operators.get(index).getClass().getName(), e);
-            mergedProcessingExceptions.add(QueryException.getException(QueryException.QUERY_EXECUTION_ERROR, e));
           } finally {
+            // Account the remaining resource usage before arriving so that it is included when the main thread returns
+            QueryResourceTracker.sampleCurrentThread();
             operatorLatch.countDown();
             phaser.arriveAndDeregister();
           }
@@ -35,6 +35,8 @@ import org.apache.pinot.core.common.Operator;
 import org.apache.pinot.core.operator.blocks.IntermediateResultsBlock;
 import org.apache.pinot.core.query.exception.EarlyTerminationException;
 import org.apache.pinot.core.query.reduce.CombineService;
+import org.apache.pinot.core.query.request.context.QueryCancellationToken;
+import org.apache.pinot.core.query.request.context.QueryResourceTracker;
 import org.apache.pinot.core.util.trace.TraceCallable;
 import org.apache.pinot.core.util.trace.TraceRunnable;
 import org.slf4j.Logger;
@@ -48,7 +50,7 @@ public class CombineOperator extends BaseOperator<IntermediateResultsBlock> {
   private static final Logger LOGGER = LoggerFactory.getLogger(CombineOperator.class);
   private static final String OPERATOR_NAME = "CombineOperator";
 
-  // Use at most 10 or half of the processors threads for each query.
+  // By default, use at most 10 or half of the processors threads for each query.
   // If there are less than 2 processors, use 1 thread.
   // Runtime.getRuntime().availableProcessors() may return value < 2 in container based environment, e.g. Kubernetes.
   public static final int MAX_NUM_THREADS_PER_QUERY =
@@ -58,13 +60,20 @@ public class CombineOperator extends BaseOperator<IntermediateResultsBlock> {
   private final BrokerRequest _brokerRequest;
   private final ExecutorService _executorService;
   private final long _timeOutMs;
+  private final int _maxNumThreads;
 
   public CombineOperator(List<Operator> operators, ExecutorService executorService, long timeOutMs,
       BrokerRequest brokerRequest) {
+    this(operators, executorService, timeOutMs, brokerRequest, MAX_NUM_THREADS_PER_QUERY);
+  }
+
+  public CombineOperator(List<Operator> operators, ExecutorService executorService, long timeOutMs,
+      BrokerRequest brokerRequest, int maxNumThreads) {
     _operators = operators;
     _executorService = executorService;
     _brokerRequest = brokerRequest;
     _timeOutMs = timeOutMs;
+    _maxNumThreads = Math.max(1, maxNumThreads);
   }
 
   @Override
@@ -72,8 +81,8 @@ public class CombineOperator extends BaseOperator<IntermediateResultsBlock> {
     long startTimeMs = System.currentTimeMillis();
     long endTimeMs = startTimeMs + _timeOutMs;
     int numOperators = _operators.size();
-    // Try to use all MAX_NUM_THREADS_PER_QUERY threads for the query, but ensure each thread has at least one operator
-    int numThreads = Math.min(numOperators, MAX_NUM_THREADS_PER_QUERY);
+    // Try to use all the threads available for the query, but ensure each thread has at least one operator
+    int numThreads = Math.min(numOperators, _maxNumThreads);
 
     // We use a BlockingQueue to store the results for each operator group, and track if all operator groups are
     // finished by the query timeout, and cancel the unfinished futures (try to interrupt the execution if it already
@@ -103,6 +112,9 @@ public class CombineOperator extends BaseOperator<IntermediateResultsBlock> {
             }
 
             IntermediateResultsBlock mergedBlock = (IntermediateResultsBlock) _operators.get(index).nextBlock();
+            // Account the resource usage after processing each segment so that the budget can be enforced, and the
+            // usage is accounted before the merged block is offered
+            QueryResourceTracker.sampleCurrentThread();
             for (int i = index + numThreads; i < numOperators; i += numThreads) {
               if (isQuerySatisfied(_brokerRequest, mergedBlock)) {
                 break;
@@ -115,14 +127,21 @@ public class CombineOperator extends BaseOperator<IntermediateResultsBlock> {
                 mergedBlock
                     .addToProcessingExceptions(QueryException.getException(QueryException.MERGE_RESPONSE_ERROR, e));
               }
+              QueryResourceTracker.sampleCurrentThread();
             }
             blockingQueue.offer(mergedBlock);
           } catch (EarlyTerminationException e) {
-            // Early-terminated because query times out or is already satisfied
+            // Early-terminated because query times out, is already satisfied or is cancelled
+            // For cancelled query, offer an exception block so that the merge thread does not wait until timeout
+            if (QueryCancellationToken.isCurrentQueryCancelled()) {
+              blockingQueue.offer(new IntermediateResultsBlock(QueryException.QUERY_CANCELLATION_ERROR, e));
+            }
           } catch (Exception e) {
             LOGGER.error("Caught exception while executing query.", e);
             blockingQueue.offer(new IntermediateResultsBlock(e));
           } finally {
+            // Account the remaining resource usage before arriving so that it is included when the main thread returns
+            QueryResourceTracker.sampleCurrentThread();
             phaser.arriveAndDeregister();
           }
         }
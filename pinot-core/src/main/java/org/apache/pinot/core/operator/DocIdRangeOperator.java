@@ -0,0 +1,79 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.core.operator;
+
+import org.apache.pinot.core.common.Operator;
+import org.apache.pinot.core.operator.blocks.IntermediateResultsBlock;
+
+
+/**
+ * The <code>DocIdRangeOperator</code> class wraps the segment level operator for one document id range of a segment
+ * that is split into multiple ranges (see {@link org.apache.pinot.core.plan.DocIdRangePlanNode}).
+ * <p>The ranges of the same segment are combined like segments, so the execution statistics are adjusted to count the
+ * segment only once: the first range reports the segment as processed, and as matched if any of the ranges matched.
+ */
+public class DocIdRangeOperator extends BaseOperator<IntermediateResultsBlock> {
+  private static final String OPERATOR_NAME = "DocIdRangeOperator";
+
+  private final Operator _operator;
+  private final int _rangeIndex;
+  private final Operator[] _rangeOperators;
+
+  /**
+   * Constructor for the class.
+   *
+   * @param operator Segment level operator for the document id range
+   * @param rangeIndex Index of the document id range within the segment
+   * @param rangeOperators Segment level operators for all the document id ranges of the segment
+   */
+  public DocIdRangeOperator(Operator operator, int rangeIndex, Operator[] rangeOperators) {
+    _operator = operator;
+    _rangeIndex = rangeIndex;
+    _rangeOperators = rangeOperators;
+  }
+
+  @Override
+  protected IntermediateResultsBlock getNextBlock() {
+    return (IntermediateResultsBlock) _operator.nextBlock();
+  }
+
+  @Override
+  public String getOperatorName() {
+    return OPERATOR_NAME;
+  }
+
+  @Override
+  public ExecutionStatistics getExecutionStatistics() {
+    ExecutionStatistics executionStatistics = _operator.getExecutionStatistics();
+    long numSegmentsProcessed = 0;
+    long numSegmentsMatched = 0;
+    if (_rangeIndex == 0) {
+      numSegmentsProcessed = 1;
+      for (Operator rangeOperator : _rangeOperators) {
+        if (rangeOperator != null && rangeOperator.getExecutionStatistics().getNumDocsScanned() > 0) {
+          numSegmentsMatched = 1;
+          break;
+        }
+      }
+    }
+    return new ExecutionStatistics(executionStatistics.getNumDocsScanned(),
+        executionStatistics.getNumEntriesScannedInFilter(), executionStatistics.getNumEntriesScannedPostFilter(),
+        executionStatistics.getNumTotalDocs(), numSegmentsProcessed, numSegmentsMatched);
+  }
+}
@@ -31,6 +31,8 @@ import org.apache.pinot.core.plan.DocIdSetPlanNode;
  * The <code>DocIdSetOperator</code> takes a filter operator and returns blocks with set of the matched document Ids.
  * <p>Should call {@link #nextBlock()} multiple times until it returns <code>null</code> (already exhausts all the
  * matched documents) or already gathered enough documents (for selection queries).
+ * <p>The operator can be restricted to a document id range [startDocId, endDocId), so that a large segment can be split
+ * into multiple ranges that are processed in parallel.
  */
 public class DocIdSetOperator extends BaseOperator<DocIdSetBlock> {
   private static final String OPERATOR_NAME = "DocIdSetOperator";
@@ -40,15 +42,24 @@ public class DocIdSetOperator extends BaseOperator<DocIdSetBlock> {
 
   private final BaseFilterOperator _filterOperator;
   private final int _maxSizeOfDocIdSet;
+  private final int _startDocId;
+  private final int _endDocId;
 
   private FilterBlockDocIdSet _filterBlockDocIdSet;
   private BlockDocIdIterator _blockDocIdIterator;
   private int _currentDocId = 0;
 
   public DocIdSetOperator(BaseFilterOperator filterOperator, int maxSizeOfDocIdSet) {
+    this(filterOperator, maxSizeOfDocIdSet, 0, Integer.MAX_VALUE);
+  }
+
+  public DocIdSetOperator(BaseFilterOperator filterOperator, int maxSizeOfDocIdSet, int startDocId, int endDocId) {
     Preconditions.checkArgument(maxSizeOfDocIdSet > 0 && maxSizeOfDocIdSet <= DocIdSetPlanNode.MAX_DOC_PER_CALL);
+    Preconditions.checkArgument(startDocId >= 0 && startDocId < endDocId);
     _filterOperator = filterOperator;
     _maxSizeOfDocIdSet = maxSizeOfDocIdSet;
+    _startDocId = startDocId;
+    _endDocId = endDocId;
   }
 
   @Override
@@ -57,19 +68,34 @@ public class DocIdSetOperator extends BaseOperator<DocIdSetBlock> {
       return null;
     }
 
+    int pos = 0;
+    int[] docIds = THREAD_LOCAL_DOC_IDS.get();
+
     // Initialize filter block document Id set
     if (_filterBlockDocIdSet == null) {
       _filterBlockDocIdSet = _filterOperator.nextBlock().getBlockDocIdSet();
       _blockDocIdIterator = _filterBlockDocIdSet.iterator();
+
+      // Skip the documents before the start of the range
+      if (_startDocId > 0) {
+        _currentDocId = _blockDocIdIterator.advance(_startDocId);
+        if (_currentDocId == Constants.EOF || _currentDocId >= _endDocId) {
+          _currentDocId = Constants.EOF;
+          return null;
+        }
+        docIds[pos++] = _currentDocId;
+      }
     }
 
-    int pos = 0;
-    int[] docIds = THREAD_LOCAL_DOC_IDS.get();
-    for (int i = 0; i < _maxSizeOfDocIdSet; i++) {
+    while (pos < _maxSizeOfDocIdSet) {
       _currentDocId = _blockDocIdIterator.next();
       if (_currentDocId == Constants.EOF) {
         break;
       }
+      if (_currentDocId >= _endDocId) {
+        _currentDocId = Constants.EOF;
+        break;
+      }
       docIds[pos++] = _currentDocId;
     }
     if (pos > 0) {
@@ -51,6 +51,16 @@ public class ExecutionStatistics {
     _numSegmentsMatched = (numDocsScanned == 0) ? 0 : 1;
   }
 
+  public ExecutionStatistics(long numDocsScanned, long numEntriesScannedInFilter, long numEntriesScannedPostFilter,
+      long numTotalDocs, long numSegmentsProcessed, long numSegmentsMatched) {
+    _numDocsScanned = numDocsScanned;
+    _numEntriesScannedInFilter = numEntriesScannedInFilter;
+    _numEntriesScannedPostFilter = numEntriesScannedPostFilter;
+    _numTotalDocs = numTotalDocs;
+    _numSegmentsProcessed = numSegmentsProcessed;
+    _numSegmentsMatched = numSegmentsMatched;
+  }
+
   public long getNumDocsScanned() {
     return _numDocsScanned;
   }
@@ -24,6 +24,7 @@ import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
 import javax.annotation.Nullable;
 import org.apache.pinot.common.exception.QueryException;
 import org.apache.pinot.common.response.ProcessingException;
@@ -317,6 +318,17 @@ public class IntermediateResultsBlock implements Block {
 
   private DataTable getSelectionResultDataTable()
       throws Exception {
+    if (_selectionResult instanceof PriorityQueue) {
+      // Selection order-by: send the rows sorted in the query order, so that the broker can merge the sorted server
+      // responses instead of re-sorting all the rows
+      PriorityQueue<Object[]> priorityQueue = (PriorityQueue<Object[]>) _selectionResult;
+      List<Object[]> sortedRows = new ArrayList<>(priorityQueue);
+      sortedRows.sort(priorityQueue.comparator().reversed());
+      DataTable dataTable =
+          attachMetadataToDataTable(SelectionOperatorUtils.getDataTableFromRows(sortedRows, _dataSchema));
+      dataTable.getMetadata().put(DataTable.SORTED_ROWS_METADATA_KEY, "true");
+      return dataTable;
+    }
     return attachMetadataToDataTable(SelectionOperatorUtils.getDataTableFromRows(_selectionResult, _dataSchema));
   }
 
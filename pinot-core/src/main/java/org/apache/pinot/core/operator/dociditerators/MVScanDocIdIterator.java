@@ -24,6 +24,8 @@ import org.apache.pinot.core.common.BlockMultiValIterator;
 import org.apache.pinot.core.common.BlockValSet;
 import org.apache.pinot.core.common.Constants;
 import org.apache.pinot.core.operator.filter.predicate.PredicateEvaluator;
+import org.apache.pinot.core.query.exception.EarlyTerminationException;
+import org.apache.pinot.core.query.request.context.QueryCancellationToken;
 import org.roaringbitmap.IntIterator;
 import org.roaringbitmap.buffer.MutableRoaringBitmap;
 
@@ -111,6 +113,9 @@ public class MVScanDocIdIterator implements ScanBasedDocIdIterator {
     }
     while (valueIterator.hasNext() && currentDocId < endDocId) {
       currentDocId = currentDocId + 1;
+      if ((currentDocId & CANCELLATION_CHECK_MASK) == 0 && QueryCancellationToken.isCurrentQueryCancelled()) {
+        throw new EarlyTerminationException();
+      }
       int length = valueIterator.nextIntVal(intArray);
       _numEntriesScanned += length;
       if (evaluator.applyMV(intArray, length)) {
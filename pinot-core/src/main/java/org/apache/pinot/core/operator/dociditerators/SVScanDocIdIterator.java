@@ -23,6 +23,8 @@ import org.apache.pinot.core.common.BlockSingleValIterator;
 import org.apache.pinot.core.common.BlockValSet;
 import org.apache.pinot.core.common.Constants;
 import org.apache.pinot.core.operator.filter.predicate.PredicateEvaluator;
+import org.apache.pinot.core.query.exception.EarlyTerminationException;
+import org.apache.pinot.core.query.request.context.QueryCancellationToken;
 import org.apache.pinot.spi.data.FieldSpec;
 import org.roaringbitmap.IntIterator;
 import org.roaringbitmap.buffer.MutableRoaringBitmap;
@@ -118,6 +120,9 @@ public class SVScanDocIdIterator implements ScanBasedDocIdIterator {
     }
     while (_valueIterator.hasNext() && _currentDocId < _endDocId) {
       _currentDocId = _currentDocId + 1;
+      if ((_currentDocId & CANCELLATION_CHECK_MASK) == 0 && QueryCancellationToken.isCurrentQueryCancelled()) {
+        throw new EarlyTerminationException();
+      }
       _numEntriesScanned++;
       if (_valueMatcher.doesCurrentEntryMatch(_valueIterator)) {
         return _currentDocId;
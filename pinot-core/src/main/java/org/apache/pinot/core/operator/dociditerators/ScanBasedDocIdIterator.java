@@ -30,6 +30,8 @@ import org.roaringbitmap.buffer.MutableRoaringBitmap;
  * up on scan based iterator to check if docId matches
  */
 public interface ScanBasedDocIdIterator extends BlockDocIdIterator {
+  // Check whether the query is cancelled every 8192 documents scanned
+  int CANCELLATION_CHECK_MASK = 0x1FFF;
 
   boolean isMatch(int docId);
 
@@ -112,6 +112,11 @@ public final class AndBlockDocIdSet implements FilterBlockDocIdSet {
         BitmapDocIdSet bitmapDocIdSet = (BitmapDocIdSet) child;
         ImmutableRoaringBitmap childBitmap = bitmapDocIdSet.getRaw();
         childBitmaps.add(childBitmap);
+      } else if (child instanceof IntIteratorDocIdSet) {
+        // Materialize the doc ids into a bitmap so that the scan based doc id sets can be applied on top of it
+        IntIteratorDocIdSet intIteratorDocIdSet = (IntIteratorDocIdSet) child;
+        ImmutableRoaringBitmap childBitmap = intIteratorDocIdSet.getRaw();
+        childBitmaps.add(childBitmap);
       } else if (child instanceof ScanBasedDocIdSet) {
         scanBasedDocIdSets.add((ScanBasedDocIdSet) child);
       } else {
@@ -0,0 +1,96 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.core.operator.docidsets;
+
+import org.apache.pinot.core.common.BlockDocIdIterator;
+import org.apache.pinot.core.operator.dociditerators.BitmapDocIdIterator;
+import org.roaringbitmap.IntIterator;
+import org.roaringbitmap.buffer.MutableRoaringBitmap;
+
+
+/**
+ * Doc id set backed by an {@link IntIterator} over ascending document ids, e.g. the posting list of the real-time
+ * inverted index, which can be iterated without materializing a bitmap.
+ * <p>When combined with other doc id sets in {@link AndBlockDocIdSet} or {@link OrBlockDocIdSet}, it is materialized
+ * into a bitmap (within the doc id range) through {@link #getRaw()}, so that it can be intersected or merged with the
+ * other bitmaps, and the scan based doc id sets can be applied on top of the bitmap.
+ */
+public class IntIteratorDocIdSet implements FilterBlockDocIdSet {
+  private final IntIterator _intIterator;
+  private int _startDocId;
+  // Inclusive
+  private int _endDocId;
+
+  public IntIteratorDocIdSet(IntIterator intIterator, int startDocId, int endDocId) {
+    _intIterator = intIterator;
+    _startDocId = startDocId;
+    _endDocId = endDocId;
+  }
+
+  @Override
+  public int getMinDocId() {
+    return _startDocId;
+  }
+
+  @Override
+  public int getMaxDocId() {
+    return _endDocId;
+  }
+
+  @Override
+  public void setStartDocId(int startDocId) {
+    _startDocId = startDocId;
+  }
+
+  @Override
+  public void setEndDocId(int endDocId) {
+    _endDocId = endDocId;
+  }
+
+  @Override
+  public long getNumEntriesScannedInFilter() {
+    // No value scanned when filtering with inverted index.
+    return 0L;
+  }
+
+  @Override
+  public BlockDocIdIterator iterator() {
+    BitmapDocIdIterator bitmapDocIdIterator = new BitmapDocIdIterator(_intIterator.clone());
+    bitmapDocIdIterator.setStartDocId(_startDocId);
+    bitmapDocIdIterator.setEndDocId(_endDocId);
+    return bitmapDocIdIterator;
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public <T> T getRaw() {
+    MutableRoaringBitmap bitmap = new MutableRoaringBitmap();
+    IntIterator intIterator = _intIterator.clone();
+    while (intIterator.hasNext()) {
+      int docId = intIterator.next();
+      if (docId > _endDocId) {
+        break;
+      }
+      if (docId >= _startDocId) {
+        bitmap.add(docId);
+      }
+    }
+    return (T) bitmap;
+  }
+}
@@ -93,7 +93,7 @@ public final class OrBlockDocIdSet implements FilterBlockDocIdSet {
             // Add takes [start, end) i.e inclusive start, exclusive end
             bitmap.add(pair.getLeft(), pair.getRight() + 1);
           }
-        } else if (docIdSet instanceof BitmapDocIdSet) {
+        } else if (docIdSet instanceof BitmapDocIdSet || docIdSet instanceof IntIteratorDocIdSet) {
           bitmap.or((ImmutableRoaringBitmap) docIdSet.getRaw());
         } else {
           iterators.add(docIdSet.iterator());
@@ -22,7 +22,9 @@ import com.google.common.base.Preconditions;
 import org.apache.pinot.core.common.DataSource;
 import org.apache.pinot.core.operator.blocks.FilterBlock;
 import org.apache.pinot.core.operator.docidsets.BitmapDocIdSet;
+import org.apache.pinot.core.operator.docidsets.IntIteratorDocIdSet;
 import org.apache.pinot.core.operator.filter.predicate.PredicateEvaluator;
+import org.apache.pinot.core.realtime.impl.invertedindex.RealtimeInvertedIndexReader;
 import org.apache.pinot.core.segment.index.readers.InvertedIndexReader;
 import org.roaringbitmap.buffer.ImmutableRoaringBitmap;
 
@@ -74,6 +76,13 @@ public class BitmapBasedFilterOperator extends BaseFilterOperator {
     int[] dictIds = _exclusive ? _predicateEvaluator.getNonMatchingDictIds() : _predicateEvaluator.getMatchingDictIds();
 
     InvertedIndexReader invertedIndex = _dataSource.getInvertedIndex();
+    if (!_exclusive && dictIds.length == 1 && invertedIndex instanceof RealtimeInvertedIndexReader) {
+      // Iterate over the posting list of the real-time inverted index directly instead of copying it into a bitmap
+      return new FilterBlock(
+          new IntIteratorDocIdSet(((RealtimeInvertedIndexReader) invertedIndex).getDocIdIterator(dictIds[0]),
+              _startDocId, _endDocId));
+    }
+
     int length = dictIds.length;
     ImmutableRoaringBitmap[] bitmaps = new ImmutableRoaringBitmap[length];
     for (int i = 0; i < length; i++) {
@@ -37,13 +37,24 @@ import org.apache.pinot.core.operator.transform.function.TransformFunctionFactor
 public class ExpressionFilterOperator extends BaseFilterOperator {
   private static final String OPERATOR_NAME = "ExpressionFilterOperator";
 
-  private final int _numDocs;
+  private final int _startDocId;
+  // NOTE: end document Id is exclusive
+  private final int _endDocId;
   private final Map<String, DataSource> _dataSourceMap;
   private final TransformFunction _transformFunction;
   private final PredicateEvaluator _predicateEvaluator;
 
   public ExpressionFilterOperator(IndexSegment segment, TransformExpressionTree expression, Predicate predicate) {
-    _numDocs = segment.getSegmentMetadata().getTotalDocs();
+    this(segment, expression, predicate, 0, segment.getSegmentMetadata().getTotalDocs());
+  }
+
+  /**
+   * Constructs the operator to only evaluate the documents within the given range [startDocId, endDocId).
+   */
+  public ExpressionFilterOperator(IndexSegment segment, TransformExpressionTree expression, Predicate predicate,
+      int startDocId, int endDocId) {
+    _startDocId = startDocId;
+    _endDocId = endDocId;
 
     _dataSourceMap = new HashMap<>();
     Set<String> columns = new HashSet<>();
@@ -60,8 +71,10 @@ public class ExpressionFilterOperator extends BaseFilterOperator {
 
   @Override
   protected FilterBlock getNextBlock() {
-    return new FilterBlock(
-        new ExpressionFilterDocIdSet(_transformFunction, _predicateEvaluator, _dataSourceMap, _numDocs));
+    ExpressionFilterDocIdSet expressionFilterDocIdSet =
+        new ExpressionFilterDocIdSet(_transformFunction, _predicateEvaluator, _dataSourceMap, _endDocId);
+    expressionFilterDocIdSet.setStartDocId(_startDocId);
+    return new FilterBlock(expressionFilterDocIdSet);
   }
 
   @Override
@@ -41,16 +41,25 @@ public class FilterOperatorUtils {
    */
   public static BaseFilterOperator getLeafFilterOperator(PredicateEvaluator predicateEvaluator, DataSource dataSource,
       int numDocs) {
+    return getLeafFilterOperator(predicateEvaluator, dataSource, numDocs, 0, numDocs);
+  }
+
+  /**
+   * Returns the leaf filter operator (i.e. not {@link AndFilterOperator} or {@link OrFilterOperator}) which only
+   * evaluates the documents within the given range [rangeStartDocId, rangeEndDocId).
+   */
+  public static BaseFilterOperator getLeafFilterOperator(PredicateEvaluator predicateEvaluator, DataSource dataSource,
+      int numDocs, int rangeStartDocId, int rangeEndDocId) {
     if (predicateEvaluator.isAlwaysFalse()) {
       return EmptyFilterOperator.getInstance();
     } else if (predicateEvaluator.isAlwaysTrue()) {
       return new MatchAllFilterOperator(numDocs);
     }
 
-    int startDocId = 0;
+    int startDocId = rangeStartDocId;
     // NOTE: end document Id is inclusive
     // TODO: make it exclusive
-    int endDocId = numDocs - 1;
+    int endDocId = rangeEndDocId - 1;
 
     Predicate.Type predicateType = predicateEvaluator.getPredicateType();
 
@@ -0,0 +1,85 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.core.operator.query;
+
+import org.apache.pinot.core.common.Operator;
+import org.apache.pinot.core.operator.BaseOperator;
+import org.apache.pinot.core.operator.ExecutionStatistics;
+import org.apache.pinot.core.operator.blocks.IntermediateResultsBlock;
+import org.apache.pinot.core.query.executor.SegmentResultCache;
+
+
+/**
+ * The <code>CachedSegmentResultOperator</code> class provides the operator for a single segment backed by the
+ * {@link SegmentResultCache}. On cache hit, it returns a copy of the cached segment result without executing the query
+ * on the segment; on cache miss, it executes the query with the underlying operator and caches the result.
+ */
+public class CachedSegmentResultOperator extends BaseOperator<IntermediateResultsBlock> {
+  private static final String OPERATOR_NAME = "CachedSegmentResultOperator";
+
+  private final SegmentResultCache.CachedResult _cachedResult;
+  private final Operator<IntermediateResultsBlock> _operator;
+  private final SegmentResultCache _segmentResultCache;
+  private final String _key;
+
+  /**
+   * Constructor for cache hit.
+   */
+  public CachedSegmentResultOperator(SegmentResultCache.CachedResult cachedResult) {
+    _cachedResult = cachedResult;
+    _operator = null;
+    _segmentResultCache = null;
+    _key = null;
+  }
+
+  /**
+   * Constructor for cache miss.
+   */
+  public CachedSegmentResultOperator(Operator<IntermediateResultsBlock> operator,
+      SegmentResultCache segmentResultCache, String key) {
+    _cachedResult = null;
+    _operator = operator;
+    _segmentResultCache = segmentResultCache;
+    _key = key;
+  }
+
+  @Override
+  protected IntermediateResultsBlock getNextBlock() {
+    if (_cachedResult != null) {
+      return _cachedResult.toResultsBlock();
+    }
+    IntermediateResultsBlock resultsBlock = _operator.nextBlock();
+    // NOTE: Cache the result before returning it because the combine operator might merge other results into it
+    _segmentResultCache.put(_key, resultsBlock, _operator.getExecutionStatistics());
+    return resultsBlock;
+  }
+
+  @Override
+  public String getOperatorName() {
+    return OPERATOR_NAME;
+  }
+
+  @Override
+  public ExecutionStatistics getExecutionStatistics() {
+    if (_cachedResult != null) {
+      return _cachedResult.getExecutionStatistics();
+    }
+    return _operator.getExecutionStatistics();
+  }
+}
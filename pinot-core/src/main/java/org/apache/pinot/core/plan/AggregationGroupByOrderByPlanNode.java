@@ -47,6 +47,7 @@ public class AggregationGroupByOrderByPlanNode implements PlanNode {
   private static final Logger LOGGER = LoggerFactory.getLogger(AggregationGroupByOrderByPlanNode.class);
 
   private final IndexSegment _indexSegment;
+  private final int _numTotalDocs;
   private final int _maxInitialResultHolderCapacity;
   private final int _numGroupsLimit;
   private final List<AggregationInfo> _aggregationInfos;
@@ -58,6 +59,7 @@ public class AggregationGroupByOrderByPlanNode implements PlanNode {
   public AggregationGroupByOrderByPlanNode(IndexSegment indexSegment, BrokerRequest brokerRequest,
       int maxInitialResultHolderCapacity, int numGroupsLimit) {
     _indexSegment = indexSegment;
+    _numTotalDocs = indexSegment.getSegmentMetadata().getTotalDocs();
     _maxInitialResultHolderCapacity = maxInitialResultHolderCapacity;
     _numGroupsLimit = numGroupsLimit;
     _aggregationInfos = brokerRequest.getAggregationsInfo();
@@ -97,17 +99,37 @@ public class AggregationGroupByOrderByPlanNode implements PlanNode {
     _starTreeTransformPlanNode = null;
   }
 
+  /**
+   * Constructor for the aggregation group-by order-by plan on the document id range [startDocId, endDocId) of the
+   * segment. Star-tree is not used because it cannot be restricted to a document id range.
+   */
+  public AggregationGroupByOrderByPlanNode(IndexSegment indexSegment, BrokerRequest brokerRequest,
+      int maxInitialResultHolderCapacity, int numGroupsLimit, int startDocId, int endDocId) {
+    _indexSegment = indexSegment;
+    _numTotalDocs = endDocId - startDocId;
+    _maxInitialResultHolderCapacity = maxInitialResultHolderCapacity;
+    _numGroupsLimit = numGroupsLimit;
+    _aggregationInfos = brokerRequest.getAggregationsInfo();
+    _functionContexts = AggregationFunctionUtils.getAggregationFunctionContexts(brokerRequest);
+    _groupBy = brokerRequest.getGroupBy();
+
+    Set<TransformExpressionTree> expressionsToTransform =
+        AggregationFunctionUtils.collectExpressionsToTransform(brokerRequest, _functionContexts);
+    _transformPlanNode =
+        new TransformPlanNode(_indexSegment, brokerRequest, expressionsToTransform, startDocId, endDocId);
+    _starTreeTransformPlanNode = null;
+  }
+
   @Override
   public AggregationGroupByOrderByOperator run() {
-    int numTotalDocs = _indexSegment.getSegmentMetadata().getTotalDocs();
     if (_transformPlanNode != null) {
       // Do not use star-tree
       return new AggregationGroupByOrderByOperator(_functionContexts, _groupBy, _maxInitialResultHolderCapacity,
-          _numGroupsLimit, _transformPlanNode.run(), numTotalDocs, false);
+          _numGroupsLimit, _transformPlanNode.run(), _numTotalDocs, false);
     } else {
       // Use star-tree
       return new AggregationGroupByOrderByOperator(_functionContexts, _groupBy, _maxInitialResultHolderCapacity,
-          _numGroupsLimit, _starTreeTransformPlanNode.run(), numTotalDocs, true);
+          _numGroupsLimit, _starTreeTransformPlanNode.run(), _numTotalDocs, true);
     }
   }
 
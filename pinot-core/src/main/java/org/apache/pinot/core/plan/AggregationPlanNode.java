@@ -46,6 +46,7 @@ public class AggregationPlanNode implements PlanNode {
   private static final Logger LOGGER = LoggerFactory.getLogger(AggregationPlanNode.class);
 
   private final IndexSegment _indexSegment;
+  private final int _numTotalDocs;
   private final List<AggregationInfo> _aggregationInfos;
   private final AggregationFunctionContext[] _functionContexts;
   private final TransformPlanNode _transformPlanNode;
@@ -53,6 +54,7 @@ public class AggregationPlanNode implements PlanNode {
 
   public AggregationPlanNode(IndexSegment indexSegment, BrokerRequest brokerRequest) {
     _indexSegment = indexSegment;
+    _numTotalDocs = indexSegment.getSegmentMetadata().getTotalDocs();
     _aggregationInfos = brokerRequest.getAggregationsInfo();
     _functionContexts = AggregationFunctionUtils.getAggregationFunctionContexts(brokerRequest);
 
@@ -83,15 +85,31 @@ public class AggregationPlanNode implements PlanNode {
     _starTreeTransformPlanNode = null;
   }
 
+  /**
+   * Constructor for the aggregation plan on the document id range [startDocId, endDocId) of the segment. Star-tree is
+   * not used because it cannot be restricted to a document id range.
+   */
+  public AggregationPlanNode(IndexSegment indexSegment, BrokerRequest brokerRequest, int startDocId, int endDocId) {
+    _indexSegment = indexSegment;
+    _numTotalDocs = endDocId - startDocId;
+    _aggregationInfos = brokerRequest.getAggregationsInfo();
+    _functionContexts = AggregationFunctionUtils.getAggregationFunctionContexts(brokerRequest);
+
+    Set<TransformExpressionTree> expressionsToTransform =
+        AggregationFunctionUtils.collectExpressionsToTransform(brokerRequest, _functionContexts);
+    _transformPlanNode =
+        new TransformPlanNode(_indexSegment, brokerRequest, expressionsToTransform, startDocId, endDocId);
+    _starTreeTransformPlanNode = null;
+  }
+
   @Override
   public AggregationOperator run() {
-    int numTotalDocs = _indexSegment.getSegmentMetadata().getTotalDocs();
     if (_transformPlanNode != null) {
       // Do not use star-tree
-      return new AggregationOperator(_functionContexts, _transformPlanNode.run(), numTotalDocs, false);
+      return new AggregationOperator(_functionContexts, _transformPlanNode.run(), _numTotalDocs, false);
     } else {
       // Use star-tree
-      return new AggregationOperator(_functionContexts, _starTreeTransformPlanNode.run(), numTotalDocs, true);
+      return new AggregationOperator(_functionContexts, _starTreeTransformPlanNode.run(), _numTotalDocs, true);
     }
   }
 
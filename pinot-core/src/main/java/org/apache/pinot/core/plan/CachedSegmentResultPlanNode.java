@@ -0,0 +1,66 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.core.plan;
+
+import java.util.function.Supplier;
+import org.apache.pinot.core.common.Operator;
+import org.apache.pinot.core.operator.blocks.IntermediateResultsBlock;
+import org.apache.pinot.core.operator.query.CachedSegmentResultOperator;
+import org.apache.pinot.core.query.executor.SegmentResultCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * The <code>CachedSegmentResultPlanNode</code> class provides the execution plan for a single segment backed by the
+ * {@link SegmentResultCache}. The underlying plan node is only created on cache miss, so that cache hits skip both the
+ * planning and the execution on the segment.
+ */
+public class CachedSegmentResultPlanNode implements PlanNode {
+  private static final Logger LOGGER = LoggerFactory.getLogger(CachedSegmentResultPlanNode.class);
+
+  private final SegmentResultCache _segmentResultCache;
+  private final String _key;
+  private final Supplier<PlanNode> _planNodeSupplier;
+
+  public CachedSegmentResultPlanNode(SegmentResultCache segmentResultCache, String key,
+      Supplier<PlanNode> planNodeSupplier) {
+    _segmentResultCache = segmentResultCache;
+    _key = key;
+    _planNodeSupplier = planNodeSupplier;
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public Operator run() {
+    SegmentResultCache.CachedResult cachedResult = _segmentResultCache.get(_key);
+    if (cachedResult != null) {
+      return new CachedSegmentResultOperator(cachedResult);
+    }
+    return new CachedSegmentResultOperator((Operator<IntermediateResultsBlock>) _planNodeSupplier.get().run(),
+        _segmentResultCache, _key);
+  }
+
+  @Override
+  public void showTree(String prefix) {
+    LOGGER.debug(prefix + "Segment Level Cached Result Plan Node:");
+    LOGGER.debug(prefix + "Operator: CachedSegmentResultOperator");
+    LOGGER.debug(prefix + "Argument 0: Key - " + _key);
+  }
+}
@@ -43,12 +43,7 @@ import org.slf4j.LoggerFactory;
 public class CombinePlanNode implements PlanNode {
   private static final Logger LOGGER = LoggerFactory.getLogger(CombinePlanNode.class);
 
-  // Use at most 10 or half of the processors threads for each query.
-  // If there are less than 2 processors, use 1 thread.
-  // Runtime.getRuntime().availableProcessors() may return value < 2 in container based environment, e.g. Kubernetes.
-  private static final int MAX_NUM_THREADS_PER_QUERY =
-      Math.max(1, Math.min(10, Runtime.getRuntime().availableProcessors() / 2));
-  // Try to schedule 10 plans for each thread, or evenly distribute plans to all MAX_NUM_THREADS_PER_QUERY threads
+  // Try to schedule 10 plans for each thread, or evenly distribute plans to all the threads available for the query
   private static final int TARGET_NUM_PLANS_PER_THREAD = 10;
 
   private static final int TIME_OUT_IN_MILLISECONDS_FOR_PARALLEL_RUN = 10_000;
@@ -58,6 +53,7 @@ public class CombinePlanNode implements PlanNode {
   private final ExecutorService _executorService;
   private final long _timeOutMs;
   private final int _numGroupsLimit;
+  private final int _maxNumThreads;
 
   /**
    * Constructor for the class.
@@ -70,11 +66,28 @@ public class CombinePlanNode implements PlanNode {
    */
   public CombinePlanNode(List<PlanNode> planNodes, BrokerRequest brokerRequest, ExecutorService executorService,
       long timeOutMs, int numGroupsLimit) {
+    this(planNodes, brokerRequest, executorService, timeOutMs, numGroupsLimit,
+        CombineOperator.MAX_NUM_THREADS_PER_QUERY);
+  }
+
+  /**
+   * Constructor for the class.
+   *
+   * @param planNodes List of underlying plan nodes
+   * @param brokerRequest Broker request
+   * @param executorService Executor service
+   * @param timeOutMs Time out in milliseconds for query execution (not for planning phase)
+   * @param numGroupsLimit Limit of number of groups stored in each segment
+   * @param maxNumThreads Maximum number of threads for planning and execution of the query
+   */
+  public CombinePlanNode(List<PlanNode> planNodes, BrokerRequest brokerRequest, ExecutorService executorService,
+      long timeOutMs, int numGroupsLimit, int maxNumThreads) {
     _planNodes = planNodes;
     _brokerRequest = brokerRequest;
     _executorService = executorService;
     _timeOutMs = timeOutMs;
     _numGroupsLimit = numGroupsLimit;
+    _maxNumThreads = Math.max(1, maxNumThreads);
   }
 
   @Override
@@ -94,7 +107,7 @@ public class CombinePlanNode implements PlanNode {
       long endTimeMs = System.currentTimeMillis() + TIME_OUT_IN_MILLISECONDS_FOR_PARALLEL_RUN;
 
       int numThreads = Math.min((numPlanNodes + TARGET_NUM_PLANS_PER_THREAD - 1) / TARGET_NUM_PLANS_PER_THREAD,
-          MAX_NUM_THREADS_PER_QUERY);
+          _maxNumThreads);
 
       // Use a Phaser to ensure all the Futures are done (not scheduled, finished or interrupted) before the main thread
       // returns. We need to ensure no execution left before the main thread returning because the main thread holds the
@@ -165,12 +178,14 @@ public class CombinePlanNode implements PlanNode {
       QueryOptions queryOptions = new QueryOptions(_brokerRequest.getQueryOptions());
       // new Combine operator only when GROUP_BY_MODE explicitly set to SQL
       if (queryOptions.isGroupByModeSQL()) {
-        return new CombineGroupByOrderByOperator(operators, _brokerRequest, _executorService, _timeOutMs);
+        return new CombineGroupByOrderByOperator(operators, _brokerRequest, _executorService, _timeOutMs,
+            _maxNumThreads);
       }
-      return new CombineGroupByOperator(operators, _brokerRequest, _executorService, _timeOutMs, _numGroupsLimit);
+      return new CombineGroupByOperator(operators, _brokerRequest, _executorService, _timeOutMs, _numGroupsLimit,
+          _maxNumThreads);
     } else {
       // Selection or aggregation only query
-      return new CombineOperator(operators, _executorService, _timeOutMs, _brokerRequest);
+      return new CombineOperator(operators, _executorService, _timeOutMs, _brokerRequest, _maxNumThreads);
     }
   }
 
@@ -0,0 +1,66 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.core.plan;
+
+import org.apache.pinot.core.common.Operator;
+import org.apache.pinot.core.operator.DocIdRangeOperator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * The <code>DocIdRangePlanNode</code> class provides the execution plan for one document id range of a large segment
+ * that is split into multiple ranges so that the ranges can be processed in parallel and combined like segments.
+ */
+public class DocIdRangePlanNode implements PlanNode {
+  private static final Logger LOGGER = LoggerFactory.getLogger(DocIdRangePlanNode.class);
+
+  private final PlanNode _planNode;
+  private final int _rangeIndex;
+  private final Operator[] _rangeOperators;
+
+  /**
+   * Constructor for the class.
+   *
+   * @param planNode Segment level plan node restricted to the document id range
+   * @param rangeIndex Index of the document id range within the segment
+   * @param rangeOperators Shared array to hold the operators for all the document id ranges of the segment
+   */
+  public DocIdRangePlanNode(PlanNode planNode, int rangeIndex, Operator[] rangeOperators) {
+    _planNode = planNode;
+    _rangeIndex = rangeIndex;
+    _rangeOperators = rangeOperators;
+  }
+
+  @Override
+  public DocIdRangeOperator run() {
+    Operator operator = _planNode.run();
+    _rangeOperators[_rangeIndex] = operator;
+    return new DocIdRangeOperator(operator, _rangeIndex, _rangeOperators);
+  }
+
+  @Override
+  public void showTree(String prefix) {
+    LOGGER.debug(prefix + "DocId Range Plan Node:");
+    LOGGER.debug(prefix + "Operator: DocIdRangeOperator");
+    LOGGER.debug(prefix + "Argument 0: Range Index - " + _rangeIndex + " of " + _rangeOperators.length);
+    LOGGER.debug(prefix + "Argument 1: PlanNode -");
+    _planNode.showTree(prefix + "    ");
+  }
+}
@@ -19,6 +19,7 @@
 package org.apache.pinot.core.plan;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import javax.annotation.Nullable;
@@ -38,6 +39,7 @@ import org.apache.pinot.core.operator.filter.FilterOperatorUtils;
 import org.apache.pinot.core.operator.filter.MatchAllFilterOperator;
 import org.apache.pinot.core.operator.filter.predicate.PredicateEvaluator;
 import org.apache.pinot.core.operator.filter.predicate.PredicateEvaluatorProvider;
+import org.apache.pinot.core.realtime.impl.ThreadSafeMutableRoaringBitmap;
 import org.roaringbitmap.buffer.ImmutableRoaringBitmap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -47,23 +49,51 @@ public class FilterPlanNode implements PlanNode {
   private static final Logger LOGGER = LoggerFactory.getLogger(FilterPlanNode.class);
   private final BrokerRequest _brokerRequest;
   private final IndexSegment _segment;
+  private final int _startDocId;
+  private final int _endDocId;
 
   public FilterPlanNode(IndexSegment segment, BrokerRequest brokerRequest) {
+    this(segment, brokerRequest, 0, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Constructs the plan node to only filter the documents within the given range [startDocId, endDocId), so that the
+   * leaf filter operators do not scan the documents outside of the range.
+   */
+  public FilterPlanNode(IndexSegment segment, BrokerRequest brokerRequest, int startDocId, int endDocId) {
     _segment = segment;
     _brokerRequest = brokerRequest;
+    _startDocId = startDocId;
+    _endDocId = endDocId;
   }
 
   @Override
   public BaseFilterOperator run() {
     FilterQueryTree rootFilterNode = RequestUtils.generateFilterQueryTree(_brokerRequest);
-    return constructPhysicalOperator(rootFilterNode, _segment, _brokerRequest.getDebugOptions());
+    Map<String, String> debugOptions = _brokerRequest.getDebugOptions();
+    int numDocs = _segment.getSegmentMetadata().getTotalDocs();
+    int endDocId = Math.min(_endDocId, numDocs);
+    BaseFilterOperator filterOperator =
+        constructPhysicalOperator(rootFilterNode, _segment, _startDocId, endDocId, debugOptions);
+
+    // For upsert, only match the documents holding the latest record of their primary key
+    ThreadSafeMutableRoaringBitmap validDocIds = _segment.getValidDocIds();
+    if (validDocIds != null) {
+      BaseFilterOperator validDocFilterOperator =
+          new BitmapBasedFilterOperator(new ImmutableRoaringBitmap[]{validDocIds.getMutableRoaringBitmap()},
+              _startDocId, endDocId - 1, false);
+      return FilterOperatorUtils
+          .getAndFilterOperator(Arrays.asList(filterOperator, validDocFilterOperator), numDocs, debugOptions);
+    }
+    return filterOperator;
   }
 
   /**
-   * Helper method to build the operator tree from the filter query tree.
+   * Helper method to build the operator tree from the filter query tree, where the leaf filter operators only filter
+   * the documents within the range [startDocId, endDocId).
    */
   private static BaseFilterOperator constructPhysicalOperator(FilterQueryTree filterQueryTree, IndexSegment segment,
-      @Nullable Map<String, String> debugOptions) {
+      int startDocId, int endDocId, @Nullable Map<String, String> debugOptions) {
     int numDocs = segment.getSegmentMetadata().getTotalDocs();
     if (filterQueryTree == null) {
       return new MatchAllFilterOperator(numDocs);
@@ -78,7 +108,8 @@ public class FilterPlanNode implements PlanNode {
       if (filterType == FilterOperator.AND) {
         // AND operator
         for (FilterQueryTree childFilter : childFilters) {
-          BaseFilterOperator childFilterOperator = constructPhysicalOperator(childFilter, segment, debugOptions);
+          BaseFilterOperator childFilterOperator =
+              constructPhysicalOperator(childFilter, segment, startDocId, endDocId, debugOptions);
           if (childFilterOperator.isResultEmpty()) {
             // Return empty filter operator if any of the child filter operator's result is empty
             return EmptyFilterOperator.getInstance();
@@ -91,7 +122,8 @@ public class FilterPlanNode implements PlanNode {
       } else {
         // OR operator
         for (FilterQueryTree childFilter : childFilters) {
-          BaseFilterOperator childFilterOperator = constructPhysicalOperator(childFilter, segment, debugOptions);
+          BaseFilterOperator childFilterOperator =
+              constructPhysicalOperator(childFilter, segment, startDocId, endDocId, debugOptions);
           if (childFilterOperator.isResultMatchingAll()) {
             // Return match all filter operator if any of the child filter operator matches all records
             return new MatchAllFilterOperator(numDocs);
@@ -112,19 +144,21 @@ public class FilterPlanNode implements PlanNode {
         DataSource dataSource = segment.getDataSource(filterQueryTree.getColumn());
         ImmutableRoaringBitmap nullBitmap = dataSource.getNullValueVector().getNullBitmap();
         boolean exclusive = (type == Predicate.Type.IS_NOT_NULL);
-        return new BitmapBasedFilterOperator(new ImmutableRoaringBitmap[]{nullBitmap}, 0, numDocs - 1, exclusive);
+        return new BitmapBasedFilterOperator(new ImmutableRoaringBitmap[]{nullBitmap}, startDocId, endDocId - 1,
+            exclusive);
       }
 
       TransformExpressionTree expression = filterQueryTree.getExpression();
       if (expression.getExpressionType() == TransformExpressionTree.ExpressionType.FUNCTION) {
 
-        return new ExpressionFilterOperator(segment, expression, predicate);
+        return new ExpressionFilterOperator(segment, expression, predicate, startDocId, endDocId);
       } else {
         DataSource dataSource = segment.getDataSource(filterQueryTree.getColumn());
         PredicateEvaluator predicateEvaluator = PredicateEvaluatorProvider
             .getPredicateEvaluator(predicate, dataSource.getDictionary(),
                 dataSource.getDataSourceMetadata().getDataType());
-        return FilterOperatorUtils.getLeafFilterOperator(predicateEvaluator, dataSource, numDocs);
+        return FilterOperatorUtils
+            .getLeafFilterOperator(predicateEvaluator, dataSource, numDocs, startDocId, endDocId);
       }
     }
   }
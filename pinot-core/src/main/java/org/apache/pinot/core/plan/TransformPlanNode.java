@@ -44,6 +44,14 @@ public class TransformPlanNode implements PlanNode {
 
   public TransformPlanNode(IndexSegment indexSegment, BrokerRequest brokerRequest,
       Set<TransformExpressionTree> expressionsToPlan) {
+    this(indexSegment, brokerRequest, expressionsToPlan, 0, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Constructor for the transform plan on the document id range [startDocId, endDocId) of the segment.
+   */
+  public TransformPlanNode(IndexSegment indexSegment, BrokerRequest brokerRequest,
+      Set<TransformExpressionTree> expressionsToPlan, int startDocId, int endDocId) {
     _segmentName = indexSegment.getSegmentName();
 
     setMaxDocsForSelection(brokerRequest);
@@ -52,7 +60,7 @@ public class TransformPlanNode implements PlanNode {
 
     _expressions = expressionsToPlan;
     _projectionPlanNode = new ProjectionPlanNode(indexSegment, projectionColumns,
-        new DocIdSetPlanNode(indexSegment, brokerRequest, _maxDocPerNextCall));
+        new DocIdSetPlanNode(indexSegment, brokerRequest, _maxDocPerNextCall, startDocId, endDocId));
   }
 
   private void extractProjectionColumns(Set<TransformExpressionTree> expressionsToPlan, Set<String> projectionColumns) {
@@ -23,17 +23,25 @@ import com.google.common.base.Preconditions;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
+import javax.annotation.Nullable;
 import org.apache.pinot.common.function.AggregationFunctionType;
 import org.apache.pinot.common.request.AggregationInfo;
 import org.apache.pinot.common.request.BrokerRequest;
 import org.apache.pinot.common.request.transform.TransformExpressionTree;
+import org.apache.pinot.common.utils.request.RequestUtils;
+import org.apache.pinot.core.common.Operator;
 import org.apache.pinot.core.data.manager.SegmentDataManager;
 import org.apache.pinot.core.indexsegment.IndexSegment;
+import org.apache.pinot.core.indexsegment.immutable.ImmutableSegment;
+import org.apache.pinot.core.indexsegment.mutable.MutableSegment;
+import org.apache.pinot.core.operator.CombineOperator;
 import org.apache.pinot.core.plan.AggregationGroupByOrderByPlanNode;
 import org.apache.pinot.core.plan.AggregationGroupByPlanNode;
 import org.apache.pinot.core.plan.AggregationPlanNode;
+import org.apache.pinot.core.plan.CachedSegmentResultPlanNode;
 import org.apache.pinot.core.plan.CombinePlanNode;
 import org.apache.pinot.core.plan.DictionaryBasedAggregationPlanNode;
+import org.apache.pinot.core.plan.DocIdRangePlanNode;
 import org.apache.pinot.core.plan.GlobalPlanImplV0;
 import org.apache.pinot.core.plan.InstanceResponsePlanNode;
 import org.apache.pinot.core.plan.MetadataBasedAggregationPlanNode;
@@ -42,7 +50,9 @@ import org.apache.pinot.core.plan.PlanNode;
 import org.apache.pinot.core.plan.SelectionPlanNode;
 import org.apache.pinot.core.query.aggregation.function.AggregationFunctionUtils;
 import org.apache.pinot.core.query.config.QueryExecutorConfig;
+import org.apache.pinot.core.query.executor.SegmentResultCache;
 import org.apache.pinot.core.segment.index.readers.Dictionary;
+import org.apache.pinot.core.startree.StarTreeUtils;
 import org.apache.pinot.core.util.QueryOptions;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -58,21 +68,37 @@ public class InstancePlanMakerImplV2 implements PlanMaker {
   public static final int DEFAULT_MAX_INITIAL_RESULT_HOLDER_CAPACITY = 10_000;
   public static final String NUM_GROUPS_LIMIT = "num.groups.limit";
   public static final int DEFAULT_NUM_GROUPS_LIMIT = 100_000;
+  public static final String MIN_DOCS_PER_SEGMENT_SPLIT_KEY = "min.docs.per.segment.split";
+  public static final int DEFAULT_MIN_DOCS_PER_SEGMENT_SPLIT = 1_000_000;
 
   private final int _maxInitialResultHolderCapacity;
   // Limit on number of groups stored for each segment, beyond which no new group will be created
   private final int _numGroupsLimit;
+  // Minimum number of documents in each document id range when splitting a segment into multiple ranges to be
+  // processed in parallel, non-positive value disables the segment split
+  private final int _minDocsPerSegmentSplit;
+  // Cache of the per-segment results for the immutable segments, null if disabled
+  private final SegmentResultCache _segmentResultCache;
 
   @VisibleForTesting
   public InstancePlanMakerImplV2() {
     _maxInitialResultHolderCapacity = DEFAULT_MAX_INITIAL_RESULT_HOLDER_CAPACITY;
     _numGroupsLimit = DEFAULT_NUM_GROUPS_LIMIT;
+    _minDocsPerSegmentSplit = DEFAULT_MIN_DOCS_PER_SEGMENT_SPLIT;
+    _segmentResultCache = null;
   }
 
   @VisibleForTesting
   public InstancePlanMakerImplV2(int maxInitialResultHolderCapacity, int numGroupsLimit) {
+    this(maxInitialResultHolderCapacity, numGroupsLimit, DEFAULT_MIN_DOCS_PER_SEGMENT_SPLIT);
+  }
+
+  @VisibleForTesting
+  public InstancePlanMakerImplV2(int maxInitialResultHolderCapacity, int numGroupsLimit, int minDocsPerSegmentSplit) {
     _maxInitialResultHolderCapacity = maxInitialResultHolderCapacity;
     _numGroupsLimit = numGroupsLimit;
+    _minDocsPerSegmentSplit = minDocsPerSegmentSplit;
+    _segmentResultCache = null;
   }
 
   /**
@@ -80,19 +106,35 @@ public class InstancePlanMakerImplV2 implements PlanMaker {
    * <ul>
    *   <li>Set limit on the initial result holder capacity</li>
    *   <li>Set limit on number of groups returned from each segment and combined result</li>
+   *   <li>Set minimum number of documents in each document id range when splitting large segments</li>
    * </ul>
    *
    * @param queryExecutorConfig Query executor configuration
    */
   public InstancePlanMakerImplV2(QueryExecutorConfig queryExecutorConfig) {
+    this(queryExecutorConfig, null);
+  }
+
+  /**
+   * Constructor for usage when client requires to pass {@link QueryExecutorConfig} to this class, and to serve the
+   * results of the immutable segments from the given {@link SegmentResultCache} when available.
+   *
+   * @param queryExecutorConfig Query executor configuration
+   * @param segmentResultCache Cache of the per-segment results, or null to disable the cache
+   */
+  public InstancePlanMakerImplV2(QueryExecutorConfig queryExecutorConfig,
+      @Nullable SegmentResultCache segmentResultCache) {
     _maxInitialResultHolderCapacity = queryExecutorConfig.getConfig()
         .getInt(MAX_INITIAL_RESULT_HOLDER_CAPACITY_KEY, DEFAULT_MAX_INITIAL_RESULT_HOLDER_CAPACITY);
     _numGroupsLimit = queryExecutorConfig.getConfig().getInt(NUM_GROUPS_LIMIT, DEFAULT_NUM_GROUPS_LIMIT);
+    _minDocsPerSegmentSplit = queryExecutorConfig.getConfig()
+        .getInt(MIN_DOCS_PER_SEGMENT_SPLIT_KEY, DEFAULT_MIN_DOCS_PER_SEGMENT_SPLIT);
+    _segmentResultCache = segmentResultCache;
     Preconditions.checkState(_maxInitialResultHolderCapacity <= _numGroupsLimit,
         "Invalid configuration: maxInitialResultHolderCapacity: %d must be smaller or equal to numGroupsLimit: %d",
         _maxInitialResultHolderCapacity, _numGroupsLimit);
-    LOGGER.info("Initializing plan maker with maxInitialResultHolderCapacity: {}, numGroupsLimit: {}",
-        _maxInitialResultHolderCapacity, _numGroupsLimit);
+    LOGGER.info("Initializing plan maker with maxInitialResultHolderCapacity: {}, numGroupsLimit: {}, "
+            + "minDocsPerSegmentSplit: {}", _maxInitialResultHolderCapacity, _numGroupsLimit, _minDocsPerSegmentSplit);
   }
 
   @Override
@@ -126,25 +168,111 @@ public class InstancePlanMakerImplV2 implements PlanMaker {
   @Override
   public Plan makeInterSegmentPlan(List<SegmentDataManager> segmentDataManagers, BrokerRequest brokerRequest,
       ExecutorService executorService, long timeOutMs) {
+    return makeInterSegmentPlan(segmentDataManagers, brokerRequest, executorService, timeOutMs,
+        CombineOperator.MAX_NUM_THREADS_PER_QUERY);
+  }
+
+  @Override
+  public Plan makeInterSegmentPlan(List<SegmentDataManager> segmentDataManagers, BrokerRequest brokerRequest,
+      ExecutorService executorService, long timeOutMs, int maxNumThreads) {
     // TODO: pass in List<IndexSegment> directly.
     List<IndexSegment> indexSegments = new ArrayList<>(segmentDataManagers.size());
     for (SegmentDataManager segmentDataManager : segmentDataManagers) {
       indexSegments.add(segmentDataManager.getSegment());
     }
 
+    // When there are less segments than the threads available for the query, split the large segments into multiple
+    // document id ranges so that all the threads can be used
+    int numSegments = indexSegments.size();
+    int maxNumDocIdRangesPerSegment = 1;
+    if (_minDocsPerSegmentSplit > 0 && numSegments > 0 && numSegments < maxNumThreads) {
+      maxNumDocIdRangesPerSegment = maxNumThreads / numSegments;
+    }
+
+    // Group-by results hold references to the segment dictionaries, so they are not cached
+    String queryFingerprint = null;
+    if (_segmentResultCache != null && !brokerRequest.isEnableTrace() && !brokerRequest.isSetGroupBy()) {
+      queryFingerprint = RequestUtils.getQueryFingerprint(brokerRequest);
+    }
+
     List<PlanNode> planNodes = new ArrayList<>();
     for (IndexSegment indexSegment : indexSegments) {
-      planNodes.add(makeInnerSegmentPlan(indexSegment, brokerRequest));
+      int numDocIdRanges = 1;
+      if (maxNumDocIdRangesPerSegment > 1 && isFitForDocIdRangeSplit(brokerRequest, indexSegment)) {
+        numDocIdRanges = Math.min(maxNumDocIdRangesPerSegment,
+            indexSegment.getSegmentMetadata().getTotalDocs() / _minDocsPerSegmentSplit);
+      }
+      if (numDocIdRanges > 1) {
+        addDocIdRangePlans(planNodes, indexSegment, brokerRequest, numDocIdRanges);
+      } else if (queryFingerprint != null && !(indexSegment instanceof MutableSegment)
+          && indexSegment.getValidDocIds() == null) {
+        String key = SegmentResultCache
+            .getKey(brokerRequest.getQuerySource().getTableName(), indexSegment.getSegmentName(),
+                indexSegment.getSegmentMetadata().getCrc(), queryFingerprint);
+        planNodes.add(new CachedSegmentResultPlanNode(_segmentResultCache, key,
+            () -> makeInnerSegmentPlan(indexSegment, brokerRequest)));
+      } else {
+        planNodes.add(makeInnerSegmentPlan(indexSegment, brokerRequest));
+      }
     }
     CombinePlanNode combinePlanNode =
-        new CombinePlanNode(planNodes, brokerRequest, executorService, timeOutMs, _numGroupsLimit);
+        new CombinePlanNode(planNodes, brokerRequest, executorService, timeOutMs, _numGroupsLimit, maxNumThreads);
 
     return new GlobalPlanImplV0(new InstanceResponsePlanNode(combinePlanNode));
   }
 
+  /**
+   * Helper method to split the segment into multiple document id ranges, and add one plan for each range.
+   */
+  private void addDocIdRangePlans(List<PlanNode> planNodes, IndexSegment indexSegment, BrokerRequest brokerRequest,
+      int numDocIdRanges) {
+    int numTotalDocs = indexSegment.getSegmentMetadata().getTotalDocs();
+    Operator[] rangeOperators = new Operator[numDocIdRanges];
+    for (int i = 0; i < numDocIdRanges; i++) {
+      int startDocId = (int) ((long) numTotalDocs * i / numDocIdRanges);
+      int endDocId = (int) ((long) numTotalDocs * (i + 1) / numDocIdRanges);
+      PlanNode planNode;
+      if (brokerRequest.isSetGroupBy()) {
+        QueryOptions queryOptions = new QueryOptions(brokerRequest.getQueryOptions());
+        if (queryOptions.isGroupByModeSQL()) {
+          planNode = new AggregationGroupByOrderByPlanNode(indexSegment, brokerRequest, _maxInitialResultHolderCapacity,
+              _numGroupsLimit, startDocId, endDocId);
+        } else {
+          planNode = new AggregationGroupByPlanNode(indexSegment, brokerRequest, _maxInitialResultHolderCapacity,
+              _numGroupsLimit, startDocId, endDocId);
+        }
+      } else {
+        planNode = new AggregationPlanNode(indexSegment, brokerRequest, startDocId, endDocId);
+      }
+      planNodes.add(new DocIdRangePlanNode(planNode, i, rangeOperators));
+    }
+  }
+
+  /**
+   * Helper method to identify if the segment can be split into multiple document id ranges for the query.
+   * Currently only aggregation and aggregation group-by queries scanning immutable segments without star-tree are
+   * supported. Mutable segments are not split because the number of documents changes while consuming.
+   *
+   * @param brokerRequest Broker request
+   * @param indexSegment Index segment
+   * @return True if the segment can be split, false otherwise.
+   */
+  @VisibleForTesting
+  static boolean isFitForDocIdRangeSplit(BrokerRequest brokerRequest, IndexSegment indexSegment) {
+    if (!(indexSegment instanceof ImmutableSegment) || !brokerRequest.isSetAggregationsInfo()) {
+      return false;
+    }
+    if (indexSegment.getStarTrees() != null && !StarTreeUtils.isStarTreeDisabled(brokerRequest)) {
+      return false;
+    }
+    return brokerRequest.isSetGroupBy() || (!isFitForMetadataBasedPlan(brokerRequest, indexSegment)
+        && !isFitForDictionaryBasedPlan(brokerRequest, indexSegment));
+  }
+
   /**
    * Helper method to identify if query is fit to be be served purely based on metadata.
-   * Currently count queries without any filters are supported.
+   * Currently count queries without any filters are supported. Segments with upsert enabled are not supported as the
+   * metadata covers the invalid documents.
    * The code for supporting max and min is also in place, but disabled
    * It would have worked only for time columns and offline and non star tree cases.
    *
@@ -153,7 +281,8 @@ public class InstancePlanMakerImplV2 implements PlanMaker {
    * @return True if query can be served using metadata, false otherwise.
    */
   public static boolean isFitForMetadataBasedPlan(BrokerRequest brokerRequest, IndexSegment indexSegment) {
-    if (brokerRequest.getFilterQuery() != null || brokerRequest.isSetGroupBy()) {
+    if (brokerRequest.getFilterQuery() != null || brokerRequest.isSetGroupBy()
+        || indexSegment.getValidDocIds() != null) {
       return false;
     }
 
@@ -178,13 +307,15 @@ public class InstancePlanMakerImplV2 implements PlanMaker {
   /**
    * Helper method to identify if query is fit to be be served purely based on dictionary.
    * It can be served through dictionary only for min, max, minmaxrange queries as of now,
-   * and if a dictionary is present for the column
+   * and if a dictionary is present for the column. Segments with upsert enabled are not supported as the dictionary
+   * covers the invalid documents.
    * @param brokerRequest Broker request
    * @param indexSegment
    * @return True if query can be served using dictionary, false otherwise.
    */
   public static boolean isFitForDictionaryBasedPlan(BrokerRequest brokerRequest, IndexSegment indexSegment) {
-    if ((brokerRequest.getFilterQuery() != null) || brokerRequest.isSetGroupBy()) {
+    if ((brokerRequest.getFilterQuery() != null) || brokerRequest.isSetGroupBy()
+        || indexSegment.getValidDocIds() != null) {
       return false;
     }
     List<AggregationInfo> aggregationsInfo = brokerRequest.getAggregationsInfo();
@@ -52,4 +52,17 @@ public interface PlanMaker {
    */
   Plan makeInterSegmentPlan(List<SegmentDataManager> segmentDataManagers, BrokerRequest brokerRequest,
       ExecutorService executorService, long timeOutMs);
+
+  /**
+   * Make instance level {@link Plan} which contains execution plan on multiple segments.
+   *
+   * @param segmentDataManagers list of segment data manager.
+   * @param brokerRequest broker request.
+   * @param executorService executor service.
+   * @param timeOutMs time out in milliseconds.
+   * @param maxNumThreads maximum number of threads to execute the query.
+   * @return instance level plan.
+   */
+  Plan makeInterSegmentPlan(List<SegmentDataManager> segmentDataManagers, BrokerRequest brokerRequest,
+      ExecutorService executorService, long timeOutMs, int maxNumThreads);
 }
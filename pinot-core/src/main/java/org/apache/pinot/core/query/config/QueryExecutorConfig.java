@@ -35,6 +35,13 @@ public class QueryExecutorConfig {
   public static final String QUERY_PLANNER = "queryPlanner";
   // Prefix key of TimeOut
   public static final String TIME_OUT = "timeout";
+  // Key of max thread CPU time (across all threads) per query, query exceeding the limit will be killed
+  public static final String MAX_THREAD_CPU_TIME_MS = "max.thread.cpu.time.ms";
+  // Key of max thread allocated bytes (across all threads) per query, query exceeding the limit will be killed
+  public static final String MAX_THREAD_ALLOCATED_BYTES = "max.thread.allocated.bytes";
+  // Key of max size in bytes of the cached per-segment results of the immutable segments, non-positive value disables
+  // the cache
+  public static final String SEGMENT_RESULT_CACHE_MAX_BYTES = "segment.result.cache.max.bytes";
 
   private static final String[] REQUIRED_KEYS = {};
 
@@ -42,6 +49,9 @@ public class QueryExecutorConfig {
   private SegmentPrunerConfig _segmentPrunerConfig;
   private QueryPlannerConfig _queryPlannerConfig;
   private final long _timeOutMs;
+  private final long _maxThreadCpuTimeMs;
+  private final long _maxThreadAllocatedBytes;
+  private final long _segmentResultCacheMaxBytes;
 
   public QueryExecutorConfig(Configuration config)
       throws ConfigurationException {
@@ -50,6 +60,9 @@ public class QueryExecutorConfig {
     _segmentPrunerConfig = new SegmentPrunerConfig(_queryExecutorConfig.subset(QUERY_PRUNER));
     _queryPlannerConfig = new QueryPlannerConfig(_queryExecutorConfig.subset(QUERY_PLANNER));
     _timeOutMs = _queryExecutorConfig.getLong(TIME_OUT, -1);
+    _maxThreadCpuTimeMs = _queryExecutorConfig.getLong(MAX_THREAD_CPU_TIME_MS, -1);
+    _maxThreadAllocatedBytes = _queryExecutorConfig.getLong(MAX_THREAD_ALLOCATED_BYTES, -1);
+    _segmentResultCacheMaxBytes = _queryExecutorConfig.getLong(SEGMENT_RESULT_CACHE_MAX_BYTES, -1);
   }
 
   private void checkRequiredKeys()
@@ -76,4 +89,16 @@ public class QueryExecutorConfig {
   public long getTimeOut() {
     return _timeOutMs;
   }
+
+  public long getMaxThreadCpuTimeMs() {
+    return _maxThreadCpuTimeMs;
+  }
+
+  public long getMaxThreadAllocatedBytes() {
+    return _maxThreadAllocatedBytes;
+  }
+
+  public long getSegmentResultCacheMaxBytes() {
+    return _segmentResultCacheMaxBytes;
+  }
 }
@@ -50,6 +50,12 @@ public interface QueryExecutor {
    */
   void shutDown();
 
+  /**
+   * Returns the instance-level query timeout in milliseconds, which applies to the queries without timeout in the query
+   * options.
+   */
+  long getDefaultTimeoutMs();
+
   /**
    * Processes the query with the given executor service.
    */
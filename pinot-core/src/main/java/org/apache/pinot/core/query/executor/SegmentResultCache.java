@@ -0,0 +1,276 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.core.query.executor;
+
+import com.google.common.base.Preconditions;
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import org.apache.pinot.common.metrics.ServerMeter;
+import org.apache.pinot.common.metrics.ServerMetrics;
+import org.apache.pinot.common.utils.DataSchema;
+import org.apache.pinot.core.common.ObjectSerDeUtils;
+import org.apache.pinot.core.operator.ExecutionStatistics;
+import org.apache.pinot.core.operator.blocks.IntermediateResultsBlock;
+import org.apache.pinot.core.query.aggregation.AggregationFunctionContext;
+
+
+/**
+ * LRU cache of the per-segment query results ({@link IntermediateResultsBlock}) on the server, bounded by the estimated
+ * size in bytes of the cached keys and results.
+ * <p>The cache key should contain the segment name, the segment CRC and the query fingerprint, so that a refreshed
+ * segment never hits the results of its previous version (see {@link #getKey(String, String, String, String)}). Only
+ * immutable segments should be cached.
+ * <p>Combine operators merge the segment results into the first result block, so the cache never hands out the cached
+ * results directly, but a copy of them for each hit. Only aggregation-only and selection results are cached, because
+ * the group-by results hold references to the segment dictionaries.
+ */
+@ThreadSafe
+public class SegmentResultCache {
+  private static final long ROW_OVERHEAD_IN_BYTES = 16;
+  private static final long REFERENCE_SIZE_IN_BYTES = 8;
+  private static final long OBJECT_OVERHEAD_IN_BYTES = 16;
+  private static final long STRING_OVERHEAD_IN_BYTES = 40;
+
+  private final long _maxSizeInBytes;
+  private final ServerMetrics _serverMetrics;
+  private final LinkedHashMap<String, CachedResult> _entries = new LinkedHashMap<>(16, 0.75f, true);
+  private long _sizeInBytes;
+
+  public SegmentResultCache(long maxSizeInBytes, ServerMetrics serverMetrics) {
+    Preconditions.checkArgument(maxSizeInBytes > 0, "Max size in bytes must be positive");
+    _maxSizeInBytes = maxSizeInBytes;
+    _serverMetrics = serverMetrics;
+  }
+
+  public static String getKey(String tableNameWithType, String segmentName, String segmentCrc,
+      String queryFingerprint) {
+    return tableNameWithType + '\0' + segmentName + '\0' + segmentCrc + '\0' + queryFingerprint;
+  }
+
+  /**
+   * Returns the cached result for the given key, or {@code null} if it does not exist.
+   */
+  @Nullable
+  public CachedResult get(String key) {
+    CachedResult cachedResult;
+    synchronized (this) {
+      cachedResult = _entries.get(key);
+    }
+    if (cachedResult != null) {
+      _serverMetrics.addMeteredGlobalValue(ServerMeter.SEGMENT_RESULT_CACHE_HITS, 1L);
+    } else {
+      _serverMetrics.addMeteredGlobalValue(ServerMeter.SEGMENT_RESULT_CACHE_MISSES, 1L);
+    }
+    return cachedResult;
+  }
+
+  /**
+   * Caches a copy of the given segment result if it can be cached and fits into the cache, evicting the least recently
+   * used results as needed.
+   */
+  public void put(String key, IntermediateResultsBlock resultsBlock, ExecutionStatistics executionStatistics) {
+    CachedResult cachedResult = CachedResult.of(resultsBlock, executionStatistics);
+    if (cachedResult == null || getEntrySizeInBytes(key, cachedResult) > _maxSizeInBytes) {
+      return;
+    }
+    synchronized (this) {
+      CachedResult previousResult = _entries.put(key, cachedResult);
+      if (previousResult != null) {
+        _sizeInBytes -= getEntrySizeInBytes(key, previousResult);
+      }
+      _sizeInBytes += getEntrySizeInBytes(key, cachedResult);
+      Iterator<Map.Entry<String, CachedResult>> iterator = _entries.entrySet().iterator();
+      while (_sizeInBytes > _maxSizeInBytes) {
+        Map.Entry<String, CachedResult> entry = iterator.next();
+        _sizeInBytes -= getEntrySizeInBytes(entry.getKey(), entry.getValue());
+        iterator.remove();
+      }
+    }
+  }
+
+  public synchronized int size() {
+    return _entries.size();
+  }
+
+  public synchronized long getSizeInBytes() {
+    return _sizeInBytes;
+  }
+
+  /**
+   * Returns the estimated size in bytes of the cache entry, where the key (holding the query fingerprint) can be
+   * comparable to the size of the cached result.
+   */
+  private static long getEntrySizeInBytes(String key, CachedResult cachedResult) {
+    return CachedResult.estimateSizeInBytes(key) + cachedResult._sizeInBytes;
+  }
+
+  /**
+   * Cached result of a segment. The aggregation intermediate results are kept serialized as they can be modified when
+   * merged, and the selection rows are shared as they are never modified.
+   */
+  public static class CachedResult {
+    private final ExecutionStatistics _executionStatistics;
+    private final long _sizeInBytes;
+
+    // Aggregation-only result
+    private final AggregationFunctionContext[] _aggregationFunctionContexts;
+    private final ObjectSerDeUtils.ObjectType[] _objectTypes;
+    private final byte[][] _serializedAggregationResults;
+
+    // Selection result
+    private final DataSchema _dataSchema;
+    private final Collection<Object[]> _selectionResult;
+
+    private CachedResult(ExecutionStatistics executionStatistics, long sizeInBytes,
+        @Nullable AggregationFunctionContext[] aggregationFunctionContexts,
+        @Nullable ObjectSerDeUtils.ObjectType[] objectTypes, @Nullable byte[][] serializedAggregationResults,
+        @Nullable DataSchema dataSchema, @Nullable Collection<Object[]> selectionResult) {
+      _executionStatistics = executionStatistics;
+      _sizeInBytes = sizeInBytes;
+      _aggregationFunctionContexts = aggregationFunctionContexts;
+      _objectTypes = objectTypes;
+      _serializedAggregationResults = serializedAggregationResults;
+      _dataSchema = dataSchema;
+      _selectionResult = selectionResult;
+    }
+
+    /**
+     * Returns the cached result of the given segment result block, or {@code null} if it cannot be cached.
+     */
+    @Nullable
+    static CachedResult of(IntermediateResultsBlock resultsBlock, ExecutionStatistics executionStatistics) {
+      List<?> processingExceptions = resultsBlock.getProcessingExceptions();
+      if (processingExceptions != null && !processingExceptions.isEmpty()) {
+        return null;
+      }
+      if (resultsBlock.getAggregationGroupByResult() != null) {
+        return null;
+      }
+
+      List<Object> aggregationResult = resultsBlock.getAggregationResult();
+      if (aggregationResult != null) {
+        int numAggregationFunctions = aggregationResult.size();
+        ObjectSerDeUtils.ObjectType[] objectTypes = new ObjectSerDeUtils.ObjectType[numAggregationFunctions];
+        byte[][] serializedAggregationResults = new byte[numAggregationFunctions][];
+        long sizeInBytes = OBJECT_OVERHEAD_IN_BYTES;
+        for (int i = 0; i < numAggregationFunctions; i++) {
+          Object intermediateResult = aggregationResult.get(i);
+          if (intermediateResult == null) {
+            return null;
+          }
+          try {
+            objectTypes[i] = ObjectSerDeUtils.ObjectType.getObjectType(intermediateResult);
+          } catch (IllegalArgumentException e) {
+            // Unsupported type of intermediate result
+            return null;
+          }
+          serializedAggregationResults[i] = ObjectSerDeUtils.serialize(intermediateResult, objectTypes[i]);
+          sizeInBytes += OBJECT_OVERHEAD_IN_BYTES + serializedAggregationResults[i].length;
+        }
+        return new CachedResult(executionStatistics, sizeInBytes, resultsBlock.getAggregationFunctionContexts(),
+            objectTypes, serializedAggregationResults, null, null);
+      }
+
+      Collection<Object[]> selectionResult = resultsBlock.getSelectionResult();
+      if (selectionResult != null) {
+        long sizeInBytes = OBJECT_OVERHEAD_IN_BYTES;
+        for (Object[] row : selectionResult) {
+          sizeInBytes += ROW_OVERHEAD_IN_BYTES + row.length * REFERENCE_SIZE_IN_BYTES;
+          for (Object value : row) {
+            sizeInBytes += estimateSizeInBytes(value);
+          }
+        }
+        return new CachedResult(executionStatistics, sizeInBytes, null, null, null, resultsBlock.getDataSchema(),
+            copySelectionResult(selectionResult));
+      }
+
+      return null;
+    }
+
+    private static long estimateSizeInBytes(@Nullable Object value) {
+      if (value == null) {
+        return 0;
+      }
+      if (value instanceof String) {
+        return STRING_OVERHEAD_IN_BYTES + 2L * ((String) value).length();
+      }
+      if (value instanceof byte[]) {
+        return OBJECT_OVERHEAD_IN_BYTES + ((byte[]) value).length;
+      }
+      if (value instanceof int[] || value instanceof float[]) {
+        return OBJECT_OVERHEAD_IN_BYTES + 4L * Array.getLength(value);
+      }
+      if (value instanceof long[] || value instanceof double[]) {
+        return OBJECT_OVERHEAD_IN_BYTES + 8L * Array.getLength(value);
+      }
+      if (value instanceof String[]) {
+        long sizeInBytes = OBJECT_OVERHEAD_IN_BYTES;
+        for (String stringValue : (String[]) value) {
+          sizeInBytes += REFERENCE_SIZE_IN_BYTES + estimateSizeInBytes(stringValue);
+        }
+        return sizeInBytes;
+      }
+      return OBJECT_OVERHEAD_IN_BYTES + 8;
+    }
+
+    public ExecutionStatistics getExecutionStatistics() {
+      return _executionStatistics;
+    }
+
+    public long getSizeInBytes() {
+      return _sizeInBytes;
+    }
+
+    /**
+     * Returns a new result block with a copy of the cached result, which can be modified by the caller.
+     */
+    public IntermediateResultsBlock toResultsBlock() {
+      if (_serializedAggregationResults != null) {
+        int numAggregationFunctions = _serializedAggregationResults.length;
+        List<Object> aggregationResult = new ArrayList<>(numAggregationFunctions);
+        for (int i = 0; i < numAggregationFunctions; i++) {
+          aggregationResult.add(ObjectSerDeUtils.deserialize(_serializedAggregationResults[i], _objectTypes[i]));
+        }
+        return new IntermediateResultsBlock(_aggregationFunctionContexts, aggregationResult, false);
+      } else {
+        return new IntermediateResultsBlock(_dataSchema, copySelectionResult(_selectionResult));
+      }
+    }
+
+    /**
+     * Copies the selection rows into a new collection, keeping the ordering of the rows for selection order-by.
+     */
+    @SuppressWarnings("unchecked")
+    private static Collection<Object[]> copySelectionResult(Collection<Object[]> selectionResult) {
+      if (selectionResult instanceof PriorityQueue) {
+        return new PriorityQueue<>((PriorityQueue<Object[]>) selectionResult);
+      } else {
+        return new ArrayList<>(selectionResult);
+      }
+    }
+  }
+}
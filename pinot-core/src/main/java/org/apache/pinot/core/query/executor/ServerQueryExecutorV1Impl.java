@@ -23,10 +23,12 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
 import javax.annotation.concurrent.ThreadSafe;
 import org.apache.commons.configuration.Configuration;
 import org.apache.commons.configuration.ConfigurationException;
 import org.apache.pinot.common.exception.QueryException;
+import org.apache.pinot.common.metrics.ServerGauge;
 import org.apache.pinot.common.metrics.ServerMeter;
 import org.apache.pinot.common.metrics.ServerMetrics;
 import org.apache.pinot.common.metrics.ServerQueryPhase;
@@ -40,6 +42,7 @@ import org.apache.pinot.core.data.manager.SegmentDataManager;
 import org.apache.pinot.core.data.manager.TableDataManager;
 import org.apache.pinot.core.indexsegment.IndexSegment;
 import org.apache.pinot.core.indexsegment.mutable.MutableSegment;
+import org.apache.pinot.core.operator.CombineOperator;
 import org.apache.pinot.core.plan.Plan;
 import org.apache.pinot.core.plan.maker.InstancePlanMakerImplV2;
 import org.apache.pinot.core.plan.maker.PlanMaker;
@@ -47,6 +50,8 @@ import org.apache.pinot.core.query.config.QueryExecutorConfig;
 import org.apache.pinot.core.query.exception.BadQueryRequestException;
 import org.apache.pinot.core.query.pruner.SegmentPrunerService;
 import org.apache.pinot.core.query.request.ServerQueryRequest;
+import org.apache.pinot.core.query.request.context.QueryCancellationToken;
+import org.apache.pinot.core.query.request.context.QueryResourceTracker;
 import org.apache.pinot.core.query.request.context.TimerContext;
 import org.apache.pinot.core.segment.index.metadata.SegmentMetadata;
 import org.apache.pinot.core.util.QueryOptions;
@@ -65,6 +70,9 @@ public class ServerQueryExecutorV1Impl implements QueryExecutor {
   private PlanMaker _planMaker = null;
   private long _defaultTimeOutMs = CommonConstants.Server.DEFAULT_QUERY_EXECUTOR_TIMEOUT_MS;
   private ServerMetrics _serverMetrics;
+  private long _maxThreadCpuTimeNs;
+  private long _maxThreadAllocatedBytes;
+  private SegmentResultCache _segmentResultCache;
 
   @Override
   public synchronized void init(Configuration config, InstanceDataManager instanceDataManager,
@@ -77,10 +85,21 @@ public class ServerQueryExecutorV1Impl implements QueryExecutor {
       _defaultTimeOutMs = queryExecutorConfig.getTimeOut();
     }
     LOGGER.info("Default timeout for query executor : {}", _defaultTimeOutMs);
+    _maxThreadCpuTimeNs = TimeUnit.MILLISECONDS.toNanos(queryExecutorConfig.getMaxThreadCpuTimeMs());
+    _maxThreadAllocatedBytes = queryExecutorConfig.getMaxThreadAllocatedBytes();
+    LOGGER.info("Max thread CPU time per query: {}ns, max thread allocated bytes per query: {}", _maxThreadCpuTimeNs,
+        _maxThreadAllocatedBytes);
     LOGGER.info("Trying to build SegmentPrunerService");
     _segmentPrunerService = new SegmentPrunerService(queryExecutorConfig.getPrunerConfig());
+    long segmentResultCacheMaxBytes = queryExecutorConfig.getSegmentResultCacheMaxBytes();
+    if (segmentResultCacheMaxBytes > 0) {
+      LOGGER.info("Enabling segment result cache with max size: {} bytes", segmentResultCacheMaxBytes);
+      _segmentResultCache = new SegmentResultCache(segmentResultCacheMaxBytes, serverMetrics);
+      serverMetrics.addCallbackGauge(ServerGauge.SEGMENT_RESULT_CACHE_SIZE_IN_BYTES.getGaugeName(),
+          _segmentResultCache::getSizeInBytes);
+    }
     LOGGER.info("Trying to build QueryPlanMaker");
-    _planMaker = new InstancePlanMakerImplV2(queryExecutorConfig);
+    _planMaker = new InstancePlanMakerImplV2(queryExecutorConfig, _segmentResultCache);
     LOGGER.info("Trying to build QueryExecutorTimer");
   }
 
@@ -94,6 +113,11 @@ public class ServerQueryExecutorV1Impl implements QueryExecutor {
     LOGGER.info("Query executor shut down");
   }
 
+  @Override
+  public long getDefaultTimeoutMs() {
+    return _defaultTimeOutMs;
+  }
+
   @Override
   public DataTable processQuery(ServerQueryRequest queryRequest, ExecutorService executorService) {
     TimerContext timerContext = queryRequest.getTimerContext();
@@ -130,6 +154,12 @@ public class ServerQueryExecutorV1Impl implements QueryExecutor {
       return dataTable;
     }
 
+    // Query is cancelled (e.g. timed out on broker side) before getting executed, directly return
+    QueryCancellationToken cancellationToken = queryRequest.getCancellationToken();
+    if (cancellationToken.isCancelled()) {
+      return getCancelledDataTable(brokerRequest, requestId);
+    }
+
     String tableNameWithType = queryRequest.getTableNameWithType();
     TableDataManager tableDataManager = _instanceDataManager.getTableDataManager(tableNameWithType);
     Preconditions.checkState(tableDataManager != null, "Failed to find data manager for table: " + tableNameWithType);
@@ -156,6 +186,11 @@ public class ServerQueryExecutorV1Impl implements QueryExecutor {
     if (enableTrace) {
       TraceContext.register(requestId);
     }
+    QueryCancellationToken.register(cancellationToken);
+    QueryResourceTracker resourceTracker =
+        new QueryResourceTracker(cancellationToken, _maxThreadCpuTimeNs, _maxThreadAllocatedBytes);
+    queryRequest.setResourceTracker(resourceTracker);
+    QueryResourceTracker.register(resourceTracker);
 
     int numConsumingSegmentsProcessed = 0;
     long minIndexTimeMs = Long.MAX_VALUE;
@@ -204,9 +239,14 @@ public class ServerQueryExecutorV1Impl implements QueryExecutor {
         metadata.put(DataTable.NUM_SEGMENTS_PROCESSED, "0");
         metadata.put(DataTable.NUM_SEGMENTS_MATCHED, "0");
       } else {
+        // Use the parallelism picked by the resource manager if available
+        int parallelism = queryRequest.getParallelism();
+        if (parallelism <= 0) {
+          parallelism = CombineOperator.MAX_NUM_THREADS_PER_QUERY;
+        }
         TimerContext.Timer planBuildTimer = timerContext.startNewPhaseTimer(ServerQueryPhase.BUILD_QUERY_PLAN);
-        Plan globalQueryPlan =
-            _planMaker.makeInterSegmentPlan(segmentDataManagers, brokerRequest, executorService, remainingTimeMs);
+        Plan globalQueryPlan = _planMaker
+            .makeInterSegmentPlan(segmentDataManagers, brokerRequest, executorService, remainingTimeMs, parallelism);
         planBuildTimer.stopAndRecord();
 
         if (PRINT_QUERY_PLAN) {
@@ -222,20 +262,27 @@ public class ServerQueryExecutorV1Impl implements QueryExecutor {
 
         // Update the total docs in the metadata based on un-pruned segments.
         dataTable.getMetadata().put(DataTable.TOTAL_DOCS_METADATA_KEY, Long.toString(numTotalDocs));
+        dataTable.getMetadata().put(DataTable.QUERY_PARALLELISM_METADATA_KEY, Integer.toString(parallelism));
       }
     } catch (Exception e) {
-      _serverMetrics.addMeteredQueryValue(brokerRequest, ServerMeter.QUERY_EXECUTION_EXCEPTIONS, 1);
+      // Exception caused by query cancellation is handled after releasing the segments
+      if (!cancellationToken.isCancelled()) {
+        _serverMetrics.addMeteredQueryValue(brokerRequest, ServerMeter.QUERY_EXECUTION_EXCEPTIONS, 1);
 
-      // Do not log error for BadQueryRequestException because it's caused by bad query
-      if (e instanceof BadQueryRequestException) {
-        LOGGER.info("Caught BadQueryRequestException while processing requestId: {}, {}", requestId, e.getMessage());
-      } else {
-        LOGGER.error("Exception processing requestId {}", requestId, e);
+        // Do not log error for BadQueryRequestException because it's caused by bad query
+        if (e instanceof BadQueryRequestException) {
+          LOGGER.info("Caught BadQueryRequestException while processing requestId: {}, {}", requestId,
+              e.getMessage());
+        } else {
+          LOGGER.error("Exception processing requestId {}", requestId, e);
+        }
       }
 
       dataTable = new DataTableImplV2();
       dataTable.addException(QueryException.getException(QueryException.QUERY_EXECUTION_ERROR, e));
     } finally {
+      QueryResourceTracker.unregister();
+      QueryCancellationToken.unregister();
       for (SegmentDataManager segmentDataManager : segmentDataManagers) {
         tableDataManager.releaseSegment(segmentDataManager);
       }
@@ -247,10 +294,28 @@ public class ServerQueryExecutorV1Impl implements QueryExecutor {
       }
     }
 
+    // Discard the (partial) results for the cancelled query
+    if (cancellationToken.isCancelled()) {
+      if (resourceTracker.isLimitExceeded()) {
+        _serverMetrics.addMeteredQueryValue(brokerRequest, ServerMeter.QUERIES_KILLED_ON_RESOURCE_LIMIT, 1);
+        String errorMessage = resourceTracker.getLimitExceededMessage();
+        dataTable = new DataTableImplV2();
+        dataTable.addException(
+            QueryException.getException(QueryException.QUERY_RESOURCE_LIMIT_EXCEEDED_ERROR, errorMessage));
+        LOGGER.warn("Killed query with requestId: {}, {}", requestId, errorMessage);
+      } else {
+        return getCancelledDataTable(brokerRequest, requestId);
+      }
+    }
+
     queryProcessingTimer.stopAndRecord();
     long queryProcessingTime = queryProcessingTimer.getDurationMs();
     dataTable.getMetadata().put(DataTable.NUM_SEGMENTS_QUERIED, Integer.toString(numSegmentsQueried));
     dataTable.getMetadata().put(DataTable.TIME_USED_MS_METADATA_KEY, Long.toString(queryProcessingTime));
+    dataTable.getMetadata()
+        .put(DataTable.THREAD_CPU_TIME_NS_METADATA_KEY, Long.toString(resourceTracker.getCpuTimeNs()));
+    dataTable.getMetadata()
+        .put(DataTable.THREAD_ALLOCATED_BYTES_METADATA_KEY, Long.toString(resourceTracker.getAllocatedBytes()));
 
     if (numConsumingSegmentsProcessed > 0) {
       dataTable.getMetadata()
@@ -264,6 +329,18 @@ public class ServerQueryExecutorV1Impl implements QueryExecutor {
     return dataTable;
   }
 
+  /**
+   * Helper method to build the data table for cancelled query.
+   */
+  private DataTable getCancelledDataTable(BrokerRequest brokerRequest, long requestId) {
+    _serverMetrics.addMeteredQueryValue(brokerRequest, ServerMeter.QUERIES_CANCELLED, 1);
+    String errorMessage = "Query is cancelled";
+    DataTable dataTable = new DataTableImplV2();
+    dataTable.addException(QueryException.getException(QueryException.QUERY_CANCELLATION_ERROR, errorMessage));
+    LOGGER.info("{} while processing requestId: {}", errorMessage, requestId);
+    return dataTable;
+  }
+
   /**
    * Helper method to prune segments.
    *
@@ -20,10 +20,8 @@ package org.apache.pinot.core.query.reduce;
 
 import java.io.Serializable;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
-import java.util.Map;
 import org.apache.pinot.common.metrics.BrokerMetrics;
 import org.apache.pinot.common.request.AggregationInfo;
 import org.apache.pinot.common.request.BrokerRequest;
@@ -42,12 +40,16 @@ import org.apache.pinot.core.util.QueryOptions;
 /**
  * Helper class to reduce and set Aggregation results into the BrokerResponseNative
  */
-public class AggregationDataTableReducer implements DataTableReducer {
+public class AggregationDataTableReducer implements StreamingDataTableReducer {
   private final AggregationFunction[] _aggregationFunctions;
   private final List<AggregationInfo> _aggregationInfos;
   private final int _numAggregationFunctions;
   private final boolean _preserveType;
   private final boolean _responseFormatSql;
+  private final Object[] _intermediateResults;
+
+  // Data schema of the first reduced data table
+  private DataSchema _dataSchema;
 
   AggregationDataTableReducer(BrokerRequest brokerRequest, AggregationFunction[] aggregationFunctions,
       QueryOptions queryOptions) {
@@ -56,19 +58,52 @@ public class AggregationDataTableReducer implements DataTableReducer {
     _numAggregationFunctions = aggregationFunctions.length;
     _preserveType = queryOptions.isPreserveType();
     _responseFormatSql = queryOptions.isResponseFormatSQL();
+    _intermediateResults = new Object[_numAggregationFunctions];
   }
 
   /**
-   * Reduces data tables and sets aggregations results into
+   * Merges the aggregation results from the data table into the running intermediate results.
+   */
+  @Override
+  public void reduce(ServerRoutingInstance serverRoutingInstance, DataTable dataTable) {
+    DataSchema dataSchema = dataTable.getDataSchema();
+    if (_dataSchema == null) {
+      _dataSchema = dataSchema;
+    }
+    for (int i = 0; i < _numAggregationFunctions; i++) {
+      Object intermediateResultToMerge;
+      DataSchema.ColumnDataType columnDataType = dataSchema.getColumnDataType(i);
+      switch (columnDataType) {
+        case LONG:
+          intermediateResultToMerge = dataTable.getLong(0, i);
+          break;
+        case DOUBLE:
+          intermediateResultToMerge = dataTable.getDouble(0, i);
+          break;
+        case OBJECT:
+          intermediateResultToMerge = dataTable.getObject(0, i);
+          break;
+        default:
+          throw new IllegalStateException("Illegal column data type in aggregation results: " + columnDataType);
+      }
+      Object mergedIntermediateResult = _intermediateResults[i];
+      if (mergedIntermediateResult == null) {
+        _intermediateResults[i] = intermediateResultToMerge;
+      } else {
+        _intermediateResults[i] = _aggregationFunctions[i].merge(mergedIntermediateResult, intermediateResultToMerge);
+      }
+    }
+  }
+
+  /**
+   * Sets aggregations results into
    * 1. ResultTable if _responseFormatSql is true
    * 2. AggregationResults by default
    */
   @Override
-  public void reduceAndSetResults(String tableName, DataSchema dataSchema,
-      Map<ServerRoutingInstance, DataTable> dataTableMap, BrokerResponseNative brokerResponseNative,
+  public void setResults(String tableName, DataSchema dataSchema, BrokerResponseNative brokerResponseNative,
       BrokerMetrics brokerMetrics) {
-
-    if (dataTableMap.isEmpty()) {
+    if (_dataSchema == null) {
       if (_responseFormatSql) {
         DataSchema finalDataSchema = getResultTableDataSchema();
         brokerResponseNative.setResultTable(new ResultTable(finalDataSchema, Collections.emptyList()));
@@ -76,42 +111,10 @@ public class AggregationDataTableReducer implements DataTableReducer {
       return;
     }
 
-    assert dataSchema != null;
-
-    Collection<DataTable> dataTables = dataTableMap.values();
-
-    // Merge results from all data tables.
-    Object[] intermediateResults = new Object[_numAggregationFunctions];
-    for (DataTable dataTable : dataTables) {
-      for (int i = 0; i < _numAggregationFunctions; i++) {
-        Object intermediateResultToMerge;
-        DataSchema.ColumnDataType columnDataType = dataSchema.getColumnDataType(i);
-        switch (columnDataType) {
-          case LONG:
-            intermediateResultToMerge = dataTable.getLong(0, i);
-            break;
-          case DOUBLE:
-            intermediateResultToMerge = dataTable.getDouble(0, i);
-            break;
-          case OBJECT:
-            intermediateResultToMerge = dataTable.getObject(0, i);
-            break;
-          default:
-            throw new IllegalStateException("Illegal column data type in aggregation results: " + columnDataType);
-        }
-        Object mergedIntermediateResult = intermediateResults[i];
-        if (mergedIntermediateResult == null) {
-          intermediateResults[i] = intermediateResultToMerge;
-        } else {
-          intermediateResults[i] = _aggregationFunctions[i].merge(mergedIntermediateResult, intermediateResultToMerge);
-        }
-      }
-    }
-
     if (_responseFormatSql) {
-      brokerResponseNative.setResultTable(reduceToResultTable(intermediateResults));
+      brokerResponseNative.setResultTable(reduceToResultTable(_intermediateResults));
     } else {
-      brokerResponseNative.setAggregationResults(reduceToAggregationResult(intermediateResults, dataSchema));
+      brokerResponseNative.setAggregationResults(reduceToAggregationResult(_intermediateResults, _dataSchema));
     }
   }
 
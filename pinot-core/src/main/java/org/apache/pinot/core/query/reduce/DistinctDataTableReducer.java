@@ -22,11 +22,9 @@ import com.google.common.base.Preconditions;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
 import org.apache.pinot.common.metrics.BrokerMetrics;
 import org.apache.pinot.common.request.BrokerRequest;
 import org.apache.pinot.common.response.broker.BrokerResponseNative;
@@ -46,11 +44,13 @@ import org.apache.pinot.core.util.QueryOptions;
 /**
  * Helper class to reduce data tables and set results of distinct query into the BrokerResponseNative
  */
-public class DistinctDataTableReducer implements DataTableReducer {
+public class DistinctDataTableReducer implements StreamingDataTableReducer {
   private final BrokerRequest _brokerRequest;
   private final AggregationFunction _aggregationFunction;
   private final boolean _responseFormatSql;
 
+  private Object _mergedIntermediateResult;
+
   // TODO: queryOptions.isPreserveType() is ignored for DISTINCT queries.
   DistinctDataTableReducer(BrokerRequest brokerRequest, AggregationFunction aggregationFunction,
       QueryOptions queryOptions) {
@@ -60,16 +60,45 @@ public class DistinctDataTableReducer implements DataTableReducer {
   }
 
   /**
-   * Reduces and sets results of distinct into
+   * Merges the DistinctTable from the data table into the running DistinctTable.
+   */
+  @Override
+  public void reduce(ServerRoutingInstance serverRoutingInstance, DataTable dataTable) {
+    // DISTINCT is implemented as an aggregation function in the execution engine. Just like
+    // other aggregation functions, DISTINCT returns its result as a single object
+    // (of type DistinctTable) serialized by the server into the DataTable and deserialized
+    // by the broker from the DataTable. So there should be exactly 1 row and 1 column and that
+    // column value should be the serialized DistinctTable -- so essentially it is a DataTable
+    // inside a DataTable
+    DataSchema dataSchema = dataTable.getDataSchema();
+    Preconditions.checkState(dataSchema.size() == 1, "DataTable from server for DISTINCT should have exactly one row");
+    Preconditions.checkState(dataSchema.getColumnDataType(0) == DataSchema.ColumnDataType.OBJECT,
+        "DistinctAggregationFunction should return result of type OBJECT");
+    Preconditions.checkState(dataTable.getNumberOfRows() == 1);
+    // deserialize the DistinctTable
+    Object intermediateResultToMerge = dataTable.getObject(0, 0);
+    Preconditions.checkState(intermediateResultToMerge instanceof DistinctTable);
+    DistinctTable distinctTable = (DistinctTable) intermediateResultToMerge;
+    // since DistinctTable uses the Table interface and during deserialization, we didn't
+    // have all the necessary information w.r.t ORDER BY, limit etc, we set it now
+    // before merging so that resize/trimming/sorting happens correctly
+    distinctTable.addLimitAndOrderByInfo(_brokerRequest);
+    if (_mergedIntermediateResult == null) {
+      _mergedIntermediateResult = intermediateResultToMerge;
+    } else {
+      _mergedIntermediateResult = _aggregationFunction.merge(_mergedIntermediateResult, intermediateResultToMerge);
+    }
+  }
+
+  /**
+   * Sets results of distinct into
    * 1. ResultTable if _responseFormatSql is true
    * 2. SelectionResults by default
    */
   @Override
-  public void reduceAndSetResults(String tableName, DataSchema dataSchema,
-      Map<ServerRoutingInstance, DataTable> dataTableMap, BrokerResponseNative brokerResponseNative,
+  public void setResults(String tableName, DataSchema dataSchema, BrokerResponseNative brokerResponseNative,
       BrokerMetrics brokerMetrics) {
-
-    if (dataTableMap.isEmpty()) {
+    if (_mergedIntermediateResult == null) {
       if (_responseFormatSql) {
         // TODO: This returns schema with all STRING data types.
         //  There's no way currently to get the data types of the distinct columns for empty results
@@ -82,37 +111,7 @@ public class DistinctDataTableReducer implements DataTableReducer {
       return;
     }
 
-    assert dataSchema != null;
-    // DISTINCT is implemented as an aggregation function in the execution engine. Just like
-    // other aggregation functions, DISTINCT returns its result as a single object
-    // (of type DistinctTable) serialized by the server into the DataTable and deserialized
-    // by the broker from the DataTable. So there should be exactly 1 row and 1 column and that
-    // column value should be the serialized DistinctTable -- so essentially it is a DataTable
-    // inside a DataTable
-    Collection<DataTable> dataTables = dataTableMap.values();
-    Preconditions.checkState(dataSchema.size() == 1, "DataTable from server for DISTINCT should have exactly one row");
-    Preconditions.checkState(dataSchema.getColumnDataType(0) == DataSchema.ColumnDataType.OBJECT,
-        "DistinctAggregationFunction should return result of type OBJECT");
-    Object mergedIntermediateResult = null;
-    // go over all the data tables from servers
-    for (DataTable dataTable : dataTables) {
-      Preconditions.checkState(dataTable.getNumberOfRows() == 1);
-      // deserialize the DistinctTable
-      Object intermediateResultToMerge = dataTable.getObject(0, 0);
-      Preconditions.checkState(intermediateResultToMerge instanceof DistinctTable);
-      DistinctTable distinctTable = (DistinctTable) intermediateResultToMerge;
-      // since DistinctTable uses the Table interface and during deserialization, we didn't
-      // have all the necessary information w.r.t ORDER BY, limit etc, we set it now
-      // before merging so that resize/trimming/sorting happens correctly
-      distinctTable.addLimitAndOrderByInfo(_brokerRequest);
-      if (mergedIntermediateResult == null) {
-        mergedIntermediateResult = intermediateResultToMerge;
-      } else {
-        mergedIntermediateResult = _aggregationFunction.merge(mergedIntermediateResult, intermediateResultToMerge);
-      }
-    }
-
-    DistinctTable distinctTable = (DistinctTable) mergedIntermediateResult;
+    DistinctTable distinctTable = (DistinctTable) _mergedIntermediateResult;
     // finish the merging, sort (if ORDER BY), get iterator
     distinctTable.finish(true);
 
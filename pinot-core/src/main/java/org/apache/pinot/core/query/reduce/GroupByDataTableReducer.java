@@ -20,14 +20,17 @@ package org.apache.pinot.core.query.reduce;
 
 import java.io.Serializable;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.function.BiFunction;
+import javax.annotation.Nullable;
 import org.apache.calcite.sql.SqlKind;
 import org.apache.pinot.common.metrics.BrokerMeter;
 import org.apache.pinot.common.metrics.BrokerMetrics;
@@ -47,6 +50,7 @@ import org.apache.pinot.common.utils.DataTable;
 import org.apache.pinot.common.utils.request.RequestUtils;
 import org.apache.pinot.core.data.table.ConcurrentIndexedTable;
 import org.apache.pinot.core.data.table.IndexedTable;
+import org.apache.pinot.core.data.table.PartitionedIndexedTable;
 import org.apache.pinot.core.data.table.Record;
 import org.apache.pinot.core.query.aggregation.AggregationFunctionContext;
 import org.apache.pinot.core.query.aggregation.function.AggregationFunction;
@@ -60,7 +64,10 @@ import org.apache.pinot.core.util.QueryOptions;
 /**
  * Helper class to reduce data tables and set group by results into the BrokerResponseNative
  */
-public class GroupByDataTableReducer implements DataTableReducer {
+public class GroupByDataTableReducer implements StreamingDataTableReducer {
+  // Minimum number of rows of a data table to be upserted by each reduce thread
+  private static final int MIN_NUM_ROWS_PER_REDUCE_TASK = 10_000;
+
   private final BrokerRequest _brokerRequest;
   private final AggregationFunction[] _aggregationFunctions;
   private final List<AggregationInfo> _aggregationInfos;
@@ -75,9 +82,30 @@ public class GroupByDataTableReducer implements DataTableReducer {
   private final boolean _responseFormatSql;
   private final List<Expression> _sqlSelectionList;
   private final List<Expression> _groupByList;
+  private final ExecutorService _reduceExecutorService;
+  private final int _numReduceThreads;
+
+  // Running result for groupByMode = pql
+  private final String[] _columnNames;
+  private final Map<String, Object>[] _intermediateResultMaps;
+
+  // Data schema of the first reduced data table
+  private DataSchema _dataSchema;
+  // Running result for groupByMode = sql
+  private IndexedTable _indexedTable;
 
   GroupByDataTableReducer(BrokerRequest brokerRequest, AggregationFunction[] aggregationFunctions,
       QueryOptions queryOptions) {
+    this(brokerRequest, aggregationFunctions, queryOptions, null, 1);
+  }
+
+  /**
+   * With multiple reduce threads, the groups (groupByMode = sql) are hash-partitioned into a
+   * {@link PartitionedIndexedTable}, where large data tables are upserted, and the partitions are trimmed and sorted, by
+   * multiple threads from the executor service.
+   */
+  GroupByDataTableReducer(BrokerRequest brokerRequest, AggregationFunction[] aggregationFunctions,
+      QueryOptions queryOptions, @Nullable ExecutorService reduceExecutorService, int maxReduceThreads) {
     _brokerRequest = brokerRequest;
     _aggregationFunctions = aggregationFunctions;
     _aggregationInfos = brokerRequest.getAggregationsInfo();
@@ -97,19 +125,41 @@ public class GroupByDataTableReducer implements DataTableReducer {
       _sqlSelectionList = null;
       _groupByList = null;
     }
+    _columnNames = new String[_numAggregationFunctions];
+    //noinspection unchecked
+    _intermediateResultMaps = new Map[_numAggregationFunctions];
+    _reduceExecutorService = reduceExecutorService;
+    _numReduceThreads = reduceExecutorService != null ? maxReduceThreads : 1;
   }
 
   /**
-   * Reduces and sets group by results into ResultTable, if responseFormat = sql
+   * Folds the groups from the data table into the running result, which is an {@link IndexedTable} for groupByMode =
+   * sql, and one intermediate result map per aggregation function for groupByMode = pql.
+   */
+  @Override
+  public void reduce(ServerRoutingInstance serverRoutingInstance, DataTable dataTable) {
+    if (_dataSchema == null) {
+      _dataSchema = dataTable.getDataSchema();
+    }
+    if (_groupByModeSql) {
+      upsertDataTable(getIndexedTable(_dataSchema), dataTable);
+    } else {
+      mergeIntermediateResultMaps(dataTable);
+    }
+  }
+
+  /**
+   * Sets group by results into ResultTable, if responseFormat = sql
    * By default, sets group by results into GroupByResults
    */
   @Override
-  public void reduceAndSetResults(String tableName, DataSchema dataSchema,
-      Map<ServerRoutingInstance, DataTable> dataTableMap, BrokerResponseNative brokerResponseNative,
+  public void setResults(String tableName, DataSchema dataSchema, BrokerResponseNative brokerResponseNative,
       BrokerMetrics brokerMetrics) {
+    if (_dataSchema != null) {
+      dataSchema = _dataSchema;
+    }
     assert dataSchema != null;
     int resultSize = 0;
-    Collection<DataTable> dataTables = dataTableMap.values();
 
     // For group by, PQL behavior is different than the SQL behavior. In the PQL way,
     // a result is generated for each aggregation in the query,
@@ -130,7 +180,7 @@ public class GroupByDataTableReducer implements DataTableReducer {
         // 1. groupByMode = sql, responseFormat = sql
         // This is the primary SQL compliant group by
 
-        setSQLGroupByInResultTable(brokerResponseNative, dataSchema, dataTables);
+        setSQLGroupByInResultTable(brokerResponseNative, dataSchema);
         resultSize = brokerResponseNative.getResultTable().getRows().size();
       } else {
         // 2. groupByMode = sql, responseFormat = pql
@@ -138,7 +188,7 @@ public class GroupByDataTableReducer implements DataTableReducer {
         // This mode is useful for users who want to avail of SQL compliant group by behavior,
         // w/o having to forcefully move to a new result type
 
-        setSQLGroupByInAggregationResults(brokerResponseNative, dataSchema, dataTables);
+        setSQLGroupByInAggregationResults(brokerResponseNative, dataSchema);
         if (!brokerResponseNative.getAggregationResults().isEmpty()) {
           resultSize = brokerResponseNative.getAggregationResults().get(0).getGroupByResult().size();
         }
@@ -155,7 +205,7 @@ public class GroupByDataTableReducer implements DataTableReducer {
 
       boolean[] aggregationFunctionSelectStatus =
           AggregationFunctionUtils.getAggregationFunctionsSelectStatus(_aggregationInfos);
-      setGroupByHavingResults(brokerResponseNative, aggregationFunctionSelectStatus, dataTables,
+      setGroupByHavingResults(brokerResponseNative, aggregationFunctionSelectStatus,
           _brokerRequest.getHavingFilterQuery(), _brokerRequest.getHavingFilterSubQueryMap());
 
       if (_responseFormatSql) {
@@ -178,12 +228,11 @@ public class GroupByDataTableReducer implements DataTableReducer {
    * Extract group by order by results and set into {@link ResultTable}
    * @param brokerResponseNative broker response
    * @param dataSchema data schema
-   * @param dataTables Collection of data tables
    */
-  private void setSQLGroupByInResultTable(BrokerResponseNative brokerResponseNative, DataSchema dataSchema,
-      Collection<DataTable> dataTables) {
+  private void setSQLGroupByInResultTable(BrokerResponseNative brokerResponseNative, DataSchema dataSchema) {
 
-    IndexedTable indexedTable = getIndexedTable(dataSchema, dataTables);
+    IndexedTable indexedTable = getIndexedTable(dataSchema);
+    indexedTable.finish(true);
 
     int[] finalSchemaMapIdx = null;
     if (_sqlSelectionList != null) {
@@ -302,57 +351,108 @@ public class GroupByDataTableReducer implements DataTableReducer {
     return new DataSchema(columns, finalColumnDataTypes);
   }
 
-  private IndexedTable getIndexedTable(DataSchema dataSchema, Collection<DataTable> dataTables) {
-
-    int indexedTableCapacity = GroupByUtils.getTableCapacity(_groupBy, _orderBy);
-    IndexedTable indexedTable =
-        new ConcurrentIndexedTable(dataSchema, _aggregationInfos, _orderBy, indexedTableCapacity);
-
-    for (DataTable dataTable : dataTables) {
-      BiFunction[] functions = new BiFunction[_numColumns];
-      for (int i = 0; i < _numColumns; i++) {
-        DataSchema.ColumnDataType columnDataType = dataSchema.getColumnDataType(i);
-        BiFunction<Integer, Integer, Object> function;
-        switch (columnDataType) {
-          case INT:
-            function = dataTable::getInt;
-            break;
-          case LONG:
-            function = dataTable::getLong;
-            break;
-          case FLOAT:
-            function = dataTable::getFloat;
-            break;
-          case DOUBLE:
-            function = dataTable::getDouble;
-            break;
-          case STRING:
-            function = dataTable::getString;
-            break;
-          case BYTES:
-            function = dataTable::getBytes;
-            break;
-          case OBJECT:
-            function = dataTable::getObject;
-            break;
-          // Add other aggregation intermediate result / group-by column type supports here
-          default:
-            throw new IllegalStateException();
-        }
-        functions[i] = function;
+  /**
+   * Returns the running {@link IndexedTable}, creating it on first access.
+   */
+  private IndexedTable getIndexedTable(DataSchema dataSchema) {
+    if (_indexedTable == null) {
+      int indexedTableCapacity = GroupByUtils.getTableCapacity(_groupBy, _orderBy);
+      if (_numReduceThreads > 1) {
+        _indexedTable = new PartitionedIndexedTable(dataSchema, _aggregationInfos, _orderBy, indexedTableCapacity,
+            _numReduceThreads, _reduceExecutorService);
+      } else {
+        _indexedTable = new ConcurrentIndexedTable(dataSchema, _aggregationInfos, _orderBy, indexedTableCapacity);
       }
+    }
+    return _indexedTable;
+  }
+
+  private void upsertDataTable(IndexedTable indexedTable, DataTable dataTable) {
+    BiFunction[] functions = new BiFunction[_numColumns];
+    for (int i = 0; i < _numColumns; i++) {
+      DataSchema.ColumnDataType columnDataType = _dataSchema.getColumnDataType(i);
+      BiFunction<Integer, Integer, Object> function;
+      switch (columnDataType) {
+        case INT:
+          function = dataTable::getInt;
+          break;
+        case LONG:
+          function = dataTable::getLong;
+          break;
+        case FLOAT:
+          function = dataTable::getFloat;
+          break;
+        case DOUBLE:
+          function = dataTable::getDouble;
+          break;
+        case STRING:
+          function = dataTable::getString;
+          break;
+        case BYTES:
+          function = dataTable::getBytes;
+          break;
+        case OBJECT:
+          function = dataTable::getObject;
+          break;
+        // Add other aggregation intermediate result / group-by column type supports here
+        default:
+          throw new IllegalStateException();
+      }
+      functions[i] = function;
+    }
 
-      for (int row = 0; row < dataTable.getNumberOfRows(); row++) {
-        Object[] columns = new Object[_numColumns];
-        for (int col = 0; col < _numColumns; col++) {
-          columns[col] = functions[col].apply(row, col);
+    int numRows = dataTable.getNumberOfRows();
+    int numTasks = Math.min(_numReduceThreads,
+        (numRows + MIN_NUM_ROWS_PER_REDUCE_TASK - 1) / MIN_NUM_ROWS_PER_REDUCE_TASK);
+    if (numTasks <= 1) {
+      upsertRows(indexedTable, functions, 0, numRows);
+      return;
+    }
+
+    // Split the rows into chunks, and upsert them in parallel. The indexed table is thread safe, and the data table
+    // supports concurrent reads.
+    int numRowsPerTask = (numRows + numTasks - 1) / numTasks;
+    List<Future<?>> futures = new ArrayList<>(numTasks - 1);
+    for (int i = 1; i < numTasks; i++) {
+      int startRow = i * numRowsPerTask;
+      int endRow = Math.min(startRow + numRowsPerTask, numRows);
+      futures.add(_reduceExecutorService.submit(() -> upsertRows(indexedTable, functions, startRow, endRow)));
+    }
+    RuntimeException exception = null;
+    try {
+      upsertRows(indexedTable, functions, 0, numRowsPerTask);
+    } catch (RuntimeException e) {
+      exception = e;
+    }
+    // Wait for all the tasks before returning, as the data table can be released once it is reduced
+    for (Future<?> future : futures) {
+      try {
+        future.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        if (exception == null) {
+          exception = new RuntimeException("Interrupted while reducing the data table", e);
+        }
+      } catch (ExecutionException e) {
+        if (exception == null) {
+          exception = new RuntimeException("Caught exception while reducing the data table", e.getCause());
         }
-        Record record = new Record(columns);
-        indexedTable.upsert(record);
       }
     }
-    indexedTable.finish(true);
-    return indexedTable;
+    if (exception != null) {
+      throw exception;
+    }
+  }
+
+  private void upsertRows(IndexedTable indexedTable, BiFunction[] functions, int startRow, int endRow) {
+    for (int row = startRow; row < endRow; row++) {
+      Object[] columns = new Object[_numColumns];
+      for (int col = 0; col < _numColumns; col++) {
+        columns[col] = functions[col].apply(row, col);
+      }
+      Record record = new Record(columns);
+      indexedTable.upsert(record);
+    }
   }
 
   /**
@@ -360,10 +460,8 @@ public class GroupByDataTableReducer implements DataTableReducer {
    * There will be 1 aggregation result per aggregation. The group by keys will be the same across all aggregations
    * @param brokerResponseNative broker response
    * @param dataSchema data schema
-   * @param dataTables Collection of data tables
    */
-  private void setSQLGroupByInAggregationResults(BrokerResponseNative brokerResponseNative, DataSchema dataSchema,
-      Collection<DataTable> dataTables) {
+  private void setSQLGroupByInAggregationResults(BrokerResponseNative brokerResponseNative, DataSchema dataSchema) {
 
     List<String> groupByColumns = new ArrayList<>(_numGroupBy);
     int idx = 0;
@@ -380,8 +478,9 @@ public class GroupByDataTableReducer implements DataTableReducer {
       idx++;
     }
 
-    if (!dataTables.isEmpty()) {
-      IndexedTable indexedTable = getIndexedTable(dataSchema, dataTables);
+    if (_indexedTable != null) {
+      IndexedTable indexedTable = _indexedTable;
+      indexedTable.finish(true);
 
       Iterator<Record> sortedIterator = indexedTable.iterator();
       int numRows = 0;
@@ -450,43 +549,44 @@ public class GroupByDataTableReducer implements DataTableReducer {
   }
 
   /**
-   * Reduce group-by results from multiple servers and set them into BrokerResponseNative passed in.
+   * Merges the group-by results from the data table into the running intermediate result maps (groupByMode = pql).
+   */
+  private void mergeIntermediateResultMaps(DataTable dataTable) {
+    for (int i = 0; i < _numAggregationFunctions; i++) {
+      if (_columnNames[i] == null) {
+        _columnNames[i] = dataTable.getString(i, 0);
+        _intermediateResultMaps[i] = dataTable.getObject(i, 1);
+      } else {
+        Map<String, Object> mergedIntermediateResultMap = _intermediateResultMaps[i];
+        Map<String, Object> intermediateResultMapToMerge = dataTable.getObject(i, 1);
+        for (Map.Entry<String, Object> entry : intermediateResultMapToMerge.entrySet()) {
+          String groupKey = entry.getKey();
+          Object intermediateResultToMerge = entry.getValue();
+          if (mergedIntermediateResultMap.containsKey(groupKey)) {
+            Object mergedIntermediateResult = mergedIntermediateResultMap.get(groupKey);
+            mergedIntermediateResultMap
+                .put(groupKey, _aggregationFunctions[i].merge(mergedIntermediateResult, intermediateResultToMerge));
+          } else {
+            mergedIntermediateResultMap.put(groupKey, intermediateResultToMerge);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Set the merged group-by results from multiple servers into BrokerResponseNative passed in.
    *
    * @param brokerResponseNative broker response.
-   * @param dataTables Collection of data tables
    * @param havingFilterQuery having filter query
    * @param havingFilterQueryMap having filter query map
    */
   @SuppressWarnings("unchecked")
   private void setGroupByHavingResults(BrokerResponseNative brokerResponseNative,
-      boolean[] aggregationFunctionsSelectStatus, Collection<DataTable> dataTables, HavingFilterQuery havingFilterQuery,
+      boolean[] aggregationFunctionsSelectStatus, HavingFilterQuery havingFilterQuery,
       HavingFilterQueryMap havingFilterQueryMap) {
-
-    // Merge results from all data tables.
-    String[] columnNames = new String[_numAggregationFunctions];
-    Map<String, Object>[] intermediateResultMaps = new Map[_numAggregationFunctions];
-    for (DataTable dataTable : dataTables) {
-      for (int i = 0; i < _numAggregationFunctions; i++) {
-        if (columnNames[i] == null) {
-          columnNames[i] = dataTable.getString(i, 0);
-          intermediateResultMaps[i] = dataTable.getObject(i, 1);
-        } else {
-          Map<String, Object> mergedIntermediateResultMap = intermediateResultMaps[i];
-          Map<String, Object> intermediateResultMapToMerge = dataTable.getObject(i, 1);
-          for (Map.Entry<String, Object> entry : intermediateResultMapToMerge.entrySet()) {
-            String groupKey = entry.getKey();
-            Object intermediateResultToMerge = entry.getValue();
-            if (mergedIntermediateResultMap.containsKey(groupKey)) {
-              Object mergedIntermediateResult = mergedIntermediateResultMap.get(groupKey);
-              mergedIntermediateResultMap
-                  .put(groupKey, _aggregationFunctions[i].merge(mergedIntermediateResult, intermediateResultToMerge));
-            } else {
-              mergedIntermediateResultMap.put(groupKey, intermediateResultToMerge);
-            }
-          }
-        }
-      }
-    }
+    String[] columnNames = _columnNames;
+    Map<String, Object>[] intermediateResultMaps = _intermediateResultMaps;
 
     // Extract final result maps from the merged intermediate result maps.
     Map<String, Comparable>[] finalResultMaps = new Map[_numAggregationFunctions];
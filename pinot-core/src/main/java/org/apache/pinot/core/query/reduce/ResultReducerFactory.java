@@ -18,6 +18,8 @@
  */
 package org.apache.pinot.core.query.reduce;
 
+import java.util.concurrent.ExecutorService;
+import javax.annotation.Nullable;
 import org.apache.pinot.common.function.AggregationFunctionType;
 import org.apache.pinot.common.request.BrokerRequest;
 import org.apache.pinot.core.query.aggregation.function.AggregationFunction;
@@ -33,8 +35,17 @@ public final class ResultReducerFactory {
   /**
    * Constructs the right result reducer based on the broker request
    */
-  public static DataTableReducer getResultReducer(BrokerRequest brokerRequest) {
-    DataTableReducer dataTableReducer;
+  public static StreamingDataTableReducer getResultReducer(BrokerRequest brokerRequest) {
+    return getResultReducer(brokerRequest, null, 1);
+  }
+
+  /**
+   * Constructs the right result reducer based on the broker request, where the group-by reducer can use up to
+   * <code>maxReduceThreads</code> threads from the given executor service
+   */
+  public static StreamingDataTableReducer getResultReducer(BrokerRequest brokerRequest,
+      @Nullable ExecutorService reduceExecutorService, int maxReduceThreads) {
+    StreamingDataTableReducer dataTableReducer;
     QueryOptions queryOptions = new QueryOptions(brokerRequest.getQueryOptions());
     if (brokerRequest.getSelections() != null) {
       // Selection query
@@ -52,7 +63,8 @@ public final class ResultReducerFactory {
         }
       } else {
         // Aggregation group-by query
-        dataTableReducer = new GroupByDataTableReducer(brokerRequest, aggregationFunctions, queryOptions);
+        dataTableReducer = new GroupByDataTableReducer(brokerRequest, aggregationFunctions, queryOptions,
+            reduceExecutorService, maxReduceThreads);
       }
     }
     return dataTableReducer;
@@ -20,7 +20,6 @@ package org.apache.pinot.core.query.reduce;
 
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import org.apache.pinot.common.exception.QueryException;
@@ -46,12 +45,19 @@ import org.slf4j.LoggerFactory;
 /**
  * Helper class to reduce and set Selection results into the BrokerResponseNative
  */
-public class SelectionDataTableReducer implements DataTableReducer {
+public class SelectionDataTableReducer implements StreamingDataTableReducer {
   private static final Logger LOGGER = LoggerFactory.getLogger(SelectionDataTableReducer.class);
 
   private final Selection _selection;
   private final boolean _preserveType;
   private final boolean _responseFormatSql;
+  private final List<ServerRoutingInstance> _droppedServers = new ArrayList<>();
+  private final List<Object[]> _rows = new ArrayList<>();
+
+  // Data schema of the first reduced data table, upgraded to cover the following ones
+  private DataSchema _dataSchema;
+  // Only set for selection order-by queries
+  private SelectionOperatorService _selectionService;
 
   SelectionDataTableReducer(BrokerRequest brokerRequest, QueryOptions queryOptions) {
     _selection = brokerRequest.getSelections();
@@ -60,15 +66,77 @@ public class SelectionDataTableReducer implements DataTableReducer {
   }
 
   /**
-   * Reduces data tables and sets selection results into
+   * Folds the rows from the data table into the running selection rows.
+   * <p>The data schema of the first reduced data table is upgraded to cover the following ones, and data tables that
+   * are not compatible with it are dropped.
+   */
+  @Override
+  public void reduce(ServerRoutingInstance serverRoutingInstance, DataTable dataTable) {
+    if (checkDataSchema(serverRoutingInstance, dataTable)) {
+      reduceDataTables(Collections.singletonList(dataTable));
+    }
+  }
+
+  /**
+   * Folds the rows from the data tables into the running selection rows. For selection order-by, the sorted server
+   * responses are k-way merged together.
+   */
+  @Override
+  public void reduce(Map<ServerRoutingInstance, DataTable> dataTableMap) {
+    List<DataTable> dataTables = new ArrayList<>(dataTableMap.size());
+    for (Map.Entry<ServerRoutingInstance, DataTable> entry : dataTableMap.entrySet()) {
+      if (checkDataSchema(entry.getKey(), entry.getValue())) {
+        dataTables.add(entry.getValue());
+      }
+    }
+    if (!dataTables.isEmpty()) {
+      reduceDataTables(dataTables);
+    }
+  }
+
+  /**
+   * Upgrades the running data schema to cover the data schema of the data table, and returns whether the data table
+   * is compatible. Incompatible data tables are dropped.
+   */
+  private boolean checkDataSchema(ServerRoutingInstance serverRoutingInstance, DataTable dataTable) {
+    DataSchema dataSchema = dataTable.getDataSchema();
+    if (_dataSchema == null) {
+      _dataSchema = dataSchema;
+      if (_selection.getSize() > 0 && _selection.isSetSelectionSortSequence()) {
+        _selectionService = new SelectionOperatorService(_selection, dataSchema);
+      }
+      return true;
+    }
+    if (!_dataSchema.isTypeCompatibleWith(dataSchema)) {
+      _droppedServers.add(serverRoutingInstance);
+      return false;
+    }
+    _dataSchema.upgradeToCover(dataSchema);
+    return true;
+  }
+
+  private void reduceDataTables(List<DataTable> dataTables) {
+    if (_selectionService != null) {
+      // Selection order-by
+      _selectionService.reduceWithOrdering(dataTables);
+    } else {
+      // Selection only
+      int numRowsToAdd = _selection.getSize() - _rows.size();
+      if (numRowsToAdd > 0) {
+        _rows.addAll(SelectionOperatorUtils.reduceWithoutOrdering(dataTables, numRowsToAdd));
+      }
+    }
+  }
+
+  /**
+   * Sets selection results into
    * 1. ResultTable if _responseFormatSql is true
    * 2. SelectionResults by default
    */
   @Override
-  public void reduceAndSetResults(String tableName, DataSchema dataSchema,
-      Map<ServerRoutingInstance, DataTable> dataTableMap, BrokerResponseNative brokerResponseNative,
+  public void setResults(String tableName, DataSchema dataSchema, BrokerResponseNative brokerResponseNative,
       BrokerMetrics brokerMetrics) {
-    if (dataTableMap.isEmpty()) {
+    if (_dataSchema == null) {
       // For empty data table map, construct empty result using the cached data schema for selection query if exists
       List<String> selectionColumns =
           SelectionOperatorUtils.getSelectionColumns(_selection.getSelectionColumns(), dataSchema);
@@ -78,72 +146,39 @@ public class SelectionDataTableReducer implements DataTableReducer {
       } else {
         brokerResponseNative.setSelectionResults(new SelectionResults(selectionColumns, Collections.emptyList()));
       }
-    } else {
-      // For data table map with more than one data tables, remove conflicting data tables
-      if (dataTableMap.size() > 1) {
-        List<ServerRoutingInstance> droppedServers = removeConflictingResponses(dataSchema, dataTableMap);
-        if (!droppedServers.isEmpty()) {
-          String errorMessage = QueryException.MERGE_RESPONSE_ERROR.getMessage() + ": responses for table: " + tableName
-              + " from servers: " + droppedServers + " got dropped due to data schema inconsistency.";
-          LOGGER.warn(errorMessage);
-          if (brokerMetrics != null) {
-            brokerMetrics.addMeteredTableValue(TableNameBuilder.extractRawTableName(tableName),
-                BrokerMeter.RESPONSE_MERGE_EXCEPTIONS, 1L);
-          }
-          brokerResponseNative
-              .addToExceptions(new QueryProcessingException(QueryException.MERGE_RESPONSE_ERROR_CODE, errorMessage));
-        }
-      }
+      return;
+    }
 
-      int selectionSize = _selection.getSize();
-      if (selectionSize > 0 && _selection.isSetSelectionSortSequence()) {
-        // Selection order-by
-        SelectionOperatorService selectionService = new SelectionOperatorService(_selection, dataSchema);
-        selectionService.reduceWithOrdering(dataTableMap.values());
-        if (_responseFormatSql) {
-          brokerResponseNative.setResultTable(selectionService.renderResultTableWithOrdering());
-        } else {
-          brokerResponseNative.setSelectionResults(selectionService.renderSelectionResultsWithOrdering(_preserveType));
-        }
-      } else {
-        // Selection only
-        List<String> selectionColumns =
-            SelectionOperatorUtils.getSelectionColumns(_selection.getSelectionColumns(), dataSchema);
-        List<Object[]> reducedRows = SelectionOperatorUtils.reduceWithoutOrdering(dataTableMap.values(), selectionSize);
-        if (_responseFormatSql) {
-          brokerResponseNative
-              .setResultTable(SelectionOperatorUtils.renderResultTableWithoutOrdering(reducedRows, dataSchema));
-        } else {
-          brokerResponseNative.setSelectionResults(SelectionOperatorUtils
-              .renderSelectionResultsWithoutOrdering(reducedRows, dataSchema, selectionColumns, _preserveType));
-        }
+    if (!_droppedServers.isEmpty()) {
+      String errorMessage = QueryException.MERGE_RESPONSE_ERROR.getMessage() + ": responses for table: " + tableName
+          + " from servers: " + _droppedServers + " got dropped due to data schema inconsistency.";
+      LOGGER.warn(errorMessage);
+      if (brokerMetrics != null) {
+        brokerMetrics.addMeteredTableValue(TableNameBuilder.extractRawTableName(tableName),
+            BrokerMeter.RESPONSE_MERGE_EXCEPTIONS, 1L);
       }
+      brokerResponseNative
+          .addToExceptions(new QueryProcessingException(QueryException.MERGE_RESPONSE_ERROR_CODE, errorMessage));
     }
-  }
 
-  /**
-   * Given a data schema, remove data tables that are not compatible with this data schema.
-   * <p>Upgrade the data schema passed in to cover all remaining data schemas.
-   *
-   * @param dataSchema data schema.
-   * @param dataTableMap map from server to data table.
-   * @return list of server names where the data table got removed.
-   */
-  private List<ServerRoutingInstance> removeConflictingResponses(DataSchema dataSchema,
-      Map<ServerRoutingInstance, DataTable> dataTableMap) {
-    List<ServerRoutingInstance> droppedServers = new ArrayList<>();
-    Iterator<Map.Entry<ServerRoutingInstance, DataTable>> iterator = dataTableMap.entrySet().iterator();
-    while (iterator.hasNext()) {
-      Map.Entry<ServerRoutingInstance, DataTable> entry = iterator.next();
-      DataSchema dataSchemaToCompare = entry.getValue().getDataSchema();
-      assert dataSchemaToCompare != null;
-      if (!dataSchema.isTypeCompatibleWith(dataSchemaToCompare)) {
-        droppedServers.add(entry.getKey());
-        iterator.remove();
+    if (_selectionService != null) {
+      // Selection order-by
+      if (_responseFormatSql) {
+        brokerResponseNative.setResultTable(_selectionService.renderResultTableWithOrdering());
+      } else {
+        brokerResponseNative.setSelectionResults(_selectionService.renderSelectionResultsWithOrdering(_preserveType));
+      }
+    } else {
+      // Selection only
+      List<String> selectionColumns =
+          SelectionOperatorUtils.getSelectionColumns(_selection.getSelectionColumns(), _dataSchema);
+      if (_responseFormatSql) {
+        brokerResponseNative
+            .setResultTable(SelectionOperatorUtils.renderResultTableWithoutOrdering(_rows, _dataSchema));
       } else {
-        dataSchema.upgradeToCover(dataSchemaToCompare);
+        brokerResponseNative.setSelectionResults(SelectionOperatorUtils
+            .renderSelectionResultsWithoutOrdering(_rows, _dataSchema, selectionColumns, _preserveType));
       }
     }
-    return droppedServers;
   }
 }
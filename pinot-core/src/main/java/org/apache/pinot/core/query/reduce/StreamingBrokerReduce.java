@@ -0,0 +1,290 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.core.query.reduce;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import org.apache.calcite.sql.SqlKind;
+import org.apache.pinot.common.metrics.BrokerMeter;
+import org.apache.pinot.common.metrics.BrokerMetrics;
+import org.apache.pinot.common.metrics.BrokerTimer;
+import org.apache.pinot.common.request.BrokerRequest;
+import org.apache.pinot.common.request.Expression;
+import org.apache.pinot.common.request.Function;
+import org.apache.pinot.common.response.broker.BrokerResponseNative;
+import org.apache.pinot.common.response.broker.QueryProcessingException;
+import org.apache.pinot.common.utils.DataSchema;
+import org.apache.pinot.common.utils.DataTable;
+import org.apache.pinot.core.transport.ServerRoutingInstance;
+import org.apache.pinot.core.util.QueryOptions;
+import org.apache.pinot.spi.utils.builder.TableNameBuilder;
+
+
+/**
+ * The <code>StreamingBrokerReduce</code> class reduces the data tables of one query into {@link BrokerResponseNative}
+ * incrementally: each data table is folded into the running result as soon as it is received from the server, and
+ * {@link #finish(BrokerMetrics)} only does the last trim and formatting.
+ * <p>Data tables can be passed in from multiple threads, and are reduced one at a time. The reduce might block (e.g.
+ * waiting for the parallel group-by reduce tasks), so it should not run on the Netty threads receiving the server
+ * responses. Data tables passed in after the reduce is finished are ignored.
+ */
+@ThreadSafe
+public class StreamingBrokerReduce {
+  private final BrokerRequest _brokerRequest;
+  private final StreamingDataTableReducer _dataTableReducer;
+  private final BrokerResponseNative _brokerResponseNative = new BrokerResponseNative();
+
+  private int _numDataTablesReduced;
+  private long _numDocsScanned;
+  private long _numEntriesScannedInFilter;
+  private long _numEntriesScannedPostFilter;
+  private long _numSegmentsQueried;
+  private long _numSegmentsProcessed;
+  private long _numSegmentsMatched;
+  private long _numConsumingSegmentsProcessed;
+  private long _minConsumingFreshnessTimeMs = Long.MAX_VALUE;
+  private long _numTotalDocs;
+  private boolean _numGroupsLimitReached;
+  // Cache a data schema from data tables (try to cache one with data rows associated with it).
+  private DataSchema _cachedDataSchema;
+  private RuntimeException _reduceException;
+  private boolean _finished;
+
+  public StreamingBrokerReduce(BrokerRequest brokerRequest) {
+    this(brokerRequest, null, 1);
+  }
+
+  /**
+   * @param reduceExecutorService executor service for the parallel group-by reduce, null to reduce on the calling
+   *                              thread only
+   * @param maxReduceThreads maximum number of threads used to reduce the data tables
+   */
+  public StreamingBrokerReduce(BrokerRequest brokerRequest, @Nullable ExecutorService reduceExecutorService,
+      int maxReduceThreads) {
+    _brokerRequest = brokerRequest;
+    _dataTableReducer = ResultReducerFactory.getResultReducer(brokerRequest, reduceExecutorService, maxReduceThreads);
+  }
+
+  /**
+   * Folds the data table into the running result. The data table can be released once this method returns.
+   * <p>Exception thrown while reducing the data table is re-thrown from {@link #finish(BrokerMetrics)}, and the
+   * following data tables are ignored.
+   */
+  public synchronized void reduce(ServerRoutingInstance serverRoutingInstance, DataTable dataTable) {
+    if (_finished || _reduceException != null) {
+      return;
+    }
+    try {
+      if (reduceMetadataAndDataSchema(serverRoutingInstance, dataTable)) {
+        _dataTableReducer.reduce(serverRoutingInstance, dataTable);
+      }
+    } catch (RuntimeException e) {
+      _reduceException = e;
+    }
+  }
+
+  /**
+   * Folds a batch of data tables into the running result, which allows the reducer to merge them together (e.g. k-way
+   * merge the sorted selection rows). The data tables can be released once this method returns.
+   */
+  public synchronized void reduce(Map<ServerRoutingInstance, DataTable> dataTableMap) {
+    if (_finished || _reduceException != null) {
+      return;
+    }
+    try {
+      Map<ServerRoutingInstance, DataTable> dataTablesWithRows = new HashMap<>();
+      for (Map.Entry<ServerRoutingInstance, DataTable> entry : dataTableMap.entrySet()) {
+        if (reduceMetadataAndDataSchema(entry.getKey(), entry.getValue())) {
+          dataTablesWithRows.put(entry.getKey(), entry.getValue());
+        }
+      }
+      if (!dataTablesWithRows.isEmpty()) {
+        _dataTableReducer.reduce(dataTablesWithRows);
+      }
+    } catch (RuntimeException e) {
+      _reduceException = e;
+    }
+  }
+
+  /**
+   * Reduces the metadata and caches the data schema of the data table, and returns whether the data table has data
+   * rows to be folded into the running result.
+   */
+  private boolean reduceMetadataAndDataSchema(ServerRoutingInstance serverRoutingInstance, DataTable dataTable) {
+    reduceMetadata(serverRoutingInstance, dataTable.getMetadata());
+    _numDataTablesReduced++;
+
+    // After processing the metadata, only fold data tables with data rows inside.
+    DataSchema dataSchema = dataTable.getDataSchema();
+    if (dataSchema == null) {
+      return false;
+    }
+    if (dataTable.getNumberOfRows() == 0) {
+      if (_cachedDataSchema == null) {
+        _cachedDataSchema = dataSchema;
+      }
+      return false;
+    }
+    _cachedDataSchema = dataSchema;
+    return true;
+  }
+
+  private void reduceMetadata(ServerRoutingInstance serverRoutingInstance, Map<String, String> metadata) {
+    // Reduce on trace info.
+    if (_brokerRequest.isEnableTrace()) {
+      _brokerResponseNative.getTraceInfo()
+          .put(serverRoutingInstance.getHostname(), metadata.get(DataTable.TRACE_INFO_METADATA_KEY));
+    }
+
+    // Reduce on exceptions.
+    List<QueryProcessingException> processingExceptions = _brokerResponseNative.getProcessingExceptions();
+    for (String key : metadata.keySet()) {
+      if (key.startsWith(DataTable.EXCEPTION_METADATA_KEY)) {
+        processingExceptions.add(new QueryProcessingException(Integer.parseInt(key.substring(9)), metadata.get(key)));
+      }
+    }
+
+    // Reduce on execution statistics.
+    String numDocsScannedString = metadata.get(DataTable.NUM_DOCS_SCANNED_METADATA_KEY);
+    if (numDocsScannedString != null) {
+      _numDocsScanned += Long.parseLong(numDocsScannedString);
+    }
+    String numEntriesScannedInFilterString = metadata.get(DataTable.NUM_ENTRIES_SCANNED_IN_FILTER_METADATA_KEY);
+    if (numEntriesScannedInFilterString != null) {
+      _numEntriesScannedInFilter += Long.parseLong(numEntriesScannedInFilterString);
+    }
+    String numEntriesScannedPostFilterString = metadata.get(DataTable.NUM_ENTRIES_SCANNED_POST_FILTER_METADATA_KEY);
+    if (numEntriesScannedPostFilterString != null) {
+      _numEntriesScannedPostFilter += Long.parseLong(numEntriesScannedPostFilterString);
+    }
+    String numSegmentsQueriedString = metadata.get(DataTable.NUM_SEGMENTS_QUERIED);
+    if (numSegmentsQueriedString != null) {
+      _numSegmentsQueried += Long.parseLong(numSegmentsQueriedString);
+    }
+
+    String numSegmentsProcessedString = metadata.get(DataTable.NUM_SEGMENTS_PROCESSED);
+    if (numSegmentsProcessedString != null) {
+      _numSegmentsProcessed += Long.parseLong(numSegmentsProcessedString);
+    }
+    String numSegmentsMatchedString = metadata.get(DataTable.NUM_SEGMENTS_MATCHED);
+    if (numSegmentsMatchedString != null) {
+      _numSegmentsMatched += Long.parseLong(numSegmentsMatchedString);
+    }
+
+    String numConsumingString = metadata.get(DataTable.NUM_CONSUMING_SEGMENTS_PROCESSED);
+    if (numConsumingString != null) {
+      _numConsumingSegmentsProcessed += Long.parseLong(numConsumingString);
+    }
+
+    String minConsumingFreshnessTimeMsString = metadata.get(DataTable.MIN_CONSUMING_FRESHNESS_TIME_MS);
+    if (minConsumingFreshnessTimeMsString != null) {
+      _minConsumingFreshnessTimeMs =
+          Math.min(Long.parseLong(minConsumingFreshnessTimeMsString), _minConsumingFreshnessTimeMs);
+    }
+
+    String numTotalDocsString = metadata.get(DataTable.TOTAL_DOCS_METADATA_KEY);
+    if (numTotalDocsString != null) {
+      _numTotalDocs += Long.parseLong(numTotalDocsString);
+    }
+    _numGroupsLimitReached |= Boolean.parseBoolean(metadata.get(DataTable.NUM_GROUPS_LIMIT_REACHED_KEY));
+  }
+
+  /**
+   * Finishes the reduce, and returns the broker response with the reduced results and execution statistics.
+   */
+  public synchronized BrokerResponseNative finish(@Nullable BrokerMetrics brokerMetrics) {
+    _finished = true;
+    if (_reduceException != null) {
+      throw _reduceException;
+    }
+    if (_numDataTablesReduced == 0) {
+      // Empty response.
+      return BrokerResponseNative.empty();
+    }
+
+    // Set execution statistics.
+    _brokerResponseNative.setNumDocsScanned(_numDocsScanned);
+    _brokerResponseNative.setNumEntriesScannedInFilter(_numEntriesScannedInFilter);
+    _brokerResponseNative.setNumEntriesScannedPostFilter(_numEntriesScannedPostFilter);
+    _brokerResponseNative.setNumSegmentsQueried(_numSegmentsQueried);
+    _brokerResponseNative.setNumSegmentsProcessed(_numSegmentsProcessed);
+    _brokerResponseNative.setNumSegmentsMatched(_numSegmentsMatched);
+    _brokerResponseNative.setTotalDocs(_numTotalDocs);
+    _brokerResponseNative.setNumGroupsLimitReached(_numGroupsLimitReached);
+    if (_numConsumingSegmentsProcessed > 0) {
+      _brokerResponseNative.setNumConsumingSegmentsQueried(_numConsumingSegmentsProcessed);
+      _brokerResponseNative.setMinConsumingFreshnessTimeMs(_minConsumingFreshnessTimeMs);
+    }
+
+    // Update broker metrics.
+    String tableName = _brokerRequest.getQuerySource().getTableName();
+    String rawTableName = TableNameBuilder.extractRawTableName(tableName);
+    if (brokerMetrics != null) {
+      brokerMetrics.addMeteredTableValue(rawTableName, BrokerMeter.DOCUMENTS_SCANNED, _numDocsScanned);
+      brokerMetrics
+          .addMeteredTableValue(rawTableName, BrokerMeter.ENTRIES_SCANNED_IN_FILTER, _numEntriesScannedInFilter);
+      brokerMetrics
+          .addMeteredTableValue(rawTableName, BrokerMeter.ENTRIES_SCANNED_POST_FILTER, _numEntriesScannedPostFilter);
+
+      if (_numConsumingSegmentsProcessed > 0 && _minConsumingFreshnessTimeMs > 0) {
+        brokerMetrics.addTimedTableValue(rawTableName, BrokerTimer.FRESHNESS_LAG_MS,
+            System.currentTimeMillis() - _minConsumingFreshnessTimeMs, TimeUnit.MILLISECONDS);
+      }
+    }
+
+    // NOTE: When there is no cached data schema, that means all servers encountered exception. In such case, return the
+    //       response with metadata only.
+    if (_cachedDataSchema == null) {
+      return _brokerResponseNative;
+    }
+
+    _dataTableReducer.setResults(tableName, _cachedDataSchema, _brokerResponseNative, brokerMetrics);
+    updateAliasToSchemaName(_brokerRequest, _brokerResponseNative);
+    return _brokerResponseNative;
+  }
+
+  private static void updateAliasToSchemaName(BrokerRequest brokerRequest, BrokerResponseNative brokerResponseNative) {
+    if (brokerRequest.getPinotQuery() == null) {
+      return;
+    }
+    QueryOptions queryOptions = new QueryOptions(brokerRequest.getQueryOptions());
+    if (!queryOptions.isResponseFormatSQL()) {
+      return;
+    }
+    DataSchema dataSchema = brokerResponseNative.getResultTable().getDataSchema();
+    List<Expression> selectList = brokerRequest.getPinotQuery().getSelectList();
+    String[] columnNames = dataSchema.getColumnNames();
+    int selectListSize = selectList.size();
+    // For query like `SELECT *`, we skip alias update.
+    if (columnNames.length != selectListSize) {
+      return;
+    }
+    for (int i = 0; i < selectListSize; i++) {
+      Function selectFunc = selectList.get(i).getFunctionCall();
+      if (selectFunc != null && selectFunc.getOperator().equalsIgnoreCase(SqlKind.AS.toString())) {
+        columnNames[i] = selectFunc.getOperands().get(1).getIdentifier().getName();
+      }
+    }
+  }
+}
@@ -0,0 +1,74 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.core.query.reduce;
+
+import java.util.Map;
+import org.apache.pinot.common.metrics.BrokerMetrics;
+import org.apache.pinot.common.response.broker.BrokerResponseNative;
+import org.apache.pinot.common.utils.DataSchema;
+import org.apache.pinot.common.utils.DataTable;
+import org.apache.pinot.core.transport.ServerRoutingInstance;
+
+
+/**
+ * Interface for data table reducers that fold each data table into the running result as soon as it is received,
+ * instead of waiting for the data tables from all servers.
+ * <p>The reducer keeps the running result of one query, and should not be reused. Calls to
+ * {@link #reduce(ServerRoutingInstance, DataTable)} and
+ * {@link #setResults(String, DataSchema, BrokerResponseNative, BrokerMetrics)} should be serialized by the caller.
+ */
+public interface StreamingDataTableReducer extends DataTableReducer {
+
+  /**
+   * Folds a data table with data rows into the running result. The data table can be released once this method
+   * returns.
+   * @param serverRoutingInstance server that sent the data table
+   * @param dataTable data table with data rows
+   */
+  void reduce(ServerRoutingInstance serverRoutingInstance, DataTable dataTable);
+
+  /**
+   * Folds a batch of data tables with data rows into the running result. Reducers that merge multiple data tables
+   * together more efficiently than one at a time should override this method.
+   * @param dataTableMap map from server to data table with data rows
+   */
+  default void reduce(Map<ServerRoutingInstance, DataTable> dataTableMap) {
+    for (Map.Entry<ServerRoutingInstance, DataTable> entry : dataTableMap.entrySet()) {
+      reduce(entry.getKey(), entry.getValue());
+    }
+  }
+
+  /**
+   * Trims and formats the running result, and sets it into the BrokerResponseNative
+   * @param tableName table name
+   * @param dataSchema cached data schema, used to construct the empty result when no data table has been reduced
+   * @param brokerResponseNative broker response
+   * @param brokerMetrics broker metrics
+   */
+  void setResults(String tableName, DataSchema dataSchema, BrokerResponseNative brokerResponseNative,
+      BrokerMetrics brokerMetrics);
+
+  @Override
+  default void reduceAndSetResults(String tableName, DataSchema dataSchema,
+      Map<ServerRoutingInstance, DataTable> dataTableMap, BrokerResponseNative brokerResponseNative,
+      BrokerMetrics brokerMetrics) {
+    reduce(dataTableMap);
+    setResults(tableName, dataSchema, brokerResponseNative, brokerMetrics);
+  }
+}
@@ -33,7 +33,10 @@ import org.apache.pinot.common.request.Selection;
 import org.apache.pinot.common.request.transform.TransformExpressionTree;
 import org.apache.pinot.common.utils.request.FilterQueryTree;
 import org.apache.pinot.common.utils.request.RequestUtils;
+import org.apache.pinot.core.common.datatable.DataTableImplV2;
 import org.apache.pinot.core.query.aggregation.function.AggregationFunctionUtils;
+import org.apache.pinot.core.query.request.context.QueryCancellationToken;
+import org.apache.pinot.core.query.request.context.QueryResourceTracker;
 import org.apache.pinot.core.query.request.context.TimerContext;
 
 
@@ -50,10 +53,14 @@ public class ServerQueryRequest {
   private final List<String> _segmentsToQuery;
   private final boolean _enableTrace;
   private final String _brokerId;
+  private final int _dataTableVersion;
 
   // Timing information for different phases of query execution
   private final TimerContext _timerContext;
 
+  // Token to cancel the query
+  private final QueryCancellationToken _cancellationToken = new QueryCancellationToken();
+
   // Pre-computed segment independent information
   private final Set<String> _allColumns;
   private final FilterQueryTree _filterQueryTree;
@@ -67,6 +74,11 @@ public class ServerQueryRequest {
 
   // Query processing context
   private volatile int _segmentCountAfterPruning = -1;
+  private volatile QueryResourceTracker _resourceTracker;
+  // Expected cost (in thread milliseconds) of the query predicted by the scheduler's cost model, 0 if unknown
+  private volatile long _expectedCostMs;
+  // Number of threads picked by the resource manager to execute the query, -1 if not picked
+  private volatile int _parallelism = -1;
 
   public ServerQueryRequest(InstanceRequest instanceRequest, ServerMetrics serverMetrics, long queryArrivalTimeMs) {
     _requestId = instanceRequest.getRequestId();
@@ -75,6 +87,8 @@ public class ServerQueryRequest {
     _segmentsToQuery = instanceRequest.getSearchSegments();
     _enableTrace = instanceRequest.isEnableTrace();
     _brokerId = instanceRequest.getBrokerId() != null ? instanceRequest.getBrokerId() : "unknown";
+    _dataTableVersion =
+        instanceRequest.isSetDataTableVersion() ? instanceRequest.getDataTableVersion() : DataTableImplV2.VERSION;
     _timerContext = new TimerContext(_tableNameWithType, serverMetrics, queryArrivalTimeMs);
 
     // Pre-compute segment independent information
@@ -162,10 +176,53 @@ public class ServerQueryRequest {
     return _brokerId;
   }
 
+  /**
+   * Returns the version of the DataTable wire format requested by the broker.
+   */
+  public int getDataTableVersion() {
+    return _dataTableVersion;
+  }
+
   public TimerContext getTimerContext() {
     return _timerContext;
   }
 
+  public QueryCancellationToken getCancellationToken() {
+    return _cancellationToken;
+  }
+
+  /**
+   * Returns the resource tracker for the query, or <code>null</code> if the query has not started executing.
+   */
+  @Nullable
+  public QueryResourceTracker getResourceTracker() {
+    return _resourceTracker;
+  }
+
+  public void setResourceTracker(QueryResourceTracker resourceTracker) {
+    _resourceTracker = resourceTracker;
+  }
+
+  public long getExpectedCostMs() {
+    return _expectedCostMs;
+  }
+
+  public void setExpectedCostMs(long expectedCostMs) {
+    _expectedCostMs = expectedCostMs;
+  }
+
+  /**
+   * Returns the number of threads to execute the query, or <code>-1</code> if not picked by the resource manager (use
+   * the default number of threads).
+   */
+  public int getParallelism() {
+    return _parallelism;
+  }
+
+  public void setParallelism(int parallelism) {
+    _parallelism = parallelism;
+  }
+
   public Set<String> getAllColumns() {
     return _allColumns;
   }
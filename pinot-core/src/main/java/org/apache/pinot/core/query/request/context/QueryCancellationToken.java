@@ -0,0 +1,74 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.core.query.request.context;
+
+import javax.annotation.Nullable;
+
+
+/**
+ * The <code>QueryCancellationToken</code> class tracks whether a query has been cancelled (e.g. the broker timed out or
+ * explicitly cancelled the query, or the connection to the broker is lost).
+ * <p>The token is registered to the query execution threads (via {@link #register(QueryCancellationToken)}, and
+ * propagated to the worker threads through {@link org.apache.pinot.core.util.trace.TraceRunnable} and
+ * {@link org.apache.pinot.core.util.trace.TraceCallable}) so that the operators and scan iterators can check
+ * {@link #isCurrentQueryCancelled()} cooperatively and stop early.
+ */
+public class QueryCancellationToken {
+  private static final ThreadLocal<QueryCancellationToken> THREAD_LOCAL_TOKEN = new ThreadLocal<>();
+
+  private volatile boolean _cancelled;
+
+  public void cancel() {
+    _cancelled = true;
+  }
+
+  public boolean isCancelled() {
+    return _cancelled;
+  }
+
+  /**
+   * Registers the given token to the current thread.
+   */
+  public static void register(QueryCancellationToken token) {
+    THREAD_LOCAL_TOKEN.set(token);
+  }
+
+  /**
+   * Un-registers the token from the current thread.
+   */
+  public static void unregister() {
+    THREAD_LOCAL_TOKEN.remove();
+  }
+
+  /**
+   * Returns the token registered to the current thread, or <code>null</code> if no token is registered.
+   */
+  @Nullable
+  public static QueryCancellationToken get() {
+    return THREAD_LOCAL_TOKEN.get();
+  }
+
+  /**
+   * Returns whether the query executed by the current thread has been cancelled.
+   */
+  public static boolean isCurrentQueryCancelled() {
+    QueryCancellationToken token = THREAD_LOCAL_TOKEN.get();
+    return token != null && token._cancelled;
+  }
+}
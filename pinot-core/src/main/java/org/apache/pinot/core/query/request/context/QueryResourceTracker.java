@@ -0,0 +1,201 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.core.query.request.context;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * The <code>QueryResourceTracker</code> class aggregates the thread CPU time and allocated bytes of all the threads
+ * executing a query, measured through {@link ThreadMXBean}.
+ * <p>The tracker is registered to the query execution threads (via {@link #register(QueryResourceTracker)}, and
+ * propagated to the worker threads through {@link org.apache.pinot.core.util.trace.TraceRunnable} and
+ * {@link org.apache.pinot.core.util.trace.TraceCallable}). The usage of the current thread since the last sample is
+ * added to the tracker on {@link #sampleCurrentThread()} and {@link #unregister()}.
+ * <p>When the CPU time or allocated bytes exceed the budget, the query is cancelled through the
+ * {@link QueryCancellationToken}.
+ */
+public class QueryResourceTracker {
+  private static final Logger LOGGER = LoggerFactory.getLogger(QueryResourceTracker.class);
+
+  private static final ThreadMXBean THREAD_MX_BEAN = ManagementFactory.getThreadMXBean();
+  private static final boolean IS_THREAD_CPU_TIME_SUPPORTED;
+  private static final boolean IS_THREAD_ALLOCATED_BYTES_SUPPORTED;
+
+  static {
+    boolean isThreadCpuTimeSupported = false;
+    try {
+      isThreadCpuTimeSupported = THREAD_MX_BEAN.isThreadCpuTimeSupported();
+      if (isThreadCpuTimeSupported && !THREAD_MX_BEAN.isThreadCpuTimeEnabled()) {
+        THREAD_MX_BEAN.setThreadCpuTimeEnabled(true);
+      }
+    } catch (Exception e) {
+      LOGGER.warn("Caught exception while enabling thread CPU time measurement", e);
+      isThreadCpuTimeSupported = false;
+    }
+    IS_THREAD_CPU_TIME_SUPPORTED = isThreadCpuTimeSupported;
+
+    boolean isThreadAllocatedBytesSupported = false;
+    try {
+      if (THREAD_MX_BEAN instanceof com.sun.management.ThreadMXBean) {
+        com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) THREAD_MX_BEAN;
+        isThreadAllocatedBytesSupported = threadMXBean.isThreadAllocatedMemorySupported();
+        if (isThreadAllocatedBytesSupported && !threadMXBean.isThreadAllocatedMemoryEnabled()) {
+          threadMXBean.setThreadAllocatedMemoryEnabled(true);
+        }
+      }
+    } catch (Exception e) {
+      LOGGER.warn("Caught exception while enabling thread allocated memory measurement", e);
+      isThreadAllocatedBytesSupported = false;
+    }
+    IS_THREAD_ALLOCATED_BYTES_SUPPORTED = isThreadAllocatedBytesSupported;
+    LOGGER.info("Thread CPU time measurement supported: {}, thread allocated memory measurement supported: {}",
+        IS_THREAD_CPU_TIME_SUPPORTED, IS_THREAD_ALLOCATED_BYTES_SUPPORTED);
+  }
+
+  private static final ThreadLocal<ThreadSample> THREAD_LOCAL_SAMPLE = new ThreadLocal<>();
+
+  private final QueryCancellationToken _cancellationToken;
+  private final long _maxCpuTimeNs;
+  private final long _maxAllocatedBytes;
+  private final AtomicLong _cpuTimeNs = new AtomicLong();
+  private final AtomicLong _allocatedBytes = new AtomicLong();
+
+  private volatile String _limitExceededMessage;
+
+  /**
+   * @param cancellationToken Token to cancel the query when the budget is exceeded
+   * @param maxCpuTimeNs Max thread CPU time in nanoseconds for the query, non-positive value means no limit
+   * @param maxAllocatedBytes Max allocated bytes for the query, non-positive value means no limit
+   */
+  public QueryResourceTracker(QueryCancellationToken cancellationToken, long maxCpuTimeNs, long maxAllocatedBytes) {
+    _cancellationToken = cancellationToken;
+    _maxCpuTimeNs = maxCpuTimeNs;
+    _maxAllocatedBytes = maxAllocatedBytes;
+  }
+
+  public long getCpuTimeNs() {
+    return _cpuTimeNs.get();
+  }
+
+  public long getAllocatedBytes() {
+    return _allocatedBytes.get();
+  }
+
+  /**
+   * Returns whether the query exceeded the CPU or allocation budget (and has been cancelled).
+   */
+  public boolean isLimitExceeded() {
+    return _limitExceededMessage != null;
+  }
+
+  /**
+   * Returns the message describing the exceeded budget, or <code>null</code> if the budget is not exceeded.
+   */
+  @Nullable
+  public String getLimitExceededMessage() {
+    return _limitExceededMessage;
+  }
+
+  private void addUsage(long cpuTimeNs, long allocatedBytes) {
+    long totalCpuTimeNs = _cpuTimeNs.addAndGet(cpuTimeNs);
+    long totalAllocatedBytes = _allocatedBytes.addAndGet(allocatedBytes);
+    if (_limitExceededMessage == null) {
+      if (_maxCpuTimeNs > 0 && totalCpuTimeNs > _maxCpuTimeNs) {
+        killQuery(String.format("Thread CPU time: %dns exceeds the limit: %dns", totalCpuTimeNs, _maxCpuTimeNs));
+      } else if (_maxAllocatedBytes > 0 && totalAllocatedBytes > _maxAllocatedBytes) {
+        killQuery(String
+            .format("Thread allocated bytes: %d exceeds the limit: %d", totalAllocatedBytes, _maxAllocatedBytes));
+      }
+    }
+  }
+
+  private void killQuery(String message) {
+    _limitExceededMessage = message;
+    _cancellationToken.cancel();
+  }
+
+  /**
+   * Registers the given tracker to the current thread and takes the initial sample of the thread.
+   */
+  public static void register(QueryResourceTracker tracker) {
+    THREAD_LOCAL_SAMPLE.set(new ThreadSample(tracker));
+  }
+
+  /**
+   * Adds the usage of the current thread since the last sample to the tracker, and un-registers the tracker from the
+   * current thread.
+   */
+  public static void unregister() {
+    sampleCurrentThread();
+    THREAD_LOCAL_SAMPLE.remove();
+  }
+
+  /**
+   * Returns the tracker registered to the current thread, or <code>null</code> if no tracker is registered.
+   */
+  @Nullable
+  public static QueryResourceTracker get() {
+    ThreadSample threadSample = THREAD_LOCAL_SAMPLE.get();
+    return threadSample != null ? threadSample._tracker : null;
+  }
+
+  /**
+   * Adds the usage of the current thread since the last sample to the registered tracker. Should be called
+   * periodically (e.g. after processing each segment) by the long running threads so that the budget can be enforced
+   * before the query finishes.
+   */
+  public static void sampleCurrentThread() {
+    ThreadSample threadSample = THREAD_LOCAL_SAMPLE.get();
+    if (threadSample != null) {
+      long cpuTimeNs = getCurrentThreadCpuTimeNs();
+      long allocatedBytes = getCurrentThreadAllocatedBytes();
+      threadSample._tracker
+          .addUsage(cpuTimeNs - threadSample._cpuTimeNs, allocatedBytes - threadSample._allocatedBytes);
+      threadSample._cpuTimeNs = cpuTimeNs;
+      threadSample._allocatedBytes = allocatedBytes;
+    }
+  }
+
+  private static long getCurrentThreadCpuTimeNs() {
+    return IS_THREAD_CPU_TIME_SUPPORTED ? THREAD_MX_BEAN.getCurrentThreadCpuTime() : 0L;
+  }
+
+  private static long getCurrentThreadAllocatedBytes() {
+    return IS_THREAD_ALLOCATED_BYTES_SUPPORTED ? ((com.sun.management.ThreadMXBean) THREAD_MX_BEAN)
+        .getThreadAllocatedBytes(Thread.currentThread().getId()) : 0L;
+  }
+
+  private static class ThreadSample {
+    final QueryResourceTracker _tracker;
+    long _cpuTimeNs;
+    long _allocatedBytes;
+
+    ThreadSample(QueryResourceTracker tracker) {
+      _tracker = tracker;
+      _cpuTimeNs = getCurrentThreadCpuTimeNs();
+      _allocatedBytes = getCurrentThreadAllocatedBytes();
+    }
+  }
+}
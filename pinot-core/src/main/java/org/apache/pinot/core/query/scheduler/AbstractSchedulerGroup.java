@@ -22,6 +22,7 @@ import com.google.common.base.Preconditions;
 import java.util.Iterator;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import javax.annotation.Nonnull;
 
 
@@ -40,6 +41,8 @@ public abstract class AbstractSchedulerGroup implements SchedulerGroup {
   protected AtomicInteger threadsInUse = new AtomicInteger(0);
   // Total reserved threads for currently running queries for this group
   protected AtomicInteger reservedThreads = new AtomicInteger(0);
+  // Total expected cost of the pending queries for this group
+  protected AtomicLong pendingCostMs = new AtomicLong(0);
 
   public AbstractSchedulerGroup(@Nonnull String name) {
     Preconditions.checkNotNull(name);
@@ -53,6 +56,7 @@ public abstract class AbstractSchedulerGroup implements SchedulerGroup {
 
   @Override
   public void addLast(SchedulerQueryContext query) {
+    pendingCostMs.addAndGet(query.getExpectedCostMs());
     pendingQueries.add(query);
   }
 
@@ -63,7 +67,11 @@ public abstract class AbstractSchedulerGroup implements SchedulerGroup {
 
   @Override
   public SchedulerQueryContext removeFirst() {
-    return pendingQueries.poll();
+    SchedulerQueryContext query = pendingQueries.poll();
+    if (query != null) {
+      pendingCostMs.addAndGet(-query.getExpectedCostMs());
+    }
+    return query;
   }
 
   @Override
@@ -73,6 +81,7 @@ public abstract class AbstractSchedulerGroup implements SchedulerGroup {
       SchedulerQueryContext next = iter.next();
       if (next.getArrivalTimeMs() < deadlineMillis) {
         iter.remove();
+        pendingCostMs.addAndGet(-next.getExpectedCostMs());
       }
     }
   }
@@ -122,6 +131,11 @@ public abstract class AbstractSchedulerGroup implements SchedulerGroup {
     return reservedThreads.get();
   }
 
+  @Override
+  public long totalPendingCostMs() {
+    return pendingCostMs.get();
+  }
+
   @Override
   public void startQuery() {
     incrementThreads();
@@ -31,7 +31,9 @@ import java.util.concurrent.locks.ReentrantLock;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import org.apache.commons.configuration.Configuration;
+import org.apache.pinot.common.metrics.ServerQueryPhase;
 import org.apache.pinot.core.query.request.ServerQueryRequest;
+import org.apache.pinot.core.query.request.context.QueryResourceTracker;
 import org.apache.pinot.core.query.scheduler.resources.ResourceManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -45,6 +47,10 @@ import org.slf4j.LoggerFactory;
  * implementation. If two groups have the same priority then the group with lower
  * resource utilization is selected first. Oldest query from the winning SchedulerGroup
  * is selected for execution.
+ *
+ * When the cost model is enabled, the expected cost of each query (learned per query fingerprint from the actual cost
+ * of the finished queries) is charged to the group at admission. Groups with expensive pending queries are
+ * de-prioritized, and queries that would push the pending cost of a group over the limit are rejected.
  */
 public class MultiLevelPriorityQueue implements SchedulerPriorityQueue {
 
@@ -52,11 +58,13 @@ public class MultiLevelPriorityQueue implements SchedulerPriorityQueue {
   public static final String QUERY_DEADLINE_SECONDS_KEY = "query_deadline_seconds";
   public static final String MAX_PENDING_PER_GROUP_KEY = "max_pending_per_group";
   public static final String QUEUE_WAKEUP_MICROS = "queue_wakeup_micros";
+  public static final String MAX_PENDING_COST_MS_PER_GROUP_KEY = "max_pending_cost_ms_per_group";
 
   private static final int DEFAULT_WAKEUP_MICROS = 1000;
 
   private static int wakeUpTimeMicros = DEFAULT_WAKEUP_MICROS;
   private final int maxPendingPerGroup;
+  private final long maxPendingCostMsPerGroup;
 
   private final Map<String, SchedulerGroup> schedulerGroups = new HashMap<>();
   private final Lock queueLock = new ReentrantLock();
@@ -66,6 +74,8 @@ public class MultiLevelPriorityQueue implements SchedulerPriorityQueue {
   private final int queryDeadlineMillis;
   private final SchedulerGroupFactory groupFactory;
   private final Configuration config;
+  // Null if the cost model is not enabled
+  private final QueryCostModel costModel;
 
   public MultiLevelPriorityQueue(@Nonnull Configuration config, @Nonnull ResourceManager resourceManager,
       @Nonnull SchedulerGroupFactory groupFactory, @Nonnull SchedulerGroupMapper groupMapper) {
@@ -79,6 +89,8 @@ public class MultiLevelPriorityQueue implements SchedulerPriorityQueue {
     queryDeadlineMillis = config.getInt(QUERY_DEADLINE_SECONDS_KEY, 30) * 1000;
     wakeUpTimeMicros = config.getInt(QUEUE_WAKEUP_MICROS, DEFAULT_WAKEUP_MICROS);
     maxPendingPerGroup = config.getInt(MAX_PENDING_PER_GROUP_KEY, 10);
+    maxPendingCostMsPerGroup = config.getLong(MAX_PENDING_COST_MS_PER_GROUP_KEY, -1L);
+    costModel = config.getBoolean(QueryCostModel.COST_MODEL_ENABLED_KEY, false) ? new QueryCostModel(config) : null;
     this.config = config;
     this.resourceManager = resourceManager;
     this.groupFactory = groupFactory;
@@ -94,6 +106,11 @@ public class MultiLevelPriorityQueue implements SchedulerPriorityQueue {
     try {
       SchedulerGroup groupContext = getOrCreateGroupContext(groupName);
       checkGroupHasCapacity(groupContext);
+      if (costModel != null) {
+        long expectedCostMs = costModel.getExpectedCostMs(query.getQueryRequest());
+        checkGroupHasCostBudget(groupContext, expectedCostMs);
+        query.setExpectedCostMs(expectedCostMs);
+      }
       query.setSchedulerGroupContext(groupContext);
       groupContext.addLast(query);
       queryReaderCondition.signal();
@@ -145,6 +162,20 @@ public class MultiLevelPriorityQueue implements SchedulerPriorityQueue {
     return pending;
   }
 
+  @Override
+  public void onQueryFinished(@Nonnull SchedulerQueryContext query) {
+    if (costModel != null) {
+      ServerQueryRequest queryRequest = query.getQueryRequest();
+      // Prefer the thread CPU time across all threads, fall back to the query processing time if not available
+      QueryResourceTracker resourceTracker = query.getResourceTracker();
+      long costMs = resourceTracker != null ? TimeUnit.NANOSECONDS.toMillis(resourceTracker.getCpuTimeNs()) : 0L;
+      if (costMs <= 0) {
+        costMs = queryRequest.getTimerContext().getPhaseDurationMs(ServerQueryPhase.QUERY_PROCESSING);
+      }
+      costModel.recordCost(queryRequest, costMs);
+    }
+  }
+
   private SchedulerQueryContext takeNextInternal() {
     SchedulerGroup currentWinnerGroup = null;
     long startTime = System.nanoTime();
@@ -218,6 +249,20 @@ public class MultiLevelPriorityQueue implements SchedulerPriorityQueue {
     }
   }
 
+  /**
+   * Rejects the query if adding it would push the pending cost of the group over the limit. A query is never rejected
+   * if the group has no pending queries so that the cost of the query can always be re-learned.
+   */
+  private void checkGroupHasCostBudget(SchedulerGroup groupContext, long expectedCostMs)
+      throws OutOfCapacityException {
+    if (maxPendingCostMsPerGroup > 0 && !groupContext.isEmpty()
+        && groupContext.totalPendingCostMs() + expectedCostMs > maxPendingCostMsPerGroup) {
+      throw new OutOfCapacityException(String.format(
+          "SchedulerGroup %s is out of cost budget. pendingCostMs: %d, expectedCostMs: %d, maxPendingCostMs: %d",
+          groupContext.name(), groupContext.totalPendingCostMs(), expectedCostMs, maxPendingCostMsPerGroup));
+    }
+  }
+
   private SchedulerGroup getOrCreateGroupContext(String groupName) {
     SchedulerGroup groupContext = schedulerGroups.get(groupName);
     if (groupContext == null) {
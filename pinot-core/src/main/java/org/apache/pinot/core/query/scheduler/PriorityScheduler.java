@@ -113,6 +113,7 @@ public abstract class PriorityScheduler extends QueryScheduler {
               public void run() {
                 executor.releaseWorkers();
                 request.getSchedulerGroup().endQuery();
+                queryQueue.onQueryFinished(request);
                 runningQueriesSemaphore.release();
                 checkStopResourceManager();
                 if (!isRunning && runningQueriesSemaphore.availablePermits() == numRunners) {
@@ -0,0 +1,169 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.core.query.scheduler;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import org.apache.pinot.common.metrics.ServerMeter;
+import org.apache.pinot.common.metrics.ServerMetrics;
+import org.apache.pinot.common.utils.DataTable;
+import org.apache.pinot.common.utils.request.RequestUtils;
+import org.apache.pinot.core.common.datatable.DataTableImplV2;
+import org.apache.pinot.core.query.request.ServerQueryRequest;
+import org.apache.pinot.core.query.request.context.QueryCancellationToken;
+import org.apache.pinot.core.util.QueryOptions;
+
+
+/**
+ * The <code>QueryCoalescer</code> deduplicates the identical queries in flight on the server. Concurrent requests with
+ * the same table, query fingerprint (see {@link RequestUtils#getQueryFingerprint}) and segments share one execution:
+ * the first request executes the query, and the others wait for its result instead of executing the query again.
+ * <p>Each request gets its own copy of the result data table, so that the per-request metadata (e.g. request id) can
+ * be set independently. Traced queries are never coalesced, and only the successful results (without exceptions) are
+ * shared: the requests waiting for a query that is cancelled or fails execute the query themselves.
+ * <p>The waiting requests keep their own timeout and cancellation: a request stops waiting once its own deadline is
+ * reached or it gets cancelled, and falls back to the query processor which returns the timeout or cancellation
+ * response for it.
+ */
+@ThreadSafe
+public class QueryCoalescer {
+  // Interval to check the cancellation of the waiting requests
+  private static final long WAIT_CHECK_INTERVAL_MS = 100L;
+
+  private final ConcurrentHashMap<String, CompletableFuture<DataTable>> _inFlightQueries = new ConcurrentHashMap<>();
+  private final ServerMetrics _serverMetrics;
+  private final long _defaultTimeoutMs;
+
+  /**
+   * @param serverMetrics Server metrics
+   * @param defaultTimeoutMs Instance-level query timeout, which applies to the queries without timeout in the query
+   *                         options
+   */
+  public QueryCoalescer(ServerMetrics serverMetrics, long defaultTimeoutMs) {
+    _serverMetrics = serverMetrics;
+    _defaultTimeoutMs = defaultTimeoutMs;
+  }
+
+  /**
+   * Processes the query with the given query processor, or waits for the identical query in flight.
+   */
+  public DataTable processQuery(ServerQueryRequest queryRequest, Function<ServerQueryRequest, DataTable> queryProcessor)
+      throws InterruptedException {
+    if (queryRequest.isEnableTrace()) {
+      return queryProcessor.apply(queryRequest);
+    }
+
+    String key = getKey(queryRequest);
+    CompletableFuture<DataTable> future = new CompletableFuture<>();
+    CompletableFuture<DataTable> inFlightQuery = _inFlightQueries.putIfAbsent(key, future);
+    if (inFlightQuery == null) {
+      // No identical query in flight, execute the query and share the result
+      // NOTE: Complete the future with null if the result cannot be shared, so that the waiting requests execute the
+      //       query themselves
+      DataTable sharedDataTable = null;
+      try {
+        DataTable dataTable = queryProcessor.apply(queryRequest);
+        if (dataTable instanceof DataTableImplV2 && !queryRequest.getCancellationToken().isCancelled()
+            && !hasException(dataTable)) {
+          sharedDataTable = dataTable;
+          return new DataTableImplV2((DataTableImplV2) dataTable);
+        } else {
+          return dataTable;
+        }
+      } finally {
+        _inFlightQueries.remove(key, future);
+        future.complete(sharedDataTable);
+      }
+    }
+
+    DataTable sharedDataTable = waitForInFlightQuery(queryRequest, inFlightQuery);
+    if (sharedDataTable == null) {
+      return queryProcessor.apply(queryRequest);
+    }
+    _serverMetrics.addMeteredTableValue(queryRequest.getTableNameWithType(), ServerMeter.COALESCED_QUERIES, 1);
+    return new DataTableImplV2((DataTableImplV2) sharedDataTable);
+  }
+
+  /**
+   * Waits for the query in flight until the deadline of the given request, and returns the shared result, or
+   * <code>null</code> if the result cannot be shared, or the request times out or gets cancelled while waiting.
+   */
+  @Nullable
+  private DataTable waitForInFlightQuery(ServerQueryRequest queryRequest, CompletableFuture<DataTable> inFlightQuery)
+      throws InterruptedException {
+    long deadlineMs = queryRequest.getTimerContext().getQueryArrivalTimeMs() + getTimeoutMs(queryRequest);
+    QueryCancellationToken cancellationToken = queryRequest.getCancellationToken();
+    while (!cancellationToken.isCancelled()) {
+      long remainingTimeMs = deadlineMs - System.currentTimeMillis();
+      if (remainingTimeMs <= 0) {
+        return null;
+      }
+      try {
+        return inFlightQuery.get(Math.min(remainingTimeMs, WAIT_CHECK_INTERVAL_MS), TimeUnit.MILLISECONDS);
+      } catch (TimeoutException e) {
+        // Check the cancellation and deadline again
+      } catch (ExecutionException e) {
+        // Should not happen as the future is never completed exceptionally
+        return null;
+      }
+    }
+    return null;
+  }
+
+  private long getTimeoutMs(ServerQueryRequest queryRequest) {
+    Map<String, String> queryOptions = queryRequest.getBrokerRequest().getQueryOptions();
+    if (queryOptions != null) {
+      Long timeoutFromQueryOptions = QueryOptions.getTimeoutMs(queryOptions);
+      if (timeoutFromQueryOptions != null) {
+        return timeoutFromQueryOptions;
+      }
+    }
+    return _defaultTimeoutMs;
+  }
+
+  private static boolean hasException(DataTable dataTable) {
+    for (String key : dataTable.getMetadata().keySet()) {
+      if (key.startsWith(DataTable.EXCEPTION_METADATA_KEY)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  public int getNumInFlightQueries() {
+    return _inFlightQueries.size();
+  }
+
+  private static String getKey(ServerQueryRequest queryRequest) {
+    List<String> segmentsToQuery = new ArrayList<>(queryRequest.getSegmentsToQuery());
+    Collections.sort(segmentsToQuery);
+    return queryRequest.getTableNameWithType() + '\0' + segmentsToQuery + '\0' + RequestUtils
+        .getQueryFingerprint(queryRequest.getBrokerRequest());
+  }
+}
@@ -0,0 +1,164 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.core.query.scheduler;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import org.apache.commons.configuration.Configuration;
+import org.apache.pinot.common.request.AggregationInfo;
+import org.apache.pinot.common.request.BrokerRequest;
+import org.apache.pinot.common.request.GroupBy;
+import org.apache.pinot.common.request.Selection;
+import org.apache.pinot.common.request.SelectionSort;
+import org.apache.pinot.common.utils.request.FilterQueryTree;
+import org.apache.pinot.core.query.aggregation.function.AggregationFunctionUtils;
+import org.apache.pinot.core.query.request.ServerQueryRequest;
+
+
+/**
+ * Cost model that learns the average cost of queries per query fingerprint.
+ *
+ * Query fingerprint is the table name plus the normalized query shape (aggregations, group-by, selection, order-by
+ * and the filter tree with columns and operators but without the literal values), so that queries only differ in
+ * the filter values share the same fingerprint. Cost is measured in thread milliseconds (same unit as the scheduler
+ * tokens), and is learned through exponentially weighted moving average. For unseen fingerprints, the average cost
+ * of the table is used as the expected cost.
+ */
+public class QueryCostModel {
+  public static final String COST_MODEL_ENABLED_KEY = "cost_model_enabled";
+  public static final String COST_MODEL_ALPHA_KEY = "cost_model_alpha";
+  public static final String COST_MODEL_MAX_ENTRIES_KEY = "cost_model_max_entries";
+
+  private static final double DEFAULT_ALPHA = 0.3;
+  private static final int DEFAULT_MAX_ENTRIES = 10_000;
+
+  private final double alpha;
+  private final int maxEntries;
+  private final Map<String, MovingAverage> fingerprintCosts = new ConcurrentHashMap<>();
+  private final Map<String, MovingAverage> tableCosts = new ConcurrentHashMap<>();
+
+  public QueryCostModel(@Nonnull Configuration config) {
+    this(config.getDouble(COST_MODEL_ALPHA_KEY, DEFAULT_ALPHA),
+        config.getInt(COST_MODEL_MAX_ENTRIES_KEY, DEFAULT_MAX_ENTRIES));
+  }
+
+  public QueryCostModel(double alpha, int maxEntries) {
+    this.alpha = alpha;
+    this.maxEntries = maxEntries;
+  }
+
+  /**
+   * Returns the expected cost (in thread milliseconds) of the query, or 0 if nothing has been learned for the table.
+   */
+  public long getExpectedCostMs(@Nonnull ServerQueryRequest queryRequest) {
+    MovingAverage cost = fingerprintCosts.get(getFingerprint(queryRequest));
+    if (cost == null) {
+      cost = tableCosts.get(queryRequest.getTableNameWithType());
+    }
+    return cost != null ? cost.get() : 0L;
+  }
+
+  /**
+   * Records the actual cost (in thread milliseconds) of a finished query.
+   */
+  public void recordCost(@Nonnull ServerQueryRequest queryRequest, long costMs) {
+    if (costMs < 0) {
+      return;
+    }
+    // Bound the memory usage. Simply reset the learned fingerprints as the costs can be learned again quickly.
+    if (fingerprintCosts.size() >= maxEntries) {
+      fingerprintCosts.clear();
+    }
+    fingerprintCosts.computeIfAbsent(getFingerprint(queryRequest), k -> new MovingAverage()).update(costMs, alpha);
+    tableCosts.computeIfAbsent(queryRequest.getTableNameWithType(), k -> new MovingAverage()).update(costMs, alpha);
+  }
+
+  /**
+   * Returns the fingerprint of the query, which is the table name plus the normalized query shape.
+   */
+  static String getFingerprint(ServerQueryRequest queryRequest) {
+    StringBuilder stringBuilder = new StringBuilder(queryRequest.getTableNameWithType());
+    BrokerRequest brokerRequest = queryRequest.getBrokerRequest();
+    List<AggregationInfo> aggregationsInfo = brokerRequest.getAggregationsInfo();
+    if (aggregationsInfo != null) {
+      stringBuilder.append("|agg:");
+      for (AggregationInfo aggregationInfo : aggregationsInfo) {
+        stringBuilder.append(aggregationInfo.getAggregationType()).append('(')
+            .append(AggregationFunctionUtils.getAggregationExpressions(aggregationInfo)).append(')');
+      }
+    }
+    GroupBy groupBy = brokerRequest.getGroupBy();
+    if (groupBy != null) {
+      stringBuilder.append("|groupBy:").append(groupBy.getExpressions()).append(':').append(groupBy.getTopN());
+    }
+    Selection selection = brokerRequest.getSelections();
+    if (selection != null) {
+      stringBuilder.append("|select:").append(selection.getSelectionColumns()).append(':').append(selection.getSize());
+      appendOrderBy(stringBuilder, selection.getSelectionSortSequence());
+    }
+    appendOrderBy(stringBuilder, brokerRequest.getOrderBy());
+    FilterQueryTree filterQueryTree = queryRequest.getFilterQueryTree();
+    if (filterQueryTree != null) {
+      stringBuilder.append("|filter:");
+      appendFilterShape(stringBuilder, filterQueryTree);
+    }
+    return stringBuilder.toString();
+  }
+
+  private static void appendOrderBy(StringBuilder stringBuilder, @Nullable List<SelectionSort> orderBy) {
+    if (orderBy != null) {
+      stringBuilder.append("|orderBy:");
+      for (SelectionSort selectionSort : orderBy) {
+        stringBuilder.append(selectionSort.getColumn()).append(selectionSort.isIsAsc() ? " ASC," : " DESC,");
+      }
+    }
+  }
+
+  private static void appendFilterShape(StringBuilder stringBuilder, FilterQueryTree filterQueryTree) {
+    List<FilterQueryTree> children = filterQueryTree.getChildren();
+    if (children == null || children.isEmpty()) {
+      stringBuilder.append(filterQueryTree.getColumn()).append(' ').append(filterQueryTree.getOperator());
+    } else {
+      // Sort the children so that the fingerprint does not depend on the order of the predicates
+      TreeSet<String> childShapes = new TreeSet<>();
+      for (FilterQueryTree child : children) {
+        StringBuilder childStringBuilder = new StringBuilder();
+        appendFilterShape(childStringBuilder, child);
+        childShapes.add(childStringBuilder.toString());
+      }
+      stringBuilder.append(filterQueryTree.getOperator()).append(childShapes);
+    }
+  }
+
+  private static class MovingAverage {
+    private double value = -1;
+
+    synchronized void update(long sample, double alpha) {
+      value = value < 0 ? sample : alpha * sample + (1 - alpha) * value;
+    }
+
+    synchronized long get() {
+      return (long) value;
+    }
+  }
+}
@@ -32,12 +32,14 @@ import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import org.apache.commons.configuration.Configuration;
 import org.apache.pinot.common.exception.QueryException;
+import org.apache.pinot.common.metrics.ServerGauge;
 import org.apache.pinot.common.metrics.ServerMeter;
 import org.apache.pinot.common.metrics.ServerMetrics;
 import org.apache.pinot.common.metrics.ServerQueryPhase;
 import org.apache.pinot.common.metrics.ServerTimer;
 import org.apache.pinot.common.response.ProcessingException;
 import org.apache.pinot.common.utils.DataTable;
+import org.apache.pinot.core.common.datatable.DataTableFactory;
 import org.apache.pinot.core.common.datatable.DataTableImplV2;
 import org.apache.pinot.core.query.executor.QueryExecutor;
 import org.apache.pinot.core.query.request.ServerQueryRequest;
@@ -57,12 +59,17 @@ public abstract class QueryScheduler {
   private static final String INVALID_NUM_SCANNED = "-1";
   private static final String INVALID_SEGMENTS_COUNT = "-1";
   private static final String INVALID_FRESHNESS_MS = "-1";
+  private static final String INVALID_RESOURCE_USAGE = "-1";
   private static final String QUERY_LOG_MAX_RATE_KEY = "query.log.maxRatePerSecond";
   private static final double DEFAULT_QUERY_LOG_MAX_RATE = 10_000d;
+  // Whether to share one execution among the identical queries in flight
+  private static final String ENABLE_QUERY_COALESCING_KEY = "query.coalescing.enabled";
+  private static final boolean DEFAULT_ENABLE_QUERY_COALESCING = false;
 
   private final RateLimiter queryLogRateLimiter;
   private final RateLimiter numDroppedLogRateLimiter;
   private final AtomicInteger numDroppedLogCounter;
+  private final QueryCoalescer queryCoalescer;
 
   protected final ServerMetrics serverMetrics;
   protected final QueryExecutor queryExecutor;
@@ -91,8 +98,12 @@ public abstract class QueryScheduler {
     this.queryLogRateLimiter = RateLimiter.create(config.getDouble(QUERY_LOG_MAX_RATE_KEY, DEFAULT_QUERY_LOG_MAX_RATE));
     this.numDroppedLogRateLimiter = RateLimiter.create(1.0d);
     this.numDroppedLogCounter = new AtomicInteger(0);
+    this.queryCoalescer =
+        config.getBoolean(ENABLE_QUERY_COALESCING_KEY, DEFAULT_ENABLE_QUERY_COALESCING) ? new QueryCoalescer(
+            serverMetrics, queryExecutor.getDefaultTimeoutMs()) : null;
 
-    LOGGER.info("Query log max rate: {}", queryLogRateLimiter.getRate());
+    LOGGER.info("Query log max rate: {}, query coalescing enabled: {}", queryLogRateLimiter.getRate(),
+        queryCoalescer != null);
   }
 
   /**
@@ -149,7 +160,12 @@ public abstract class QueryScheduler {
     latestQueryTime.accumulate(System.currentTimeMillis());
     DataTable dataTable;
     try {
-      dataTable = queryExecutor.processQuery(queryRequest, executorService);
+      if (queryCoalescer != null) {
+        dataTable = queryCoalescer
+            .processQuery(queryRequest, request -> queryExecutor.processQuery(request, executorService));
+      } else {
+        dataTable = queryExecutor.processQuery(queryRequest, executorService);
+      }
     } catch (Exception e) {
       LOGGER.error("Encountered exception while processing requestId {} from broker {}", queryRequest.getRequestId(),
           queryRequest.getBrokerId(), e);
@@ -180,6 +196,12 @@ public abstract class QueryScheduler {
         Long.parseLong(dataTableMetadata.getOrDefault(DataTable.NUM_CONSUMING_SEGMENTS_PROCESSED, INVALID_SEGMENTS_COUNT));
     long minConsumingFreshnessMs =
         Long.parseLong(dataTableMetadata.getOrDefault(DataTable.MIN_CONSUMING_FRESHNESS_TIME_MS, INVALID_FRESHNESS_MS));
+    long threadCpuTimeNs = Long.parseLong(
+        dataTableMetadata.getOrDefault(DataTable.THREAD_CPU_TIME_NS_METADATA_KEY, INVALID_RESOURCE_USAGE));
+    long threadAllocatedBytes = Long.parseLong(
+        dataTableMetadata.getOrDefault(DataTable.THREAD_ALLOCATED_BYTES_METADATA_KEY, INVALID_RESOURCE_USAGE));
+    int queryParallelism = Integer.parseInt(
+        dataTableMetadata.getOrDefault(DataTable.QUERY_PARALLELISM_METADATA_KEY, INVALID_RESOURCE_USAGE));
 
     if (numDocsScanned > 0) {
       serverMetrics.addMeteredTableValue(tableNameWithType, ServerMeter.NUM_DOCS_SCANNED, numDocsScanned);
@@ -192,6 +214,16 @@ public abstract class QueryScheduler {
       serverMetrics.addMeteredTableValue(tableNameWithType, ServerMeter.NUM_ENTRIES_SCANNED_POST_FILTER,
           numEntriesScannedPostFilter);
     }
+    if (threadCpuTimeNs > 0) {
+      serverMetrics.addMeteredTableValue(tableNameWithType, ServerMeter.QUERY_THREAD_CPU_TIME_NS, threadCpuTimeNs);
+    }
+    if (threadAllocatedBytes > 0) {
+      serverMetrics
+          .addMeteredTableValue(tableNameWithType, ServerMeter.QUERY_THREAD_ALLOCATED_BYTES, threadAllocatedBytes);
+    }
+    if (queryParallelism > 0) {
+      serverMetrics.setValueOfTableGauge(tableNameWithType, ServerGauge.QUERY_PARALLELISM, queryParallelism);
+    }
 
     TimerContext timerContext = queryRequest.getTimerContext();
     int numSegmentsQueried = queryRequest.getSegmentsToQuery().size();
@@ -201,11 +233,13 @@ public abstract class QueryScheduler {
       LOGGER.info(
           "Processed requestId={},table={},segments(queried/processed/matched/consuming)={}/{}/{}/{},"
               + "schedulerWaitMs={},totalExecMs={},totalTimeMs={},minConsumingFreshnessMs={},broker={},"
-              + "numDocsScanned={},scanInFilter={},scanPostFilter={},sched={}",
+              + "numDocsScanned={},scanInFilter={},scanPostFilter={},threadCpuTimeNs={},threadAllocatedBytes={},"
+              + "parallelism={},sched={}",
           requestId, tableNameWithType, numSegmentsQueried, numSegmentsProcessed, numSegmentsMatched,
           numSegmentsConsuming, schedulerWaitMs, timerContext.getPhaseDurationMs(ServerQueryPhase.QUERY_PROCESSING),
           timerContext.getPhaseDurationMs(ServerQueryPhase.TOTAL_QUERY_TIME), minConsumingFreshnessMs,
-          queryRequest.getBrokerId(), numDocsScanned, numEntriesScannedInFilter, numEntriesScannedPostFilter, name());
+          queryRequest.getBrokerId(), numDocsScanned, numEntriesScannedInFilter, numEntriesScannedPostFilter,
+          threadCpuTimeNs, threadAllocatedBytes, queryParallelism, name());
 
       // Limit the dropping log message at most once per second.
       if (numDroppedLogRateLimiter.tryAcquire()) {
@@ -266,7 +300,7 @@ public abstract class QueryScheduler {
 
     byte[] responseByte = null;
     try {
-      responseByte = dataTable.toBytes();
+      responseByte = DataTableFactory.toBytes(dataTable, queryRequest.getDataTableVersion());
     } catch (Exception e) {
       serverMetrics.addMeteredGlobalValue(ServerMeter.RESPONSE_SERIALIZATION_EXCEPTIONS, 1);
       LOGGER.error("Caught exception while serializing response for requestId: {}, brokerId: {}",
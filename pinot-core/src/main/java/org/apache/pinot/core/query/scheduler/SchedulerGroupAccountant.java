@@ -63,6 +63,14 @@ public interface SchedulerGroupAccountant extends Comparable<SchedulerGroupAccou
    */
   int totalReservedThreads();
 
+  /**
+   * Total expected cost (in thread milliseconds) of the pending queries for this group. The expected cost is charged
+   * when a query is added to the group, and released when the query is removed from the pending queue (after which
+   * the actual usage is accounted through threads in use).
+   * @return
+   */
+  long totalPendingCostMs();
+
   /**
    * Mark start of a query if the implementor wants to perform additional accounting
    */
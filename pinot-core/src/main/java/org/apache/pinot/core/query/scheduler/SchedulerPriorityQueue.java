@@ -54,4 +54,11 @@ public interface SchedulerPriorityQueue {
    */
   @Nonnull
   List<SchedulerQueryContext> drain();
+
+  /**
+   * Callback when a query taken from this queue finishes execution, so that the queue can learn from the actual cost
+   * of the query.
+   * @param query query that finished execution
+   */
+  void onQueryFinished(@Nonnull SchedulerQueryContext query);
 }
@@ -24,6 +24,7 @@ import com.google.common.util.concurrent.SettableFuture;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import org.apache.pinot.core.query.request.ServerQueryRequest;
+import org.apache.pinot.core.query.request.context.QueryResourceTracker;
 
 
 /**
@@ -65,6 +66,27 @@ public class SchedulerQueryContext {
     return schedulerGroup;
   }
 
+  /**
+   * Expected cost (in thread milliseconds) of the query predicted by the cost model at admission. Stored in the query
+   * request so that the resource manager can also use it to pick the parallelism of the query.
+   */
+  public long getExpectedCostMs() {
+    return queryRequest.getExpectedCostMs();
+  }
+
+  public void setExpectedCostMs(long expectedCostMs) {
+    queryRequest.setExpectedCostMs(expectedCostMs);
+  }
+
+  /**
+   * Returns the resource tracker which aggregates the thread CPU time and allocated bytes across all the threads
+   * executing the query, or <code>null</code> if the query has not started executing.
+   */
+  @Nullable
+  public QueryResourceTracker getResourceTracker() {
+    return queryRequest.getResourceTracker();
+  }
+
   /**
    * Convenience method to get query arrival time
    * @return
@@ -69,6 +69,8 @@ public class PolicyBasedResourceManager extends ResourceManager {
     // We use this thread reservation only to determine priority based on resource utilization and not as a way to
     // improve system performance (because we don't have good insight on that yet)
     accountant.addReservedThreads(spareThreads);
+    // Split the query across no more threads than reserved, and fewer if the workers are busy or the query is cheap
+    query.setParallelism(Math.min(spareThreads, getQueryParallelism(query)));
     // TODO: For 1 thread we should have the query run in the same queryRunner thread
     // by supplying an executor service that similar to Guava' directExecutor()
     return new BoundedAccountingExecutor(queryWorkers, spareThreads, accountant);
@@ -0,0 +1,100 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.core.query.scheduler.resources;
+
+import org.apache.commons.configuration.Configuration;
+import org.apache.pinot.core.query.request.ServerQueryRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Picks the number of threads (degree of parallelism) to use for a query, instead of a fixed number of threads per
+ * query.
+ *
+ * The degree of parallelism is derived from:
+ * <ul>
+ *   <li>the number of idle query worker threads: a lone query on an idle server can use all the cores, while queries
+ *   on a loaded server fall back to (close to) serial execution to avoid over-subscribing the worker pool;</li>
+ *   <li>the expected cost of the query (if predicted by the scheduler's cost model): cheap queries are not worth the
+ *   overhead of fanning out, so each thread is given at least the target cost of work.</li>
+ * </ul>
+ * The result is always bounded by [min_parallelism_per_query, max_parallelism_per_query]. The number of operators
+ * (segments or document id ranges) further bounds the threads actually used by the combine operator.
+ */
+public class QueryParallelismController {
+  private static final Logger LOGGER = LoggerFactory.getLogger(QueryParallelismController.class);
+
+  public static final String MIN_PARALLELISM_PER_QUERY_KEY = "min_parallelism_per_query";
+  public static final String MAX_PARALLELISM_PER_QUERY_KEY = "max_parallelism_per_query";
+  public static final String TARGET_COST_MS_PER_THREAD_KEY = "target_cost_ms_per_thread";
+  public static final int DEFAULT_MIN_PARALLELISM_PER_QUERY = 1;
+  public static final int DEFAULT_MAX_PARALLELISM_PER_QUERY = Math.max(1, Runtime.getRuntime().availableProcessors());
+  public static final long DEFAULT_TARGET_COST_MS_PER_THREAD = 10L;
+
+  private final int numWorkerThreads;
+  private final int minParallelism;
+  private final int maxParallelism;
+  private final long targetCostMsPerThread;
+
+  public QueryParallelismController(Configuration config, int numWorkerThreads) {
+    this(numWorkerThreads, config.getInt(MIN_PARALLELISM_PER_QUERY_KEY, DEFAULT_MIN_PARALLELISM_PER_QUERY),
+        config.getInt(MAX_PARALLELISM_PER_QUERY_KEY, DEFAULT_MAX_PARALLELISM_PER_QUERY),
+        config.getLong(TARGET_COST_MS_PER_THREAD_KEY, DEFAULT_TARGET_COST_MS_PER_THREAD));
+  }
+
+  public QueryParallelismController(int numWorkerThreads, int minParallelism, int maxParallelism,
+      long targetCostMsPerThread) {
+    this.numWorkerThreads = Math.max(1, numWorkerThreads);
+    // 1 <= minParallelism <= maxParallelism <= numWorkerThreads
+    this.maxParallelism = Math.max(1, Math.min(maxParallelism, this.numWorkerThreads));
+    this.minParallelism = Math.max(1, Math.min(minParallelism, this.maxParallelism));
+    this.targetCostMsPerThread = targetCostMsPerThread;
+
+    LOGGER.info("minParallelismPerQuery: {}, maxParallelismPerQuery: {}, targetCostMsPerThread: {}",
+        this.minParallelism, this.maxParallelism, this.targetCostMsPerThread);
+  }
+
+  /**
+   * Returns the number of threads to use for the query.
+   *
+   * @param query Query to be executed
+   * @param numBusyWorkerThreads Number of worker tasks currently running or waiting in the worker pool
+   * @return Degree of parallelism within [minParallelism, maxParallelism]
+   */
+  public int getParallelism(ServerQueryRequest query, int numBusyWorkerThreads) {
+    int numIdleWorkerThreads = numWorkerThreads - numBusyWorkerThreads;
+    int parallelism = Math.max(minParallelism, Math.min(maxParallelism, numIdleWorkerThreads));
+
+    long expectedCostMs = query.getExpectedCostMs();
+    if (expectedCostMs > 0 && targetCostMsPerThread > 0) {
+      long costBasedParallelism = (expectedCostMs + targetCostMsPerThread - 1) / targetCostMsPerThread;
+      parallelism = (int) Math.max(minParallelism, Math.min(parallelism, costBasedParallelism));
+    }
+    return parallelism;
+  }
+
+  public int getMinParallelism() {
+    return minParallelism;
+  }
+
+  public int getMaxParallelism() {
+    return maxParallelism;
+  }
+}
@@ -24,7 +24,10 @@ import com.google.common.util.concurrent.MoreExecutors;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import org.apache.commons.configuration.Configuration;
 import org.apache.pinot.core.query.request.ServerQueryRequest;
 import org.apache.pinot.core.query.scheduler.SchedulerGroupAccountant;
@@ -69,6 +72,9 @@ public abstract class ResourceManager {
   protected final ListeningExecutorService queryWorkers;
   protected final int numQueryRunnerThreads;
   protected final int numQueryWorkerThreads;
+  // Underlying pool of queryWorkers, used to read the number of running and queued worker tasks
+  private final ThreadPoolExecutor queryWorkerPool;
+  protected final QueryParallelismController parallelismController;
 
   /**
    * @param config configuration for initializing resource manager
@@ -89,8 +95,11 @@ public abstract class ResourceManager {
     // pqw -> pinot query workers
     ThreadFactory queryWorkersFactory =
         new ThreadFactoryBuilder().setDaemon(false).setPriority(Thread.NORM_PRIORITY).setNameFormat("pqw-%d").build();
-    queryWorkers =
-        MoreExecutors.listeningDecorator(Executors.newFixedThreadPool(numQueryWorkerThreads, queryWorkersFactory));
+    queryWorkerPool = new ThreadPoolExecutor(numQueryWorkerThreads, numQueryWorkerThreads, 0L, TimeUnit.MILLISECONDS,
+        new LinkedBlockingQueue<>(), queryWorkersFactory);
+    queryWorkers = MoreExecutors.listeningDecorator(queryWorkerPool);
+
+    parallelismController = new QueryParallelismController(config, numQueryWorkerThreads);
   }
 
   public void stop() {
@@ -129,6 +138,24 @@ public abstract class ResourceManager {
     return queryWorkers;
   }
 
+  /**
+   * Number of query worker tasks that are currently running or waiting for a worker thread.
+   * @return
+   */
+  final public int getNumBusyQueryWorkerThreads() {
+    return queryWorkerPool.getActiveCount() + queryWorkerPool.getQueue().size();
+  }
+
+  /**
+   * Picks the number of threads to use for the query based on the current load of the query workers and the expected
+   * cost of the query.
+   * @param query
+   * @return degree of parallelism for the query
+   */
+  public int getQueryParallelism(ServerQueryRequest query) {
+    return parallelismController.getParallelism(query, getNumBusyQueryWorkerThreads());
+  }
+
   /**
    * Get the executor service for running the query. The provided executor
    * service limits the number of resources available for executing query
@@ -36,6 +36,7 @@ public class UnboundedResourceManager extends ResourceManager {
 
   @Override
   public QueryExecutorService getExecutorService(ServerQueryRequest query, SchedulerGroupAccountant accountant) {
+    query.setParallelism(getQueryParallelism(query));
     return new QueryExecutorService() {
       @Override
       public void execute(Runnable command) {
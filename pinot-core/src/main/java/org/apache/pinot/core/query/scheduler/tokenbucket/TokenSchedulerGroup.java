@@ -79,6 +79,14 @@ public class TokenSchedulerGroup extends AbstractSchedulerGroup {
     return consumeTokens();
   }
 
+  /**
+   * Returns the available tokens after charging the expected cost of the pending queries, so that a group with
+   * expensive queries waiting is de-prioritized before the queries get executed and accounted.
+   */
+  long getAvailableTokensAfterPendingCost() {
+    return (long) consumeTokens() - totalPendingCostMs();
+  }
+
   @Override
   public void incrementThreads() {
     consumeTokens();
@@ -105,7 +113,8 @@ public class TokenSchedulerGroup extends AbstractSchedulerGroup {
 
   /**
    * Compares priority of this group with respect to another scheduler group.
-   * Priority is compared on the basis of available tokens. SchedulerGroup with
+   * Priority is compared on the basis of available tokens (after charging the expected cost of the pending queries).
+   * SchedulerGroup with
    * higher number of tokens wins. If both groups have same tokens then the group
    * with earliest waiting job has higher priority (FCFS if tokens are equal).
    * If the arrival times of first waiting jobs are also equal then the group
@@ -125,8 +134,8 @@ public class TokenSchedulerGroup extends AbstractSchedulerGroup {
       return 0;
     }
 
-    int leftTokens = getAvailableTokens();
-    int rightTokens = ((TokenSchedulerGroup) rhs).getAvailableTokens();
+    long leftTokens = getAvailableTokensAfterPendingCost();
+    long rightTokens = ((TokenSchedulerGroup) rhs).getAvailableTokensAfterPendingCost();
     if (leftTokens > rightTokens) {
       return 1;
     }
@@ -138,8 +147,8 @@ public class TokenSchedulerGroup extends AbstractSchedulerGroup {
 
   public String toString() {
     return String
-        .format(" {%s:[%d,%d,%d,%d,%d]},", name(), getAvailableTokens(), numPending(), numRunning(), getThreadsInUse(),
-            totalReservedThreads());
+        .format(" {%s:[%d,%d,%d,%d,%d,%d]},", name(), getAvailableTokens(), totalPendingCostMs(), numPending(),
+            numRunning(), getThreadsInUse(), totalReservedThreads());
   }
 
   // callers must synchronize access to this method
@@ -21,10 +21,12 @@ package org.apache.pinot.core.query.selection;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.PriorityQueue;
+import java.util.function.IntFunction;
 import org.apache.pinot.common.request.Selection;
 import org.apache.pinot.common.request.SelectionSort;
 import org.apache.pinot.common.response.broker.ResultTable;
@@ -63,7 +65,11 @@ public class SelectionOperatorService {
   private final DataSchema _dataSchema;
   private final int _offset;
   private final int _numRowsToKeep;
+  private final Comparator<Object[]> _comparator;
+  // Rows from the unsorted data tables
   private final PriorityQueue<Object[]> _rows;
+  // Rows merged from the sorted data tables, in the query order
+  private List<Object[]> _sortedRows = Collections.emptyList();
 
   /**
    * Constructor for <code>SelectionOperatorService</code> with {@link DataSchema}. (Inter segment)
@@ -77,8 +83,9 @@ public class SelectionOperatorService {
     // Select rows from offset to offset + size.
     _offset = selection.getOffset();
     _numRowsToKeep = _offset + selection.getSize();
+    _comparator = getTypeCompatibleComparator(selection.getSelectionSortSequence());
     _rows = new PriorityQueue<>(Math.min(_numRowsToKeep, SelectionOperatorUtils.MAX_ROW_HOLDER_INITIAL_CAPACITY),
-        getTypeCompatibleComparator(selection.getSelectionSortSequence()));
+        _comparator);
   }
 
   /**
@@ -135,21 +142,111 @@ public class SelectionOperatorService {
    * @return selection results.
    */
   public PriorityQueue<Object[]> getRows() {
+    addSortedRowsToPriorityQueue();
     return _rows;
   }
 
   /**
    * Reduces a collection of {@link DataTable}s to selection rows for selection queries with <code>ORDER BY</code>.
    * (Broker side)
+   * <p>Data tables with rows already sorted in the query order (marked with
+   * {@link DataTable#SORTED_ROWS_METADATA_KEY}) are k-way merged with the previously merged rows, which stops after
+   * offset + size rows, so the rows that would be thrown away are never extracted. Rows from the other data tables are
+   * added to the priority queue.
    */
   public void reduceWithOrdering(Collection<DataTable> dataTables) {
+    List<DataTable> sortedDataTables = new ArrayList<>(dataTables.size());
     for (DataTable dataTable : dataTables) {
-      int numRows = dataTable.getNumberOfRows();
-      for (int rowId = 0; rowId < numRows; rowId++) {
-        Object[] row = SelectionOperatorUtils.extractRowFromDataTable(dataTable, rowId);
-        SelectionOperatorUtils.addToPriorityQueue(row, _rows, _numRowsToKeep);
+      if (Boolean.parseBoolean(dataTable.getMetadata().get(DataTable.SORTED_ROWS_METADATA_KEY))) {
+        sortedDataTables.add(dataTable);
+      } else {
+        int numRows = dataTable.getNumberOfRows();
+        for (int rowId = 0; rowId < numRows; rowId++) {
+          Object[] row = SelectionOperatorUtils.extractRowFromDataTable(dataTable, rowId);
+          SelectionOperatorUtils.addToPriorityQueue(row, _rows, _numRowsToKeep);
+        }
+      }
+    }
+    if (!sortedDataTables.isEmpty()) {
+      mergeSortedDataTables(sortedDataTables);
+    }
+  }
+
+  /**
+   * K-way merges the sorted data tables and the previously merged rows into the first offset + size rows.
+   */
+  private void mergeSortedDataTables(List<DataTable> sortedDataTables) {
+    // The comparator puts the row to be evicted first, so reverse it to poll the rows in the query order
+    PriorityQueue<SortedRowCursor> cursors =
+        new PriorityQueue<>(sortedDataTables.size() + 1, (o1, o2) -> _comparator.compare(o2._row, o1._row));
+    List<Object[]> previousRows = _sortedRows;
+    if (!previousRows.isEmpty()) {
+      cursors.add(new SortedRowCursor(previousRows.size(), previousRows::get));
+    }
+    for (DataTable dataTable : sortedDataTables) {
+      if (dataTable.getNumberOfRows() > 0) {
+        cursors.add(new SortedRowCursor(dataTable.getNumberOfRows(),
+            rowId -> SelectionOperatorUtils.extractRowFromDataTable(dataTable, rowId)));
+      }
+    }
+
+    List<Object[]> mergedRows =
+        new ArrayList<>(Math.min(_numRowsToKeep, SelectionOperatorUtils.MAX_ROW_HOLDER_INITIAL_CAPACITY));
+    while (mergedRows.size() < _numRowsToKeep && !cursors.isEmpty()) {
+      SortedRowCursor cursor = cursors.poll();
+      mergedRows.add(cursor._row);
+      if (cursor.advance()) {
+        cursors.add(cursor);
+      }
+    }
+    _sortedRows = mergedRows;
+  }
+
+  /**
+   * Cursor on the current row of a sorted row source (data table or previously merged rows) during the k-way merge.
+   */
+  private static class SortedRowCursor {
+    final int _numRows;
+    final IntFunction<Object[]> _rowExtractor;
+    int _rowId;
+    Object[] _row;
+
+    SortedRowCursor(int numRows, IntFunction<Object[]> rowExtractor) {
+      _numRows = numRows;
+      _rowExtractor = rowExtractor;
+      _row = rowExtractor.apply(0);
+    }
+
+    boolean advance() {
+      if (++_rowId == _numRows) {
+        return false;
       }
+      _row = _rowExtractor.apply(_rowId);
+      return true;
+    }
+  }
+
+  private void addSortedRowsToPriorityQueue() {
+    for (Object[] row : _sortedRows) {
+      SelectionOperatorUtils.addToPriorityQueue(row, _rows, _numRowsToKeep);
     }
+    _sortedRows = Collections.emptyList();
+  }
+
+  /**
+   * Returns the rows from offset to offset + size in the query order.
+   */
+  private List<Object[]> getRowsToRender() {
+    if (_rows.isEmpty()) {
+      int numSortedRows = _sortedRows.size();
+      return _sortedRows.subList(Math.min(_offset, numSortedRows), numSortedRows);
+    }
+    addSortedRowsToPriorityQueue();
+    LinkedList<Object[]> rowsToRender = new LinkedList<>();
+    while (_rows.size() > _offset) {
+      rowsToRender.addFirst(_rows.poll());
+    }
+    return rowsToRender;
   }
 
   /**
@@ -161,32 +258,29 @@ public class SelectionOperatorService {
    * @return {@link SelectionResults} object results.
    */
   public SelectionResults renderSelectionResultsWithOrdering(boolean preserveType) {
-    LinkedList<Serializable[]> rowsInSelectionResults = new LinkedList<>();
+    List<Object[]> rowsToRender = getRowsToRender();
+    List<Serializable[]> rowsInSelectionResults = new ArrayList<>(rowsToRender.size());
     int[] columnIndices = SelectionOperatorUtils.getColumnIndices(_selectionColumns, _dataSchema);
     int numColumns = columnIndices.length;
     DataSchema.ColumnDataType[] columnDataTypes = _dataSchema.getColumnDataTypes();
 
     if (preserveType) {
-      while (_rows.size() > _offset) {
-        Object[] row = _rows.poll();
-        assert row != null;
+      for (Object[] row : rowsToRender) {
         Serializable[] extractedRow = new Serializable[numColumns];
         for (int i = 0; i < numColumns; i++) {
           int columnIndex = columnIndices[i];
           extractedRow[i] = SelectionOperatorUtils.convertValueToType(row[columnIndex], columnDataTypes[columnIndex]);
         }
-        rowsInSelectionResults.addFirst(extractedRow);
+        rowsInSelectionResults.add(extractedRow);
       }
     } else {
-      while (_rows.size() > _offset) {
-        Object[] row = _rows.poll();
-        assert row != null;
+      for (Object[] row : rowsToRender) {
         Serializable[] extractedRow = new Serializable[numColumns];
         for (int i = 0; i < numColumns; i++) {
           int columnIndex = columnIndices[i];
           extractedRow[i] = SelectionOperatorUtils.getFormattedValue(row[columnIndex], columnDataTypes[columnIndex]);
         }
-        rowsInSelectionResults.addFirst(extractedRow);
+        rowsInSelectionResults.add(extractedRow);
       }
     }
 
@@ -202,20 +296,19 @@ public class SelectionOperatorService {
    * @return {@link SelectionResults} object results.
    */
   public ResultTable renderResultTableWithOrdering() {
-    LinkedList<Object[]> rowsInSelectionResults = new LinkedList<>();
+    List<Object[]> rowsToRender = getRowsToRender();
+    List<Object[]> rowsInSelectionResults = new ArrayList<>(rowsToRender.size());
     int[] columnIndices = SelectionOperatorUtils.getColumnIndices(_selectionColumns, _dataSchema);
     int numColumns = columnIndices.length;
     DataSchema.ColumnDataType[] columnDataTypes = _dataSchema.getColumnDataTypes();
 
-    while (_rows.size() > _offset) {
-      Object[] row = _rows.poll();
-      assert row != null;
+    for (Object[] row : rowsToRender) {
       Object[] extractedRow = new Object[numColumns];
       for (int i = 0; i < numColumns; i++) {
         int columnIndex = columnIndices[i];
         extractedRow[i] = SelectionOperatorUtils.convertValueToType(row[columnIndex], columnDataTypes[columnIndex]);
       }
-      rowsInSelectionResults.addFirst(extractedRow);
+      rowsInSelectionResults.add(extractedRow);
     }
 
     // Construct the result data schema
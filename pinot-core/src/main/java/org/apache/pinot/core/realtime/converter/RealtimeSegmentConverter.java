@@ -26,11 +26,15 @@ import java.util.Map;
 import javax.annotation.Nullable;
 import org.apache.pinot.common.metrics.ServerGauge;
 import org.apache.pinot.common.metrics.ServerMetrics;
+import org.apache.pinot.core.common.DataSource;
 import org.apache.pinot.core.data.recordtransformer.CompositeTransformer;
 import org.apache.pinot.core.indexsegment.generator.SegmentGeneratorConfig;
 import org.apache.pinot.core.indexsegment.generator.SegmentVersion;
 import org.apache.pinot.core.indexsegment.mutable.MutableSegmentImpl;
 import org.apache.pinot.core.io.compression.ChunkCompressorFactory;
+import org.apache.pinot.core.io.reader.DataFileReader;
+import org.apache.pinot.core.io.reader.SingleColumnMultiValueReader;
+import org.apache.pinot.core.io.reader.SingleColumnSingleValueReader;
 import org.apache.pinot.core.realtime.converter.stats.RealtimeSegmentSegmentCreationDataSource;
 import org.apache.pinot.core.segment.creator.impl.SegmentIndexCreationDriverImpl;
 import org.apache.pinot.spi.config.table.ColumnPartitionConfig;
@@ -94,6 +98,16 @@ public class RealtimeSegmentConverter {
 
   public void build(@Nullable SegmentVersion segmentVersion, ServerMetrics serverMetrics)
       throws Exception {
+    build(segmentVersion, serverMetrics, true);
+  }
+
+  /**
+   * Builds the immutable segment, column by column if enabled and supported by the mutable segment, row by row
+   * otherwise. Disabling the column-based build is only used to compare both builds in tests.
+   */
+  @VisibleForTesting
+  public void build(@Nullable SegmentVersion segmentVersion, ServerMetrics serverMetrics, boolean enableBuildByColumn)
+      throws Exception {
     // lets create a record reader
     RealtimeSegmentRecordReader reader = new RealtimeSegmentRecordReader(_realtimeSegmentImpl, _sortedColumn);
     SegmentGeneratorConfig genConfig = new SegmentGeneratorConfig(_tableConfig, _dataSchema);
@@ -138,7 +152,12 @@ public class RealtimeSegmentConverter {
     RealtimeSegmentSegmentCreationDataSource dataSource =
         new RealtimeSegmentSegmentCreationDataSource(_realtimeSegmentImpl, reader, _dataSchema);
     driver.init(genConfig, dataSource, CompositeTransformer.getPassThroughTransformer());
-    driver.build();
+    if (enableBuildByColumn && canBuildByColumn()) {
+      // Write the columns directly from the mutable segment, skipping the row materialization
+      driver.buildByColumn(_realtimeSegmentImpl, reader.getSortedDocIdIterationOrder());
+    } else {
+      driver.build();
+    }
 
     if (segmentPartitionConfig != null) {
       Map<String, ColumnPartitionConfig> columnPartitionMap = segmentPartitionConfig.getColumnPartitionMap();
@@ -149,6 +168,40 @@ public class RealtimeSegmentConverter {
     }
   }
 
+  /**
+   * Returns whether the segment can be built column by column from the mutable segment, i.e. all the columns in the
+   * schema are physical columns in the mutable segment with the same data type and number of values per entry.
+   * Otherwise (e.g. time column converted to the outgoing granularity), the segment is built row by row.
+   */
+  private boolean canBuildByColumn() {
+    for (FieldSpec fieldSpec : _dataSchema.getAllFieldSpecs()) {
+      if (fieldSpec.isVirtualColumn()) {
+        continue;
+      }
+      String column = fieldSpec.getName();
+      if (!_realtimeSegmentImpl.getPhysicalColumnNames().contains(column)) {
+        return false;
+      }
+      DataSource dataSource = _realtimeSegmentImpl.getDataSource(column);
+      FieldSpec mutableFieldSpec = dataSource.getDataSourceMetadata().getFieldSpec();
+      if (mutableFieldSpec.getDataType() != fieldSpec.getDataType()
+          || mutableFieldSpec.isSingleValueField() != fieldSpec.isSingleValueField()) {
+        return false;
+      }
+      DataFileReader forwardIndex = dataSource.getForwardIndex();
+      if (fieldSpec.isSingleValueField()) {
+        if (!(forwardIndex instanceof SingleColumnSingleValueReader)) {
+          return false;
+        }
+      } else {
+        if (!(forwardIndex instanceof SingleColumnMultiValueReader) || dataSource.getDictionary() == null) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
   /**
    * Returns a new schema based on the original one. The new schema removes columns as needed (for ex, virtual cols)
    * and adds the new timespec to the schema.
@@ -18,11 +18,14 @@
  */
 package org.apache.pinot.core.realtime.impl;
 
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 import org.apache.pinot.common.metadata.segment.RealtimeSegmentZKMetadata;
 import org.apache.pinot.core.data.partition.PartitionFunction;
 import org.apache.pinot.core.io.readerwriter.PinotDataBufferMemoryManager;
+import org.apache.pinot.core.upsert.PartitionUpsertMetadataManager;
 import org.apache.pinot.spi.data.Schema;
 
 
@@ -33,6 +36,7 @@ public class RealtimeSegmentConfig {
   private final int _capacity;
   private final int _avgNumMultiValues;
   private final Set<String> _noDictionaryColumns;
+  private final Map<String, String> _noDictionaryConfig;
   private final Set<String> _varLengthDictionaryColumns;
   private final Set<String> _invertedIndexColumns;
   private final Set<String> _textIndexColumns;
@@ -46,19 +50,22 @@ public class RealtimeSegmentConfig {
   private final boolean _aggregateMetrics;
   private final boolean _nullHandlingEnabled;
   private final String _consumerDir;
+  private final PartitionUpsertMetadataManager _partitionUpsertMetadataManager;
 
   private RealtimeSegmentConfig(String segmentName, String streamName, Schema schema, int capacity,
-      int avgNumMultiValues, Set<String> noDictionaryColumns, Set<String> varLengthDictionaryColumns,
-      Set<String> invertedIndexColumns, Set<String> textIndexColumns,
+      int avgNumMultiValues, Set<String> noDictionaryColumns, Map<String, String> noDictionaryConfig,
+      Set<String> varLengthDictionaryColumns, Set<String> invertedIndexColumns, Set<String> textIndexColumns,
       RealtimeSegmentZKMetadata realtimeSegmentZKMetadata, boolean offHeap, PinotDataBufferMemoryManager memoryManager,
       RealtimeSegmentStatsHistory statsHistory, String partitionColumn, PartitionFunction partitionFunction,
-      int partitionId, boolean aggregateMetrics, boolean nullHandlingEnabled, String consumerDir) {
+      int partitionId, boolean aggregateMetrics, boolean nullHandlingEnabled, String consumerDir,
+      PartitionUpsertMetadataManager partitionUpsertMetadataManager) {
     _segmentName = segmentName;
     _streamName = streamName;
     _schema = schema;
     _capacity = capacity;
     _avgNumMultiValues = avgNumMultiValues;
     _noDictionaryColumns = noDictionaryColumns;
+    _noDictionaryConfig = noDictionaryConfig;
     _varLengthDictionaryColumns = varLengthDictionaryColumns;
     _invertedIndexColumns = invertedIndexColumns;
     _textIndexColumns = textIndexColumns;
@@ -72,6 +79,7 @@ public class RealtimeSegmentConfig {
     _aggregateMetrics = aggregateMetrics;
     _nullHandlingEnabled = nullHandlingEnabled;
     _consumerDir = consumerDir;
+    _partitionUpsertMetadataManager = partitionUpsertMetadataManager;
   }
 
   public String getSegmentName() {
@@ -98,6 +106,14 @@ public class RealtimeSegmentConfig {
     return _noDictionaryColumns;
   }
 
+  /**
+   * Returns the map from no-dictionary column to the compression type of its raw index. The var-length no-dictionary
+   * columns with a compression type are stored in compressed chunks while consuming.
+   */
+  public Map<String, String> getNoDictionaryConfig() {
+    return _noDictionaryConfig;
+  }
+
   public Set<String> getVarLengthDictionaryColumns() {
     return _varLengthDictionaryColumns;
   }
@@ -155,6 +171,10 @@ public class RealtimeSegmentConfig {
     return _consumerDir;
   }
 
+  public PartitionUpsertMetadataManager getPartitionUpsertMetadataManager() {
+    return _partitionUpsertMetadataManager;
+  }
+
   public static class Builder {
     private String _segmentName;
     private String _streamName;
@@ -162,6 +182,7 @@ public class RealtimeSegmentConfig {
     private int _capacity;
     private int _avgNumMultiValues;
     private Set<String> _noDictionaryColumns;
+    private Map<String, String> _noDictionaryConfig = new HashMap<>();
     private Set<String> _varLengthDictionaryColumns;
     private Set<String> _invertedIndexColumns;
     private Set<String> _textIndexColumns = new HashSet<>();
@@ -175,6 +196,7 @@ public class RealtimeSegmentConfig {
     private boolean _aggregateMetrics = false;
     private boolean _nullHandlingEnabled = false;
     private String _consumerDir;
+    private PartitionUpsertMetadataManager _partitionUpsertMetadataManager;
 
     public Builder() {
     }
@@ -209,6 +231,11 @@ public class RealtimeSegmentConfig {
       return this;
     }
 
+    public Builder setNoDictionaryConfig(Map<String, String> noDictionaryConfig) {
+      _noDictionaryConfig = noDictionaryConfig;
+      return this;
+    }
+
     public Builder setVarLengthDictionaryColumns(Set<String> varLengthDictionaryColumns) {
       _varLengthDictionaryColumns = varLengthDictionaryColumns;
       return this;
@@ -282,11 +309,17 @@ public class RealtimeSegmentConfig {
       return this;
     }
 
+    public Builder setPartitionUpsertMetadataManager(PartitionUpsertMetadataManager partitionUpsertMetadataManager) {
+      _partitionUpsertMetadataManager = partitionUpsertMetadataManager;
+      return this;
+    }
+
     public RealtimeSegmentConfig build() {
       return new RealtimeSegmentConfig(_segmentName, _streamName, _schema, _capacity, _avgNumMultiValues,
-          _noDictionaryColumns, _varLengthDictionaryColumns, _invertedIndexColumns, _textIndexColumns,
-          _realtimeSegmentZKMetadata, _offHeap, _memoryManager, _statsHistory, _partitionColumn, _partitionFunction,
-          _partitionId, _aggregateMetrics, _nullHandlingEnabled, _consumerDir);
+          _noDictionaryColumns, _noDictionaryConfig, _varLengthDictionaryColumns, _invertedIndexColumns,
+          _textIndexColumns, _realtimeSegmentZKMetadata, _offHeap, _memoryManager, _statsHistory, _partitionColumn,
+          _partitionFunction, _partitionId, _aggregateMetrics, _nullHandlingEnabled, _consumerDir,
+          _partitionUpsertMetadataManager);
     }
   }
 }
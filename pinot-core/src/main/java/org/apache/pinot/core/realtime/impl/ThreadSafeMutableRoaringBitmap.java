@@ -44,6 +44,10 @@ public class ThreadSafeMutableRoaringBitmap {
     }
   }
 
+  public synchronized void remove(int docId) {
+    _mutableRoaringBitmap.remove(docId);
+  }
+
   public boolean contains(int docId) {
     return _mutableRoaringBitmap.contains(docId);
   }
@@ -18,47 +18,96 @@
  */
 package org.apache.pinot.core.realtime.impl.invertedindex;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
-import org.apache.pinot.core.common.Predicate;
-import org.apache.pinot.core.realtime.impl.ThreadSafeMutableRoaringBitmap;
 import org.apache.pinot.core.segment.index.readers.InvertedIndexReader;
+import org.roaringbitmap.IntIterator;
 import org.roaringbitmap.buffer.MutableRoaringBitmap;
 
 
 /**
- * Real-time bitmap based inverted index reader which allows adding values on the fly.
+ * Real-time inverted index reader which allows adding values on the fly.
+ * <p>The document ids for each dictionary id are stored in an append-only {@link RealtimePostingList}, and the
+ * posting lists are published through a volatile array, so that readers can iterate over the document ids without
+ * locking or copying via {@link #getDocIdIterator(int)}.
  * <p>This class is thread-safe for single writer multiple readers.
  */
 public class RealtimeInvertedIndexReader implements InvertedIndexReader<MutableRoaringBitmap> {
-  private final List<ThreadSafeMutableRoaringBitmap> _bitmaps = new ArrayList<>();
-  private final ReentrantReadWriteLock.ReadLock _readLock;
-  private final ReentrantReadWriteLock.WriteLock _writeLock;
+  private static final int INITIAL_CAPACITY = 16;
 
-  public RealtimeInvertedIndexReader() {
-    ReentrantReadWriteLock readWriteLock = new ReentrantReadWriteLock();
-    _readLock = readWriteLock.readLock();
-    _writeLock = readWriteLock.writeLock();
-  }
+  private volatile RealtimePostingList[] _postingLists = new RealtimePostingList[INITIAL_CAPACITY];
+  private volatile int _numPostingLists;
 
   /**
-   * Adds the document id to the bitmap of the given dictionary id.
+   * Adds the document id to the posting list of the given dictionary id.
+   * <p>NOTE: document ids should be added in ascending order. Dictionary ids can be added in any order (e.g. the
+   * values of a multi-valued column are not indexed in dictionary id order), and the posting lists are allocated
+   * lazily for the dictionary ids added.
    */
   public void add(int dictId, int docId) {
-    if (_bitmaps.size() == dictId) {
-      // Bitmap for the dictionary id does not exist, add a new bitmap into the list
-      ThreadSafeMutableRoaringBitmap bitmap = new ThreadSafeMutableRoaringBitmap(docId);
-      try {
-        _writeLock.lock();
-        _bitmaps.add(bitmap);
-      } finally {
-        _writeLock.unlock();
+    int numPostingLists = _numPostingLists;
+    RealtimePostingList[] postingLists = _postingLists;
+    if (dictId < numPostingLists) {
+      RealtimePostingList postingList = postingLists[dictId];
+      if (postingList != null) {
+        // Posting list for the dictionary id already exists, add document id into the posting list
+        postingList.add(docId);
+      } else {
+        // Fill the missing posting list, and publish it through the volatile write of the number of posting lists
+        postingLists[dictId] = new RealtimePostingList(docId);
+        _numPostingLists = numPostingLists;
       }
     } else {
-      // Bitmap for the dictionary id already exists, check and add document id into the bitmap
-      _bitmaps.get(dictId).checkAndAdd(docId);
+      // Posting list for the dictionary id does not exist, grow the array up to the dictionary id if needed
+      if (dictId >= postingLists.length) {
+        int newCapacity = postingLists.length << 1;
+        while (newCapacity <= dictId) {
+          newCapacity <<= 1;
+        }
+        RealtimePostingList[] newPostingLists = new RealtimePostingList[newCapacity];
+        System.arraycopy(postingLists, 0, newPostingLists, 0, numPostingLists);
+        newPostingLists[dictId] = new RealtimePostingList(docId);
+        _postingLists = newPostingLists;
+      } else {
+        postingLists[dictId] = new RealtimePostingList(docId);
+      }
+      _numPostingLists = dictId + 1;
+    }
+  }
+
+  /**
+   * Adds the document ids starting from the given document id to the posting lists of the given dictionary ids, one
+   * dictionary id per document (single-value column).
+   */
+  public void add(int[] dictIds, int startDocId) {
+    int numDocs = dictIds.length;
+    for (int i = 0; i < numDocs; i++) {
+      add(dictIds[i], startDocId + i);
+    }
+  }
+
+  /**
+   * Returns an iterator over the document ids (in ascending order) for the given dictionary id published at the time
+   * of the call. The document ids are not copied, so this is preferred over {@link #getDocIds(int)} on the query path.
+   */
+  public IntIterator getDocIdIterator(int dictId) {
+    RealtimePostingList postingList = getPostingList(dictId);
+    return postingList != null ? postingList.iterator() : RealtimePostingList.EMPTY_ITERATOR;
+  }
+
+  /**
+   * Returns the posting list for the given dictionary id, or {@code null} if it does not exist.
+   */
+  private RealtimePostingList getPostingList(int dictId) {
+    // NOTE: the given dictionary id might not be added to the inverted index yet. We first add the value to the
+    // dictionary. Before the value is added to the inverted index, the query might have predicates that match the
+    // newly added value. In that case, the given dictionary id does not exist in the inverted index. For multi-valued
+    // column, the dictionary id might be larger than the number of posting lists (not equal).
+    // NOTE: read the number of posting lists before the array so that the array contains all the posting lists up to
+    // the number. The posting list might be null for the dictionary ids not added yet.
+    int numPostingLists = _numPostingLists;
+    if (numPostingLists <= dictId) {
+      return null;
     }
+    return _postingLists[dictId];
   }
 
   @Override
@@ -68,23 +117,15 @@ public class RealtimeInvertedIndexReader implements InvertedIndexReader<MutableR
     throw new IllegalStateException("realtime bitmap inverted index reader supports lookup only on dictionary id");
   }
 
+  /**
+   * {@inheritDoc}
+   * <p>NOTE: the returned bitmap is a copy of the document ids published at the time of the call. Use
+   * {@link #getDocIdIterator(int)} to iterate over the document ids without copying them.
+   */
   @Override
   public MutableRoaringBitmap getDocIds(int dictId) {
-    ThreadSafeMutableRoaringBitmap bitmap;
-    try {
-      _readLock.lock();
-      // NOTE: the given dictionary id might not be added to the inverted index yet. We first add the value to the
-      // dictionary. Before the value is added to the inverted index, the query might have predicates that match the
-      // newly added value. In that case, the given dictionary id does not exist in the inverted index, and we return an
-      // empty bitmap. For multi-valued column, the dictionary id might be larger than the bitmap size (not equal).
-      if (_bitmaps.size() <= dictId) {
-        return new MutableRoaringBitmap();
-      }
-      bitmap = _bitmaps.get(dictId);
-    } finally {
-      _readLock.unlock();
-    }
-    return bitmap.getMutableRoaringBitmap();
+    RealtimePostingList postingList = getPostingList(dictId);
+    return postingList != null ? postingList.toBitmap() : new MutableRoaringBitmap();
   }
 
   @Override
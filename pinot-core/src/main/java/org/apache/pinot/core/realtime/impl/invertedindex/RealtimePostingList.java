@@ -0,0 +1,126 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.core.realtime.impl.invertedindex;
+
+import org.roaringbitmap.IntIterator;
+import org.roaringbitmap.buffer.MutableRoaringBitmap;
+
+
+/**
+ * Append-only posting list of the document ids for one dictionary id in the real-time inverted index.
+ * <p>This class is thread-safe for single writer multiple readers without locking. Document ids are appended in
+ * ascending order, and the number of document ids is published through a volatile field after the document id is
+ * written (and after the array is swapped if it has to grow). Readers read the size first, then the array, so all the
+ * document ids up to the size they read are visible to them, and they can iterate over these document ids without
+ * copying them.
+ */
+public class RealtimePostingList {
+  private static final int INITIAL_CAPACITY = 4;
+
+  public static final IntIterator EMPTY_ITERATOR = new PostingListIterator(new int[0], 0, 0);
+
+  private volatile int[] _docIds;
+  private volatile int _size;
+
+  public RealtimePostingList(int firstDocId) {
+    int[] docIds = new int[INITIAL_CAPACITY];
+    docIds[0] = firstDocId;
+    _docIds = docIds;
+    _size = 1;
+  }
+
+  /**
+   * Appends the document id to the posting list. The document id should be greater than or equal to the last added
+   * document id. Adding the last added document id again (e.g. same value multiple times in a multi-valued column) is
+   * a no-op.
+   * <p>NOTE: this method should only be called from the single writer thread.
+   */
+  public void add(int docId) {
+    int size = _size;
+    int[] docIds = _docIds;
+    if (docIds[size - 1] == docId) {
+      return;
+    }
+    if (size == docIds.length) {
+      int[] newDocIds = new int[size << 1];
+      System.arraycopy(docIds, 0, newDocIds, 0, size);
+      newDocIds[size] = docId;
+      _docIds = newDocIds;
+    } else {
+      docIds[size] = docId;
+    }
+    _size = size + 1;
+  }
+
+  /**
+   * Returns the number of document ids published to the readers.
+   */
+  public int size() {
+    return _size;
+  }
+
+  /**
+   * Returns an iterator over the document ids published at the time of the call without copying them.
+   */
+  public IntIterator iterator() {
+    // NOTE: read the size before the array so that the array contains all the document ids up to the size
+    int size = _size;
+    return new PostingListIterator(_docIds, 0, size);
+  }
+
+  /**
+   * Returns a bitmap copy of the document ids published at the time of the call.
+   */
+  public MutableRoaringBitmap toBitmap() {
+    int size = _size;
+    int[] docIds = _docIds;
+    MutableRoaringBitmap bitmap = new MutableRoaringBitmap();
+    for (int i = 0; i < size; i++) {
+      bitmap.add(docIds[i]);
+    }
+    return bitmap;
+  }
+
+  private static class PostingListIterator implements IntIterator {
+    private final int[] _docIds;
+    private final int _size;
+    private int _index;
+
+    PostingListIterator(int[] docIds, int index, int size) {
+      _docIds = docIds;
+      _index = index;
+      _size = size;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return _index < _size;
+    }
+
+    @Override
+    public int next() {
+      return _docIds[_index++];
+    }
+
+    @Override
+    public IntIterator clone() {
+      return new PostingListIterator(_docIds, _index, _size);
+    }
+  }
+}
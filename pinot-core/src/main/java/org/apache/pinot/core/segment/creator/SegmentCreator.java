@@ -22,7 +22,9 @@ import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
 import java.util.Map;
+import javax.annotation.Nullable;
 import org.apache.commons.configuration.ConfigurationException;
+import org.apache.pinot.core.common.DataSource;
 import org.apache.pinot.spi.data.Schema;
 import org.apache.pinot.spi.data.readers.GenericRow;
 import org.apache.pinot.core.indexsegment.generator.SegmentGeneratorConfig;
@@ -53,6 +55,17 @@ public interface SegmentCreator extends Closeable {
    */
   void indexRow(GenericRow row);
 
+  /**
+   * Adds all the documents of a column to the index from the data source of the column. Different columns can be
+   * indexed concurrently, but a segment should be created either row by row or column by column.
+   *
+   * @param columnName The name of the column to index
+   * @param dataSource The data source of the column
+   * @param sortedDocIds The document ids in the data source in the order to index them, or {@code null} to index them
+   *                     in the original order
+   */
+  void indexColumn(String columnName, DataSource dataSource, @Nullable int[] sortedDocIds);
+
   /**
    * Sets the name of the segment.
    *
@@ -28,12 +28,16 @@ import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
 import org.apache.commons.configuration.ConfigurationException;
 import org.apache.commons.configuration.PropertiesConfiguration;
 import org.apache.pinot.common.utils.FileUtils;
+import org.apache.pinot.core.common.DataSource;
 import org.apache.pinot.core.data.partition.PartitionFunction;
 import org.apache.pinot.core.indexsegment.generator.SegmentGeneratorConfig;
 import org.apache.pinot.core.io.compression.ChunkCompressorFactory;
+import org.apache.pinot.core.io.reader.SingleColumnMultiValueReader;
+import org.apache.pinot.core.io.reader.SingleColumnSingleValueReader;
 import org.apache.pinot.core.io.util.PinotDataBitSet;
 import org.apache.pinot.core.segment.creator.ColumnIndexCreationInfo;
 import org.apache.pinot.core.segment.creator.ForwardIndexCreator;
@@ -53,6 +57,8 @@ import org.apache.pinot.core.segment.creator.impl.inv.OffHeapBitmapInvertedIndex
 import org.apache.pinot.core.segment.creator.impl.inv.OnHeapBitmapInvertedIndexCreator;
 import org.apache.pinot.core.segment.creator.impl.inv.text.LuceneTextIndexCreator;
 import org.apache.pinot.core.segment.creator.impl.nullvalue.NullValueVectorCreator;
+import org.apache.pinot.core.segment.index.readers.Dictionary;
+import org.apache.pinot.core.segment.index.readers.NullValueVectorReader;
 import org.apache.pinot.spi.data.DateTimeFieldSpec;
 import org.apache.pinot.spi.data.FieldSpec;
 import org.apache.pinot.spi.data.FieldSpec.FieldType;
@@ -333,6 +339,126 @@ public class SegmentColumnarIndexCreator implements SegmentCreator {
     docIdCounter++;
   }
 
+  /**
+   * {@inheritDoc}
+   * <p>When both the data source and the segment being created are dictionary-encoded, the dictionary ids in the data
+   * source are mapped to the dictionary ids in the segment once per value, instead of looking up the value for each
+   * document.
+   */
+  @Override
+  public void indexColumn(String columnName, DataSource dataSource, @Nullable int[] sortedDocIds) {
+    FieldSpec fieldSpec = schema.getFieldSpecFor(columnName);
+    ForwardIndexCreator forwardIndexCreator = _forwardIndexCreatorMap.get(columnName);
+    Preconditions.checkState(forwardIndexCreator != null, "Cannot index column: %s", columnName);
+    SegmentDictionaryCreator dictionaryCreator = _dictionaryCreatorMap.get(columnName);
+    InvertedIndexCreator invertedIndexCreator = _invertedIndexCreatorMap.get(columnName);
+    Dictionary dictionary = dataSource.getDictionary();
+
+    if (fieldSpec.isSingleValueField()) {
+      SingleColumnSingleValueReader forwardIndex = (SingleColumnSingleValueReader) dataSource.getForwardIndex();
+      if (dictionaryCreator != null && dictionary != null) {
+        // Dictionary-encoded in both data source and segment, map the dictionary ids
+        int[] dictIdMapping = getDictIdMapping(dictionary, dictionaryCreator);
+        SingleValueForwardIndexCreator svForwardIndexCreator = (SingleValueForwardIndexCreator) forwardIndexCreator;
+        for (int docId = 0; docId < totalDocs; docId++) {
+          int dictId = dictIdMapping[forwardIndex.getInt(getSourceDocId(docId, sortedDocIds))];
+          svForwardIndexCreator.index(docId, dictId);
+          if (invertedIndexCreator != null) {
+            invertedIndexCreator.add(dictId);
+          }
+        }
+      } else {
+        for (int docId = 0; docId < totalDocs; docId++) {
+          Object value =
+              getSVValue(forwardIndex, dictionary, fieldSpec.getDataType(), getSourceDocId(docId, sortedDocIds));
+          if (dictionaryCreator != null) {
+            int dictId = dictionaryCreator.indexOfSV(value);
+            ((SingleValueForwardIndexCreator) forwardIndexCreator).index(docId, dictId);
+            if (invertedIndexCreator != null) {
+              invertedIndexCreator.add(dictId);
+            }
+          } else {
+            ((SingleValueRawIndexCreator) forwardIndexCreator).index(docId, value);
+            if (invertedIndexCreator != null) {
+              // Text index
+              invertedIndexCreator.addDoc(value, docId);
+            }
+          }
+        }
+      }
+    } else {
+      // MV column (always dictionary encoded)
+      Preconditions.checkState(dictionaryCreator != null && dictionary != null,
+          "Cannot index multi-value column: %s without dictionary", columnName);
+      SingleColumnMultiValueReader forwardIndex = (SingleColumnMultiValueReader) dataSource.getForwardIndex();
+      int[] dictIdMapping = getDictIdMapping(dictionary, dictionaryCreator);
+      MultiValueForwardIndexCreator mvForwardIndexCreator = (MultiValueForwardIndexCreator) forwardIndexCreator;
+      int[] sourceDictIds = new int[dataSource.getDataSourceMetadata().getMaxNumValuesPerMVEntry()];
+      for (int docId = 0; docId < totalDocs; docId++) {
+        int numValues = forwardIndex.getIntArray(getSourceDocId(docId, sortedDocIds), sourceDictIds);
+        int[] dictIds = new int[numValues];
+        for (int i = 0; i < numValues; i++) {
+          dictIds[i] = dictIdMapping[sourceDictIds[i]];
+        }
+        mvForwardIndexCreator.index(docId, dictIds);
+        if (invertedIndexCreator != null) {
+          invertedIndexCreator.add(dictIds, numValues);
+        }
+      }
+    }
+
+    if (_nullHandlingEnabled) {
+      NullValueVectorReader nullValueVector = dataSource.getNullValueVector();
+      if (nullValueVector != null) {
+        NullValueVectorCreator nullValueVectorCreator = _nullValueVectorCreatorMap.get(columnName);
+        for (int docId = 0; docId < totalDocs; docId++) {
+          if (nullValueVector.isNull(getSourceDocId(docId, sortedDocIds))) {
+            nullValueVectorCreator.setNull(docId);
+          }
+        }
+      }
+    }
+  }
+
+  private static int getSourceDocId(int docId, @Nullable int[] sortedDocIds) {
+    return sortedDocIds != null ? sortedDocIds[docId] : docId;
+  }
+
+  /**
+   * Returns the mapping from the dictionary ids in the source dictionary to the dictionary ids in the segment.
+   */
+  private static int[] getDictIdMapping(Dictionary dictionary, SegmentDictionaryCreator dictionaryCreator) {
+    int length = dictionary.length();
+    int[] dictIdMapping = new int[length];
+    for (int dictId = 0; dictId < length; dictId++) {
+      dictIdMapping[dictId] = dictionaryCreator.indexOfSV(dictionary.get(dictId));
+    }
+    return dictIdMapping;
+  }
+
+  private static Object getSVValue(SingleColumnSingleValueReader forwardIndex, @Nullable Dictionary dictionary,
+      FieldSpec.DataType dataType, int docId) {
+    if (dictionary != null) {
+      return dictionary.get(forwardIndex.getInt(docId));
+    }
+    switch (dataType) {
+      case INT:
+        return forwardIndex.getInt(docId);
+      case LONG:
+        return forwardIndex.getLong(docId);
+      case FLOAT:
+        return forwardIndex.getFloat(docId);
+      case DOUBLE:
+        return forwardIndex.getDouble(docId);
+      case STRING:
+        return forwardIndex.getString(docId);
+      case BYTES:
+        return forwardIndex.getBytes(docId);
+      default:
+        throw new IllegalStateException("Unsupported data type: " + dataType);
+    }
+  }
+
   @Override
   public void setSegmentName(String segmentName) {
     this.segmentName = segmentName;
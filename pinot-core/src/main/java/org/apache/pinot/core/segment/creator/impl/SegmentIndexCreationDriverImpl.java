@@ -23,16 +23,23 @@ import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import javax.annotation.Nullable;
 import org.apache.commons.io.FileUtils;
 import org.apache.pinot.core.data.readers.PinotSegmentRecordReader;
 import org.apache.pinot.core.data.recordtransformer.CompositeTransformer;
 import org.apache.pinot.core.data.recordtransformer.RecordTransformer;
 import org.apache.pinot.core.indexsegment.generator.SegmentGeneratorConfig;
+import org.apache.pinot.core.indexsegment.IndexSegment;
 import org.apache.pinot.core.indexsegment.generator.SegmentVersion;
 import org.apache.pinot.core.segment.creator.ColumnIndexCreationInfo;
 import org.apache.pinot.core.segment.creator.ColumnStatistics;
@@ -198,6 +205,67 @@ public class SegmentIndexCreationDriverImpl implements SegmentIndexCreationDrive
     handlePostCreation();
   }
 
+  /**
+   * Builds the segment column by column from the data sources of the given index segment instead of row by row from
+   * the record reader. The columns are indexed in parallel. The data source for the driver must be created from the
+   * same index segment so that the collected statistics match the indexed values.
+   *
+   * @param indexSegment Index segment to read the columns from
+   * @param sortedDocIds Document ids in the index segment in the order to index them, or {@code null} to index them in
+   *                     the original order
+   */
+  public void buildByColumn(IndexSegment indexSegment, @Nullable int[] sortedDocIds)
+      throws Exception {
+    // Count the number of documents and gather per-column statistics
+    LOGGER.debug("Start building StatsCollector!");
+    buildIndexCreationInfo();
+    LOGGER.info("Finished building StatsCollector!");
+    LOGGER.info("Collected stats for {} documents", totalDocs);
+
+    List<String> columns = new ArrayList<>();
+    for (FieldSpec fieldSpec : dataSchema.getAllFieldSpecs()) {
+      if (!fieldSpec.isVirtualColumn()) {
+        columns.add(fieldSpec.getName());
+      }
+    }
+    ExecutorService executorService =
+        Executors.newFixedThreadPool(Math.max(1, Math.min(columns.size(), Runtime.getRuntime().availableProcessors())));
+    try {
+      // Initialize the index creation using the per-column statistics information
+      indexCreator.init(config, segmentIndexCreationInfo, indexCreationInfoMap, dataSchema, tempIndexDir);
+
+      // Build the index
+      LOGGER.info("Start building IndexCreator by column!");
+      long start = System.currentTimeMillis();
+      List<Future<?>> futures = new ArrayList<>(columns.size());
+      for (String column : columns) {
+        futures.add(executorService
+            .submit(() -> indexCreator.indexColumn(column, indexSegment.getDataSource(column), sortedDocIds)));
+      }
+      try {
+        for (Future<?> future : futures) {
+          future.get();
+        }
+      } catch (ExecutionException e) {
+        throw new RuntimeException("Caught exception while indexing columns", e.getCause());
+      } finally {
+        for (Future<?> future : futures) {
+          future.cancel(true);
+        }
+      }
+      totalIndexTime += System.currentTimeMillis() - start;
+    } catch (Exception e) {
+      indexCreator.close();
+      throw e;
+    } finally {
+      executorService.shutdownNow();
+      recordReader.close();
+    }
+    LOGGER.info("Finished columns indexing in IndexCreator!");
+
+    handlePostCreation();
+  }
+
   private void handlePostCreation()
       throws Exception {
     ColumnStatistics timeColumnStatistics = segmentStats.getColumnProfileFor(config.getTimeColumnName());
@@ -41,6 +41,7 @@ import org.apache.pinot.spi.config.table.TableConfig;
  */
 public class IndexLoadingConfig {
   private static final int DEFAULT_REALTIME_AVG_MULTI_VALUE_COUNT = 2;
+  private static final int DEFAULT_REALTIME_PIPELINE_BUFFER_SIZE = 1024;
 
   private ReadMode _readMode = ReadMode.DEFAULT_MODE;
   private List<String> _sortedColumns = Collections.emptyList();
@@ -58,6 +59,9 @@ public class IndexLoadingConfig {
   private boolean _enableSplitCommit;
   private boolean _isRealtimeOffheapAllocation;
   private boolean _isDirectRealtimeOffheapAllocation;
+  private boolean _isRealtimePipelinedConsumption;
+  private int _realtimePipelineBufferSize = DEFAULT_REALTIME_PIPELINE_BUFFER_SIZE;
+  private boolean _isPeerSegmentDownloadEnabled;
   private boolean _enableSplitCommitEndWithMetadata;
 
   // constructed from FieldConfig
@@ -170,6 +174,12 @@ public class IndexLoadingConfig {
 
     _isRealtimeOffheapAllocation = instanceDataManagerConfig.isRealtimeOffHeapAllocation();
     _isDirectRealtimeOffheapAllocation = instanceDataManagerConfig.isDirectRealtimeOffheapAllocation();
+    _isRealtimePipelinedConsumption = instanceDataManagerConfig.isRealtimePipelinedConsumption();
+    int realtimePipelineBufferSize = instanceDataManagerConfig.getRealtimePipelineBufferSize();
+    if (realtimePipelineBufferSize > 0) {
+      _realtimePipelineBufferSize = realtimePipelineBufferSize;
+    }
+    _isPeerSegmentDownloadEnabled = instanceDataManagerConfig.isPeerSegmentDownloadEnabled();
 
     String avgMultiValueCount = instanceDataManagerConfig.getAvgMultiValueCount();
     if (avgMultiValueCount != null) {
@@ -307,6 +317,18 @@ public class IndexLoadingConfig {
     return _isDirectRealtimeOffheapAllocation;
   }
 
+  public boolean isRealtimePipelinedConsumption() {
+    return _isRealtimePipelinedConsumption;
+  }
+
+  public int getRealtimePipelineBufferSize() {
+    return _realtimePipelineBufferSize;
+  }
+
+  public boolean isPeerSegmentDownloadEnabled() {
+    return _isPeerSegmentDownloadEnabled;
+  }
+
   @Nonnull
   public ColumnMinMaxValueGeneratorMode getColumnMinMaxValueGeneratorMode() {
     return _columnMinMaxValueGeneratorMode;
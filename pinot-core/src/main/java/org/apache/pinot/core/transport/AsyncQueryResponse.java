@@ -18,11 +18,15 @@
  */
 package org.apache.pinot.core.transport;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
-import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.ThreadSafe;
 import org.apache.pinot.common.utils.DataTable;
 
@@ -30,41 +34,133 @@ import org.apache.pinot.common.utils.DataTable;
 /**
  * The {@code AsyncQueryResponse} class represents an asynchronous query response.
  * <p>Call {@link #getResponse()} to get the query response asynchronously.
+ * <p>The request to a straggling server might be hedged (re-issued to another server with a separate request id), in
+ * which case the response is taken from whichever server answers first, and is keyed by the straggling server.
+ * <p>When the {@link ServerResponseListener} is provided, it is notified as each request (original or hedged) gets
+ * responded, with the latency of that request and the server actually responding, and of the requests not responded
+ * when the query finishes. When the query finishes with the slower one of the original request and the hedged request
+ * still in flight (not cancelled), the query stays registered in the {@link QueryRouter} until the query timeout, so
+ * that the latency of the slower request is still recorded when it responds.
  */
 @ThreadSafe
 public class AsyncQueryResponse {
   private final QueryRouter _queryRouter;
   private final long _requestId;
+  private final String _rawTableName;
   private final ConcurrentHashMap<ServerRoutingInstance, ServerResponse> _responseMap;
+  private final Map<ServerRoutingInstance, ServerInstance> _serverInstanceMap;
   private final CountDownLatch _countDownLatch;
   private final long _maxEndTimeMs;
+  private final BiConsumer<ServerRoutingInstance, DataTable> _dataTableConsumer;
+  private final Executor _dataTableConsumerExecutor;
+  private final ServerResponseListener _serverResponseListener;
+  private final Map<Long, ServerRoutingInstance> _hedgedRequestIdToServerMap = new ConcurrentHashMap<>();
 
-  public AsyncQueryResponse(QueryRouter queryRouter, long requestId, Set<ServerRoutingInstance> serversQueried,
-      long startTimeMs, long timeoutMs) {
+  private volatile boolean _cancelled;
+  private volatile boolean _failed;
+  private volatile boolean _done;
+
+  public AsyncQueryResponse(QueryRouter queryRouter, long requestId, String rawTableName,
+      Map<ServerRoutingInstance, ServerInstance> serverInstanceMap, long startTimeMs, long timeoutMs) {
+    this(queryRouter, requestId, rawTableName, serverInstanceMap, startTimeMs, timeoutMs, null, null);
+  }
+
+  public AsyncQueryResponse(QueryRouter queryRouter, long requestId, String rawTableName,
+      Map<ServerRoutingInstance, ServerInstance> serverInstanceMap, long startTimeMs, long timeoutMs,
+      @Nullable BiConsumer<ServerRoutingInstance, DataTable> dataTableConsumer,
+      @Nullable ServerResponseListener serverResponseListener) {
+    this(queryRouter, requestId, rawTableName, serverInstanceMap, startTimeMs, timeoutMs, dataTableConsumer, null,
+        serverResponseListener);
+  }
+
+  /**
+   * NOTE: when the data table consumer is provided, each data table is passed to it on the data table consumer executor
+   * (or the thread receiving the server response if the executor is not provided), and is released right after being
+   * consumed. The executor should run the tasks one at a time (e.g. {@link org.apache.pinot.core.util.SerialExecutor})
+   * so that a slow consumer does not hold multiple threads. The server is marked responded only after its data table
+   * is consumed. In such case, the data tables in the {@link ServerResponse}s only indicate which servers have
+   * responded, and their values should not be accessed.
+   */
+  public AsyncQueryResponse(QueryRouter queryRouter, long requestId, String rawTableName,
+      Map<ServerRoutingInstance, ServerInstance> serverInstanceMap, long startTimeMs, long timeoutMs,
+      @Nullable BiConsumer<ServerRoutingInstance, DataTable> dataTableConsumer,
+      @Nullable Executor dataTableConsumerExecutor, @Nullable ServerResponseListener serverResponseListener) {
     _queryRouter = queryRouter;
     _requestId = requestId;
-    int numServersQueried = serversQueried.size();
+    _rawTableName = rawTableName;
+    int numServersQueried = serverInstanceMap.size();
     _responseMap = new ConcurrentHashMap<>(numServersQueried);
-    for (ServerRoutingInstance serverRoutingInstance : serversQueried) {
+    for (ServerRoutingInstance serverRoutingInstance : serverInstanceMap.keySet()) {
       _responseMap.put(serverRoutingInstance, new ServerResponse(startTimeMs));
     }
+    _serverInstanceMap = serverInstanceMap;
     _countDownLatch = new CountDownLatch(numServersQueried);
     _maxEndTimeMs = startTimeMs + timeoutMs;
+    _dataTableConsumer = dataTableConsumer;
+    _dataTableConsumerExecutor = dataTableConsumerExecutor;
+    _serverResponseListener = serverResponseListener;
   }
 
   /**
    * Waits until the query is done and returns a map from the server to the response.
+   * <p>If the query times out or gets cancelled, cancels the requests on the servers that haven't responded.
    */
   public Map<ServerRoutingInstance, ServerResponse> getResponse()
       throws InterruptedException {
+    boolean finished = false;
     try {
-      _countDownLatch.await(_maxEndTimeMs - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+      finished = _countDownLatch.await(_maxEndTimeMs - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+      if (!finished || _cancelled) {
+        List<ServerRoutingInstance> serversNotResponded = getServersNotResponded();
+        _queryRouter.cancelServerRequests(_requestId, serversNotResponded);
+        for (ServerRoutingInstance serverRoutingInstance : serversNotResponded) {
+          ServerResponse serverResponse = _responseMap.get(serverRoutingInstance);
+          if (serverResponse.isRequestHedged()) {
+            _queryRouter
+                .cancelServerRequest(serverResponse.getHedgedRequestId(), serverResponse.getHedgedServer());
+          }
+        }
+      }
       return _responseMap;
+    } catch (InterruptedException e) {
+      releaseDataTables();
+      throw e;
     } finally {
-      _queryRouter.markQueryDone(_requestId);
+      // NOTE: Mark the query done before removing the hedged requests so that hedged requests registered concurrently
+      //       are either removed here or skipped by the QueryRouter
+      _done = true;
+      if (finished && !_cancelled && !_failed && hasRequestsInFlight()) {
+        // All the servers responded, but the slower one of the original request and the hedged request is still in
+        // flight. Keep the query registered until the query timeout to record the latency of the slower request.
+        _queryRouter.markQueryDone(this, _maxEndTimeMs - System.currentTimeMillis());
+      } else {
+        markQueryDone(!finished && !_cancelled && System.currentTimeMillis() >= _maxEndTimeMs);
+      }
     }
   }
 
+  /**
+   * Un-registers the query and the hedged requests from the {@link QueryRouter}, and drops the requests still in
+   * flight.
+   */
+  void markQueryDone(boolean timedOut) {
+    _queryRouter.markQueryDone(_requestId);
+    for (Long hedgedRequestId : _hedgedRequestIdToServerMap.keySet()) {
+      _queryRouter.markQueryDone(hedgedRequestId);
+    }
+    for (Map.Entry<ServerRoutingInstance, ServerResponse> entry : _responseMap.entrySet()) {
+      dropOriginalRequest(entry.getKey(), entry.getValue(), timedOut);
+      dropHedgedRequest(entry.getValue(), timedOut);
+    }
+  }
+
+  /**
+   * Returns whether the query is cancelled.
+   */
+  public boolean isCancelled() {
+    return _cancelled;
+  }
+
   /**
    * Returns the statistics for the servers the query sent to.
    * <p>Should be called after calling {@link #getResponse()}.
@@ -78,30 +174,236 @@ public class AsyncQueryResponse {
     return stringBuilder.toString();
   }
 
+  /**
+   * Releases the data tables received from the servers. Data tables received after this call are released right away.
+   * <p>Should be called once the data tables are reduced.
+   */
+  public void releaseDataTables() {
+    for (ServerResponse serverResponse : _responseMap.values()) {
+      serverResponse.releaseDataTable();
+    }
+  }
+
+  long getRequestId() {
+    return _requestId;
+  }
+
+  String getRawTableName() {
+    return _rawTableName;
+  }
+
+  boolean isDone() {
+    return _done;
+  }
+
+  @Nullable
+  ServerResponse getServerResponse(ServerRoutingInstance serverRoutingInstance) {
+    return _responseMap.get(serverRoutingInstance);
+  }
+
   void markRequestSubmitted(ServerRoutingInstance serverRoutingInstance) {
     _responseMap.get(serverRoutingInstance).markRequestSubmitted();
+    if (_serverResponseListener != null) {
+      _serverResponseListener.onRequestSent(_serverInstanceMap.get(serverRoutingInstance));
+    }
+  }
+
+  /**
+   * Registers the hedged request re-issued to the hedged server for the given straggling server. Should be called
+   * right before sending the hedged request.
+   */
+  void addHedgedRequest(ServerRoutingInstance stragglingServer, long hedgedRequestId,
+      ServerRoutingInstance hedgedServer, ServerInstance hedgedServerInstance) {
+    _hedgedRequestIdToServerMap.put(hedgedRequestId, stragglingServer);
+    _responseMap.get(stragglingServer).markRequestHedged(hedgedRequestId, hedgedServer, hedgedServerInstance);
+    if (_serverResponseListener != null) {
+      _serverResponseListener.onRequestSent(hedgedServerInstance);
+    }
+  }
+
+  /**
+   * Drops the hedged request for the given straggling server when it fails to be sent.
+   */
+  void markHedgedRequestFailed(ServerRoutingInstance stragglingServer) {
+    dropHedgedRequest(_responseMap.get(stragglingServer), false);
   }
 
-  void receiveDataTable(ServerRoutingInstance serverRoutingInstance, DataTable dataTable, int responseSize,
-      int deserializationTimeMs) {
-    _responseMap.get(serverRoutingInstance).receiveDataTable(dataTable, responseSize, deserializationTimeMs);
-    _countDownLatch.countDown();
+  /**
+   * Returns the server the request is sent to for the original request, the straggling server for the hedged request,
+   * or {@code null} if the request is unknown.
+   */
+  @Nullable
+  ServerRoutingInstance getServerForRequest(long requestId, ServerRoutingInstance serverRoutingInstance) {
+    return requestId == _requestId ? serverRoutingInstance : _hedgedRequestIdToServerMap.get(requestId);
+  }
+
+  /**
+   * Receives the data table for the given request id from the given server. For hedged requests, only the data table
+   * from the server answering first is kept, and the request to the other server is cancelled.
+   */
+  void receiveDataTable(long requestId, ServerRoutingInstance serverRoutingInstance, DataTable dataTable,
+      int responseSize, int deserializationTimeMs) {
+    boolean hedgedResponse = requestId != _requestId;
+    ServerRoutingInstance server = getServerForRequest(requestId, serverRoutingInstance);
+    ServerResponse serverResponse = server != null ? _responseMap.get(server) : null;
+    if (serverResponse == null) {
+      dataTable.release();
+      return;
+    }
+
+    // Record the latency of the request responded, whether or not it answers first
+    long currentTimeMs = System.currentTimeMillis();
+    boolean hasException = hasException(dataTable);
+    if (hedgedResponse) {
+      if (serverResponse.markHedgedRequestCompleted() && _serverResponseListener != null) {
+        _serverResponseListener.onResponseReceived(serverResponse.getHedgedServerInstance(),
+            currentTimeMs - serverResponse.getHedgedSubmitRequestTimeMs(), hasException);
+      }
+    } else {
+      if (serverResponse.markRequestCompleted()) {
+        long latencyMs = currentTimeMs - serverResponse.getSubmitRequestTimeMs();
+        if (!hasException) {
+          _queryRouter.recordRequestLatency(_rawTableName, server.getTableType(), latencyMs);
+        }
+        if (_serverResponseListener != null) {
+          _serverResponseListener.onResponseReceived(_serverInstanceMap.get(server), latencyMs, hasException);
+        }
+      }
+    }
+
+    if (!serverResponse.claimResponse(hedgedResponse)) {
+      dataTable.release();
+      return;
+    }
+    if (serverResponse.isRequestHedged()) {
+      if (hedgedResponse) {
+        if (_queryRouter.cancelServerRequest(_requestId, server) && serverResponse.markRequestCompleted()) {
+          // The latency of the cancelled original request is at least the time elapsed so far
+          _queryRouter.recordRequestLatency(_rawTableName, server.getTableType(),
+              currentTimeMs - serverResponse.getSubmitRequestTimeMs());
+          if (_serverResponseListener != null) {
+            _serverResponseListener.onRequestDropped(_serverInstanceMap.get(server), false);
+          }
+        }
+      } else {
+        if (_queryRouter.cancelServerRequest(serverResponse.getHedgedRequestId(), serverResponse.getHedgedServer())) {
+          dropHedgedRequest(serverResponse, false);
+        }
+      }
+    }
+    if (_dataTableConsumer != null && _dataTableConsumerExecutor != null) {
+      // Consume the data table off the thread receiving the server response (e.g. Netty event loop thread)
+      _dataTableConsumerExecutor
+          .execute(() -> consumeDataTable(server, serverResponse, dataTable, responseSize, deserializationTimeMs));
+    } else {
+      consumeDataTable(server, serverResponse, dataTable, responseSize, deserializationTimeMs);
+    }
+  }
+
+  private void consumeDataTable(ServerRoutingInstance server, ServerResponse serverResponse, DataTable dataTable,
+      int responseSize, int deserializationTimeMs) {
+    try {
+      if (_dataTableConsumer != null) {
+        _dataTableConsumer.accept(server, dataTable);
+      }
+    } finally {
+      serverResponse.receiveDataTable(dataTable, responseSize, deserializationTimeMs);
+      if (_dataTableConsumer != null) {
+        serverResponse.releaseDataTable();
+      }
+      _countDownLatch.countDown();
+    }
   }
 
   void markQueryFailed() {
+    _failed = true;
     int count = (int) _countDownLatch.getCount();
     for (int i = 0; i < count; i++) {
       _countDownLatch.countDown();
     }
   }
 
+  void markQueryCancelled() {
+    _cancelled = true;
+    markQueryFailed();
+  }
+
+  private void dropOriginalRequest(ServerRoutingInstance serverRoutingInstance, ServerResponse serverResponse,
+      boolean timedOut) {
+    if (serverResponse.getSubmitRequestTimeMs() != 0 && serverResponse.markRequestCompleted()
+        && _serverResponseListener != null) {
+      _serverResponseListener.onRequestDropped(_serverInstanceMap.get(serverRoutingInstance), timedOut);
+    }
+  }
+
+  private void dropHedgedRequest(ServerResponse serverResponse, boolean timedOut) {
+    if (serverResponse.isRequestHedged() && serverResponse.markHedgedRequestCompleted()
+        && _serverResponseListener != null) {
+      _serverResponseListener.onRequestDropped(serverResponse.getHedgedServerInstance(), timedOut);
+    }
+  }
+
+  /**
+   * Returns whether any original request or hedged request sent is still in flight.
+   */
+  private boolean hasRequestsInFlight() {
+    for (ServerResponse serverResponse : _responseMap.values()) {
+      if ((serverResponse.getSubmitRequestTimeMs() != 0 && !serverResponse.isRequestCompleted()) || (
+          serverResponse.isRequestHedged() && !serverResponse.isHedgedRequestCompleted())) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean hasException(DataTable dataTable) {
+    for (String key : dataTable.getMetadata().keySet()) {
+      if (key.startsWith(DataTable.EXCEPTION_METADATA_KEY)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private List<ServerRoutingInstance> getServersNotResponded() {
+    List<ServerRoutingInstance> serversNotResponded = new ArrayList<>();
+    for (Map.Entry<ServerRoutingInstance, ServerResponse> entry : _responseMap.entrySet()) {
+      if (entry.getValue().getDataTable() == null) {
+        serversNotResponded.add(entry.getKey());
+      }
+    }
+    return serversNotResponded;
+  }
+
   /**
-   * NOTE: the server might not be hit by the query. Only fail the query if the query was sent to the server and the
-   * server hasn't responded yet.
+   * Drops the requests (original or hedged) sent to the server down.
+   * <p>NOTE: the server might not be hit by the query. Only fail the query if a request was sent to the server for a
+   * server that hasn't responded yet, and no other request (the hedged request for the original request, or the
+   * original request for the hedged request) is still pending for that server.
    */
   void markServerDown(ServerRoutingInstance serverRoutingInstance) {
-    ServerResponse serverResponse = _responseMap.get(serverRoutingInstance);
-    if (serverResponse != null && serverResponse.getDataTable() == null) {
+    boolean queryFailed = false;
+    for (Map.Entry<ServerRoutingInstance, ServerResponse> entry : _responseMap.entrySet()) {
+      ServerResponse serverResponse = entry.getValue();
+      boolean originalServerDown = entry.getKey().equals(serverRoutingInstance);
+      boolean hedgedServerDown = serverRoutingInstance.equals(serverResponse.getHedgedServer());
+      if ((!originalServerDown && !hedgedServerDown) || serverResponse.getDataTable() != null) {
+        continue;
+      }
+      if (originalServerDown) {
+        dropOriginalRequest(entry.getKey(), serverResponse, false);
+      }
+      if (hedgedServerDown) {
+        dropHedgedRequest(serverResponse, false);
+      }
+      boolean originalRequestPending = serverResponse.getSubmitRequestTimeMs() != 0 && !serverResponse
+          .isRequestCompleted();
+      boolean hedgedRequestPending = serverResponse.isRequestHedged() && !serverResponse.isHedgedRequestCompleted();
+      if (!originalRequestPending && !hedgedRequestPending) {
+        queryFailed = true;
+      }
+    }
+    if (queryFailed) {
       markQueryFailed();
     }
   }
@@ -62,15 +62,21 @@ public class DataTableHandler extends SimpleChannelInboundHandler<ByteBuf> {
   protected void channelRead0(ChannelHandlerContext ctx, ByteBuf msg) {
     int responseSize = msg.readableBytes();
     _brokerMetrics.addMeteredGlobalValue(BrokerMeter.NETTY_CONNECTION_BYTES_RECEIVED, responseSize);
+    DataTable dataTable = null;
     try {
       long deserializationStartTimeMs = System.currentTimeMillis();
-      DataTable dataTable = DataTableFactory.getDataTable(msg.nioBuffer());
+      // NOTE: the data table might hold a reference to the buffer, and is released by the query router once the query
+      //       is reduced
+      dataTable = DataTableFactory.getDataTable(msg);
       _queryRouter.receiveDataTable(_serverRoutingInstance, dataTable, responseSize,
           (int) (System.currentTimeMillis() - deserializationStartTimeMs));
     } catch (Exception e) {
       LOGGER.error("Caught exception while deserializing data table of size: {} from server: {}", responseSize,
           _serverRoutingInstance, e);
       _brokerMetrics.addMeteredGlobalValue(BrokerMeter.DATA_TABLE_DESERIALIZATION_EXCEPTIONS, 1);
+      if (dataTable != null) {
+        dataTable.release();
+      }
     }
   }
 
@@ -0,0 +1,147 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.core.transport;
+
+import com.google.common.base.Preconditions;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.concurrent.ThreadSafe;
+
+
+/**
+ * The {@code HedgedRequestManager} class manages the states for the hedged requests in the {@link QueryRouter}:
+ * <ul>
+ *   <li>The recent server latency for each table, from which the delay to send the hedged requests is computed</li>
+ *   <li>The budget of the hedged requests, which limits the hedged requests to a ratio of the requests sent</li>
+ *   <li>The scheduler to send the hedged requests after the delay</li>
+ * </ul>
+ */
+@ThreadSafe
+public class HedgedRequestManager {
+  // Number of latency samples kept for each table
+  static final int NUM_LATENCY_SAMPLES = 1024;
+  // Minimum number of latency samples before sending hedged requests for a table
+  static final int MIN_NUM_LATENCY_SAMPLES = 100;
+  // Re-compute the delay once per this number of latency samples
+  static final int DELAY_UPDATE_INTERVAL = 64;
+  // Maximum number of hedged requests that can be sent in a burst
+  static final double MAX_BUDGET = 100;
+
+  private final double _delayPercentile;
+  private final long _minDelayMs;
+  private final double _budgetRatio;
+  private final Map<String, LatencyTracker> _latencyTrackerMap = new ConcurrentHashMap<>();
+  private final ScheduledExecutorService _scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+    Thread thread = new Thread(r, "HedgedRequestScheduler");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  private double _budget = MAX_BUDGET;
+
+  public HedgedRequestManager(double delayPercentile, long minDelayMs, double budgetRatio) {
+    Preconditions.checkArgument(delayPercentile > 0 && delayPercentile <= 100, "Invalid delay percentile: %s",
+        delayPercentile);
+    Preconditions.checkArgument(minDelayMs >= 0, "Invalid min delay: %s", minDelayMs);
+    Preconditions.checkArgument(budgetRatio >= 0 && budgetRatio <= 1, "Invalid budget ratio: %s", budgetRatio);
+    _delayPercentile = delayPercentile;
+    _minDelayMs = minDelayMs;
+    _budgetRatio = budgetRatio;
+  }
+
+  /**
+   * Records the latency of a (non-hedged) server request for the given table.
+   */
+  public void recordLatency(String tableNameWithType, long latencyMs) {
+    _latencyTrackerMap.computeIfAbsent(tableNameWithType, k -> new LatencyTracker()).record(latencyMs);
+  }
+
+  /**
+   * Returns the delay in milliseconds before sending the hedged requests for the given table, or -1 if there are not
+   * enough latency samples for the table.
+   */
+  public long getDelayMs(String tableNameWithType) {
+    LatencyTracker latencyTracker = _latencyTrackerMap.get(tableNameWithType);
+    if (latencyTracker == null) {
+      return -1;
+    }
+    long delayMs = latencyTracker.getDelayMs();
+    return delayMs >= 0 ? Math.max(delayMs, _minDelayMs) : -1;
+  }
+
+  /**
+   * Adds budget for the given number of requests sent to the servers.
+   */
+  public synchronized void onRequestsSent(int numRequests) {
+    _budget = Math.min(_budget + numRequests * _budgetRatio, MAX_BUDGET);
+  }
+
+  /**
+   * Tries to acquire the budget for a hedged request, returns {@code true} if the hedged request can be sent.
+   */
+  public synchronized boolean tryAcquireBudget() {
+    if (_budget >= 1) {
+      _budget -= 1;
+      return true;
+    } else {
+      return false;
+    }
+  }
+
+  void schedule(Runnable runnable, long delayMs) {
+    _scheduler.schedule(runnable, delayMs, TimeUnit.MILLISECONDS);
+  }
+
+  public void shutDown() {
+    _scheduler.shutdownNow();
+  }
+
+  /**
+   * Ring buffer of the recent latency samples, where the delay is re-computed periodically as the configured
+   * percentile of the samples.
+   */
+  private class LatencyTracker {
+    final long[] _samples = new long[NUM_LATENCY_SAMPLES];
+    int _numSamples;
+    int _nextIndex;
+    volatile long _delayMs = -1;
+
+    synchronized void record(long latencyMs) {
+      _samples[_nextIndex] = latencyMs;
+      _nextIndex = (_nextIndex + 1) % NUM_LATENCY_SAMPLES;
+      if (_numSamples < NUM_LATENCY_SAMPLES) {
+        _numSamples++;
+      }
+      if (_numSamples >= MIN_NUM_LATENCY_SAMPLES && (_delayMs < 0 || _nextIndex % DELAY_UPDATE_INTERVAL == 0)) {
+        long[] sortedSamples = Arrays.copyOf(_samples, _numSamples);
+        Arrays.sort(sortedSamples);
+        int index = (int) Math.ceil(_delayPercentile * _numSamples / 100) - 1;
+        _delayMs = sortedSamples[Math.max(index, 0)];
+      }
+    }
+
+    long getDelayMs() {
+      return _delayMs;
+    }
+  }
+}
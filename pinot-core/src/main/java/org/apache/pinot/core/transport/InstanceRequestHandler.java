@@ -25,6 +25,8 @@ import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.SimpleChannelInboundHandler;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import javax.annotation.Nullable;
 import org.apache.pinot.common.metrics.ServerMeter;
@@ -34,6 +36,7 @@ import org.apache.pinot.common.metrics.ServerTimer;
 import org.apache.pinot.common.request.InstanceRequest;
 import org.apache.pinot.spi.utils.BytesUtils;
 import org.apache.pinot.core.query.request.ServerQueryRequest;
+import org.apache.pinot.core.query.request.context.QueryCancellationToken;
 import org.apache.pinot.core.query.scheduler.QueryScheduler;
 import org.apache.thrift.TDeserializer;
 import org.apache.thrift.protocol.TCompactProtocol;
@@ -44,6 +47,8 @@ import org.slf4j.LoggerFactory;
 /**
  * The {@code InstanceRequestHandler} is the Netty inbound handler on Pinot Server side to handle the serialized
  * instance requests sent from Pinot Broker.
+ * <p>The handler also handles the {@link QueryCancelMessage} sent from Pinot Broker, and cancels all the queries still
+ * running when the channel becomes inactive (connection to the broker is lost).
  */
 public class InstanceRequestHandler extends SimpleChannelInboundHandler<ByteBuf> {
   private static final Logger LOGGER = LoggerFactory.getLogger(InstanceRequestHandler.class);
@@ -54,6 +59,8 @@ public class InstanceRequestHandler extends SimpleChannelInboundHandler<ByteBuf>
   private final TDeserializer _deserializer = new TDeserializer(new TCompactProtocol.Factory());
   private final QueryScheduler _queryScheduler;
   private final ServerMetrics _serverMetrics;
+  // Cancellation tokens for the queries received from this channel that are not finished yet
+  private final Map<Long, QueryCancellationToken> _runningQueries = new ConcurrentHashMap<>();
 
   public InstanceRequestHandler(QueryScheduler queryScheduler, ServerMetrics serverMetrics) {
     _queryScheduler = queryScheduler;
@@ -62,6 +69,16 @@ public class InstanceRequestHandler extends SimpleChannelInboundHandler<ByteBuf>
 
   @Override
   protected void channelRead0(ChannelHandlerContext ctx, ByteBuf msg) {
+    if (QueryCancelMessage.isQueryCancelMessage(msg)) {
+      long requestId = QueryCancelMessage.getRequestId(msg);
+      QueryCancellationToken cancellationToken = _runningQueries.get(requestId);
+      if (cancellationToken != null) {
+        LOGGER.debug("Cancelling requestId: {}", requestId);
+        cancellationToken.cancel();
+      }
+      return;
+    }
+
     long queryArrivalTimeMs = System.currentTimeMillis();
     _serverMetrics.addMeteredGlobalValue(ServerMeter.QUERIES, 1);
     int requestSize = msg.readableBytes();
@@ -83,11 +100,14 @@ public class InstanceRequestHandler extends SimpleChannelInboundHandler<ByteBuf>
     ServerQueryRequest queryRequest = new ServerQueryRequest(instanceRequest, _serverMetrics, queryArrivalTimeMs);
     queryRequest.getTimerContext().startNewPhaseTimer(ServerQueryPhase.REQUEST_DESERIALIZATION, queryArrivalTimeMs)
         .stopAndRecord();
+    long requestId = queryRequest.getRequestId();
+    _runningQueries.put(requestId, queryRequest.getCancellationToken());
 
     // NOTE: executor must be provided as addCallback(future, callback) is removed from newer guava version
     Futures.addCallback(_queryScheduler.submit(queryRequest), new FutureCallback<byte[]>() {
       @Override
       public void onSuccess(@Nullable byte[] responseBytes) {
+        _runningQueries.remove(requestId);
         // NOTE: response bytes can be null if data table serialization throws exception
         if (responseBytes != null) {
           long sendResponseStartTimeMs = System.currentTimeMillis();
@@ -112,12 +132,26 @@ public class InstanceRequestHandler extends SimpleChannelInboundHandler<ByteBuf>
 
       @Override
       public void onFailure(Throwable t) {
+        _runningQueries.remove(requestId);
         LOGGER.error("Caught exception while processing instance request", t);
         _serverMetrics.addMeteredGlobalValue(ServerMeter.UNCAUGHT_EXCEPTIONS, 1);
       }
     }, MoreExecutors.directExecutor());
   }
 
+  @Override
+  public void channelInactive(ChannelHandlerContext ctx) {
+    // Connection to the broker is lost, cancel all the running queries as no response can be sent back
+    if (!_runningQueries.isEmpty()) {
+      LOGGER.info("Channel to broker is inactive, cancelling {} running queries", _runningQueries.size());
+      for (QueryCancellationToken cancellationToken : _runningQueries.values()) {
+        cancellationToken.cancel();
+      }
+      _runningQueries.clear();
+    }
+    ctx.fireChannelInactive();
+  }
+
   @Override
   public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
     LOGGER.error("Caught exception while fetching instance request", cause);
@@ -0,0 +1,125 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.core.transport;
+
+import com.google.common.annotations.VisibleForTesting;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.ServerChannel;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.handler.flush.FlushConsolidationHandler;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.SingleThreadEventExecutor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Utility methods shared by the Netty transport on the broker ({@link ServerChannels}) and the server
+ * ({@link QueryServer}).
+ * <p>When native transport is enabled and the epoll native library can be loaded, the epoll event loops and channels
+ * are used, otherwise it falls back to NIO.
+ * <p>Both sides use the pooled direct {@link #ALLOCATOR}, so that the frame decoding buffers and the direct copies of
+ * the heap request/response bytes made by the transport before writing to the socket are recycled instead of being
+ * allocated for each message.
+ */
+public class NettyUtils {
+  private NettyUtils() {
+  }
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(NettyUtils.class);
+
+  // Flush at most once per this number of flushes when there is no read in progress
+  private static final int EXPLICIT_FLUSH_AFTER_FLUSHES = 256;
+
+  public static final PooledByteBufAllocator ALLOCATOR = PooledByteBufAllocator.DEFAULT;
+
+  /**
+   * Returns whether to use the native epoll transport, which requires it to be enabled and available.
+   */
+  public static boolean useNativeTransport(boolean enableNativeTransport) {
+    return useNativeTransport(enableNativeTransport, Epoll.isAvailable());
+  }
+
+  @VisibleForTesting
+  static boolean useNativeTransport(boolean enableNativeTransport, boolean nativeTransportAvailable) {
+    if (!enableNativeTransport) {
+      return false;
+    }
+    if (nativeTransportAvailable) {
+      LOGGER.info("Using native epoll transport");
+      return true;
+    } else {
+      LOGGER.warn("Native epoll transport is not available, falling back to NIO transport",
+          Epoll.unavailabilityCause());
+      return false;
+    }
+  }
+
+  /**
+   * Creates an event loop group with the default number of threads.
+   */
+  public static EventLoopGroup newEventLoopGroup(boolean nativeTransport) {
+    return nativeTransport ? new EpollEventLoopGroup() : new NioEventLoopGroup();
+  }
+
+  public static Class<? extends ServerChannel> getServerChannelClass(boolean nativeTransport) {
+    return nativeTransport ? EpollServerSocketChannel.class : NioServerSocketChannel.class;
+  }
+
+  public static Class<? extends SocketChannel> getSocketChannelClass(boolean nativeTransport) {
+    return nativeTransport ? EpollSocketChannel.class : NioSocketChannel.class;
+  }
+
+  /**
+   * Creates a handler that consolidates the flushes of the messages written from outside of the event loop (query
+   * requests on the broker, query responses on the server) into fewer syscalls. Should be the first handler in the
+   * pipeline.
+   */
+  public static FlushConsolidationHandler newFlushConsolidationHandler() {
+    return new FlushConsolidationHandler(EXPLICIT_FLUSH_AFTER_FLUSHES, true);
+  }
+
+  /**
+   * Returns the total number of tasks pending in the event loops of the given group.
+   */
+  public static long getNumPendingTasks(EventLoopGroup eventLoopGroup) {
+    long numPendingTasks = 0;
+    for (EventExecutor eventExecutor : eventLoopGroup) {
+      if (eventExecutor instanceof SingleThreadEventExecutor) {
+        numPendingTasks += ((SingleThreadEventExecutor) eventExecutor).pendingTasks();
+      }
+    }
+    return numPendingTasks;
+  }
+
+  /**
+   * Returns the direct memory used by the {@link #ALLOCATOR}.
+   */
+  public static long getPooledDirectMemoryUsed() {
+    return ALLOCATOR.metric().usedDirectMemory();
+  }
+}
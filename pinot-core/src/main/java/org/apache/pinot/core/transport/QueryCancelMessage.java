@@ -0,0 +1,53 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.core.transport;
+
+import io.netty.buffer.ByteBuf;
+import java.nio.ByteBuffer;
+
+
+/**
+ * The {@code QueryCancelMessage} class contains the utility methods for the message sent from Pinot Broker to Pinot
+ * Server to cancel a query.
+ * <p>The message shares the same channel with the serialized instance requests, and has the following format:
+ * <ul>
+ *   <li>1 byte marker: 0x00, which is the STOP field type in thrift protocol and can never be the first byte of a valid
+ *   serialized {@link org.apache.pinot.common.request.InstanceRequest} (request id is a required field)</li>
+ *   <li>8 bytes request id of the query to be cancelled</li>
+ * </ul>
+ */
+public class QueryCancelMessage {
+  private QueryCancelMessage() {
+  }
+
+  private static final byte MARKER = 0x00;
+  private static final int MESSAGE_SIZE = Byte.BYTES + Long.BYTES;
+
+  public static byte[] serialize(long requestId) {
+    return ByteBuffer.allocate(MESSAGE_SIZE).put(MARKER).putLong(requestId).array();
+  }
+
+  public static boolean isQueryCancelMessage(ByteBuf msg) {
+    return msg.readableBytes() == MESSAGE_SIZE && msg.getByte(msg.readerIndex()) == MARKER;
+  }
+
+  public static long getRequestId(ByteBuf msg) {
+    return msg.getLong(msg.readerIndex() + Byte.BYTES);
+  }
+}
@@ -18,10 +18,14 @@
  */
 package org.apache.pinot.core.transport;
 
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.ThreadSafe;
 import org.apache.pinot.common.metrics.BrokerMeter;
@@ -29,7 +33,9 @@ import org.apache.pinot.common.metrics.BrokerMetrics;
 import org.apache.pinot.common.request.BrokerRequest;
 import org.apache.pinot.common.request.InstanceRequest;
 import org.apache.pinot.common.utils.DataTable;
+import org.apache.pinot.core.common.datatable.DataTableImplV2;
 import org.apache.pinot.spi.config.table.TableType;
+import org.apache.pinot.spi.utils.builder.TableNameBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -38,6 +44,10 @@ import org.slf4j.LoggerFactory;
  * The {@code QueryRouter} class provides methods to route the query based on the routing table, and returns a
  * {@link AsyncQueryResponse} so that caller can handle the query response asynchronously.
  * <p>It works on {@link ServerChannels} which maintains only a single connection between the broker and each server.
+ * <p>When hedged requests are enabled, the request to a server that has not responded within the delay computed by
+ * the {@link HedgedRequestManager} is re-issued to another server selected by the {@link HedgedServerSelector}, and
+ * the response is taken from whichever server answers first. Hedged requests use negative request ids so that they
+ * never collide with the request ids of the queries.
  */
 @ThreadSafe
 public class QueryRouter {
@@ -46,28 +56,123 @@ public class QueryRouter {
   private final String _brokerId;
   private final BrokerMetrics _brokerMetrics;
   private final ServerChannels _serverChannels;
+  private final boolean _enableQueryCancellation;
+  private final int _dataTableVersion;
+  private final HedgedRequestManager _hedgedRequestManager;
   private final ConcurrentHashMap<Long, AsyncQueryResponse> _asyncQueryResponseMap = new ConcurrentHashMap<>();
+  private final AtomicLong _hedgedRequestIdGenerator = new AtomicLong();
 
   public QueryRouter(String brokerId, BrokerMetrics brokerMetrics) {
+    this(brokerId, brokerMetrics, false);
+  }
+
+  /**
+   * NOTE: when query cancellation is enabled, cancel messages are sent to the servers that haven't responded when the
+   * query times out or gets cancelled. Only enable it when all servers can handle the cancel messages.
+   */
+  public QueryRouter(String brokerId, BrokerMetrics brokerMetrics, boolean enableQueryCancellation) {
+    this(brokerId, brokerMetrics, enableQueryCancellation, DataTableImplV2.VERSION);
+  }
+
+  /**
+   * NOTE: the data table version is requested from the servers through the {@link InstanceRequest}. Servers that do not
+   * support the requested version respond with version 2 data tables.
+   */
+  public QueryRouter(String brokerId, BrokerMetrics brokerMetrics, boolean enableQueryCancellation,
+      int dataTableVersion) {
+    this(brokerId, brokerMetrics, enableQueryCancellation, dataTableVersion, false);
+  }
+
+  /**
+   * NOTE: when native transport is enabled but not available, falls back to NIO transport.
+   */
+  public QueryRouter(String brokerId, BrokerMetrics brokerMetrics, boolean enableQueryCancellation,
+      int dataTableVersion, boolean enableNativeTransport) {
+    this(brokerId, brokerMetrics, enableQueryCancellation, dataTableVersion, enableNativeTransport, null);
+  }
+
+  /**
+   * NOTE: hedged requests are sent only when the hedged request manager is provided, and the
+   * {@link HedgedServerSelector} is provided when submitting the query.
+   */
+  public QueryRouter(String brokerId, BrokerMetrics brokerMetrics, boolean enableQueryCancellation,
+      int dataTableVersion, boolean enableNativeTransport, @Nullable HedgedRequestManager hedgedRequestManager) {
     _brokerId = brokerId;
     _brokerMetrics = brokerMetrics;
-    _serverChannels = new ServerChannels(this, brokerMetrics);
+    _serverChannels = new ServerChannels(this, brokerMetrics, enableNativeTransport);
+    _enableQueryCancellation = enableQueryCancellation;
+    _dataTableVersion = dataTableVersion;
+    _hedgedRequestManager = hedgedRequestManager;
   }
 
   public AsyncQueryResponse submitQuery(long requestId, String rawTableName,
       @Nullable BrokerRequest offlineBrokerRequest, @Nullable Map<ServerInstance, List<String>> offlineRoutingTable,
       @Nullable BrokerRequest realtimeBrokerRequest, @Nullable Map<ServerInstance, List<String>> realtimeRoutingTable,
       long timeoutMs) {
+    return submitQuery(requestId, rawTableName, offlineBrokerRequest, offlineRoutingTable, realtimeBrokerRequest,
+        realtimeRoutingTable, timeoutMs, null);
+  }
+
+  /**
+   * Submits the query, and passes each data table received to the given data table consumer (e.g. to reduce the data
+   * tables as they arrive). See {@link AsyncQueryResponse} for details.
+   */
+  public AsyncQueryResponse submitQuery(long requestId, String rawTableName,
+      @Nullable BrokerRequest offlineBrokerRequest, @Nullable Map<ServerInstance, List<String>> offlineRoutingTable,
+      @Nullable BrokerRequest realtimeBrokerRequest, @Nullable Map<ServerInstance, List<String>> realtimeRoutingTable,
+      long timeoutMs, @Nullable BiConsumer<ServerRoutingInstance, DataTable> dataTableConsumer) {
+    return submitQuery(requestId, rawTableName, offlineBrokerRequest, offlineRoutingTable, realtimeBrokerRequest,
+        realtimeRoutingTable, timeoutMs, dataTableConsumer, null);
+  }
+
+  /**
+   * Submits the query, and re-issues the requests to the straggling servers to the servers selected by the given
+   * hedged server selector if hedged requests are enabled.
+   */
+  public AsyncQueryResponse submitQuery(long requestId, String rawTableName,
+      @Nullable BrokerRequest offlineBrokerRequest, @Nullable Map<ServerInstance, List<String>> offlineRoutingTable,
+      @Nullable BrokerRequest realtimeBrokerRequest, @Nullable Map<ServerInstance, List<String>> realtimeRoutingTable,
+      long timeoutMs, @Nullable BiConsumer<ServerRoutingInstance, DataTable> dataTableConsumer,
+      @Nullable HedgedServerSelector hedgedServerSelector) {
+    return submitQuery(requestId, rawTableName, offlineBrokerRequest, offlineRoutingTable, realtimeBrokerRequest,
+        realtimeRoutingTable, timeoutMs, dataTableConsumer, hedgedServerSelector, null);
+  }
+
+  /**
+   * Submits the query, and notifies the given server response listener of the requests sent to the servers and their
+   * outcome (see {@link ServerResponseListener}).
+   */
+  public AsyncQueryResponse submitQuery(long requestId, String rawTableName,
+      @Nullable BrokerRequest offlineBrokerRequest, @Nullable Map<ServerInstance, List<String>> offlineRoutingTable,
+      @Nullable BrokerRequest realtimeBrokerRequest, @Nullable Map<ServerInstance, List<String>> realtimeRoutingTable,
+      long timeoutMs, @Nullable BiConsumer<ServerRoutingInstance, DataTable> dataTableConsumer,
+      @Nullable HedgedServerSelector hedgedServerSelector, @Nullable ServerResponseListener serverResponseListener) {
+    return submitQuery(requestId, rawTableName, offlineBrokerRequest, offlineRoutingTable, realtimeBrokerRequest,
+        realtimeRoutingTable, timeoutMs, dataTableConsumer, null, hedgedServerSelector, serverResponseListener);
+  }
+
+  /**
+   * Submits the query, and passes each data table received to the given data table consumer on the given executor
+   * instead of the thread receiving the server response (e.g. to not reduce the data tables on the Netty event loop).
+   */
+  public AsyncQueryResponse submitQuery(long requestId, String rawTableName,
+      @Nullable BrokerRequest offlineBrokerRequest, @Nullable Map<ServerInstance, List<String>> offlineRoutingTable,
+      @Nullable BrokerRequest realtimeBrokerRequest, @Nullable Map<ServerInstance, List<String>> realtimeRoutingTable,
+      long timeoutMs, @Nullable BiConsumer<ServerRoutingInstance, DataTable> dataTableConsumer,
+      @Nullable Executor dataTableConsumerExecutor, @Nullable HedgedServerSelector hedgedServerSelector,
+      @Nullable ServerResponseListener serverResponseListener) {
     assert offlineBrokerRequest != null || realtimeBrokerRequest != null;
 
     // Build map from server to request based on the routing table
     Map<ServerRoutingInstance, InstanceRequest> requestMap = new HashMap<>();
+    Map<ServerRoutingInstance, ServerInstance> serverInstanceMap = new HashMap<>();
     if (offlineBrokerRequest != null) {
       assert offlineRoutingTable != null;
       for (Map.Entry<ServerInstance, List<String>> entry : offlineRoutingTable.entrySet()) {
         ServerRoutingInstance serverRoutingInstance = entry.getKey().toServerRoutingInstance(TableType.OFFLINE);
         InstanceRequest instanceRequest = getInstanceRequest(requestId, offlineBrokerRequest, entry.getValue());
         requestMap.put(serverRoutingInstance, instanceRequest);
+        serverInstanceMap.put(serverRoutingInstance, entry.getKey());
       }
     }
     if (realtimeBrokerRequest != null) {
@@ -76,12 +181,14 @@ public class QueryRouter {
         ServerRoutingInstance serverRoutingInstance = entry.getKey().toServerRoutingInstance(TableType.REALTIME);
         InstanceRequest instanceRequest = getInstanceRequest(requestId, realtimeBrokerRequest, entry.getValue());
         requestMap.put(serverRoutingInstance, instanceRequest);
+        serverInstanceMap.put(serverRoutingInstance, entry.getKey());
       }
     }
 
     // Create the asynchronous query response with the request map
     AsyncQueryResponse asyncQueryResponse =
-        new AsyncQueryResponse(this, requestId, requestMap.keySet(), System.currentTimeMillis(), timeoutMs);
+        new AsyncQueryResponse(this, requestId, rawTableName, serverInstanceMap, System.currentTimeMillis(),
+            timeoutMs, dataTableConsumer, dataTableConsumerExecutor, serverResponseListener);
     _asyncQueryResponseMap.put(requestId, asyncQueryResponse);
     for (Map.Entry<ServerRoutingInstance, InstanceRequest> entry : requestMap.entrySet()) {
       ServerRoutingInstance serverRoutingInstance = entry.getKey();
@@ -93,15 +200,112 @@ public class QueryRouter {
             serverRoutingInstance, e);
         _brokerMetrics.addMeteredTableValue(rawTableName, BrokerMeter.REQUEST_SEND_EXCEPTIONS, 1);
         asyncQueryResponse.markQueryFailed();
-        break;
+        return asyncQueryResponse;
+      }
+    }
+
+    if (_hedgedRequestManager != null) {
+      _hedgedRequestManager.onRequestsSent(requestMap.size());
+      if (hedgedServerSelector != null) {
+        if (offlineBrokerRequest != null) {
+          scheduleHedgedRequests(asyncQueryResponse, rawTableName, TableType.OFFLINE, requestMap, serverInstanceMap,
+              hedgedServerSelector);
+        }
+        if (realtimeBrokerRequest != null) {
+          scheduleHedgedRequests(asyncQueryResponse, rawTableName, TableType.REALTIME, requestMap, serverInstanceMap,
+              hedgedServerSelector);
+        }
       }
     }
 
     return asyncQueryResponse;
   }
 
+  /**
+   * Schedules the hedged requests for the servers of the given table type, which are sent after the delay computed
+   * from the recent server latency of the table.
+   */
+  private void scheduleHedgedRequests(AsyncQueryResponse asyncQueryResponse, String rawTableName, TableType tableType,
+      Map<ServerRoutingInstance, InstanceRequest> requestMap,
+      Map<ServerRoutingInstance, ServerInstance> serverInstanceMap, HedgedServerSelector hedgedServerSelector) {
+    String tableNameWithType = TableNameBuilder.forType(tableType).tableNameWithType(rawTableName);
+    long delayMs = _hedgedRequestManager.getDelayMs(tableNameWithType);
+    if (delayMs < 0) {
+      return;
+    }
+    _hedgedRequestManager.schedule(() -> {
+      for (Map.Entry<ServerRoutingInstance, InstanceRequest> entry : requestMap.entrySet()) {
+        ServerRoutingInstance serverRoutingInstance = entry.getKey();
+        if (serverRoutingInstance.getTableType() != tableType) {
+          continue;
+        }
+        if (asyncQueryResponse.isDone()) {
+          return;
+        }
+        ServerResponse serverResponse = asyncQueryResponse.getServerResponse(serverRoutingInstance);
+        if (serverResponse.getDataTable() == null) {
+          sendHedgedRequest(asyncQueryResponse, rawTableName, tableType, serverRoutingInstance, entry.getValue(),
+              serverInstanceMap.get(serverRoutingInstance), hedgedServerSelector);
+        }
+      }
+    }, delayMs);
+  }
+
+  private void sendHedgedRequest(AsyncQueryResponse asyncQueryResponse, String rawTableName, TableType tableType,
+      ServerRoutingInstance stragglingServer, InstanceRequest instanceRequest, ServerInstance stragglingServerInstance,
+      HedgedServerSelector hedgedServerSelector) {
+    List<String> segments = instanceRequest.getSearchSegments();
+    ServerInstance hedgedServerInstance = hedgedServerSelector.select(tableType, stragglingServerInstance, segments);
+    if (hedgedServerInstance == null) {
+      return;
+    }
+    if (!_hedgedRequestManager.tryAcquireBudget()) {
+      _brokerMetrics.addMeteredTableValue(rawTableName, BrokerMeter.HEDGED_REQUESTS_BUDGET_EXHAUSTED, 1);
+      return;
+    }
+    ServerRoutingInstance hedgedServer = hedgedServerInstance.toServerRoutingInstance(tableType);
+    long hedgedRequestId = _hedgedRequestIdGenerator.decrementAndGet();
+    asyncQueryResponse.addHedgedRequest(stragglingServer, hedgedRequestId, hedgedServer, hedgedServerInstance);
+    _asyncQueryResponseMap.put(hedgedRequestId, asyncQueryResponse);
+    // The query might be done concurrently before the hedged request is registered
+    if (asyncQueryResponse.isDone()) {
+      _asyncQueryResponseMap.remove(hedgedRequestId);
+      return;
+    }
+    InstanceRequest hedgedInstanceRequest = instanceRequest.deepCopy();
+    hedgedInstanceRequest.setRequestId(hedgedRequestId);
+    try {
+      _serverChannels.sendRequest(hedgedServer, hedgedInstanceRequest);
+      _brokerMetrics.addMeteredTableValue(rawTableName, BrokerMeter.HEDGED_REQUESTS_SENT, 1);
+    } catch (Exception e) {
+      // Still wait for the response from the straggling server
+      LOGGER.warn("Caught exception while sending hedged request {} for request {} to server: {}", hedgedRequestId,
+          asyncQueryResponse.getRequestId(), hedgedServer, e);
+      asyncQueryResponse.markHedgedRequestFailed(stragglingServer);
+    }
+  }
+
+  /**
+   * Cancels the query with the given request id. The thread waiting on {@link AsyncQueryResponse#getResponse()} will
+   * return immediately with the responses received so far.
+   *
+   * @return Whether the query is found and cancelled
+   */
+  public boolean cancelQuery(long requestId) {
+    AsyncQueryResponse asyncQueryResponse = _asyncQueryResponseMap.get(requestId);
+    if (asyncQueryResponse != null) {
+      asyncQueryResponse.markQueryCancelled();
+      return true;
+    } else {
+      return false;
+    }
+  }
+
   public void shutDown() {
     _serverChannels.shutDown();
+    if (_hedgedRequestManager != null) {
+      _hedgedRequestManager.shutDown();
+    }
   }
 
   void receiveDataTable(ServerRoutingInstance serverRoutingInstance, DataTable dataTable, int responseSize,
@@ -111,7 +315,38 @@ public class QueryRouter {
 
     // Query future might be null if the query is already done (maybe due to failure)
     if (asyncQueryResponse != null) {
-      asyncQueryResponse.receiveDataTable(serverRoutingInstance, dataTable, responseSize, deserializationTimeMs);
+      asyncQueryResponse
+          .receiveDataTable(requestId, serverRoutingInstance, dataTable, responseSize, deserializationTimeMs);
+      if (_hedgedRequestManager != null) {
+        recordHedgingStats(asyncQueryResponse, requestId, serverRoutingInstance);
+      }
+    } else {
+      dataTable.release();
+    }
+  }
+
+  /**
+   * Counts the hedged requests answering first.
+   */
+  private void recordHedgingStats(AsyncQueryResponse asyncQueryResponse, long requestId,
+      ServerRoutingInstance serverRoutingInstance) {
+    if (requestId == asyncQueryResponse.getRequestId()) {
+      return;
+    }
+    ServerRoutingInstance server = asyncQueryResponse.getServerForRequest(requestId, serverRoutingInstance);
+    ServerResponse serverResponse = server != null ? asyncQueryResponse.getServerResponse(server) : null;
+    if (serverResponse != null && serverResponse.isHedgedResponse()) {
+      _brokerMetrics.addMeteredTableValue(asyncQueryResponse.getRawTableName(), BrokerMeter.HEDGED_REQUESTS_WON, 1);
+    }
+  }
+
+  /**
+   * Records the latency of the original request (whether or not it answers first) for the hedged request delay.
+   */
+  void recordRequestLatency(String rawTableName, TableType tableType, long latencyMs) {
+    if (_hedgedRequestManager != null) {
+      _hedgedRequestManager
+          .recordLatency(TableNameBuilder.forType(tableType).tableNameWithType(rawTableName), latencyMs);
     }
   }
 
@@ -125,6 +360,55 @@ public class QueryRouter {
     _asyncQueryResponseMap.remove(requestId);
   }
 
+  /**
+   * Marks the query done after the given delay, so that the responses of the requests still in flight (the slower one
+   * of the original request and the hedged request) are still received and recorded until then.
+   */
+  void markQueryDone(AsyncQueryResponse asyncQueryResponse, long delayMs) {
+    if (_hedgedRequestManager != null && delayMs > 0) {
+      _hedgedRequestManager.schedule(() -> asyncQueryResponse.markQueryDone(true), delayMs);
+    } else {
+      asyncQueryResponse.markQueryDone(true);
+    }
+  }
+
+  /**
+   * Sends cancel message for the given request to the given server if query cancellation is enabled. Used to cancel
+   * the slower one of the original request and the hedged request.
+   *
+   * @return Whether the cancel message is sent
+   */
+  boolean cancelServerRequest(long requestId, ServerRoutingInstance serverRoutingInstance) {
+    if (!_enableQueryCancellation) {
+      return false;
+    }
+    try {
+      _serverChannels.sendCancel(serverRoutingInstance, requestId);
+      return true;
+    } catch (Exception e) {
+      LOGGER.warn("Caught exception while sending cancel message for request {} to server: {}", requestId,
+          serverRoutingInstance, e);
+      return false;
+    }
+  }
+
+  /**
+   * Sends cancel messages to the given servers if query cancellation is enabled.
+   */
+  void cancelServerRequests(long requestId, Collection<ServerRoutingInstance> serverRoutingInstances) {
+    if (_enableQueryCancellation && !serverRoutingInstances.isEmpty()) {
+      _brokerMetrics.addMeteredGlobalValue(BrokerMeter.QUERIES_CANCELLED, 1);
+      for (ServerRoutingInstance serverRoutingInstance : serverRoutingInstances) {
+        try {
+          _serverChannels.sendCancel(serverRoutingInstance, requestId);
+        } catch (Exception e) {
+          LOGGER.warn("Caught exception while sending cancel message for request {} to server: {}", requestId,
+              serverRoutingInstance, e);
+        }
+      }
+    }
+  }
+
   private InstanceRequest getInstanceRequest(long requestId, BrokerRequest brokerRequest, List<String> segments) {
     InstanceRequest instanceRequest = new InstanceRequest();
     instanceRequest.setRequestId(requestId);
@@ -132,6 +416,9 @@ public class QueryRouter {
     instanceRequest.setEnableTrace(brokerRequest.isEnableTrace());
     instanceRequest.setSearchSegments(segments);
     instanceRequest.setBrokerId(_brokerId);
+    if (_dataTableVersion != DataTableImplV2.VERSION) {
+      instanceRequest.setDataTableVersion(_dataTableVersion);
+    }
     return instanceRequest;
   }
 }
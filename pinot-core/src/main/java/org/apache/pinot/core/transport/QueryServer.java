@@ -23,12 +23,11 @@ import io.netty.channel.Channel;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelOption;
 import io.netty.channel.EventLoopGroup;
-import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioServerSocketChannel;
 import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
 import io.netty.handler.codec.LengthFieldPrepender;
 import java.util.concurrent.TimeUnit;
+import org.apache.pinot.common.metrics.ServerGauge;
 import org.apache.pinot.common.metrics.ServerMetrics;
 import org.apache.pinot.core.query.scheduler.QueryScheduler;
 
@@ -36,36 +35,51 @@ import org.apache.pinot.core.query.scheduler.QueryScheduler;
 /**
  * The {@code QueryServer} is the Netty server that runs on Pinot Server to handle the instance requests sent from Pinot
  * Brokers.
+ * <p>When native transport is enabled, the epoll transport is used if available, otherwise it falls back to NIO (see
+ * {@link NettyUtils}).
  */
 public class QueryServer {
   private final int _port;
   private final QueryScheduler _queryScheduler;
   private final ServerMetrics _serverMetrics;
+  private final boolean _nativeTransport;
 
   private EventLoopGroup _bossGroup;
   private EventLoopGroup _workerGroup;
   private Channel _channel;
 
   public QueryServer(int port, QueryScheduler queryScheduler, ServerMetrics serverMetrics) {
+    this(port, queryScheduler, serverMetrics, false);
+  }
+
+  public QueryServer(int port, QueryScheduler queryScheduler, ServerMetrics serverMetrics,
+      boolean enableNativeTransport) {
     _port = port;
     _queryScheduler = queryScheduler;
     _serverMetrics = serverMetrics;
+    _nativeTransport = NettyUtils.useNativeTransport(enableNativeTransport);
   }
 
   public void start() {
-    _bossGroup = new NioEventLoopGroup();
-    _workerGroup = new NioEventLoopGroup();
+    _bossGroup = NettyUtils.newEventLoopGroup(_nativeTransport);
+    _workerGroup = NettyUtils.newEventLoopGroup(_nativeTransport);
+    EventLoopGroup workerGroup = _workerGroup;
+    _serverMetrics.addCallbackGauge(ServerGauge.NETTY_EVENT_LOOP_PENDING_TASKS.getGaugeName(),
+        () -> NettyUtils.getNumPendingTasks(workerGroup));
+    _serverMetrics.addCallbackGauge(ServerGauge.NETTY_POOLED_DIRECT_MEMORY_USED.getGaugeName(),
+        NettyUtils::getPooledDirectMemoryUsed);
     try {
       ServerBootstrap serverBootstrap = new ServerBootstrap();
-      _channel = serverBootstrap.group(_bossGroup, _workerGroup).channel(NioServerSocketChannel.class)
-          .option(ChannelOption.SO_BACKLOG, 128).childOption(ChannelOption.SO_KEEPALIVE, true)
+      _channel = serverBootstrap.group(_bossGroup, _workerGroup)
+          .channel(NettyUtils.getServerChannelClass(_nativeTransport)).option(ChannelOption.SO_BACKLOG, 128)
+          .option(ChannelOption.ALLOCATOR, NettyUtils.ALLOCATOR).childOption(ChannelOption.SO_KEEPALIVE, true)
+          .childOption(ChannelOption.ALLOCATOR, NettyUtils.ALLOCATOR)
           .childHandler(new ChannelInitializer<SocketChannel>() {
             @Override
             protected void initChannel(SocketChannel ch) {
-              ch.pipeline()
-                  .addLast(new LengthFieldBasedFrameDecoder(Integer.MAX_VALUE, 0, Integer.BYTES, 0, Integer.BYTES),
-                      new LengthFieldPrepender(Integer.BYTES),
-                      new InstanceRequestHandler(_queryScheduler, _serverMetrics));
+              ch.pipeline().addLast(NettyUtils.newFlushConsolidationHandler(),
+                  new LengthFieldBasedFrameDecoder(Integer.MAX_VALUE, 0, Integer.BYTES, 0, Integer.BYTES),
+                  new LengthFieldPrepender(Integer.BYTES), new InstanceRequestHandler(_queryScheduler, _serverMetrics));
             }
           }).bind(_port).sync().channel();
     } catch (Exception e) {
@@ -24,9 +24,7 @@ import io.netty.channel.Channel;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelOption;
 import io.netty.channel.EventLoopGroup;
-import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioSocketChannel;
 import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
 import io.netty.handler.codec.LengthFieldPrepender;
 import java.util.concurrent.ConcurrentHashMap;
@@ -44,17 +42,30 @@ import org.apache.thrift.protocol.TCompactProtocol;
  * The {@code ServerChannels} class manages the channels between broker to all the connected servers.
  * <p>There is only one channel between the broker and each connected server (we count OFFLINE and REALTIME as different
  * servers)
+ * <p>When native transport is enabled, the epoll transport is used if available, otherwise it falls back to NIO (see
+ * {@link NettyUtils}).
  */
 @ThreadSafe
 public class ServerChannels {
   private final QueryRouter _queryRouter;
   private final BrokerMetrics _brokerMetrics;
   private final ConcurrentHashMap<ServerRoutingInstance, ServerChannel> _serverToChannelMap = new ConcurrentHashMap<>();
-  private final EventLoopGroup _eventLoopGroup = new NioEventLoopGroup();
+  private final boolean _nativeTransport;
+  private final EventLoopGroup _eventLoopGroup;
 
   public ServerChannels(QueryRouter queryRouter, BrokerMetrics brokerMetrics) {
+    this(queryRouter, brokerMetrics, false);
+  }
+
+  public ServerChannels(QueryRouter queryRouter, BrokerMetrics brokerMetrics, boolean enableNativeTransport) {
     _queryRouter = queryRouter;
     _brokerMetrics = brokerMetrics;
+    _nativeTransport = NettyUtils.useNativeTransport(enableNativeTransport);
+    _eventLoopGroup = NettyUtils.newEventLoopGroup(_nativeTransport);
+    _brokerMetrics.addCallbackGauge(BrokerGauge.NETTY_EVENT_LOOP_PENDING_TASKS.getGaugeName(),
+        () -> NettyUtils.getNumPendingTasks(_eventLoopGroup));
+    _brokerMetrics.addCallbackGauge(BrokerGauge.NETTY_POOLED_DIRECT_MEMORY_USED.getGaugeName(),
+        NettyUtils::getPooledDirectMemoryUsed);
   }
 
   public void sendRequest(ServerRoutingInstance serverRoutingInstance, InstanceRequest instanceRequest)
@@ -62,6 +73,16 @@ public class ServerChannels {
     _serverToChannelMap.computeIfAbsent(serverRoutingInstance, ServerChannel::new).sendRequest(instanceRequest);
   }
 
+  /**
+   * Sends the cancel message for the given request to the server if the channel to the server is active.
+   */
+  public void sendCancel(ServerRoutingInstance serverRoutingInstance, long requestId) {
+    ServerChannel serverChannel = _serverToChannelMap.get(serverRoutingInstance);
+    if (serverChannel != null) {
+      serverChannel.sendCancel(requestId);
+    }
+  }
+
   public void shutDown() {
     // Shut down immediately
     _eventLoopGroup.shutdownGracefully(0, 0, TimeUnit.SECONDS);
@@ -77,16 +98,17 @@ public class ServerChannels {
     ServerChannel(ServerRoutingInstance serverRoutingInstance) {
       _serverRoutingInstance = serverRoutingInstance;
       _bootstrap = new Bootstrap().remoteAddress(serverRoutingInstance.getHostname(), serverRoutingInstance.getPort())
-          .group(_eventLoopGroup).channel(NioSocketChannel.class).option(ChannelOption.SO_KEEPALIVE, true)
+          .group(_eventLoopGroup).channel(NettyUtils.getSocketChannelClass(_nativeTransport))
+          .option(ChannelOption.SO_KEEPALIVE, true).option(ChannelOption.ALLOCATOR, NettyUtils.ALLOCATOR)
           .handler(new ChannelInitializer<SocketChannel>() {
             @Override
             protected void initChannel(SocketChannel ch) {
-              ch.pipeline()
-                  .addLast(new LengthFieldBasedFrameDecoder(Integer.MAX_VALUE, 0, Integer.BYTES, 0, Integer.BYTES),
-                      new LengthFieldPrepender(Integer.BYTES),
-                      // NOTE: data table de-serialization happens inside this handler
-                      // Revisit if this becomes a bottleneck
-                      new DataTableHandler(_queryRouter, _serverRoutingInstance, _brokerMetrics));
+              ch.pipeline().addLast(NettyUtils.newFlushConsolidationHandler(),
+                  new LengthFieldBasedFrameDecoder(Integer.MAX_VALUE, 0, Integer.BYTES, 0, Integer.BYTES),
+                  new LengthFieldPrepender(Integer.BYTES),
+                  // NOTE: data table de-serialization happens inside this handler
+                  // Revisit if this becomes a bottleneck
+                  new DataTableHandler(_queryRouter, _serverRoutingInstance, _brokerMetrics));
             }
           });
     }
@@ -104,5 +126,13 @@ public class ServerChannels {
       _brokerMetrics.addMeteredGlobalValue(BrokerMeter.NETTY_CONNECTION_REQUESTS_SENT, 1);
       _brokerMetrics.addMeteredGlobalValue(BrokerMeter.NETTY_CONNECTION_BYTES_SENT, requestBytes.length);
     }
+
+    synchronized void sendCancel(long requestId) {
+      // No need to send the cancel message if the channel is inactive, server cancels all queries on channel inactive
+      if (_channel != null && _channel.isActive()) {
+        byte[] cancelMessageBytes = QueryCancelMessage.serialize(requestId);
+        _channel.writeAndFlush(Unpooled.wrappedBuffer(cancelMessageBytes), _channel.voidPromise());
+      }
+    }
   }
 }
@@ -28,6 +28,7 @@ public class ServerInstance {
   private static final int SERVER_INSTANCE_PREFIX_LENGTH = Helix.PREFIX_OF_SERVER_INSTANCE.length();
   private static final String HOSTNAME_PORT_DELIMITER = "_";
 
+  private final String _instanceId;
   private final String _hostname;
   private final int _port;
 
@@ -36,6 +37,7 @@ public class ServerInstance {
    * {@code Server_localhost_12345}, hostname is of format: {@code Server_<hostname>}, e.g. {@code Server_localhost}.
    */
   public ServerInstance(InstanceConfig instanceConfig) {
+    _instanceId = instanceConfig.getInstanceName();
     String hostname = instanceConfig.getHostName();
     if (hostname != null) {
       if (hostname.startsWith(Helix.PREFIX_OF_SERVER_INSTANCE)) {
@@ -56,10 +58,15 @@ public class ServerInstance {
 
   @VisibleForTesting
   ServerInstance(String hostname, int port) {
+    _instanceId = Helix.PREFIX_OF_SERVER_INSTANCE + hostname + HOSTNAME_PORT_DELIMITER + port;
     _hostname = hostname;
     _port = port;
   }
 
+  public String getInstanceId() {
+    return _instanceId;
+  }
+
   public String getHostname() {
     return _hostname;
   }
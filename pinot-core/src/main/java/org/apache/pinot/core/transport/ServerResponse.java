@@ -24,6 +24,8 @@ import org.apache.pinot.common.utils.DataTable;
 
 /**
  * The {@code ServerResponse} class contains the response and time info from a {@link ServerRoutingInstance}.
+ * <p>When the request is hedged (re-issued to another server), the response is taken from whichever server answers
+ * first.
  */
 @ThreadSafe
 public class ServerResponse {
@@ -33,6 +35,15 @@ public class ServerResponse {
   private volatile DataTable _dataTable;
   private volatile int _responseSize;
   private volatile int _deserializationTimeMs;
+  private volatile long _hedgedRequestId;
+  private volatile ServerRoutingInstance _hedgedServer;
+  private volatile ServerInstance _hedgedServerInstance;
+  private volatile long _hedgedSubmitRequestTimeMs;
+  private volatile boolean _hedgedResponse;
+  private boolean _responseClaimed;
+  private volatile boolean _requestCompleted;
+  private volatile boolean _hedgedRequestCompleted;
+  private boolean _released;
 
   public ServerResponse(long startTimeMs) {
     _startTimeMs = startTimeMs;
@@ -66,6 +77,13 @@ public class ServerResponse {
     return _deserializationTimeMs;
   }
 
+  /**
+   * Returns whether the response is from the hedged request instead of the original request.
+   */
+  public boolean isHedgedResponse() {
+    return _hedgedResponse;
+  }
+
   @Override
   public String toString() {
     return String
@@ -76,10 +94,97 @@ public class ServerResponse {
     _submitRequestTimeMs = System.currentTimeMillis();
   }
 
-  void receiveDataTable(DataTable dataTable, int responseSize, int deserializationTimeMs) {
+  long getSubmitRequestTimeMs() {
+    return _submitRequestTimeMs;
+  }
+
+  void markRequestHedged(long hedgedRequestId, ServerRoutingInstance hedgedServer,
+      ServerInstance hedgedServerInstance) {
+    _hedgedRequestId = hedgedRequestId;
+    _hedgedServerInstance = hedgedServerInstance;
+    _hedgedSubmitRequestTimeMs = System.currentTimeMillis();
+    _hedgedServer = hedgedServer;
+  }
+
+  boolean isRequestHedged() {
+    return _hedgedServer != null;
+  }
+
+  long getHedgedRequestId() {
+    return _hedgedRequestId;
+  }
+
+  ServerRoutingInstance getHedgedServer() {
+    return _hedgedServer;
+  }
+
+  ServerInstance getHedgedServerInstance() {
+    return _hedgedServerInstance;
+  }
+
+  long getHedgedSubmitRequestTimeMs() {
+    return _hedgedSubmitRequestTimeMs;
+  }
+
+  /**
+   * Claims the response for either the original request or the hedged request, returns {@code false} if the response
+   * is already claimed (the other request answered first).
+   */
+  synchronized boolean claimResponse(boolean hedgedResponse) {
+    if (_responseClaimed) {
+      return false;
+    }
+    _responseClaimed = true;
+    _hedgedResponse = hedgedResponse;
+    return true;
+  }
+
+  /**
+   * Marks the original request completed (responded or dropped), returns
+   * {@code false} if it is already marked completed.
+   */
+  synchronized boolean markRequestCompleted() {
+    if (_requestCompleted) {
+      return false;
+    }
+    _requestCompleted = true;
+    return true;
+  }
+
+  boolean isRequestCompleted() {
+    return _requestCompleted;
+  }
+
+  /**
+   * Marks the hedged request completed (responded or dropped), returns {@code false} if it is already marked completed.
+   */
+  synchronized boolean markHedgedRequestCompleted() {
+    if (_hedgedRequestCompleted) {
+      return false;
+    }
+    _hedgedRequestCompleted = true;
+    return true;
+  }
+
+  boolean isHedgedRequestCompleted() {
+    return _hedgedRequestCompleted;
+  }
+
+  synchronized void receiveDataTable(DataTable dataTable, int responseSize, int deserializationTimeMs) {
+    if (_released) {
+      dataTable.release();
+      return;
+    }
     _receiveDataTableTimeMs = System.currentTimeMillis();
     _dataTable = dataTable;
     _responseSize = responseSize;
     _deserializationTimeMs = deserializationTimeMs;
   }
+
+  synchronized void releaseDataTable() {
+    _released = true;
+    if (_dataTable != null) {
+      _dataTable.release();
+    }
+  }
 }
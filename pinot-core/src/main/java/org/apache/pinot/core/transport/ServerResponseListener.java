@@ -0,0 +1,52 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.core.transport;
+
+/**
+ * The {@code ServerResponseListener} is notified of the requests sent to the servers for a query and their outcome,
+ * on the thread sending the request or receiving the response, so that per-server stats (e.g. latency and in-flight
+ * requests) can be updated as soon as each server responds instead of after the whole scatter-gather.
+ * <p>For each request sent, {@link #onRequestSent(ServerInstance)} is invoked once, followed by exactly one of
+ * {@link #onResponseReceived(ServerInstance, long, boolean)} and {@link #onRequestDropped(ServerInstance, boolean)}.
+ */
+public interface ServerResponseListener {
+
+  /**
+   * Invoked when the request is sent to the given server.
+   */
+  void onRequestSent(ServerInstance serverInstance);
+
+  /**
+   * Invoked when the given server responds to the request.
+   *
+   * @param serverInstance Server responding to the request
+   * @param latencyMs Time between sending the request and receiving the response
+   * @param hasException Whether the response contains exceptions
+   */
+  void onResponseReceived(ServerInstance serverInstance, long latencyMs, boolean hasException);
+
+  /**
+   * Invoked when the query finishes before the given server responds.
+   *
+   * @param serverInstance Server not responding to the request
+   * @param timedOut Whether the query timed out, or finished for other reasons (e.g. failed on other servers or got
+   *                 cancelled) where the elapsed time does not reflect the server latency
+   */
+  void onRequestDropped(ServerInstance serverInstance, boolean timedOut);
+}
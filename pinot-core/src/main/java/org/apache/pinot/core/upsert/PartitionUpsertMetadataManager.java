@@ -0,0 +1,148 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.core.upsert;
+
+import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.concurrent.ThreadSafe;
+import org.apache.pinot.core.common.DataSource;
+import org.apache.pinot.core.indexsegment.IndexSegment;
+import org.apache.pinot.core.indexsegment.IndexSegmentUtils;
+import org.apache.pinot.core.realtime.impl.ThreadSafeMutableRoaringBitmap;
+import org.apache.pinot.spi.utils.ByteArray;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Manages the upsert metadata of a stream partition: the location of the latest record for each primary key among
+ * all the segments (consuming and committed) of the partition.
+ * <p>Each segment of the partition keeps a bitmap of its valid document ids, i.e. the documents that hold the latest
+ * record of their primary key. When a record with a higher stream offset arrives for a primary key, the document id
+ * of the old record is removed from the valid document ids of its segment, and the new one is added to the valid
+ * document ids of the new segment. Queries AND the valid document ids into the filter so that only the latest
+ * records are returned.
+ * <p>When a segment is replaced by another segment with the same name (consuming segment committed, or segment
+ * reloaded), the records of the new segment take over the locations pointing to the old segment. The replaced segment
+ * is dropped afterwards, so its valid document ids are left untouched.
+ */
+@ThreadSafe
+public class PartitionUpsertMetadataManager {
+  private static final Logger LOGGER = LoggerFactory.getLogger(PartitionUpsertMetadataManager.class);
+
+  private final String _tableNameWithType;
+  private final int _partitionId;
+  private final String _primaryKeyColumn;
+  private final String _offsetColumn;
+  private final ConcurrentHashMap<Object, RecordLocation> _primaryKeyToRecordLocationMap = new ConcurrentHashMap<>();
+
+  public PartitionUpsertMetadataManager(String tableNameWithType, int partitionId, String primaryKeyColumn,
+      String offsetColumn) {
+    _tableNameWithType = tableNameWithType;
+    _partitionId = partitionId;
+    _primaryKeyColumn = primaryKeyColumn;
+    _offsetColumn = offsetColumn;
+  }
+
+  public String getPrimaryKeyColumn() {
+    return _primaryKeyColumn;
+  }
+
+  public String getOffsetColumn() {
+    return _offsetColumn;
+  }
+
+  /**
+   * Adds all the records of a segment (e.g. a committed segment loaded from disk, or replacing the consuming segment)
+   * to the metadata, and initializes the valid document ids of the segment.
+   */
+  public void addSegment(IndexSegment segment) {
+    String segmentName = segment.getSegmentName();
+    LOGGER.info("Adding upsert metadata for segment: {} of table: {}, partition: {}", segmentName, _tableNameWithType,
+        _partitionId);
+    DataSource primaryKeyDataSource = segment.getDataSource(_primaryKeyColumn);
+    DataSource offsetDataSource = segment.getDataSource(_offsetColumn);
+    int numDocs = segment.getSegmentMetadata().getTotalDocs();
+    for (int docId = 0; docId < numDocs; docId++) {
+      Object primaryKey = getValue(primaryKeyDataSource, docId);
+      long offset = ((Number) getValue(offsetDataSource, docId)).longValue();
+      addRecord(segment, primaryKey, docId, offset);
+    }
+  }
+
+  private static Object getValue(DataSource dataSource, int docId) {
+    return IndexSegmentUtils
+        .getValue(docId, dataSource.getDataSourceMetadata().getFieldSpec(), dataSource.getForwardIndex(),
+            dataSource.getDictionary(), 1);
+  }
+
+  /**
+   * Adds a record to the metadata, and updates the valid document ids of the affected segments if the record is the
+   * latest one for its primary key.
+   */
+  public void addRecord(IndexSegment segment, Object primaryKey, int docId, long offset) {
+    if (primaryKey instanceof byte[]) {
+      primaryKey = new ByteArray((byte[]) primaryKey);
+    }
+    ThreadSafeMutableRoaringBitmap validDocIds = segment.getValidDocIds();
+    _primaryKeyToRecordLocationMap.compute(primaryKey, (key, currentRecordLocation) -> {
+      if (currentRecordLocation != null) {
+        IndexSegment currentSegment = currentRecordLocation.getSegment();
+        if (currentSegment != segment && currentSegment.getSegmentName().equals(segment.getSegmentName())) {
+          // The segment is being replaced, take over the location without touching the replaced segment
+          validDocIds.checkAndAdd(docId);
+          return new RecordLocation(segment, docId, offset);
+        }
+        if (offset < currentRecordLocation.getOffset()) {
+          // The current record is newer
+          return currentRecordLocation;
+        }
+        currentSegment.getValidDocIds().remove(currentRecordLocation.getDocId());
+      }
+      validDocIds.checkAndAdd(docId);
+      return new RecordLocation(segment, docId, offset);
+    });
+  }
+
+  /**
+   * Removes all the record locations pointing to the given segment (e.g. the segment is dropped).
+   */
+  public void removeSegment(IndexSegment segment) {
+    LOGGER.info("Removing upsert metadata for segment: {} of table: {}, partition: {}", segment.getSegmentName(),
+        _tableNameWithType, _partitionId);
+    _primaryKeyToRecordLocationMap.values().removeIf(recordLocation -> recordLocation.getSegment() == segment);
+  }
+
+  /**
+   * Returns the number of primary keys tracked for the partition.
+   */
+  public int getNumPrimaryKeys() {
+    return _primaryKeyToRecordLocationMap.size();
+  }
+
+  /**
+   * Returns the current location of the latest record for the given primary key, or {@code null} if the primary key
+   * does not exist.
+   */
+  public RecordLocation getRecordLocation(Object primaryKey) {
+    if (primaryKey instanceof byte[]) {
+      primaryKey = new ByteArray((byte[]) primaryKey);
+    }
+    return _primaryKeyToRecordLocationMap.get(primaryKey);
+  }
+}
@@ -0,0 +1,50 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.core.upsert;
+
+import org.apache.pinot.core.indexsegment.IndexSegment;
+
+
+/**
+ * Location of the latest record for a primary key, i.e. the segment and document id of the record, and the stream
+ * offset used to resolve which record is the latest.
+ */
+public class RecordLocation {
+  private final IndexSegment _segment;
+  private final int _docId;
+  private final long _offset;
+
+  public RecordLocation(IndexSegment segment, int docId, long offset) {
+    _segment = segment;
+    _docId = docId;
+    _offset = offset;
+  }
+
+  public IndexSegment getSegment() {
+    return _segment;
+  }
+
+  public int getDocId() {
+    return _docId;
+  }
+
+  public long getOffset() {
+    return _offset;
+  }
+}
@@ -0,0 +1,55 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.core.upsert;
+
+import com.google.common.base.Preconditions;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.concurrent.ThreadSafe;
+import org.apache.pinot.spi.config.table.UpsertConfig;
+
+
+/**
+ * Manages the upsert metadata of a table. The primary keys are tracked per stream partition, as the records with the
+ * same primary key are expected to be ingested into the same stream partition.
+ * <p>Only single primary key column is supported.
+ */
+@ThreadSafe
+public class TableUpsertMetadataManager {
+  private final String _tableNameWithType;
+  private final String _primaryKeyColumn;
+  private final String _offsetColumn;
+  private final Map<Integer, PartitionUpsertMetadataManager> _partitionMetadataManagerMap = new ConcurrentHashMap<>();
+
+  public TableUpsertMetadataManager(String tableNameWithType, UpsertConfig upsertConfig) {
+    _tableNameWithType = tableNameWithType;
+    List<String> primaryKeyColumns = upsertConfig.getPrimaryKeyColumns();
+    Preconditions.checkArgument(primaryKeyColumns != null && primaryKeyColumns.size() == 1,
+        "Upsert must be configured with exactly one primary key column, got: %s for table: %s", primaryKeyColumns,
+        tableNameWithType);
+    _primaryKeyColumn = primaryKeyColumns.get(0);
+    _offsetColumn = upsertConfig.getOffsetColumn();
+  }
+
+  public PartitionUpsertMetadataManager getOrCreatePartitionManager(int partitionId) {
+    return _partitionMetadataManagerMap.computeIfAbsent(partitionId,
+        k -> new PartitionUpsertMetadataManager(_tableNameWithType, partitionId, _primaryKeyColumn, _offsetColumn));
+  }
+}
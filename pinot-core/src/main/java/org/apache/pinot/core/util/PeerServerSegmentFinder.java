@@ -0,0 +1,100 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.core.util;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nullable;
+import org.apache.helix.HelixAdmin;
+import org.apache.helix.HelixManager;
+import org.apache.helix.model.ExternalView;
+import org.apache.helix.model.InstanceConfig;
+import org.apache.pinot.common.utils.CommonConstants.Helix;
+import org.apache.pinot.common.utils.CommonConstants.Helix.StateModel.SegmentOnlineOfflineStateModel;
+import org.apache.pinot.common.utils.CommonConstants.Server;
+import org.apache.pinot.common.utils.StringUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Utility class to find the peer servers hosting a segment, so that the segment can be downloaded from them instead of
+ * the controller or the deep store.
+ */
+public class PeerServerSegmentFinder {
+  private PeerServerSegmentFinder() {
+  }
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(PeerServerSegmentFinder.class);
+  private static final String HTTP_SCHEME = "http";
+
+  /**
+   * Returns the download URIs of the segment from the servers (other than the given instance) hosting the segment in
+   * ONLINE state in the external view. The URIs point to the segment download endpoint of the server admin API, and
+   * are shuffled to spread the download traffic across the replicas.
+   *
+   * @param tableNameWithType Table name with type
+   * @param segmentName Segment name
+   * @param helixManager Helix manager used to read the external view and the instance configs
+   * @param excludedInstanceId Instance to exclude (e.g. the instance downloading the segment), or {@code null}
+   * @return List of download URIs, or empty list if no peer server hosts the segment
+   */
+  public static List<URI> getPeerServerURIs(String tableNameWithType, String segmentName, HelixManager helixManager,
+      @Nullable String excludedInstanceId) {
+    HelixAdmin helixAdmin = helixManager.getClusterManagmentTool();
+    String clusterName = helixManager.getClusterName();
+    ExternalView externalView = helixAdmin.getResourceExternalView(clusterName, tableNameWithType);
+    if (externalView == null) {
+      LOGGER.warn("Failed to find external view for table: {}", tableNameWithType);
+      return Collections.emptyList();
+    }
+    Map<String, String> instanceStateMap = externalView.getStateMap(segmentName);
+    if (instanceStateMap == null) {
+      LOGGER.warn("Failed to find segment: {} in external view of table: {}", segmentName, tableNameWithType);
+      return Collections.emptyList();
+    }
+
+    List<URI> peerServerURIs = new ArrayList<>();
+    for (Map.Entry<String, String> entry : instanceStateMap.entrySet()) {
+      String instanceId = entry.getKey();
+      if (!SegmentOnlineOfflineStateModel.ONLINE.equals(entry.getValue()) || instanceId.equals(excludedInstanceId)) {
+        continue;
+      }
+      InstanceConfig instanceConfig = helixAdmin.getInstanceConfig(clusterName, instanceId);
+      if (instanceConfig == null) {
+        LOGGER.warn("Failed to find instance config for: {}", instanceId);
+        continue;
+      }
+      // Backward-compatible with legacy hostname of format 'Server_<hostname>'
+      String hostname = instanceConfig.getHostName();
+      if (hostname.startsWith(Helix.PREFIX_OF_SERVER_INSTANCE)) {
+        hostname = hostname.substring(Helix.PREFIX_OF_SERVER_INSTANCE.length());
+      }
+      int adminPort =
+          instanceConfig.getRecord().getIntField(Helix.Instance.ADMIN_PORT_KEY, Server.DEFAULT_ADMIN_API_PORT);
+      peerServerURIs.add(URI.create(StringUtil
+          .join("/", HTTP_SCHEME + "://" + hostname + ":" + adminPort, "segments", tableNameWithType, segmentName)));
+    }
+    Collections.shuffle(peerServerURIs);
+    return peerServerURIs;
+  }
+}
@@ -0,0 +1,82 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.core.util;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import javax.annotation.concurrent.ThreadSafe;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * The <code>SerialExecutor</code> class runs the submitted tasks one at a time in submission order on the given
+ * executor, and only holds a thread of the given executor while it has tasks to run. The tasks are run on the calling
+ * thread if the given executor rejects them.
+ */
+@ThreadSafe
+public class SerialExecutor implements Executor {
+  private static final Logger LOGGER = LoggerFactory.getLogger(SerialExecutor.class);
+
+  private final Executor _executor;
+  // Guarded by this
+  private final Queue<Runnable> _tasks = new ArrayDeque<>();
+  private boolean _running;
+
+  public SerialExecutor(Executor executor) {
+    _executor = executor;
+  }
+
+  @Override
+  public void execute(Runnable task) {
+    synchronized (this) {
+      _tasks.add(task);
+      if (_running) {
+        return;
+      }
+      _running = true;
+    }
+    try {
+      _executor.execute(this::runTasks);
+    } catch (RejectedExecutionException e) {
+      // The given executor is shut down or saturated, run the tasks on the calling thread instead
+      runTasks();
+    }
+  }
+
+  private void runTasks() {
+    while (true) {
+      Runnable task;
+      synchronized (this) {
+        task = _tasks.poll();
+        if (task == null) {
+          _running = false;
+          return;
+        }
+      }
+      try {
+        task.run();
+      } catch (Exception e) {
+        LOGGER.error("Caught exception while running task", e);
+      }
+    }
+  }
+}
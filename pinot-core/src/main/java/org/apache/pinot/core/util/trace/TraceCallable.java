@@ -19,19 +19,26 @@
 package org.apache.pinot.core.util.trace;
 
 import java.util.concurrent.Callable;
+import org.apache.pinot.core.query.request.context.QueryCancellationToken;
+import org.apache.pinot.core.query.request.context.QueryResourceTracker;
 
 
 /**
- * Wrapper class for {@link Callable} to automatically register/un-register itself to/from a request.
+ * Wrapper class for {@link Callable} to automatically register/un-register itself to/from a request,
+ * and to propagate the query cancellation token and resource tracker to the worker thread.
  */
 public abstract class TraceCallable<V> implements Callable<V> {
   private final TraceContext.TraceEntry _parentTraceEntry;
+  private final QueryCancellationToken _cancellationToken;
+  private final QueryResourceTracker _resourceTracker;
 
   /**
    * If trace is not enabled, parent trace entry will be null.
    */
   public TraceCallable() {
     _parentTraceEntry = TraceContext.getTraceEntry();
+    _cancellationToken = QueryCancellationToken.get();
+    _resourceTracker = QueryResourceTracker.get();
   }
 
   @Override
@@ -40,12 +47,24 @@ public abstract class TraceCallable<V> implements Callable<V> {
     if (_parentTraceEntry != null) {
       TraceContext.registerThreadToRequest(_parentTraceEntry);
     }
+    if (_cancellationToken != null) {
+      QueryCancellationToken.register(_cancellationToken);
+    }
+    if (_resourceTracker != null) {
+      QueryResourceTracker.register(_resourceTracker);
+    }
     try {
       return callJob();
     } finally {
       if (_parentTraceEntry != null) {
         TraceContext.unregisterThreadFromRequest();
       }
+      if (_cancellationToken != null) {
+        QueryCancellationToken.unregister();
+      }
+      if (_resourceTracker != null) {
+        QueryResourceTracker.unregister();
+      }
     }
   }
 
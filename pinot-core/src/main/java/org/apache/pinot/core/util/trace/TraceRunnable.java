@@ -18,17 +18,26 @@
  */
 package org.apache.pinot.core.util.trace;
 
+import org.apache.pinot.core.query.request.context.QueryCancellationToken;
+import org.apache.pinot.core.query.request.context.QueryResourceTracker;
+
+
 /**
- * Wrapper class for {@link Runnable} to automatically register/un-register itself to/from a request.
+ * Wrapper class for {@link Runnable} to automatically register/un-register itself to/from a request,
+ * and to propagate the query cancellation token and resource tracker to the worker thread.
  */
 public abstract class TraceRunnable implements Runnable {
   private final TraceContext.TraceEntry _parentTraceEntry;
+  private final QueryCancellationToken _cancellationToken;
+  private final QueryResourceTracker _resourceTracker;
 
   /**
    * If trace is not enabled, parent trace entry will be null.
    */
   public TraceRunnable() {
     _parentTraceEntry = TraceContext.getTraceEntry();
+    _cancellationToken = QueryCancellationToken.get();
+    _resourceTracker = QueryResourceTracker.get();
   }
 
   @Override
@@ -36,12 +45,24 @@ public abstract class TraceRunnable implements Runnable {
     if (_parentTraceEntry != null) {
       TraceContext.registerThreadToRequest(_parentTraceEntry);
     }
+    if (_cancellationToken != null) {
+      QueryCancellationToken.register(_cancellationToken);
+    }
+    if (_resourceTracker != null) {
+      QueryResourceTracker.register(_resourceTracker);
+    }
     try {
       runJob();
     } finally {
       if (_parentTraceEntry != null) {
         TraceContext.unregisterThreadFromRequest();
       }
+      if (_cancellationToken != null) {
+        QueryCancellationToken.unregister();
+      }
+      if (_resourceTracker != null) {
+        QueryResourceTracker.unregister();
+      }
     }
   }
 
@@ -18,6 +18,8 @@
  */
 package org.apache.pinot.core.common.datatable;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.Random;
@@ -49,15 +51,17 @@ public class DataTableSerDeTest {
         QueryException.getException(QueryException.QUERY_EXECUTION_ERROR, exception);
     String expected = processingException.getMessage();
 
-    DataTable dataTable = new DataTableImplV2();
-    dataTable.addException(processingException);
-    DataTable newDataTable = DataTableFactory.getDataTable(dataTable.toBytes());
-    Assert.assertNull(newDataTable.getDataSchema());
-    Assert.assertEquals(newDataTable.getNumberOfRows(), 0);
+    for (int version : new int[]{DataTableImplV2.VERSION, DataTableImplV3.VERSION}) {
+      DataTable dataTable = new DataTableImplV2();
+      dataTable.addException(processingException);
+      DataTable newDataTable = DataTableFactory.getDataTable(DataTableFactory.toBytes(dataTable, version));
+      Assert.assertNull(newDataTable.getDataSchema());
+      Assert.assertEquals(newDataTable.getNumberOfRows(), 0);
 
-    String actual = newDataTable.getMetadata()
-        .get(DataTable.EXCEPTION_METADATA_KEY + QueryException.QUERY_EXECUTION_ERROR.getErrorCode());
-    Assert.assertEquals(actual, expected);
+      String actual = newDataTable.getMetadata()
+          .get(DataTable.EXCEPTION_METADATA_KEY + QueryException.QUERY_EXECUTION_ERROR.getErrorCode());
+      Assert.assertEquals(actual, expected);
+    }
   }
 
   @Test
@@ -90,6 +94,58 @@ public class DataTableSerDeTest {
   @Test
   public void testAllDataTypes()
       throws IOException {
+    testAllDataTypes(DataTableImplV2.VERSION, false);
+  }
+
+  @Test
+  public void testAllDataTypesV3()
+      throws IOException {
+    testAllDataTypes(DataTableImplV3.VERSION, false);
+  }
+
+  @Test
+  public void testAllDataTypesZeroCopy()
+      throws IOException {
+    testAllDataTypes(DataTableImplV2.VERSION, true);
+  }
+
+  @Test
+  public void testCompressionV3()
+      throws IOException {
+    // Large data table with values that compress well
+    int numRows = 10_000;
+    DataSchema dataSchema = new DataSchema(new String[]{"key", "value", "count"},
+        new DataSchema.ColumnDataType[]{DataSchema.ColumnDataType.STRING, DataSchema.ColumnDataType.DOUBLE,
+            DataSchema.ColumnDataType.LONG});
+    DataTableBuilder dataTableBuilder = new DataTableBuilder(dataSchema);
+    for (int rowId = 0; rowId < numRows; rowId++) {
+      dataTableBuilder.startRow();
+      dataTableBuilder.setColumn(0, "key_" + (rowId % 100));
+      dataTableBuilder.setColumn(1, (double) (rowId % 10));
+      dataTableBuilder.setColumn(2, 1_000_000_000_000L + rowId);
+      dataTableBuilder.finishRow();
+    }
+    DataTable dataTable = dataTableBuilder.build();
+    dataTable.getMetadata().put(DataTable.NUM_DOCS_SCANNED_METADATA_KEY, "12345");
+
+    byte[] bytesV2 = DataTableFactory.toBytes(dataTable, DataTableImplV2.VERSION);
+    byte[] bytesV3 = DataTableFactory.toBytes(dataTable, DataTableImplV3.VERSION);
+    Assert.assertTrue(bytesV3.length < bytesV2.length / 2);
+
+    DataTable newDataTable = DataTableFactory.getDataTable(bytesV3);
+    Assert.assertTrue(newDataTable instanceof DataTableImplV3);
+    Assert.assertEquals(newDataTable.getDataSchema(), dataSchema);
+    Assert.assertEquals(newDataTable.getNumberOfRows(), numRows);
+    Assert.assertEquals(newDataTable.getMetadata().get(DataTable.NUM_DOCS_SCANNED_METADATA_KEY), "12345");
+    for (int rowId = 0; rowId < numRows; rowId++) {
+      Assert.assertEquals(newDataTable.getString(rowId, 0), "key_" + (rowId % 100));
+      Assert.assertEquals(newDataTable.getDouble(rowId, 1), (double) (rowId % 10));
+      Assert.assertEquals(newDataTable.getLong(rowId, 2), 1_000_000_000_000L + rowId);
+    }
+  }
+
+  private void testAllDataTypes(int version, boolean zeroCopy)
+      throws IOException {
     DataSchema.ColumnDataType[] columnDataTypes = DataSchema.ColumnDataType.values();
     int numColumns = columnDataTypes.length;
     String[] columnNames = new String[numColumns];
@@ -192,7 +248,19 @@ public class DataTableSerDeTest {
     }
 
     DataTable dataTable = dataTableBuilder.build();
-    DataTable newDataTable = DataTableFactory.getDataTable(dataTable.toBytes());
+    byte[] bytes = DataTableFactory.toBytes(dataTable, version);
+    DataTable newDataTable;
+    ByteBuf byteBuf = null;
+    if (zeroCopy) {
+      // Prepend the length as the frame decoder does, and decode from the current reader index
+      byteBuf = Unpooled.buffer(Integer.BYTES + bytes.length).writeInt(bytes.length).writeBytes(bytes);
+      byteBuf.skipBytes(Integer.BYTES);
+      newDataTable = DataTableFactory.getDataTable(byteBuf);
+      Assert.assertTrue(newDataTable instanceof ZeroCopyDataTableImplV2, ERROR_MESSAGE);
+      Assert.assertEquals(byteBuf.refCnt(), 2, ERROR_MESSAGE);
+    } else {
+      newDataTable = DataTableFactory.getDataTable(bytes);
+    }
     Assert.assertEquals(newDataTable.getDataSchema(), dataSchema, ERROR_MESSAGE);
     Assert.assertEquals(newDataTable.getNumberOfRows(), NUM_ROWS, ERROR_MESSAGE);
 
@@ -238,5 +306,12 @@ public class DataTableSerDeTest {
         }
       }
     }
+
+    if (zeroCopy) {
+      newDataTable.release();
+      newDataTable.release();
+      Assert.assertEquals(byteBuf.refCnt(), 1, ERROR_MESSAGE);
+      byteBuf.release();
+    }
   }
 }
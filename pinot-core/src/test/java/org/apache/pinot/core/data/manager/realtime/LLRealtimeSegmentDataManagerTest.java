@@ -24,8 +24,12 @@ import java.io.IOException;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.atomic.AtomicReference;
@@ -37,6 +41,7 @@ import org.apache.pinot.common.metrics.ServerMetrics;
 import org.apache.pinot.common.protocols.SegmentCompletionProtocol;
 import org.apache.pinot.common.utils.LLCSegmentName;
 import org.apache.pinot.core.data.manager.config.InstanceDataManagerConfig;
+import org.apache.pinot.core.indexsegment.mutable.MutableSegment;
 import org.apache.pinot.core.indexsegment.mutable.MutableSegmentImpl;
 import org.apache.pinot.core.realtime.impl.RealtimeSegmentStatsHistory;
 import org.apache.pinot.core.realtime.impl.fakestream.FakeStreamConsumerFactory;
@@ -44,8 +49,12 @@ import org.apache.pinot.core.realtime.impl.fakestream.FakeStreamMessageDecoder;
 import org.apache.pinot.core.segment.index.loader.IndexLoadingConfig;
 import org.apache.pinot.spi.config.table.TableConfig;
 import org.apache.pinot.spi.data.Schema;
+import org.apache.pinot.spi.data.readers.GenericRow;
+import org.apache.pinot.spi.stream.MessageBatch;
+import org.apache.pinot.spi.stream.PartitionLevelConsumer;
 import org.apache.pinot.spi.stream.PermanentConsumerException;
 import org.apache.pinot.spi.stream.StreamConfigProperties;
+import org.apache.pinot.spi.stream.StreamMessageDecoder;
 import org.apache.pinot.spi.utils.JsonUtils;
 import org.apache.pinot.util.TestUtils;
 import org.testng.Assert;
@@ -141,6 +150,11 @@ public class LLRealtimeSegmentDataManagerTest {
 
   private FakeLLRealtimeSegmentDataManager createFakeSegmentManager()
       throws Exception {
+    return createFakeSegmentManager(false);
+  }
+
+  private FakeLLRealtimeSegmentDataManager createFakeSegmentManager(boolean pipelinedConsumption)
+      throws Exception {
     LLCRealtimeSegmentZKMetadata segmentZKMetadata = createZkMetadata();
     TableConfig tableConfig = createTableConfig();
     InstanceZKMetadata instanceZKMetadata = new InstanceZKMetadata();
@@ -152,7 +166,7 @@ public class LLRealtimeSegmentDataManagerTest {
     ServerMetrics serverMetrics = new ServerMetrics(new MetricsRegistry());
     FakeLLRealtimeSegmentDataManager segmentDataManager =
         new FakeLLRealtimeSegmentDataManager(segmentZKMetadata, tableConfig, tableDataManager, resourceDir, schema,
-            llcSegmentName, _partitionIdToSemaphoreMap, serverMetrics);
+            llcSegmentName, _partitionIdToSemaphoreMap, serverMetrics, pipelinedConsumption);
     return segmentDataManager;
   }
 
@@ -698,6 +712,131 @@ public class LLRealtimeSegmentDataManagerTest {
     Assert.assertEquals(secondSegmentDataManager.get().getPartitionConsumerSemaphore().availablePermits(), 1);
   }
 
+  @Test
+  public void testPipelinedConsumption()
+      throws Exception {
+    // Stop in the middle of a message batch so that the decoded messages and the prefetched message batch are discarded
+    final long finalOffset = _startOffset + 100;
+    List<GenericRow> serialRows = consumeToFinalOffset(false, finalOffset);
+    List<GenericRow> pipelinedRows = consumeToFinalOffset(true, finalOffset);
+    int expectedNumRows = 0;
+    for (long offset = _startOffset; offset < finalOffset; offset++) {
+      if (!OffsetMessageDecoder.isDropped(offset)) {
+        expectedNumRows++;
+      }
+    }
+    Assert.assertEquals(serialRows.size(), expectedNumRows);
+    Assert.assertEquals(pipelinedRows, serialRows);
+  }
+
+  private List<GenericRow> consumeToFinalOffset(boolean pipelinedConsumption, long finalOffset)
+      throws Exception {
+    FakeLLRealtimeSegmentDataManager segmentDataManager = createFakeSegmentManager(pipelinedConsumption);
+    try {
+      segmentDataManager._runConsumeLoop = true;
+      segmentDataManager.setPartitionLevelConsumer(new OffsetPartitionLevelConsumer(_startOffset + 150, 7));
+      segmentDataManager.setMessageDecoder(new OffsetMessageDecoder());
+      segmentDataManager._state.set(segmentDataManager, LLRealtimeSegmentDataManager.State.CATCHING_UP);
+      segmentDataManager.setFinalOffset(finalOffset);
+      Assert.assertTrue(segmentDataManager.consumeLoop());
+      Assert.assertEquals(segmentDataManager.getCurrentOffset(), finalOffset);
+
+      MutableSegment mutableSegment = segmentDataManager.getSegment();
+      int numDocs = mutableSegment.getNumDocsIndexed();
+      List<GenericRow> rows = new ArrayList<>(numDocs);
+      for (int docId = 0; docId < numDocs; docId++) {
+        rows.add(mutableSegment.getRecord(docId, new GenericRow()));
+      }
+      return rows;
+    } finally {
+      segmentDataManager.destroy();
+    }
+  }
+
+  /**
+   * Partition level consumer that serves the stream offsets as messages, with at most {@code batchSize} messages per
+   * fetch.
+   */
+  private static class OffsetPartitionLevelConsumer implements PartitionLevelConsumer {
+    final long _largestOffset;
+    final int _batchSize;
+
+    OffsetPartitionLevelConsumer(long largestOffset, int batchSize) {
+      _largestOffset = largestOffset;
+      _batchSize = batchSize;
+    }
+
+    @Override
+    public MessageBatch fetchMessages(long startOffset, long endOffset, int timeoutMillis) {
+      long batchEndOffset = Math.min(Math.min(endOffset, _largestOffset), startOffset + _batchSize);
+      List<byte[]> messages = new ArrayList<>();
+      for (long offset = startOffset; offset < batchEndOffset; offset++) {
+        messages.add(Long.toString(offset).getBytes(StandardCharsets.UTF_8));
+      }
+      return new MessageBatch<byte[]>() {
+        @Override
+        public int getMessageCount() {
+          return messages.size();
+        }
+
+        @Override
+        public byte[] getMessageAtIndex(int index) {
+          return messages.get(index);
+        }
+
+        @Override
+        public int getMessageOffsetAtIndex(int index) {
+          return 0;
+        }
+
+        @Override
+        public int getMessageLengthAtIndex(int index) {
+          return messages.get(index).length;
+        }
+
+        @Override
+        public long getNextStreamMessageOffsetAtIndex(int index) {
+          return startOffset + index + 1;
+        }
+      };
+    }
+
+    @Override
+    public void close() {
+    }
+  }
+
+  /**
+   * Message decoder that decodes the stream offset into a row, and drops every tenth message.
+   */
+  private static class OffsetMessageDecoder implements StreamMessageDecoder<byte[]> {
+
+    static boolean isDropped(long offset) {
+      return offset % 10 == 0;
+    }
+
+    @Override
+    public void init(Map<String, String> props, Set<String> fieldsToRead, String topicName) {
+    }
+
+    @Override
+    public GenericRow decode(byte[] payload, GenericRow destination) {
+      return decode(payload, 0, payload.length, destination);
+    }
+
+    @Override
+    public GenericRow decode(byte[] payload, int offset, int length, GenericRow destination) {
+      long streamOffset = Long.parseLong(new String(payload, offset, length, StandardCharsets.UTF_8));
+      if (isDropped(streamOffset)) {
+        return null;
+      }
+      destination.putValue("d", "value" + streamOffset % 7);
+      destination.putValue("m", streamOffset);
+      destination.putValue("time", streamOffset);
+      return destination;
+    }
+  }
+
   public static class FakeLLRealtimeSegmentDataManager extends LLRealtimeSegmentDataManager {
 
     public Field _state;
@@ -713,15 +852,23 @@ public class LLRealtimeSegmentDataManagerTest {
     private boolean _downloadAndReplaceCalled = false;
     public boolean _throwExceptionFromConsume = false;
     public boolean _postConsumeStoppedCalled = false;
+    public boolean _runConsumeLoop = false;
     public Map<Integer, Semaphore> _semaphoreMap;
 
     private static InstanceDataManagerConfig makeInstanceDataManagerConfig() {
+      return makeInstanceDataManagerConfig(false);
+    }
+
+    private static InstanceDataManagerConfig makeInstanceDataManagerConfig(boolean pipelinedConsumption) {
       InstanceDataManagerConfig dataManagerConfig = mock(InstanceDataManagerConfig.class);
       when(dataManagerConfig.getReadMode()).thenReturn(null);
       when(dataManagerConfig.getAvgMultiValueCount()).thenReturn(null);
       when(dataManagerConfig.getSegmentFormatVersion()).thenReturn(null);
       when(dataManagerConfig.isEnableSplitCommit()).thenReturn(false);
       when(dataManagerConfig.isRealtimeOffHeapAllocation()).thenReturn(false);
+      when(dataManagerConfig.isRealtimePipelinedConsumption()).thenReturn(pipelinedConsumption);
+      // Use a small buffer so that the decoder thread blocks on the consumer thread
+      when(dataManagerConfig.getRealtimePipelineBufferSize()).thenReturn(3);
       return dataManagerConfig;
     }
 
@@ -729,8 +876,18 @@ public class LLRealtimeSegmentDataManagerTest {
         RealtimeTableDataManager realtimeTableDataManager, String resourceDataDir, Schema schema,
         LLCSegmentName llcSegmentName, Map<Integer, Semaphore> semaphoreMap, ServerMetrics serverMetrics)
         throws Exception {
+      this(segmentZKMetadata, tableConfig, realtimeTableDataManager, resourceDataDir, schema, llcSegmentName,
+          semaphoreMap, serverMetrics, false);
+    }
+
+    public FakeLLRealtimeSegmentDataManager(RealtimeSegmentZKMetadata segmentZKMetadata, TableConfig tableConfig,
+        RealtimeTableDataManager realtimeTableDataManager, String resourceDataDir, Schema schema,
+        LLCSegmentName llcSegmentName, Map<Integer, Semaphore> semaphoreMap, ServerMetrics serverMetrics,
+        boolean pipelinedConsumption)
+        throws Exception {
       super(segmentZKMetadata, tableConfig, realtimeTableDataManager, resourceDataDir,
-          new IndexLoadingConfig(makeInstanceDataManagerConfig(), tableConfig), schema, llcSegmentName,
+          new IndexLoadingConfig(makeInstanceDataManagerConfig(pipelinedConsumption), tableConfig), schema,
+          llcSegmentName,
           semaphoreMap.get(llcSegmentName.getPartitionId()), serverMetrics);
       _state = LLRealtimeSegmentDataManager.class.getDeclaredField("_state");
       _state.setAccessible(true);
@@ -784,6 +941,9 @@ public class LLRealtimeSegmentDataManagerTest {
     @Override
     protected boolean consumeLoop()
         throws Exception {
+      if (_runConsumeLoop) {
+        return super.consumeLoop();
+      }
       if (_throwExceptionFromConsume) {
         throw new PermanentConsumerException(new Throwable("Offset out of range"));
       }
@@ -898,6 +1058,14 @@ public class LLRealtimeSegmentDataManagerTest {
       throw new RuntimeException("Cannot get here");
     }
 
+    public void setPartitionLevelConsumer(PartitionLevelConsumer partitionLevelConsumer) {
+      setObject(partitionLevelConsumer, "_partitionLevelConsumer");
+    }
+
+    public void setMessageDecoder(StreamMessageDecoder messageDecoder) {
+      setObject(messageDecoder, "_messageDecoder");
+    }
+
     public void setSegmentMaxRowCount(int numRows) {
       setInt(numRows, "_segmentMaxRowCount");
     }
@@ -914,6 +1082,18 @@ public class LLRealtimeSegmentDataManagerTest {
       }
     }
 
+    private void setObject(Object value, String fieldName) {
+      try {
+        Field field = LLRealtimeSegmentDataManager.class.getDeclaredField(fieldName);
+        field.setAccessible(true);
+        field.set(this, value);
+      } catch (NoSuchFieldException e) {
+        Assert.fail();
+      } catch (IllegalAccessException e) {
+        Assert.fail();
+      }
+    }
+
     private void setInt(int value, String fieldName) {
       try {
         Field field = LLRealtimeSegmentDataManager.class.getDeclaredField(fieldName);
@@ -304,6 +304,90 @@ public class IndexedTableTest {
     return new Record(columns);
   }
 
+  @Test
+  public void testPartitionedIndexedTable() throws InterruptedException, ExecutionException {
+    DataSchema dataSchema = new DataSchema(new String[]{"d1", "d2", "sum(m1)", "max(m2)"},
+        new ColumnDataType[]{ColumnDataType.STRING, ColumnDataType.INT, ColumnDataType.DOUBLE, ColumnDataType.DOUBLE});
+
+    AggregationInfo agg1 = new AggregationInfo();
+    agg1.setExpressions(Lists.newArrayList("m1"));
+    agg1.setAggregationType("sum");
+    AggregationInfo agg2 = new AggregationInfo();
+    agg2.setExpressions(Lists.newArrayList("m2"));
+    agg2.setAggregationType("max");
+    List<AggregationInfo> aggregationInfos = Lists.newArrayList(agg1, agg2);
+
+    SelectionSort sel = new SelectionSort();
+    sel.setColumn("sum(m1)");
+    sel.setIsAsc(false);
+    List<SelectionSort> orderBy = Lists.newArrayList(sel);
+
+    ExecutorService executorService = Executors.newFixedThreadPool(4);
+    try {
+      // With order by, the partitions are merged in order and trimmed to the capacity
+      IndexedTable expectedTable = new ConcurrentIndexedTable(dataSchema, aggregationInfos, orderBy, 10);
+      IndexedTable partitionedTable =
+          new PartitionedIndexedTable(dataSchema, aggregationInfos, orderBy, 10, 4, executorService);
+      upsertInParallel(executorService, expectedTable, partitionedTable);
+      expectedTable.finish(true);
+      partitionedTable.finish(true);
+      Assert.assertEquals(partitionedTable.size(), 10);
+      Iterator<Record> expectedIterator = expectedTable.iterator();
+      Iterator<Record> iterator = partitionedTable.iterator();
+      while (expectedIterator.hasNext()) {
+        Assert.assertTrue(iterator.hasNext());
+        Assert.assertEquals(iterator.next().getValues(), expectedIterator.next().getValues());
+      }
+      Assert.assertFalse(iterator.hasNext());
+
+      // Without order by, the merged groups are capped at the capacity
+      partitionedTable = new PartitionedIndexedTable(dataSchema, aggregationInfos, null, 10, 4, executorService);
+      for (int i = 0; i < 100; i++) {
+        partitionedTable.upsert(getRecord(new Object[]{"k" + i, i, (double) i, (double) i}));
+        partitionedTable.upsert(getRecord(new Object[]{"k" + i, i, (double) i, (double) i + 1}));
+      }
+      partitionedTable.finish(false);
+      Assert.assertEquals(partitionedTable.size(), 10);
+      iterator = partitionedTable.iterator();
+      int numRecords = 0;
+      while (iterator.hasNext()) {
+        Object[] values = iterator.next().getValues();
+        int id = (int) values[1];
+        Assert.assertEquals(values[2], 2d * id);
+        numRecords++;
+      }
+      Assert.assertEquals(numRecords, 10);
+    } finally {
+      executorService.shutdown();
+    }
+  }
+
+  /**
+   * Upserts 100 groups twice from 2 threads, where group i has sum(m1) = 2 * i and max(m2) = i + 1.
+   */
+  private void upsertInParallel(ExecutorService executorService, IndexedTable... indexedTables)
+      throws InterruptedException, ExecutionException {
+    Callable<Void> callable = () -> {
+      for (int i = 0; i < 100; i++) {
+        for (IndexedTable indexedTable : indexedTables) {
+          indexedTable.upsert(getRecord(new Object[]{"k" + i, i, (double) i, (double) i}));
+        }
+      }
+      return null;
+    };
+    Callable<Void> callable2 = () -> {
+      for (int i = 99; i >= 0; i--) {
+        for (IndexedTable indexedTable : indexedTables) {
+          indexedTable.upsert(getRecord(new Object[]{"k" + i, i, (double) i, (double) i + 1}));
+        }
+      }
+      return null;
+    };
+    for (Future<Void> future : executorService.invokeAll(Lists.newArrayList(callable, callable2))) {
+      future.get();
+    }
+  }
+
   @Test
   public void testNoMoreNewRecords() {
     DataSchema dataSchema = new DataSchema(new String[]{"d1", "d2", "d3", "sum(m1)", "max(m2)"},
@@ -20,7 +20,9 @@ package org.apache.pinot.core.indexsegment.mutable;
 
 import java.io.File;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
 import org.apache.commons.io.FileUtils;
 import org.apache.pinot.common.segment.ReadMode;
 import org.apache.pinot.common.utils.CommonConstants;
@@ -53,9 +55,11 @@ import org.testng.annotations.Test;
 public class MutableSegmentImplTest {
   private static final String AVRO_FILE = "data/test_data-mv.avro";
   private static final File TEMP_DIR = new File(FileUtils.getTempDirectory(), "MutableSegmentImplTest");
+  private static final int BATCH_SIZE = 100;
 
   private Schema _schema;
   private MutableSegmentImpl _mutableSegmentImpl;
+  private MutableSegmentImpl _batchMutableSegmentImpl;
   private ImmutableSegment _immutableSegment;
   private long _lastIndexedTs;
   private long _lastIngestionTimeMs;
@@ -94,6 +98,21 @@ public class MutableSegmentImplTest {
         _lastIndexedTs = System.currentTimeMillis();
       }
     }
+
+    _batchMutableSegmentImpl = MutableSegmentImplTestUtils
+        .createMutableSegmentImpl(_schema, Collections.emptySet(), Collections.emptySet(), Collections.emptySet(),
+            false);
+    try (RecordReader recordReader = RecordReaderFactory
+        .getRecordReader(FileFormat.AVRO, avroFile, _schema.getColumnNames(), null)) {
+      List<GenericRow> rows = new ArrayList<>(BATCH_SIZE);
+      while (recordReader.hasNext()) {
+        rows.add(recordReader.next());
+        if (rows.size() == BATCH_SIZE || !recordReader.hasNext()) {
+          _batchMutableSegmentImpl.index(rows, defaultMetadata);
+          rows = new ArrayList<>(BATCH_SIZE);
+        }
+      }
+    }
   }
 
   @Test
@@ -192,6 +211,35 @@ public class MutableSegmentImplTest {
     }
   }
 
+  @Test
+  public void testBatchIndex() {
+    Assert.assertEquals(_batchMutableSegmentImpl.getNumDocsIndexed(), _mutableSegmentImpl.getNumDocsIndexed());
+    Assert.assertEquals(_batchMutableSegmentImpl.getSegmentMetadata().getLatestIngestionTimestamp(),
+        _lastIngestionTimeMs);
+
+    for (String column : _mutableSegmentImpl.getPhysicalColumnNames()) {
+      Assert.assertEquals(_batchMutableSegmentImpl.getDataSource(column).getDataSourceMetadata().getNumDocs(),
+          _mutableSegmentImpl.getDataSource(column).getDataSourceMetadata().getNumDocs());
+    }
+
+    int numDocs = _mutableSegmentImpl.getNumDocsIndexed();
+    GenericRow expectedRow = new GenericRow();
+    GenericRow actualRow = new GenericRow();
+    for (int docId = 0; docId < numDocs; docId++) {
+      _mutableSegmentImpl.getRecord(docId, expectedRow);
+      _batchMutableSegmentImpl.getRecord(docId, actualRow);
+      for (String column : _mutableSegmentImpl.getPhysicalColumnNames()) {
+        Object expectedValue = expectedRow.getValue(column);
+        Object actualValue = actualRow.getValue(column);
+        if (expectedValue instanceof Object[]) {
+          Assert.assertEquals((Object[]) actualValue, (Object[]) expectedValue);
+        } else {
+          Assert.assertEquals(actualValue, expectedValue);
+        }
+      }
+    }
+  }
+
   @AfterClass
   public void tearDown() {
     FileUtils.deleteQuietly(TEMP_DIR);
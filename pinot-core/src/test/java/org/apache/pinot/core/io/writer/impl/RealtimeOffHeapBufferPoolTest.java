@@ -0,0 +1,70 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.core.io.writer.impl;
+
+import com.yammer.metrics.core.MetricsRegistry;
+import org.apache.pinot.common.metrics.ServerMetrics;
+import org.apache.pinot.core.segment.memory.PinotDataBuffer;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+
+
+public class RealtimeOffHeapBufferPoolTest {
+
+  @Test
+  public void testSizeClass() {
+    assertEquals(RealtimeOffHeapBufferPool.getSizeClass(1), 4096);
+    assertEquals(RealtimeOffHeapBufferPool.getSizeClass(4096), 4096);
+    assertEquals(RealtimeOffHeapBufferPool.getSizeClass(4097), 5120);
+    assertEquals(RealtimeOffHeapBufferPool.getSizeClass(6000), 6144);
+    assertEquals(RealtimeOffHeapBufferPool.getSizeClass(8192), 8192);
+    assertEquals(RealtimeOffHeapBufferPool.getSizeClass(1_000_000), 1_048_576);
+    assertEquals(RealtimeOffHeapBufferPool.getSizeClass(3L << 30), 3L << 30);
+  }
+
+  @Test
+  public void testRecycleAcrossSegments()
+      throws Exception {
+    RealtimeOffHeapBufferPool bufferPool = new RealtimeOffHeapBufferPool(600_000);
+    ServerMetrics serverMetrics = new ServerMetrics(new MetricsRegistry());
+
+    DirectMemoryManager memoryManager1 = new DirectMemoryManager("segment1", serverMetrics, bufferPool);
+    PinotDataBuffer buffer1 = memoryManager1.allocate(5000, "col1");
+    assertEquals(buffer1.size(), 5000);
+    buffer1.putLong(0, 123L);
+    memoryManager1.allocate(600_000, "col2");
+    assertEquals(memoryManager1.getTotalAllocatedBytes(), 605_000);
+    assertEquals(bufferPool.getNumMisses(), 2);
+    memoryManager1.close();
+    // The second buffer (655360 bytes after rounding) does not fit in the pool
+    assertEquals(bufferPool.getSizeInBytes(), 5120);
+
+    DirectMemoryManager memoryManager2 = new DirectMemoryManager("segment2", serverMetrics, bufferPool);
+    PinotDataBuffer buffer2 = memoryManager2.allocate(4500, "col1");
+    assertEquals(buffer2.size(), 4500);
+    // Recycled buffers are zeroed
+    assertEquals(buffer2.getLong(0), 0L);
+    assertEquals(bufferPool.getNumHits(), 1);
+    assertEquals(bufferPool.getSizeInBytes(), 0);
+    assertEquals(bufferPool.getHitRatePercent(), 33);
+    memoryManager2.close();
+    assertEquals(bufferPool.getSizeInBytes(), 5120);
+  }
+}
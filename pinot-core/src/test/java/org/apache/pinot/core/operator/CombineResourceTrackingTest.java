@@ -0,0 +1,135 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.core.operator;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.apache.pinot.core.common.Block;
+import org.apache.pinot.core.common.Operator;
+import org.apache.pinot.core.operator.blocks.IntermediateResultsBlock;
+import org.apache.pinot.core.plan.maker.InstancePlanMakerImplV2;
+import org.apache.pinot.core.query.aggregation.AggregationFunctionContext;
+import org.apache.pinot.core.query.aggregation.groupby.AggregationGroupByResult;
+import org.apache.pinot.core.query.request.context.QueryCancellationToken;
+import org.apache.pinot.core.query.request.context.QueryResourceTracker;
+import org.apache.pinot.pql.parsers.Pql2Compiler;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertTrue;
+
+
+/**
+ * Tests that the resource usage of all the segments is accounted to the {@link QueryResourceTracker} when the combine
+ * operator returns, including the last segment processed by each thread.
+ */
+public class CombineResourceTrackingTest {
+  private static final int NUM_OPERATORS = 4;
+  private static final int NUM_THREADS = NUM_OPERATORS;
+  private static final int NUM_BYTES_ALLOCATED_PER_OPERATOR = 1 << 20;
+  private static final long TIMEOUT_MS = 10_000L;
+  private static final Pql2Compiler COMPILER = new Pql2Compiler();
+
+  private ExecutorService _executorService;
+
+  @BeforeClass
+  public void setUp() {
+    _executorService = Executors.newFixedThreadPool(NUM_THREADS);
+  }
+
+  @Test
+  public void testCombineOperator() {
+    testCombineOperator(new CombineOperator(getOperators(), _executorService, TIMEOUT_MS,
+        COMPILER.compileToBrokerRequest("SELECT COUNT(*) FROM table"), NUM_THREADS));
+  }
+
+  @Test
+  public void testCombineGroupByOperator() {
+    testCombineOperator(new CombineGroupByOperator(getOperators(),
+        COMPILER.compileToBrokerRequest("SELECT COUNT(*) FROM table GROUP BY column"), _executorService, TIMEOUT_MS,
+        InstancePlanMakerImplV2.DEFAULT_NUM_GROUPS_LIMIT, NUM_THREADS));
+  }
+
+  @Test
+  public void testCombineGroupByOrderByOperator() {
+    testCombineOperator(new CombineGroupByOrderByOperator(getOperators(),
+        COMPILER.compileToBrokerRequest("SELECT COUNT(*) FROM table GROUP BY column"), _executorService, TIMEOUT_MS,
+        NUM_THREADS));
+  }
+
+  private void testCombineOperator(BaseOperator combineOperator) {
+    QueryResourceTracker resourceTracker = new QueryResourceTracker(new QueryCancellationToken(), -1, -1);
+    QueryResourceTracker.register(resourceTracker);
+    try {
+      combineOperator.nextBlock();
+      // Only the usage of the worker threads has been accounted before the main thread un-registers the tracker, and
+      // each worker thread processes exactly one segment
+      if (isThreadAllocatedMemorySupported()) {
+        assertTrue(resourceTracker.getAllocatedBytes() >= NUM_OPERATORS * NUM_BYTES_ALLOCATED_PER_OPERATOR);
+      }
+      assertTrue(resourceTracker.getCpuTimeNs() >= 0);
+    } finally {
+      QueryResourceTracker.unregister();
+    }
+  }
+
+  private static boolean isThreadAllocatedMemorySupported() {
+    ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+    return threadMXBean instanceof com.sun.management.ThreadMXBean
+        && ((com.sun.management.ThreadMXBean) threadMXBean).isThreadAllocatedMemorySupported();
+  }
+
+  @AfterClass
+  public void tearDown() {
+    _executorService.shutdown();
+  }
+
+  private List<Operator> getOperators() {
+    List<Operator> operators = new ArrayList<>(NUM_OPERATORS);
+    for (int i = 0; i < NUM_OPERATORS; i++) {
+      operators.add(new AllocatingOperator());
+    }
+    return operators;
+  }
+
+  private static class AllocatingOperator extends BaseOperator {
+    byte[] _bytes;
+
+    @Override
+    protected Block getNextBlock() {
+      _bytes = new byte[NUM_BYTES_ALLOCATED_PER_OPERATOR];
+      return new IntermediateResultsBlock(new AggregationFunctionContext[0], (AggregationGroupByResult) null);
+    }
+
+    @Override
+    public String getOperatorName() {
+      return "AllocatingOperator";
+    }
+
+    @Override
+    public ExecutionStatistics getExecutionStatistics() {
+      return new ExecutionStatistics();
+    }
+  }
+}
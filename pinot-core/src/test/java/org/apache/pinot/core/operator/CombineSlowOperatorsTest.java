@@ -84,6 +84,23 @@ public class CombineSlowOperatorsTest {
     testCombineOperator(operators, combineGroupByOrderByOperator);
   }
 
+  @Test
+  public void testCombineGroupByOperatorWithLimitedThreads() {
+    List<Operator> operators = getOperators();
+    CombineGroupByOperator combineGroupByOperator = new CombineGroupByOperator(operators,
+        COMPILER.compileToBrokerRequest("SELECT COUNT(*) FROM table GROUP BY column"), _executorService, TIMEOUT_MS,
+        InstancePlanMakerImplV2.DEFAULT_NUM_GROUPS_LIMIT, 1);
+    testCombineOperator(operators, combineGroupByOperator);
+  }
+
+  @Test
+  public void testCombineGroupByOrderByOperatorWithLimitedThreads() {
+    List<Operator> operators = getOperators();
+    CombineGroupByOrderByOperator combineGroupByOrderByOperator = new CombineGroupByOrderByOperator(operators,
+        COMPILER.compileToBrokerRequest("SELECT COUNT(*) FROM table GROUP BY column"), _executorService, TIMEOUT_MS, 1);
+    testCombineOperator(operators, combineGroupByOrderByOperator);
+  }
+
   /**
    * NOTE: It is hard to test the logger behavior, but only one error message about the query timeout should be logged
    *       for each query.
@@ -19,9 +19,21 @@
 package org.apache.pinot.core.operator.filter;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import org.apache.pinot.core.common.BlockDocIdIterator;
 import org.apache.pinot.core.common.Constants;
+import org.apache.pinot.core.common.DataSource;
+import org.apache.pinot.core.common.predicate.EqPredicate;
+import org.apache.pinot.core.indexsegment.mutable.MutableSegmentImpl;
+import org.apache.pinot.core.indexsegment.mutable.MutableSegmentImplTestUtils;
+import org.apache.pinot.core.operator.docidsets.FilterBlockDocIdSet;
+import org.apache.pinot.core.operator.filter.predicate.PredicateEvaluatorProvider;
+import org.apache.pinot.spi.data.FieldSpec;
+import org.apache.pinot.spi.data.Schema;
+import org.apache.pinot.spi.data.readers.GenericRow;
+import org.apache.pinot.spi.stream.StreamMessageMetadata;
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
@@ -107,4 +119,57 @@ public class AndFilterOperatorTest {
     Assert.assertEquals(iterator.next(), 28);
     Assert.assertEquals(iterator.next(), Constants.EOF);
   }
+
+  @Test
+  public void testIntersectionWithScanOnMutableSegment() {
+    String invertedIndexColumn = "invertedIndexColumn";
+    String scanColumn = "scanColumn";
+    Schema schema = new Schema.SchemaBuilder().addSingleValueDimension(invertedIndexColumn, FieldSpec.DataType.INT)
+        .addSingleValueDimension(scanColumn, FieldSpec.DataType.INT).build();
+    MutableSegmentImpl mutableSegment = MutableSegmentImplTestUtils
+        .createMutableSegmentImpl(schema, Collections.emptySet(), Collections.emptySet(),
+            Collections.singleton(invertedIndexColumn), false);
+    int numDocs = 1000;
+    StreamMessageMetadata metadata = new StreamMessageMetadata(System.currentTimeMillis());
+    for (int i = 0; i < numDocs; i++) {
+      GenericRow row = new GenericRow();
+      row.putValue(invertedIndexColumn, i % 10);
+      row.putValue(scanColumn, i % 7);
+      mutableSegment.index(row, metadata);
+    }
+
+    try {
+      // invertedIndexColumn = 3 AND scanColumn = 5
+      DataSource invertedIndexDataSource = mutableSegment.getDataSource(invertedIndexColumn);
+      BaseFilterOperator invertedIndexFilterOperator = FilterOperatorUtils.getLeafFilterOperator(
+          PredicateEvaluatorProvider.getPredicateEvaluator(
+              new EqPredicate(invertedIndexColumn, Collections.singletonList("3")),
+              invertedIndexDataSource.getDictionary(), FieldSpec.DataType.INT), invertedIndexDataSource, numDocs);
+      Assert.assertTrue(invertedIndexFilterOperator instanceof BitmapBasedFilterOperator);
+      DataSource scanDataSource = mutableSegment.getDataSource(scanColumn);
+      BaseFilterOperator scanFilterOperator = FilterOperatorUtils.getLeafFilterOperator(
+          PredicateEvaluatorProvider.getPredicateEvaluator(new EqPredicate(scanColumn, Collections.singletonList("5")),
+              scanDataSource.getDictionary(), FieldSpec.DataType.INT), scanDataSource, numDocs);
+      Assert.assertTrue(scanFilterOperator instanceof ScanBasedFilterOperator);
+
+      AndFilterOperator andOperator =
+          new AndFilterOperator(Arrays.asList(scanFilterOperator, invertedIndexFilterOperator));
+      FilterBlockDocIdSet blockDocIdSet = andOperator.nextBlock().getBlockDocIdSet();
+      BlockDocIdIterator iterator = blockDocIdSet.iterator();
+      int numMatchingInvertedIndex = 0;
+      for (int i = 0; i < numDocs; i++) {
+        if (i % 10 == 3) {
+          numMatchingInvertedIndex++;
+          if (i % 7 == 5) {
+            Assert.assertEquals(iterator.next(), i);
+          }
+        }
+      }
+      Assert.assertEquals(iterator.next(), Constants.EOF);
+      // Scan should only be applied on the documents matching the inverted index
+      Assert.assertEquals(blockDocIdSet.getNumEntriesScannedInFilter(), numMatchingInvertedIndex);
+    } finally {
+      mutableSegment.destroy();
+    }
+  }
 }
@@ -0,0 +1,128 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.core.query.executor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+import org.apache.pinot.common.metrics.ServerMeter;
+import org.apache.pinot.common.metrics.ServerMetrics;
+import org.apache.pinot.common.utils.DataSchema;
+import org.apache.pinot.core.operator.ExecutionStatistics;
+import org.apache.pinot.core.operator.blocks.IntermediateResultsBlock;
+import org.apache.pinot.core.query.aggregation.AggregationFunctionContext;
+import org.apache.pinot.core.query.aggregation.function.customobject.AvgPair;
+import org.testng.annotations.Test;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+
+public class SegmentResultCacheTest {
+  private static final ExecutionStatistics EXECUTION_STATISTICS = new ExecutionStatistics(10, 20, 30, 100);
+  private static final DataSchema DATA_SCHEMA =
+      new DataSchema(new String[]{"col"}, new DataSchema.ColumnDataType[]{DataSchema.ColumnDataType.INT});
+
+  @Test
+  public void testAggregationResult() {
+    ServerMetrics serverMetrics = mock(ServerMetrics.class);
+    SegmentResultCache cache = new SegmentResultCache(1024 * 1024, serverMetrics);
+    String key = SegmentResultCache.getKey("testTable_OFFLINE", "testSegment", "12345", "query");
+    List<Object> aggregationResult = new ArrayList<>(Arrays.asList(new AvgPair(10.0, 2L), 5L));
+    cache.put(key, new IntermediateResultsBlock(new AggregationFunctionContext[0], aggregationResult, false),
+        EXECUTION_STATISTICS);
+    // Modifying the original result should not affect the cached one
+    ((AvgPair) aggregationResult.get(0)).apply(100.0, 1L);
+
+    assertNull(cache.get(SegmentResultCache.getKey("testTable_OFFLINE", "testSegment", "54321", "query")));
+    SegmentResultCache.CachedResult cachedResult = cache.get(key);
+    assertNotNull(cachedResult);
+    verify(serverMetrics).addMeteredGlobalValue(ServerMeter.SEGMENT_RESULT_CACHE_HITS, 1L);
+    verify(serverMetrics).addMeteredGlobalValue(ServerMeter.SEGMENT_RESULT_CACHE_MISSES, 1L);
+    assertEquals(cachedResult.getExecutionStatistics(), EXECUTION_STATISTICS);
+    for (int i = 0; i < 2; i++) {
+      List<Object> cachedAggregationResult = cachedResult.toResultsBlock().getAggregationResult();
+      AvgPair avgPair = (AvgPair) cachedAggregationResult.get(0);
+      assertEquals(avgPair.getSum(), 10.0);
+      assertEquals(avgPair.getCount(), 2L);
+      assertEquals(cachedAggregationResult.get(1), 5L);
+      // Modifying the returned result should not affect the cached one
+      avgPair.apply(100.0, 1L);
+    }
+  }
+
+  @Test
+  public void testSelectionResult() {
+    SegmentResultCache cache = new SegmentResultCache(1024 * 1024, mock(ServerMetrics.class));
+    PriorityQueue<Object[]> rows = new PriorityQueue<>(Collections.reverseOrder((o1, o2) -> (int) o1[0] - (int) o2[0]));
+    rows.add(new Object[]{1});
+    rows.add(new Object[]{3});
+    cache.put("key", new IntermediateResultsBlock(DATA_SCHEMA, rows), EXECUTION_STATISTICS);
+    rows.add(new Object[]{5});
+
+    Collection<Object[]> cachedRows = cache.get("key").toResultsBlock().getSelectionResult();
+    assertTrue(cachedRows instanceof PriorityQueue);
+    assertNotSame(cachedRows, rows);
+    assertEquals(cachedRows.size(), 2);
+    // The ordering of the rows should be kept
+    assertEquals(((PriorityQueue<Object[]>) cachedRows).peek()[0], 3);
+    cachedRows.add(new Object[]{7});
+    assertEquals(cache.get("key").toResultsBlock().getSelectionResult().size(), 2);
+  }
+
+  @Test
+  public void testEviction() {
+    IntermediateResultsBlock resultsBlock =
+        new IntermediateResultsBlock(DATA_SCHEMA, Collections.singletonList(new Object[]{1}));
+    ServerMetrics serverMetrics = mock(ServerMetrics.class);
+    SegmentResultCache cache = new SegmentResultCache(1024 * 1024, serverMetrics);
+    cache.put("key0", resultsBlock, EXECUTION_STATISTICS);
+    long entrySizeInBytes = cache.getSizeInBytes();
+    assertTrue(entrySizeInBytes > 0);
+
+    // Size of the key should be counted
+    cache.put("longerKey0", resultsBlock, EXECUTION_STATISTICS);
+    assertEquals(cache.getSizeInBytes(), 2 * entrySizeInBytes + 2 * ("longerKey0".length() - "key0".length()));
+
+    // Cache fits 2 entries
+    cache = new SegmentResultCache(2 * entrySizeInBytes, serverMetrics);
+    cache.put("key1", resultsBlock, EXECUTION_STATISTICS);
+    cache.put("key2", resultsBlock, EXECUTION_STATISTICS);
+    // Access key1 so that key2 is the least recently used one
+    assertNotNull(cache.get("key1"));
+    cache.put("key3", resultsBlock, EXECUTION_STATISTICS);
+    assertEquals(cache.size(), 2);
+    assertEquals(cache.getSizeInBytes(), 2 * entrySizeInBytes);
+    assertNotNull(cache.get("key1"));
+    assertNull(cache.get("key2"));
+    assertNotNull(cache.get("key3"));
+
+    // Result with exceptions should not be cached
+    cache.put("key4", new IntermediateResultsBlock(new RuntimeException()), EXECUTION_STATISTICS);
+    assertNull(cache.get("key4"));
+  }
+}
@@ -0,0 +1,87 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.core.query.request.context;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.apache.pinot.core.util.trace.TraceCallable;
+import org.apache.pinot.core.util.trace.TraceRunnable;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+
+public class QueryCancellationTokenTest {
+
+  @Test
+  public void testRegisterAndCancel() {
+    assertNull(QueryCancellationToken.get());
+    assertFalse(QueryCancellationToken.isCurrentQueryCancelled());
+
+    QueryCancellationToken cancellationToken = new QueryCancellationToken();
+    QueryCancellationToken.register(cancellationToken);
+    assertSame(QueryCancellationToken.get(), cancellationToken);
+    assertFalse(QueryCancellationToken.isCurrentQueryCancelled());
+    cancellationToken.cancel();
+    assertTrue(cancellationToken.isCancelled());
+    assertTrue(QueryCancellationToken.isCurrentQueryCancelled());
+
+    QueryCancellationToken.unregister();
+    assertNull(QueryCancellationToken.get());
+    assertFalse(QueryCancellationToken.isCurrentQueryCancelled());
+  }
+
+  @Test
+  public void testPropagationToWorkerThreads()
+      throws Exception {
+    ExecutorService executorService = Executors.newSingleThreadExecutor();
+    try {
+      QueryCancellationToken cancellationToken = new QueryCancellationToken();
+      QueryCancellationToken.register(cancellationToken);
+      try {
+        // Token should be registered on the worker thread while running the job
+        assertSame(executorService.submit(new TraceCallable<QueryCancellationToken>() {
+          @Override
+          public QueryCancellationToken callJob() {
+            return QueryCancellationToken.get();
+          }
+        }).get(), cancellationToken);
+        cancellationToken.cancel();
+        boolean[] cancelled = new boolean[1];
+        executorService.submit(new TraceRunnable() {
+          @Override
+          public void runJob() {
+            cancelled[0] = QueryCancellationToken.isCurrentQueryCancelled();
+          }
+        }).get();
+        assertTrue(cancelled[0]);
+      } finally {
+        QueryCancellationToken.unregister();
+      }
+
+      // Token should be un-registered from the worker thread after the job
+      assertNull(executorService.submit(QueryCancellationToken::get).get());
+    } finally {
+      executorService.shutdown();
+    }
+  }
+}
@@ -0,0 +1,82 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.core.query.request.context;
+
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+
+public class QueryResourceTrackerTest {
+
+  @Test
+  public void testAllocatedBytesLimit()
+      throws Exception {
+    QueryCancellationToken cancellationToken = new QueryCancellationToken();
+    QueryResourceTracker resourceTracker = new QueryResourceTracker(cancellationToken, -1, 1L);
+    QueryResourceTracker.register(resourceTracker);
+    assertSame(QueryResourceTracker.get(), resourceTracker);
+    // Allocate some bytes so that the limit is exceeded (if thread allocated memory measurement is supported)
+    long[] array = new long[1024];
+    assertEquals(array.length, 1024);
+    QueryResourceTracker.unregister();
+    assertNull(QueryResourceTracker.get());
+
+    if (resourceTracker.getAllocatedBytes() > 1L) {
+      assertTrue(resourceTracker.isLimitExceeded());
+      assertTrue(cancellationToken.isCancelled());
+    } else {
+      assertFalse(resourceTracker.isLimitExceeded());
+    }
+  }
+
+  @Test
+  public void testUsageAggregatedAcrossThreads()
+      throws Exception {
+    QueryCancellationToken cancellationToken = new QueryCancellationToken();
+    QueryResourceTracker resourceTracker = new QueryResourceTracker(cancellationToken, -1, -1);
+    Thread[] threads = new Thread[2];
+    long[][] arrays = new long[threads.length][];
+    for (int i = 0; i < threads.length; i++) {
+      int index = i;
+      threads[i] = new Thread(() -> {
+        QueryResourceTracker.register(resourceTracker);
+        try {
+          arrays[index] = new long[1024];
+        } finally {
+          QueryResourceTracker.unregister();
+        }
+      });
+      threads[i].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    assertTrue(resourceTracker.getCpuTimeNs() >= 0);
+    assertTrue(resourceTracker.getAllocatedBytes() >= 0);
+    // No limit configured
+    assertFalse(resourceTracker.isLimitExceeded());
+    assertFalse(cancellationToken.isCancelled());
+  }
+}
@@ -39,6 +39,7 @@ import org.apache.commons.configuration.Configuration;
 import org.apache.commons.configuration.PropertiesConfiguration;
 import org.apache.pinot.common.exception.QueryException;
 import org.apache.pinot.common.metrics.ServerMetrics;
+import org.apache.pinot.common.utils.CommonConstants;
 import org.apache.pinot.common.utils.DataTable;
 import org.apache.pinot.core.common.datatable.DataTableFactory;
 import org.apache.pinot.core.common.datatable.DataTableImplV2;
@@ -294,6 +295,11 @@ public class PrioritySchedulerTest {
     public void shutDown() {
     }
 
+    @Override
+    public long getDefaultTimeoutMs() {
+      return CommonConstants.Server.DEFAULT_QUERY_EXECUTOR_TIMEOUT_MS;
+    }
+
     @Nonnull
     @Override
     public DataTable processQuery(@Nonnull ServerQueryRequest queryRequest, @Nonnull ExecutorService executorService) {
@@ -0,0 +1,228 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.core.query.scheduler;
+
+import com.yammer.metrics.core.MetricsRegistry;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import org.apache.pinot.common.exception.QueryException;
+import org.apache.pinot.common.metrics.ServerMetrics;
+import org.apache.pinot.common.utils.CommonConstants;
+import org.apache.pinot.common.utils.DataTable;
+import org.apache.pinot.core.common.datatable.DataTableImplV2;
+import org.apache.pinot.core.query.request.ServerQueryRequest;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+
+public class QueryCoalescerTest {
+  private static final ServerMetrics SERVER_METRICS = new ServerMetrics(new MetricsRegistry());
+  private static final ExecutorService EXECUTOR_SERVICE = Executors.newCachedThreadPool();
+  private static final long DEFAULT_TIMEOUT_MS = 10_000L;
+
+  @AfterClass
+  public void tearDown() {
+    EXECUTOR_SERVICE.shutdownNow();
+  }
+
+  @Test
+  public void testCoalesceIdenticalQueries()
+      throws Exception {
+    QueryCoalescer queryCoalescer = new QueryCoalescer(SERVER_METRICS, DEFAULT_TIMEOUT_MS);
+    AtomicInteger numExecutions = new AtomicInteger();
+    CountDownLatch executionStarted = new CountDownLatch(1);
+    CountDownLatch finishExecution = new CountDownLatch(1);
+    Function<ServerQueryRequest, DataTable> queryProcessor = request -> {
+      numExecutions.incrementAndGet();
+      executionStarted.countDown();
+      try {
+        finishExecution.await();
+      } catch (InterruptedException e) {
+        throw new RuntimeException(e);
+      }
+      DataTable dataTable = new DataTableImplV2();
+      dataTable.getMetadata().put("key", "value");
+      return dataTable;
+    };
+
+    ServerQueryRequest queryRequest = TestHelper.createServerQueryRequest("testTable_OFFLINE", SERVER_METRICS);
+    Future<DataTable> leader =
+        EXECUTOR_SERVICE.submit(() -> queryCoalescer.processQuery(queryRequest, queryProcessor));
+    assertTrue(executionStarted.await(10, TimeUnit.SECONDS));
+    Future<DataTable> follower = EXECUTOR_SERVICE.submit(() -> queryCoalescer
+        .processQuery(TestHelper.createServerQueryRequest("testTable_OFFLINE", SERVER_METRICS), queryProcessor));
+    // Wait for the follower to join the query in flight
+    Thread.sleep(500L);
+    assertFalse(follower.isDone());
+    finishExecution.countDown();
+
+    DataTable leaderDataTable = leader.get(10, TimeUnit.SECONDS);
+    DataTable followerDataTable = follower.get(10, TimeUnit.SECONDS);
+    assertEquals(numExecutions.get(), 1);
+    assertNotSame(leaderDataTable, followerDataTable);
+    assertEquals(followerDataTable.getMetadata().get("key"), "value");
+    // Metadata should be independent for each request
+    leaderDataTable.getMetadata().put(DataTable.REQUEST_ID_METADATA_KEY, "1");
+    followerDataTable.getMetadata().put(DataTable.REQUEST_ID_METADATA_KEY, "2");
+    assertEquals(leaderDataTable.getMetadata().get(DataTable.REQUEST_ID_METADATA_KEY), "1");
+    assertEquals(queryCoalescer.getNumInFlightQueries(), 0);
+
+    // Query should be executed again once the query in flight finishes
+    queryCoalescer.processQuery(queryRequest, queryProcessor);
+    assertEquals(numExecutions.get(), 2);
+  }
+
+  @Test
+  public void testDifferentQueries()
+      throws Exception {
+    QueryCoalescer queryCoalescer = new QueryCoalescer(SERVER_METRICS, DEFAULT_TIMEOUT_MS);
+    AtomicInteger numExecutions = new AtomicInteger();
+    CountDownLatch executionStarted = new CountDownLatch(2);
+    Function<ServerQueryRequest, DataTable> queryProcessor = request -> {
+      numExecutions.incrementAndGet();
+      executionStarted.countDown();
+      try {
+        // Both queries should be in flight at the same time
+        assertTrue(executionStarted.await(10, TimeUnit.SECONDS));
+      } catch (InterruptedException e) {
+        throw new RuntimeException(e);
+      }
+      return new DataTableImplV2();
+    };
+
+    Future<DataTable> future1 = EXECUTOR_SERVICE.submit(() -> queryCoalescer
+        .processQuery(TestHelper.createServerQueryRequest("testTable_OFFLINE", SERVER_METRICS), queryProcessor));
+    Future<DataTable> future2 = EXECUTOR_SERVICE.submit(() -> queryCoalescer
+        .processQuery(TestHelper.createServerQueryRequest("testTable_REALTIME", SERVER_METRICS), queryProcessor));
+    future1.get(10, TimeUnit.SECONDS);
+    future2.get(10, TimeUnit.SECONDS);
+    assertEquals(numExecutions.get(), 2);
+  }
+
+  @Test
+  public void testDoNotShareExceptions()
+      throws Exception {
+    QueryCoalescer queryCoalescer = new QueryCoalescer(SERVER_METRICS, DEFAULT_TIMEOUT_MS);
+    AtomicInteger numExecutions = new AtomicInteger();
+    CountDownLatch executionStarted = new CountDownLatch(1);
+    CountDownLatch finishExecution = new CountDownLatch(1);
+    Function<ServerQueryRequest, DataTable> queryProcessor = request -> {
+      // Only the first execution fails
+      if (numExecutions.incrementAndGet() == 1) {
+        executionStarted.countDown();
+        try {
+          finishExecution.await();
+        } catch (InterruptedException e) {
+          throw new RuntimeException(e);
+        }
+        DataTable dataTable = new DataTableImplV2();
+        dataTable.addException(QueryException.EXECUTION_TIMEOUT_ERROR);
+        return dataTable;
+      } else {
+        return new DataTableImplV2();
+      }
+    };
+
+    Future<DataTable> leader = EXECUTOR_SERVICE.submit(() -> queryCoalescer
+        .processQuery(TestHelper.createServerQueryRequest("testTable_OFFLINE", SERVER_METRICS), queryProcessor));
+    assertTrue(executionStarted.await(10, TimeUnit.SECONDS));
+    Future<DataTable> follower = EXECUTOR_SERVICE.submit(() -> queryCoalescer
+        .processQuery(TestHelper.createServerQueryRequest("testTable_OFFLINE", SERVER_METRICS), queryProcessor));
+    // Wait for the follower to join the query in flight
+    Thread.sleep(500L);
+    assertFalse(follower.isDone());
+    finishExecution.countDown();
+
+    assertTrue(hasException(leader.get(10, TimeUnit.SECONDS)));
+    // Follower should execute the query itself instead of getting the exception from the leader
+    assertFalse(hasException(follower.get(10, TimeUnit.SECONDS)));
+    assertEquals(numExecutions.get(), 2);
+  }
+
+  @Test
+  public void testFollowerTimeoutAndCancellation()
+      throws Exception {
+    QueryCoalescer queryCoalescer = new QueryCoalescer(SERVER_METRICS, DEFAULT_TIMEOUT_MS);
+    CountDownLatch executionStarted = new CountDownLatch(1);
+    CountDownLatch finishExecution = new CountDownLatch(1);
+    DataTable followerDataTable = new DataTableImplV2();
+    Function<ServerQueryRequest, DataTable> queryProcessor = request -> {
+      if (executionStarted.getCount() == 0) {
+        // Follower falls back to the query processor, which returns the timeout or cancellation response
+        return followerDataTable;
+      }
+      executionStarted.countDown();
+      try {
+        finishExecution.await();
+      } catch (InterruptedException e) {
+        throw new RuntimeException(e);
+      }
+      return new DataTableImplV2();
+    };
+
+    Future<DataTable> leader =
+        EXECUTOR_SERVICE.submit(() -> queryCoalescer.processQuery(createServerQueryRequest(10_000L), queryProcessor));
+    assertTrue(executionStarted.await(10, TimeUnit.SECONDS));
+
+    // Follower with a shorter timeout should stop waiting once its own deadline is reached
+    assertSame(queryCoalescer.processQuery(createServerQueryRequest(200L), queryProcessor), followerDataTable);
+
+    // Cancelled follower should stop waiting
+    ServerQueryRequest cancelledRequest = createServerQueryRequest(10_000L);
+    Future<DataTable> cancelledFollower =
+        EXECUTOR_SERVICE.submit(() -> queryCoalescer.processQuery(cancelledRequest, queryProcessor));
+    Thread.sleep(500L);
+    assertFalse(cancelledFollower.isDone());
+    cancelledRequest.getCancellationToken().cancel();
+    assertSame(cancelledFollower.get(1, TimeUnit.SECONDS), followerDataTable);
+
+    assertFalse(leader.isDone());
+    finishExecution.countDown();
+    leader.get(10, TimeUnit.SECONDS);
+    assertEquals(queryCoalescer.getNumInFlightQueries(), 0);
+  }
+
+  private static ServerQueryRequest createServerQueryRequest(long timeoutMs) {
+    ServerQueryRequest queryRequest = TestHelper.createServerQueryRequest("testTable_OFFLINE", SERVER_METRICS);
+    queryRequest.getBrokerRequest().setQueryOptions(
+        Collections.singletonMap(CommonConstants.Broker.Request.QueryOptionKey.TIMEOUT_MS, Long.toString(timeoutMs)));
+    return queryRequest;
+  }
+
+  private static boolean hasException(DataTable dataTable) {
+    for (String key : dataTable.getMetadata().keySet()) {
+      if (key.startsWith(DataTable.EXCEPTION_METADATA_KEY)) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
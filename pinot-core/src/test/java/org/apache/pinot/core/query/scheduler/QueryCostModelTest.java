@@ -0,0 +1,75 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.core.query.scheduler;
+
+import com.yammer.metrics.core.MetricsRegistry;
+import org.apache.pinot.common.metrics.ServerMetrics;
+import org.apache.pinot.common.request.BrokerRequest;
+import org.apache.pinot.common.request.InstanceRequest;
+import org.apache.pinot.core.query.request.ServerQueryRequest;
+import org.apache.pinot.pql.parsers.Pql2Compiler;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotEquals;
+
+
+public class QueryCostModelTest {
+  private static final Pql2Compiler COMPILER = new Pql2Compiler();
+  private static final ServerMetrics METRICS = new ServerMetrics(new MetricsRegistry());
+
+  @Test
+  public void testFingerprint() {
+    // Queries only differ in filter values or predicate order should share the same fingerprint
+    assertEquals(QueryCostModel.getFingerprint(createQueryRequest("SELECT COUNT(*) FROM t WHERE a = 1 AND b > 2")),
+        QueryCostModel.getFingerprint(createQueryRequest("SELECT COUNT(*) FROM t WHERE b > 5 AND a = 3")));
+    assertNotEquals(QueryCostModel.getFingerprint(createQueryRequest("SELECT COUNT(*) FROM t WHERE a = 1")),
+        QueryCostModel.getFingerprint(createQueryRequest("SELECT COUNT(*) FROM t WHERE a > 1")));
+    assertNotEquals(QueryCostModel.getFingerprint(createQueryRequest("SELECT COUNT(*) FROM t WHERE a = 1")),
+        QueryCostModel.getFingerprint(createQueryRequest("SELECT SUM(a) FROM t WHERE a = 1")));
+    assertNotEquals(QueryCostModel.getFingerprint(createQueryRequest("SELECT SUM(a) FROM t GROUP BY b")),
+        QueryCostModel.getFingerprint(createQueryRequest("SELECT SUM(a) FROM t GROUP BY c")));
+  }
+
+  @Test
+  public void testExpectedCost() {
+    QueryCostModel costModel = new QueryCostModel(0.5, 100);
+    ServerQueryRequest cheapQuery = createQueryRequest("SELECT COUNT(*) FROM t WHERE a = 1");
+    ServerQueryRequest expensiveQuery = createQueryRequest("SELECT DISTINCTCOUNT(a) FROM t GROUP BY b");
+    assertEquals(costModel.getExpectedCostMs(cheapQuery), 0L);
+
+    costModel.recordCost(cheapQuery, 10L);
+    assertEquals(costModel.getExpectedCostMs(cheapQuery), 10L);
+    // Unseen fingerprint should use the table average
+    assertEquals(costModel.getExpectedCostMs(expensiveQuery), 10L);
+
+    costModel.recordCost(expensiveQuery, 1000L);
+    costModel.recordCost(expensiveQuery, 2000L);
+    assertEquals(costModel.getExpectedCostMs(cheapQuery), 10L);
+    assertEquals(costModel.getExpectedCostMs(expensiveQuery), 1500L);
+    assertEquals(costModel.getExpectedCostMs(createQueryRequest("SELECT MAX(a) FROM t")), 1252L);
+  }
+
+  private static ServerQueryRequest createQueryRequest(String query) {
+    BrokerRequest brokerRequest = COMPILER.compileToBrokerRequest(query);
+    brokerRequest.getQuerySource().setTableName("t_OFFLINE");
+    InstanceRequest instanceRequest = new InstanceRequest(1L, brokerRequest);
+    return new ServerQueryRequest(instanceRequest, METRICS, System.currentTimeMillis());
+  }
+}
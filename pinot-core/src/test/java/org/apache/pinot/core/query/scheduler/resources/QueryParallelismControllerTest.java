@@ -0,0 +1,72 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.core.query.scheduler.resources;
+
+import org.apache.commons.configuration.PropertiesConfiguration;
+import org.apache.pinot.common.metrics.ServerMetrics;
+import org.apache.pinot.core.query.request.ServerQueryRequest;
+import org.apache.pinot.core.query.scheduler.TestHelper;
+import org.testng.annotations.Test;
+
+import static org.mockito.Mockito.mock;
+import static org.testng.Assert.assertEquals;
+
+
+public class QueryParallelismControllerTest {
+
+  @Test
+  public void testBounds() {
+    PropertiesConfiguration config = new PropertiesConfiguration();
+    config.setProperty(QueryParallelismController.MIN_PARALLELISM_PER_QUERY_KEY, 0);
+    config.setProperty(QueryParallelismController.MAX_PARALLELISM_PER_QUERY_KEY, 100);
+    QueryParallelismController controller = new QueryParallelismController(config, 8);
+    assertEquals(controller.getMinParallelism(), 1);
+    // Max parallelism is bounded by the number of worker threads
+    assertEquals(controller.getMaxParallelism(), 8);
+  }
+
+  @Test
+  public void testParallelismOnLoad() {
+    QueryParallelismController controller = new QueryParallelismController(16, 2, 12, 10L);
+    ServerQueryRequest query = TestHelper.createServerQueryRequest("table", mock(ServerMetrics.class));
+
+    // Idle server: use up to the max parallelism
+    assertEquals(controller.getParallelism(query, 0), 12);
+    // Partially loaded server: use the idle worker threads
+    assertEquals(controller.getParallelism(query, 10), 6);
+    // Fully loaded server: fall back to the min parallelism
+    assertEquals(controller.getParallelism(query, 16), 2);
+    assertEquals(controller.getParallelism(query, 100), 2);
+  }
+
+  @Test
+  public void testParallelismOnExpectedCost() {
+    QueryParallelismController controller = new QueryParallelismController(16, 1, 16, 10L);
+    ServerQueryRequest query = TestHelper.createServerQueryRequest("table", mock(ServerMetrics.class));
+
+    // Cheap query should not fan out
+    query.setExpectedCostMs(5L);
+    assertEquals(controller.getParallelism(query, 0), 1);
+    query.setExpectedCostMs(35L);
+    assertEquals(controller.getParallelism(query, 0), 4);
+    // Expensive query is still bounded by the idle worker threads
+    query.setExpectedCostMs(10_000L);
+    assertEquals(controller.getParallelism(query, 8), 8);
+  }
+}
@@ -18,9 +18,11 @@
  */
 package org.apache.pinot.core.realtime.impl.invertedindex;
 
+import org.roaringbitmap.IntIterator;
 import org.roaringbitmap.buffer.MutableRoaringBitmap;
 import org.testng.annotations.Test;
 
+import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertNotNull;
 import static org.testng.Assert.assertTrue;
@@ -103,4 +105,72 @@ public class RealtimeInvertedIndexReaderTest {
     assertFalse(docIds.contains(1));
     assertTrue(docIds.contains(2));
   }
+
+  @Test
+  public void testDocIdIterator() {
+    RealtimeInvertedIndexReader realtimeInvertedIndexReader = new RealtimeInvertedIndexReader();
+    assertFalse(realtimeInvertedIndexReader.getDocIdIterator(0).hasNext());
+
+    // Add enough dictionary ids and document ids to grow the arrays, and the same dictionary id multiple times for the
+    // same document id (multi-value)
+    int numDocs = 1000;
+    int numValues = 100;
+    for (int docId = 0; docId < numDocs; docId++) {
+      realtimeInvertedIndexReader.add(docId % numValues, docId);
+      realtimeInvertedIndexReader.add(docId % numValues, docId);
+    }
+
+    // Iterator should not see the document ids added after it is created
+    IntIterator intIterator = realtimeInvertedIndexReader.getDocIdIterator(0);
+    IntIterator clonedIntIterator = intIterator.clone();
+    realtimeInvertedIndexReader.add(0, numDocs);
+    for (int i = 0; i < numDocs / numValues; i++) {
+      assertTrue(intIterator.hasNext());
+      assertEquals(intIterator.next(), i * numValues);
+    }
+    assertFalse(intIterator.hasNext());
+    assertTrue(clonedIntIterator.hasNext());
+    assertEquals(clonedIntIterator.next(), 0);
+
+    for (int dictId = 0; dictId < numValues; dictId++) {
+      MutableRoaringBitmap docIds = realtimeInvertedIndexReader.getDocIds(dictId);
+      intIterator = realtimeInvertedIndexReader.getDocIdIterator(dictId);
+      IntIterator bitmapIntIterator = docIds.getIntIterator();
+      while (bitmapIntIterator.hasNext()) {
+        assertTrue(intIterator.hasNext());
+        assertEquals(intIterator.next(), bitmapIntIterator.next());
+      }
+      assertFalse(intIterator.hasNext());
+    }
+    assertEquals(realtimeInvertedIndexReader.getDocIds(0).getCardinality(), numDocs / numValues + 1);
+    assertEquals(realtimeInvertedIndexReader.getDocIds(1).getCardinality(), numDocs / numValues);
+    assertFalse(realtimeInvertedIndexReader.getDocIdIterator(numValues).hasNext());
+  }
+
+  @Test
+  public void testAddDictIdsOutOfOrder() {
+    RealtimeInvertedIndexReader realtimeInvertedIndexReader = new RealtimeInvertedIndexReader();
+
+    // Add a dictionary id beyond the initial capacity before the smaller dictionary ids
+    realtimeInvertedIndexReader.add(100, 0);
+    realtimeInvertedIndexReader.add(5, 0);
+    realtimeInvertedIndexReader.add(5, 1);
+    realtimeInvertedIndexReader.add(3, 1);
+    realtimeInvertedIndexReader.add(100, 2);
+
+    assertEquals(realtimeInvertedIndexReader.getDocIds(100).toArray(), new int[]{0, 2});
+    assertEquals(realtimeInvertedIndexReader.getDocIds(5).toArray(), new int[]{0, 1});
+    assertEquals(realtimeInvertedIndexReader.getDocIds(3).toArray(), new int[]{1});
+    // Dictionary ids not added yet should have no document ids
+    assertTrue(realtimeInvertedIndexReader.getDocIds(4).isEmpty());
+    assertFalse(realtimeInvertedIndexReader.getDocIdIterator(4).hasNext());
+    assertTrue(realtimeInvertedIndexReader.getDocIds(101).isEmpty());
+
+    // Fill the missing dictionary id
+    realtimeInvertedIndexReader.add(4, 3);
+    IntIterator intIterator = realtimeInvertedIndexReader.getDocIdIterator(4);
+    assertTrue(intIterator.hasNext());
+    assertEquals(intIterator.next(), 3);
+    assertFalse(intIterator.hasNext());
+  }
 }
@@ -0,0 +1,93 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.core.transport;
+
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+
+public class HedgedRequestManagerTest {
+
+  @Test
+  public void testDelay() {
+    HedgedRequestManager hedgedRequestManager = new HedgedRequestManager(90, 5, 0.1);
+    String tableNameWithType = "testTable_OFFLINE";
+    try {
+      // No latency recorded
+      assertEquals(hedgedRequestManager.getDelayMs(tableNameWithType), -1);
+
+      // Not enough latency samples
+      for (int i = 1; i < HedgedRequestManager.MIN_NUM_LATENCY_SAMPLES; i++) {
+        hedgedRequestManager.recordLatency(tableNameWithType, i);
+      }
+      assertEquals(hedgedRequestManager.getDelayMs(tableNameWithType), -1);
+
+      // Latency samples: [1, 100], 90th percentile is 90
+      hedgedRequestManager.recordLatency(tableNameWithType, HedgedRequestManager.MIN_NUM_LATENCY_SAMPLES);
+      assertEquals(hedgedRequestManager.getDelayMs(tableNameWithType), 90);
+      assertEquals(hedgedRequestManager.getDelayMs("testTable_REALTIME"), -1);
+
+      // Delay should not be less than the min delay
+      String fastTableNameWithType = "fastTable_OFFLINE";
+      for (int i = 0; i < HedgedRequestManager.MIN_NUM_LATENCY_SAMPLES; i++) {
+        hedgedRequestManager.recordLatency(fastTableNameWithType, 1);
+      }
+      assertEquals(hedgedRequestManager.getDelayMs(fastTableNameWithType), 5);
+
+      // Old samples should be evicted, and the delay should be updated periodically
+      for (int i = 0; i < HedgedRequestManager.NUM_LATENCY_SAMPLES; i++) {
+        hedgedRequestManager.recordLatency(tableNameWithType, 1000);
+      }
+      assertEquals(hedgedRequestManager.getDelayMs(tableNameWithType), 1000);
+    } finally {
+      hedgedRequestManager.shutDown();
+    }
+  }
+
+  @Test
+  public void testBudget() {
+    HedgedRequestManager hedgedRequestManager = new HedgedRequestManager(90, 5, 0.1);
+    try {
+      // Drain the initial budget
+      for (int i = 0; i < HedgedRequestManager.MAX_BUDGET; i++) {
+        assertTrue(hedgedRequestManager.tryAcquireBudget());
+      }
+      assertFalse(hedgedRequestManager.tryAcquireBudget());
+
+      // 10 requests sent should allow 1 hedged request
+      hedgedRequestManager.onRequestsSent(9);
+      assertFalse(hedgedRequestManager.tryAcquireBudget());
+      hedgedRequestManager.onRequestsSent(1);
+      assertTrue(hedgedRequestManager.tryAcquireBudget());
+      assertFalse(hedgedRequestManager.tryAcquireBudget());
+
+      // Budget should be capped
+      hedgedRequestManager.onRequestsSent(Integer.MAX_VALUE);
+      for (int i = 0; i < HedgedRequestManager.MAX_BUDGET; i++) {
+        assertTrue(hedgedRequestManager.tryAcquireBudget());
+      }
+      assertFalse(hedgedRequestManager.tryAcquireBudget());
+    } finally {
+      hedgedRequestManager.shutDown();
+    }
+  }
+}
@@ -0,0 +1,112 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.core.transport;
+
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import org.apache.pinot.common.metrics.AbstractMetrics;
+import org.apache.pinot.common.metrics.BrokerGauge;
+import org.apache.pinot.common.metrics.BrokerMetrics;
+import org.apache.pinot.common.metrics.ServerGauge;
+import org.apache.pinot.common.metrics.ServerMetrics;
+import org.apache.pinot.core.query.scheduler.QueryScheduler;
+import org.mockito.ArgumentCaptor;
+import org.testng.annotations.Test;
+
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+
+public class NettyUtilsTest {
+  private static final int TEST_PORT = 12347;
+
+  @Test
+  public void testUseNativeTransport() {
+    assertFalse(NettyUtils.useNativeTransport(false, false));
+    assertFalse(NettyUtils.useNativeTransport(false, true));
+    assertTrue(NettyUtils.useNativeTransport(true, true));
+    assertEquals(NettyUtils.useNativeTransport(true), Epoll.isAvailable());
+    assertFalse(NettyUtils.useNativeTransport(false));
+
+    // Should fall back to NIO when epoll is not available
+    assertFalse(NettyUtils.useNativeTransport(true, false));
+    EventLoopGroup eventLoopGroup = NettyUtils.newEventLoopGroup(false);
+    try {
+      assertTrue(eventLoopGroup instanceof NioEventLoopGroup);
+    } finally {
+      eventLoopGroup.shutdownGracefully(0, 0, TimeUnit.SECONDS);
+    }
+    assertEquals(NettyUtils.getServerChannelClass(false), NioServerSocketChannel.class);
+    assertEquals(NettyUtils.getSocketChannelClass(false), NioSocketChannel.class);
+    assertEquals(NettyUtils.getServerChannelClass(true), EpollServerSocketChannel.class);
+    assertEquals(NettyUtils.getSocketChannelClass(true), EpollSocketChannel.class);
+  }
+
+  @Test
+  public void testServerGauges()
+      throws Exception {
+    ServerMetrics serverMetrics = mock(ServerMetrics.class);
+    // Native transport is used only when available
+    QueryServer queryServer = new QueryServer(TEST_PORT, mock(QueryScheduler.class), serverMetrics, true);
+    queryServer.start();
+    try {
+      verifyGauges(serverMetrics, ServerGauge.NETTY_EVENT_LOOP_PENDING_TASKS.getGaugeName(),
+          ServerGauge.NETTY_POOLED_DIRECT_MEMORY_USED.getGaugeName());
+    } finally {
+      queryServer.shutDown();
+    }
+  }
+
+  @Test
+  public void testBrokerGauges()
+      throws Exception {
+    BrokerMetrics brokerMetrics = mock(BrokerMetrics.class);
+    // Native transport is used only when available
+    ServerChannels serverChannels = new ServerChannels(mock(QueryRouter.class), brokerMetrics, true);
+    try {
+      verifyGauges(brokerMetrics, BrokerGauge.NETTY_EVENT_LOOP_PENDING_TASKS.getGaugeName(),
+          BrokerGauge.NETTY_POOLED_DIRECT_MEMORY_USED.getGaugeName());
+    } finally {
+      serverChannels.shutDown();
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private static void verifyGauges(AbstractMetrics<?, ?, ?, ?> metrics, String pendingTasksGaugeName,
+      String pooledDirectMemoryUsedGaugeName)
+      throws Exception {
+    ArgumentCaptor<Callable<Long>> pendingTasksCaptor = ArgumentCaptor.forClass(Callable.class);
+    verify(metrics).addCallbackGauge(eq(pendingTasksGaugeName), pendingTasksCaptor.capture());
+    assertTrue(pendingTasksCaptor.getValue().call() >= 0);
+    ArgumentCaptor<Callable<Long>> pooledDirectMemoryUsedCaptor = ArgumentCaptor.forClass(Callable.class);
+    verify(metrics).addCallbackGauge(eq(pooledDirectMemoryUsedGaugeName), pooledDirectMemoryUsedCaptor.capture());
+    assertTrue(pooledDirectMemoryUsedCaptor.getValue().call() >= 0);
+  }
+}
@@ -0,0 +1,61 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.core.transport;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.apache.pinot.common.request.InstanceRequest;
+import org.apache.pinot.pql.parsers.Pql2Compiler;
+import org.apache.thrift.TSerializer;
+import org.apache.thrift.protocol.TCompactProtocol;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+
+public class QueryCancelMessageTest {
+
+  @Test
+  public void testSerDe() {
+    for (long requestId : new long[]{0L, 123L, -1L, Long.MAX_VALUE, Long.MIN_VALUE}) {
+      ByteBuf message = Unpooled.wrappedBuffer(QueryCancelMessage.serialize(requestId));
+      assertTrue(QueryCancelMessage.isQueryCancelMessage(message));
+      assertEquals(QueryCancelMessage.getRequestId(message), requestId);
+      // Reading the message should not consume it
+      assertEquals(message.readableBytes(), Byte.BYTES + Long.BYTES);
+    }
+  }
+
+  @Test
+  public void testInstanceRequestIsNotCancelMessage()
+      throws Exception {
+    // Serialized instance requests should never be recognized as cancel messages
+    InstanceRequest instanceRequest = new InstanceRequest();
+    instanceRequest.setRequestId(123L);
+    instanceRequest.setQuery(new Pql2Compiler().compileToBrokerRequest("SELECT * FROM testTable"));
+    byte[] instanceRequestBytes = new TSerializer(new TCompactProtocol.Factory()).serialize(instanceRequest);
+    assertFalse(QueryCancelMessage.isQueryCancelMessage(Unpooled.wrappedBuffer(instanceRequestBytes)));
+
+    // Messages of other sizes should not be recognized as cancel messages
+    assertFalse(QueryCancelMessage.isQueryCancelMessage(Unpooled.wrappedBuffer(new byte[Byte.BYTES + Long.BYTES + 1])));
+    assertFalse(QueryCancelMessage.isQueryCancelMessage(Unpooled.EMPTY_BUFFER));
+  }
+}
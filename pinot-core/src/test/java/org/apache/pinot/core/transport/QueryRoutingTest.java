@@ -19,25 +19,45 @@
 package org.apache.pinot.core.transport;
 
 import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.pinot.common.exception.QueryException;
 import org.apache.pinot.common.metrics.BrokerMetrics;
 import org.apache.pinot.common.metrics.ServerMetrics;
 import org.apache.pinot.common.request.BrokerRequest;
 import org.apache.pinot.common.utils.DataTable;
 import org.apache.pinot.core.common.datatable.DataTableImplV2;
+import org.apache.pinot.core.query.request.ServerQueryRequest;
+import org.apache.pinot.core.query.request.context.QueryCancellationToken;
 import org.apache.pinot.core.query.scheduler.QueryScheduler;
+import org.apache.pinot.core.util.SerialExecutor;
 import org.apache.pinot.pql.parsers.Pql2Compiler;
 import org.apache.pinot.spi.config.table.TableType;
+import org.apache.pinot.util.TestUtils;
 import org.testng.annotations.AfterClass;
 import org.testng.annotations.BeforeClass;
 import org.testng.annotations.Test;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertNotNull;
 import static org.testng.Assert.assertNull;
 import static org.testng.Assert.assertTrue;
@@ -125,6 +145,69 @@ public class QueryRoutingTest {
     queryServer.shutDown();
   }
 
+  @Test
+  public void testStreamingResponse()
+      throws Exception {
+    long requestId = 123;
+    DataTable dataTable = new DataTableImplV2();
+    dataTable.getMetadata().put(DataTable.REQUEST_ID_METADATA_KEY, Long.toString(requestId));
+    byte[] responseBytes = dataTable.toBytes();
+
+    // Start the server
+    QueryServer queryServer = getQueryServer(0, responseBytes);
+    queryServer.start();
+
+    // Data tables should be passed to the consumer as they arrive
+    Map<ServerRoutingInstance, DataTable> consumedDataTables = new ConcurrentHashMap<>();
+    AsyncQueryResponse asyncQueryResponse = _queryRouter
+        .submitQuery(requestId, "testTable", BROKER_REQUEST, ROUTING_TABLE, BROKER_REQUEST, ROUTING_TABLE, 1_000L,
+            consumedDataTables::put);
+    Map<ServerRoutingInstance, ServerResponse> response = asyncQueryResponse.getResponse();
+    assertEquals(response.size(), 2);
+    assertEquals(consumedDataTables.size(), 2);
+    for (ServerRoutingInstance serverRoutingInstance : consumedDataTables.keySet()) {
+      ServerResponse serverResponse = response.get(serverRoutingInstance);
+      assertNotNull(serverResponse.getDataTable());
+      assertEquals(serverResponse.getResponseSize(), responseBytes.length);
+      assertEquals(consumedDataTables.get(serverRoutingInstance).getMetadata().get(DataTable.REQUEST_ID_METADATA_KEY),
+          Long.toString(requestId));
+    }
+
+    // With the data table consumer executor, data tables should be consumed one at a time on the executor threads, and
+    // the response should be returned after all the data tables are consumed
+    ExecutorService executorService =
+        Executors.newFixedThreadPool(2, new ThreadFactoryBuilder().setNameFormat("data-table-consumer-%d").build());
+    try {
+      Map<ServerRoutingInstance, String> consumerThreadNames = new ConcurrentHashMap<>();
+      AtomicInteger numConcurrentConsumers = new AtomicInteger();
+      AtomicInteger maxNumConcurrentConsumers = new AtomicInteger();
+      asyncQueryResponse = _queryRouter
+          .submitQuery(requestId, "testTable", BROKER_REQUEST, ROUTING_TABLE, BROKER_REQUEST, ROUTING_TABLE, 1_000L,
+              (serverRoutingInstance, consumedDataTable) -> {
+                maxNumConcurrentConsumers.accumulateAndGet(numConcurrentConsumers.incrementAndGet(), Math::max);
+                try {
+                  Thread.sleep(100L);
+                } catch (InterruptedException e) {
+                  throw new RuntimeException(e);
+                }
+                consumerThreadNames.put(serverRoutingInstance, Thread.currentThread().getName());
+                numConcurrentConsumers.decrementAndGet();
+              }, new SerialExecutor(executorService), null, null);
+      response = asyncQueryResponse.getResponse();
+      assertEquals(response.size(), 2);
+      assertEquals(consumerThreadNames.size(), 2);
+      for (String consumerThreadName : consumerThreadNames.values()) {
+        assertTrue(consumerThreadName.startsWith("data-table-consumer-"));
+      }
+      assertEquals(maxNumConcurrentConsumers.get(), 1);
+    } finally {
+      executorService.shutdown();
+    }
+
+    // Shut down the server
+    queryServer.shutDown();
+  }
+
   @Test
   public void testInvalidResponse()
       throws Exception {
@@ -229,6 +312,175 @@ public class QueryRoutingTest {
     assertTrue(System.currentTimeMillis() - startTimeMs < 1000);
   }
 
+  @Test
+  public void testServerResponseListener()
+      throws Exception {
+    long requestId = 123;
+    DataTable dataTable = new DataTableImplV2();
+    dataTable.getMetadata().put(DataTable.REQUEST_ID_METADATA_KEY, Long.toString(requestId));
+    dataTable.addException(QueryException.QUERY_EXECUTION_ERROR);
+    byte[] responseBytes = dataTable.toBytes();
+
+    // Start the server
+    QueryServer queryServer = getQueryServer(0, responseBytes);
+    queryServer.start();
+
+    // Listener should be notified as each server responds, before the query finishes
+    ServerResponseListener serverResponseListener = mock(ServerResponseListener.class);
+    AsyncQueryResponse asyncQueryResponse = _queryRouter
+        .submitQuery(requestId, "testTable", BROKER_REQUEST, ROUTING_TABLE, BROKER_REQUEST, ROUTING_TABLE, 1_000L,
+            null, null, serverResponseListener);
+    verify(serverResponseListener, timeout(1_000L).times(2))
+        .onResponseReceived(eq(SERVER_INSTANCE), anyLong(), eq(true));
+    asyncQueryResponse.getResponse();
+    verify(serverResponseListener, times(2)).onRequestSent(SERVER_INSTANCE);
+    verify(serverResponseListener, never()).onRequestDropped(any(), anyBoolean());
+
+    // Servers not responding before the query times out should be dropped as timed out
+    serverResponseListener = mock(ServerResponseListener.class);
+    asyncQueryResponse = _queryRouter
+        .submitQuery(requestId + 1, "testTable", BROKER_REQUEST, ROUTING_TABLE, null, null, 500L, null, null,
+            serverResponseListener);
+    asyncQueryResponse.getResponse();
+    verify(serverResponseListener).onRequestSent(SERVER_INSTANCE);
+    verify(serverResponseListener).onRequestDropped(SERVER_INSTANCE, true);
+    verify(serverResponseListener, never()).onResponseReceived(any(), anyLong(), anyBoolean());
+
+    // Shut down the server
+    queryServer.shutDown();
+  }
+
+  @Test
+  public void testCancelQuery()
+      throws Exception {
+    long requestId = 123;
+
+    // Start the server, where the queries never finish
+    List<ServerQueryRequest> serverQueryRequests = new CopyOnWriteArrayList<>();
+    QueryScheduler queryScheduler = mock(QueryScheduler.class);
+    when(queryScheduler.submit(any())).thenAnswer(invocation -> {
+      serverQueryRequests.add(invocation.getArgument(0));
+      return SettableFuture.create();
+    });
+    QueryServer queryServer = new QueryServer(TEST_PORT, queryScheduler, mock(ServerMetrics.class));
+    queryServer.start();
+
+    QueryRouter queryRouter = new QueryRouter("testBroker", mock(BrokerMetrics.class), true);
+    assertFalse(queryRouter.cancelQuery(requestId));
+
+    // Cancelled query should return immediately, and be cancelled on the server
+    long startTimeMs = System.currentTimeMillis();
+    AsyncQueryResponse asyncQueryResponse =
+        queryRouter.submitQuery(requestId, "testTable", BROKER_REQUEST, ROUTING_TABLE, null, null, 10_000L);
+    TestUtils.waitForCondition(aVoid -> serverQueryRequests.size() == 1, 5_000L, "Failed to submit the query");
+    assertTrue(queryRouter.cancelQuery(requestId));
+    Map<ServerRoutingInstance, ServerResponse> response = asyncQueryResponse.getResponse();
+    assertTrue(asyncQueryResponse.isCancelled());
+    assertNull(response.get(OFFLINE_SERVER_ROUTING_INSTANCE).getDataTable());
+    assertTrue(System.currentTimeMillis() - startTimeMs < 10_000L);
+    QueryCancellationToken cancellationToken = serverQueryRequests.get(0).getCancellationToken();
+    TestUtils.waitForCondition(aVoid -> cancellationToken.isCancelled(), 5_000L,
+        "Failed to cancel the query on the server");
+    // Query should be un-registered once done
+    assertFalse(queryRouter.cancelQuery(requestId));
+
+    // Queries running on the server should be cancelled when the connection to the broker is lost
+    queryRouter.submitQuery(requestId + 1, "testTable", BROKER_REQUEST, ROUTING_TABLE, null, null, 10_000L);
+    TestUtils.waitForCondition(aVoid -> serverQueryRequests.size() == 2, 5_000L, "Failed to submit the query");
+    QueryCancellationToken runningQueryCancellationToken = serverQueryRequests.get(1).getCancellationToken();
+    assertFalse(runningQueryCancellationToken.isCancelled());
+    queryRouter.shutDown();
+    TestUtils.waitForCondition(aVoid -> runningQueryCancellationToken.isCancelled(), 5_000L,
+        "Failed to cancel the query when the connection to the broker is lost");
+
+    // Shut down the server
+    queryServer.shutDown();
+  }
+
+  @Test
+  public void testHedgedRequestLatencyAttribution()
+      throws Exception {
+    long requestId = 123;
+    long hedgedRequestId = -1;
+    ServerInstance hedgedServerInstance = new ServerInstance("localhost", TEST_PORT + 1);
+    ServerRoutingInstance hedgedServer = hedgedServerInstance.toServerRoutingInstance(TableType.OFFLINE);
+    QueryRouter queryRouter = mock(QueryRouter.class);
+    ServerResponseListener serverResponseListener = mock(ServerResponseListener.class);
+    AsyncQueryResponse asyncQueryResponse = new AsyncQueryResponse(queryRouter, requestId, "testTable",
+        Collections.singletonMap(OFFLINE_SERVER_ROUTING_INSTANCE, SERVER_INSTANCE), System.currentTimeMillis(),
+        1_000L, null, serverResponseListener);
+    asyncQueryResponse.markRequestSubmitted(OFFLINE_SERVER_ROUTING_INSTANCE);
+    asyncQueryResponse
+        .addHedgedRequest(OFFLINE_SERVER_ROUTING_INSTANCE, hedgedRequestId, hedgedServer, hedgedServerInstance);
+    verify(serverResponseListener).onRequestSent(SERVER_INSTANCE);
+    verify(serverResponseListener).onRequestSent(hedgedServerInstance);
+
+    // Hedged request answers first, and its latency should be credited to the hedged server
+    asyncQueryResponse.receiveDataTable(hedgedRequestId, hedgedServer, new DataTableImplV2(), 0, 0);
+    verify(serverResponseListener).onResponseReceived(eq(hedgedServerInstance), anyLong(), eq(false));
+    verify(serverResponseListener, never()).onResponseReceived(eq(SERVER_INSTANCE), anyLong(), anyBoolean());
+    verify(queryRouter, never()).recordRequestLatency(any(), any(), anyLong());
+    ServerResponse serverResponse = asyncQueryResponse.getResponse().get(OFFLINE_SERVER_ROUTING_INSTANCE);
+    assertTrue(serverResponse.isHedgedResponse());
+
+    // Original request is still in flight, so the query should stay registered until the query timeout
+    verify(queryRouter).markQueryDone(eq(asyncQueryResponse), anyLong());
+    verify(queryRouter, never()).markQueryDone(anyLong());
+
+    // Late original response should still be recorded for the straggling server, but not replace the hedged response
+    asyncQueryResponse
+        .receiveDataTable(requestId, OFFLINE_SERVER_ROUTING_INSTANCE, new DataTableImplV2(), 0, 0);
+    verify(serverResponseListener).onResponseReceived(eq(SERVER_INSTANCE), anyLong(), eq(false));
+    verify(queryRouter).recordRequestLatency(eq("testTable"), eq(TableType.OFFLINE), anyLong());
+    assertTrue(serverResponse.isHedgedResponse());
+    asyncQueryResponse.markQueryDone(true);
+    verify(serverResponseListener, never()).onRequestDropped(any(), anyBoolean());
+  }
+
+  @Test
+  public void testServerDownWithHedgedRequest()
+      throws Exception {
+    long requestId = 123;
+    long hedgedRequestId = -1;
+    ServerInstance hedgedServerInstance = new ServerInstance("localhost", TEST_PORT + 1);
+    ServerRoutingInstance hedgedServer = hedgedServerInstance.toServerRoutingInstance(TableType.OFFLINE);
+
+    // Query should not fail when the straggling server is down but the hedged request is still pending
+    QueryRouter queryRouter = mock(QueryRouter.class);
+    ServerResponseListener serverResponseListener = mock(ServerResponseListener.class);
+    AsyncQueryResponse asyncQueryResponse = new AsyncQueryResponse(queryRouter, requestId, "testTable",
+        Collections.singletonMap(OFFLINE_SERVER_ROUTING_INSTANCE, SERVER_INSTANCE), System.currentTimeMillis(),
+        500L, null, serverResponseListener);
+    asyncQueryResponse.markRequestSubmitted(OFFLINE_SERVER_ROUTING_INSTANCE);
+    asyncQueryResponse
+        .addHedgedRequest(OFFLINE_SERVER_ROUTING_INSTANCE, hedgedRequestId, hedgedServer, hedgedServerInstance);
+    asyncQueryResponse.markServerDown(OFFLINE_SERVER_ROUTING_INSTANCE);
+    verify(serverResponseListener).onRequestDropped(SERVER_INSTANCE, false);
+    asyncQueryResponse.receiveDataTable(hedgedRequestId, hedgedServer, new DataTableImplV2(), 0, 0);
+    ServerResponse serverResponse = asyncQueryResponse.getResponse().get(OFFLINE_SERVER_ROUTING_INSTANCE);
+    assertNotNull(serverResponse.getDataTable());
+    assertTrue(serverResponse.isHedgedResponse());
+    verify(serverResponseListener).onResponseReceived(eq(hedgedServerInstance), anyLong(), eq(false));
+
+    // Query should fail when both the straggling server and the hedged server are down
+    queryRouter = mock(QueryRouter.class);
+    serverResponseListener = mock(ServerResponseListener.class);
+    asyncQueryResponse = new AsyncQueryResponse(queryRouter, requestId, "testTable",
+        Collections.singletonMap(OFFLINE_SERVER_ROUTING_INSTANCE, SERVER_INSTANCE), System.currentTimeMillis(),
+        10_000L, null, serverResponseListener);
+    asyncQueryResponse.markRequestSubmitted(OFFLINE_SERVER_ROUTING_INSTANCE);
+    asyncQueryResponse
+        .addHedgedRequest(OFFLINE_SERVER_ROUTING_INSTANCE, hedgedRequestId, hedgedServer, hedgedServerInstance);
+    asyncQueryResponse.markServerDown(OFFLINE_SERVER_ROUTING_INSTANCE);
+    asyncQueryResponse.markServerDown(hedgedServer);
+    long startTimeMs = System.currentTimeMillis();
+    serverResponse = asyncQueryResponse.getResponse().get(OFFLINE_SERVER_ROUTING_INSTANCE);
+    assertTrue(System.currentTimeMillis() - startTimeMs < 1000);
+    assertNull(serverResponse.getDataTable());
+    verify(serverResponseListener).onRequestDropped(SERVER_INSTANCE, false);
+    verify(serverResponseListener).onRequestDropped(hedgedServerInstance, false);
+  }
+
   @AfterClass
   public void tearDown() {
     _queryRouter.shutDown();
@@ -0,0 +1,112 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.core.upsert;
+
+import org.apache.pinot.core.indexsegment.IndexSegment;
+import org.apache.pinot.core.realtime.impl.ThreadSafeMutableRoaringBitmap;
+import org.testng.annotations.Test;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+
+
+public class PartitionUpsertMetadataManagerTest {
+  private static final String TABLE_NAME = "testTable_REALTIME";
+
+  @Test
+  public void testAddRecord() {
+    PartitionUpsertMetadataManager upsertMetadataManager =
+        new PartitionUpsertMetadataManager(TABLE_NAME, 0, "pk", "offset");
+    IndexSegment segment1 = mockSegment("testTable__0__0__20200101T0000Z");
+    IndexSegment segment2 = mockSegment("testTable__0__1__20200101T0100Z");
+
+    upsertMetadataManager.addRecord(segment1, "a", 0, 100L);
+    upsertMetadataManager.addRecord(segment1, "b", 1, 101L);
+    upsertMetadataManager.addRecord(segment1, "a", 2, 102L);
+    assertValidDocIds(segment1, 1, 2);
+
+    // Newer record in another segment invalidates the record in the old segment
+    upsertMetadataManager.addRecord(segment2, "b", 0, 200L);
+    assertValidDocIds(segment1, 2);
+    assertValidDocIds(segment2, 0);
+
+    // Older record does not change the valid document ids
+    upsertMetadataManager.addRecord(segment2, "a", 1, 50L);
+    assertValidDocIds(segment1, 2);
+    assertValidDocIds(segment2, 0);
+
+    assertEquals(upsertMetadataManager.getNumPrimaryKeys(), 2);
+    RecordLocation recordLocation = upsertMetadataManager.getRecordLocation("a");
+    assertSame(recordLocation.getSegment(), segment1);
+    assertEquals(recordLocation.getDocId(), 2);
+    assertEquals(recordLocation.getOffset(), 102L);
+
+    // Bytes primary keys are compared by value
+    upsertMetadataManager.addRecord(segment2, new byte[]{1, 2}, 2, 201L);
+    upsertMetadataManager.addRecord(segment2, new byte[]{1, 2}, 3, 202L);
+    assertValidDocIds(segment2, 0, 3);
+    assertEquals(upsertMetadataManager.getRecordLocation(new byte[]{1, 2}).getDocId(), 3);
+  }
+
+  @Test
+  public void testReplaceAndRemoveSegment() {
+    PartitionUpsertMetadataManager upsertMetadataManager =
+        new PartitionUpsertMetadataManager(TABLE_NAME, 0, "pk", "offset");
+    String segmentName = "testTable__0__0__20200101T0000Z";
+    IndexSegment consumingSegment = mockSegment(segmentName);
+    upsertMetadataManager.addRecord(consumingSegment, "a", 0, 100L);
+    upsertMetadataManager.addRecord(consumingSegment, "b", 1, 101L);
+    upsertMetadataManager.addRecord(consumingSegment, "a", 2, 102L);
+    assertValidDocIds(consumingSegment, 1, 2);
+
+    // Committed segment with the same name takes over the records (documents sorted in a different order)
+    IndexSegment committedSegment = mockSegment(segmentName);
+    upsertMetadataManager.addRecord(committedSegment, "a", 0, 102L);
+    upsertMetadataManager.addRecord(committedSegment, "a", 1, 100L);
+    upsertMetadataManager.addRecord(committedSegment, "b", 2, 101L);
+    assertValidDocIds(committedSegment, 0, 2);
+    // Replaced segment is not modified
+    assertValidDocIds(consumingSegment, 1, 2);
+    assertSame(upsertMetadataManager.getRecordLocation("a").getSegment(), committedSegment);
+    assertSame(upsertMetadataManager.getRecordLocation("b").getSegment(), committedSegment);
+
+    // Removing the replaced segment does not remove the records of the new segment
+    upsertMetadataManager.removeSegment(consumingSegment);
+    assertEquals(upsertMetadataManager.getNumPrimaryKeys(), 2);
+
+    upsertMetadataManager.removeSegment(committedSegment);
+    assertEquals(upsertMetadataManager.getNumPrimaryKeys(), 0);
+    assertNull(upsertMetadataManager.getRecordLocation("a"));
+  }
+
+  private static IndexSegment mockSegment(String segmentName) {
+    IndexSegment segment = mock(IndexSegment.class);
+    when(segment.getSegmentName()).thenReturn(segmentName);
+    ThreadSafeMutableRoaringBitmap validDocIds = new ThreadSafeMutableRoaringBitmap();
+    when(segment.getValidDocIds()).thenReturn(validDocIds);
+    return segment;
+  }
+
+  private static void assertValidDocIds(IndexSegment segment, int... expectedDocIds) {
+    assertEquals(segment.getValidDocIds().getMutableRoaringBitmap().toArray(), expectedDocIds);
+  }
+}
@@ -0,0 +1,105 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.core.util;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import org.apache.helix.HelixAdmin;
+import org.apache.helix.HelixManager;
+import org.apache.helix.model.ExternalView;
+import org.apache.helix.model.InstanceConfig;
+import org.apache.pinot.common.utils.CommonConstants.Helix;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+
+public class PeerServerSegmentFinderTest {
+  private static final String CLUSTER_NAME = "testCluster";
+  private static final String TABLE_NAME_WITH_TYPE = "testTable_REALTIME";
+  private static final String SEGMENT_1 = "testTable__0__0__20200101T0000Z";
+  private static final String SEGMENT_2 = "testTable__0__1__20200101T0100Z";
+  private static final String INSTANCE_ID_1 = "Server_host1_8098";
+  private static final String INSTANCE_ID_2 = "Server_host2_8098";
+  private static final String INSTANCE_ID_3 = "Server_host3_8098";
+
+  private HelixManager _helixManager;
+
+  @BeforeClass
+  public void setUp() {
+    ExternalView externalView = new ExternalView(TABLE_NAME_WITH_TYPE);
+    externalView.setState(SEGMENT_1, INSTANCE_ID_1, "ONLINE");
+    externalView.setState(SEGMENT_1, INSTANCE_ID_2, "ONLINE");
+    externalView.setState(SEGMENT_1, INSTANCE_ID_3, "OFFLINE");
+    externalView.setState(SEGMENT_2, INSTANCE_ID_1, "CONSUMING");
+
+    HelixAdmin helixAdmin = mock(HelixAdmin.class);
+    when(helixAdmin.getResourceExternalView(CLUSTER_NAME, TABLE_NAME_WITH_TYPE)).thenReturn(externalView);
+    when(helixAdmin.getInstanceConfig(eq(CLUSTER_NAME), anyString())).thenReturn(null);
+    when(helixAdmin.getInstanceConfig(CLUSTER_NAME, INSTANCE_ID_1)).thenReturn(getInstanceConfig(INSTANCE_ID_1, 1));
+    when(helixAdmin.getInstanceConfig(CLUSTER_NAME, INSTANCE_ID_2)).thenReturn(getInstanceConfig(INSTANCE_ID_2, 2));
+    when(helixAdmin.getInstanceConfig(CLUSTER_NAME, INSTANCE_ID_3)).thenReturn(getInstanceConfig(INSTANCE_ID_3, 3));
+
+    _helixManager = mock(HelixManager.class);
+    when(_helixManager.getClusterManagmentTool()).thenReturn(helixAdmin);
+    when(_helixManager.getClusterName()).thenReturn(CLUSTER_NAME);
+  }
+
+  private static InstanceConfig getInstanceConfig(String instanceId, int index) {
+    InstanceConfig instanceConfig = new InstanceConfig(instanceId);
+    instanceConfig.setHostName("Server_host" + index);
+    instanceConfig.setPort("8098");
+    instanceConfig.getRecord().setIntField(Helix.Instance.ADMIN_PORT_KEY, 8000 + index);
+    return instanceConfig;
+  }
+
+  @Test
+  public void testGetPeerServerURIs() {
+    List<URI> peerServerURIs =
+        PeerServerSegmentFinder.getPeerServerURIs(TABLE_NAME_WITH_TYPE, SEGMENT_1, _helixManager, null);
+    assertEquals(new HashSet<>(peerServerURIs), new HashSet<>(Arrays
+        .asList(URI.create("http://host1:8001/segments/testTable_REALTIME/" + SEGMENT_1),
+            URI.create("http://host2:8002/segments/testTable_REALTIME/" + SEGMENT_1))));
+
+    // Excluded instance
+    peerServerURIs = PeerServerSegmentFinder.getPeerServerURIs(TABLE_NAME_WITH_TYPE, SEGMENT_1, _helixManager,
+        INSTANCE_ID_1);
+    assertEquals(peerServerURIs,
+        Collections.singletonList(URI.create("http://host2:8002/segments/testTable_REALTIME/" + SEGMENT_1)));
+
+    // Segment not ONLINE on any server
+    assertTrue(PeerServerSegmentFinder.getPeerServerURIs(TABLE_NAME_WITH_TYPE, SEGMENT_2, _helixManager, null)
+        .isEmpty());
+
+    // Segment or table not in the external view
+    assertTrue(PeerServerSegmentFinder.getPeerServerURIs(TABLE_NAME_WITH_TYPE, "UNKNOWN", _helixManager, null)
+        .isEmpty());
+    assertTrue(PeerServerSegmentFinder.getPeerServerURIs("UNKNOWN_REALTIME", SEGMENT_1, _helixManager, null)
+        .isEmpty());
+  }
+}
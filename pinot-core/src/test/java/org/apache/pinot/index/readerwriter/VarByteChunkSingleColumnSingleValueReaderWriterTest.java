@@ -0,0 +1,164 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.index.readerwriter;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.apache.commons.lang.RandomStringUtils;
+import org.apache.pinot.core.io.compression.ChunkCompressorFactory;
+import org.apache.pinot.core.io.readerwriter.PinotDataBufferMemoryManager;
+import org.apache.pinot.core.io.readerwriter.impl.VarByteChunkSingleColumnSingleValueReaderWriter;
+import org.apache.pinot.core.io.writer.impl.DirectMemoryManager;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+
+public class VarByteChunkSingleColumnSingleValueReaderWriterTest {
+  private static final int NUM_ROWS = 10_000;
+  private static final int NUM_ROWS_PER_CHUNK = 100;
+
+  private PinotDataBufferMemoryManager _memoryManager;
+
+  @BeforeClass
+  public void setUp() {
+    _memoryManager = new DirectMemoryManager(VarByteChunkSingleColumnSingleValueReaderWriterTest.class.getName());
+  }
+
+  @AfterClass
+  public void tearDown()
+      throws Exception {
+    _memoryManager.close();
+  }
+
+  @Test
+  public void testString()
+      throws Exception {
+    for (ChunkCompressorFactory.CompressionType compressionType : ChunkCompressorFactory.CompressionType.values()) {
+      try (VarByteChunkSingleColumnSingleValueReaderWriter readerWriter =
+          new VarByteChunkSingleColumnSingleValueReaderWriter(_memoryManager, "StringColumn", compressionType,
+              NUM_ROWS_PER_CHUNK)) {
+        Random random = new Random();
+        String[] data = new String[NUM_ROWS];
+        for (int i = 0; i < NUM_ROWS; i++) {
+          // Include empty strings and values shared across rows
+          int length = random.nextInt(100);
+          data[i] = i % 3 == 0 ? "http://pinot.apache.org/" + (i % 10) : RandomStringUtils.randomAlphanumeric(length);
+          readerWriter.setString(i, data[i]);
+          // Rows of the active chunk are readable before the chunk is sealed
+          Assert.assertEquals(readerWriter.getString(i), data[i]);
+        }
+
+        // Read in random order to exercise the chunk cache
+        for (int i = 0; i < NUM_ROWS; i++) {
+          int row = random.nextInt(NUM_ROWS);
+          Assert.assertEquals(readerWriter.getString(row), data[row]);
+        }
+        for (int i = 0; i < NUM_ROWS; i++) {
+          Assert.assertEquals(readerWriter.getString(i), data[i]);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testConcurrentReads()
+      throws Exception {
+    try (VarByteChunkSingleColumnSingleValueReaderWriter readerWriter =
+        new VarByteChunkSingleColumnSingleValueReaderWriter(_memoryManager, "BytesColumn",
+            ChunkCompressorFactory.CompressionType.SNAPPY, NUM_ROWS_PER_CHUNK)) {
+      Random random = new Random();
+      byte[][] data = new byte[NUM_ROWS][];
+      int shortestLength = Integer.MAX_VALUE;
+      int longestLength = Integer.MIN_VALUE;
+      for (int i = 0; i < NUM_ROWS; i++) {
+        data[i] = new byte[1 + random.nextInt(50)];
+        random.nextBytes(data[i]);
+        readerWriter.setBytes(i, data[i]);
+        shortestLength = Math.min(shortestLength, data[i].length);
+        longestLength = Math.max(longestLength, data[i].length);
+      }
+      Assert.assertEquals(readerWriter.getLengthOfShortestElement(), shortestLength);
+      Assert.assertEquals(readerWriter.getLengthOfLongestElement(), longestLength);
+
+      // Each thread decompresses the chunks into its own cache
+      ExecutorService executorService = Executors.newFixedThreadPool(4);
+      try {
+        Future[] futures = new Future[4];
+        for (int i = 0; i < 4; i++) {
+          int startRow = i * NUM_ROWS_PER_CHUNK / 2;
+          futures[i] = executorService.submit(() -> {
+            for (int row = startRow; row < NUM_ROWS; row++) {
+              Assert.assertEquals(readerWriter.getBytes(row), data[row]);
+            }
+          });
+        }
+        for (Future future : futures) {
+          future.get();
+        }
+      } finally {
+        executorService.shutdown();
+      }
+    }
+  }
+
+  @Test
+  public void testOverwrite()
+      throws Exception {
+    try (VarByteChunkSingleColumnSingleValueReaderWriter readerWriter =
+        new VarByteChunkSingleColumnSingleValueReaderWriter(_memoryManager, "OverwriteColumn",
+            ChunkCompressorFactory.CompressionType.SNAPPY, NUM_ROWS_PER_CHUNK)) {
+      // The first 2 chunks get sealed when writing the last row
+      String[] data = new String[NUM_ROWS_PER_CHUNK * 2 + 1];
+      for (int i = 0; i < data.length; i++) {
+        // Set each row twice, with a value of a different length the second time
+        readerWriter.setString(i, "value" + i);
+        data[i] = "overwritten value" + i;
+        readerWriter.setString(i, data[i]);
+        Assert.assertEquals(readerWriter.getString(i), data[i]);
+        // Overwrite the previous row if it is in the active chunk
+        if (i % NUM_ROWS_PER_CHUNK > 0) {
+          data[i - 1] = "value" + (i - 1);
+          readerWriter.setString(i - 1, data[i - 1]);
+        }
+      }
+      // Sealed chunks should contain the last value set for each row
+      for (int i = 0; i < data.length; i++) {
+        Assert.assertEquals(readerWriter.getString(i), data[i]);
+      }
+
+      // Rows of the sealed chunks and rows after the next row cannot be set
+      try {
+        readerWriter.setString(0, "value");
+        Assert.fail();
+      } catch (IllegalArgumentException e) {
+        // Expected
+      }
+      try {
+        readerWriter.setString(data.length + 1, "value");
+        Assert.fail();
+      } catch (IllegalArgumentException e) {
+        // Expected
+      }
+    }
+  }
+}
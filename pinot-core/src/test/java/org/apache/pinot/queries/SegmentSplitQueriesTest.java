@@ -0,0 +1,67 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.queries;
+
+import org.apache.pinot.common.response.broker.BrokerResponseNative;
+import org.apache.pinot.core.plan.maker.InstancePlanMakerImplV2;
+import org.apache.pinot.core.plan.maker.PlanMaker;
+import org.apache.pinot.spi.utils.JsonUtils;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+
+/**
+ * Tests that splitting the segments into multiple document id ranges does not change the query results.
+ */
+public class SegmentSplitQueriesTest extends BaseSingleValueQueriesTest {
+  private static final PlanMaker SEGMENT_SPLIT_PLAN_MAKER =
+      new InstancePlanMakerImplV2(InstancePlanMakerImplV2.DEFAULT_MAX_INITIAL_RESULT_HOLDER_CAPACITY,
+          InstancePlanMakerImplV2.DEFAULT_NUM_GROUPS_LIMIT, 1000);
+
+  @Test
+  public void testAggregationOnly()
+      throws Exception {
+    String query = "SELECT COUNT(*), SUM(column1), MAX(column3), DISTINCTCOUNT(column6) FROM testTable";
+    testQuery(query);
+    testQuery(query + getFilter());
+  }
+
+  @Test
+  public void testAggregationGroupBy()
+      throws Exception {
+    String query = "SELECT COUNT(*), SUM(column1), MIN(column3) FROM testTable GROUP BY column9, column11 TOP 20";
+    testQuery(query);
+    testQuery(query.replace(" GROUP BY", getFilter() + " GROUP BY"));
+  }
+
+  private void testQuery(String query)
+      throws Exception {
+    BrokerResponseNative expected = getBrokerResponseForPqlQuery(query);
+    BrokerResponseNative actual = getBrokerResponseForPqlQuery(query, SEGMENT_SPLIT_PLAN_MAKER);
+    Assert.assertEquals(actual.getNumDocsScanned(), expected.getNumDocsScanned());
+    // Filters are restricted to the document id ranges, so the ranges scan the same entries as the whole segment
+    Assert.assertEquals(actual.getNumEntriesScannedInFilter(), expected.getNumEntriesScannedInFilter());
+    Assert.assertEquals(actual.getNumEntriesScannedPostFilter(), expected.getNumEntriesScannedPostFilter());
+    Assert.assertEquals(actual.getTotalDocs(), expected.getTotalDocs());
+    Assert.assertEquals(actual.getNumSegmentsProcessed(), expected.getNumSegmentsProcessed());
+    Assert.assertEquals(actual.getNumSegmentsMatched(), expected.getNumSegmentsMatched());
+    Assert.assertEquals(JsonUtils.objectToString(actual.getAggregationResults()),
+        JsonUtils.objectToString(expected.getAggregationResults()));
+  }
+}
@@ -266,4 +266,61 @@ public class SelectionOperatorServiceTest {
     assertTrue(Arrays.deepEquals(resultRows.get(0), expectedFormattedRow1));
     assertTrue(Arrays.deepEquals(resultRows.get(1), expectedFormattedRow2));
   }
+
+  @Test
+  public void testReduceSortedDataTables()
+      throws Exception {
+    // SELECT * FROM table ORDER BY int DESC LIMIT 1, 3
+    Selection selection = new Selection();
+    selection.setSelectionColumns(Arrays.asList("int", "string"));
+    SelectionSort selectionSort = new SelectionSort();
+    selectionSort.setColumn("int");
+    selectionSort.setIsAsc(false);
+    selection.setSelectionSortSequence(Collections.singletonList(selectionSort));
+    selection.setSize(3);
+    selection.setOffset(1);
+    DataSchema dataSchema = new DataSchema(new String[]{"int", "string"},
+        new DataSchema.ColumnDataType[]{DataSchema.ColumnDataType.INT, DataSchema.ColumnDataType.STRING});
+
+    DataTable sortedDataTable1 = getDataTable(dataSchema, true, 9, 6, 2);
+    DataTable sortedDataTable2 = getDataTable(dataSchema, true, 8, 7, 1);
+    DataTable sortedDataTable3 = getDataTable(dataSchema, true, 5);
+    DataTable unsortedDataTable = getDataTable(dataSchema, false, 3, 10, 4);
+
+    // K-way merge of the sorted data tables
+    SelectionOperatorService selectionOperatorService = new SelectionOperatorService(selection, dataSchema);
+    selectionOperatorService.reduceWithOrdering(Arrays.asList(sortedDataTable1, sortedDataTable2, sortedDataTable3));
+    assertEquals(getIntValues(selectionOperatorService.renderResultTableWithOrdering().getRows()),
+        Arrays.asList(8, 7, 6));
+
+    // Data tables reduced one at a time, mixed with unsorted data table
+    selectionOperatorService = new SelectionOperatorService(selection, dataSchema);
+    selectionOperatorService.reduceWithOrdering(Collections.singletonList(sortedDataTable1));
+    selectionOperatorService.reduceWithOrdering(Collections.singletonList(unsortedDataTable));
+    selectionOperatorService.reduceWithOrdering(Collections.singletonList(sortedDataTable2));
+    selectionOperatorService.reduceWithOrdering(Collections.singletonList(sortedDataTable3));
+    assertEquals(getIntValues(selectionOperatorService.renderResultTableWithOrdering().getRows()),
+        Arrays.asList(9, 8, 7));
+  }
+
+  private DataTable getDataTable(DataSchema dataSchema, boolean sorted, int... intValues)
+      throws Exception {
+    List<Object[]> rows = new ArrayList<>(intValues.length);
+    for (int intValue : intValues) {
+      rows.add(new Object[]{intValue, Integer.toString(intValue)});
+    }
+    DataTable dataTable = SelectionOperatorUtils.getDataTableFromRows(rows, dataSchema);
+    if (sorted) {
+      dataTable.getMetadata().put(DataTable.SORTED_ROWS_METADATA_KEY, "true");
+    }
+    return dataTable;
+  }
+
+  private List<Integer> getIntValues(List<Object[]> rows) {
+    List<Integer> intValues = new ArrayList<>(rows.size());
+    for (Object[] row : rows) {
+      intValues.add((Integer) row[0]);
+    }
+    return intValues;
+  }
 }
@@ -18,8 +18,29 @@
  */
 package org.apache.pinot.realtime.converter;
 
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
+import org.apache.commons.io.FileUtils;
+import org.apache.pinot.common.metrics.ServerMetrics;
+import org.apache.pinot.core.common.DataSource;
+import org.apache.pinot.core.data.readers.PinotSegmentColumnReader;
+import org.apache.pinot.core.data.recordtransformer.CompositeTransformer;
+import org.apache.pinot.core.indexsegment.immutable.ImmutableSegment;
+import org.apache.pinot.core.indexsegment.immutable.ImmutableSegmentLoader;
+import org.apache.pinot.core.indexsegment.mutable.MutableSegmentImpl;
+import org.apache.pinot.core.indexsegment.mutable.MutableSegmentImplTestUtils;
 import org.apache.pinot.core.realtime.converter.RealtimeSegmentConverter;
+import org.apache.pinot.core.segment.index.loader.IndexLoadingConfig;
+import org.apache.pinot.core.segment.index.metadata.ColumnMetadata;
+import org.apache.pinot.core.segment.index.metadata.SegmentMetadataImpl;
+import org.apache.pinot.core.segment.index.readers.InvertedIndexReader;
+import org.apache.pinot.core.segment.index.readers.NullValueVectorReader;
 import org.apache.pinot.core.segment.virtualcolumn.VirtualColumnProviderFactory;
 import org.apache.pinot.spi.config.table.TableConfig;
 import org.apache.pinot.spi.config.table.TableType;
@@ -28,12 +49,27 @@ import org.apache.pinot.spi.data.FieldSpec;
 import org.apache.pinot.spi.data.MetricFieldSpec;
 import org.apache.pinot.spi.data.Schema;
 import org.apache.pinot.spi.data.TimeFieldSpec;
+import org.apache.pinot.spi.data.readers.GenericRow;
 import org.apache.pinot.spi.utils.builder.TableConfigBuilder;
 import org.testng.Assert;
+import org.testng.annotations.AfterClass;
 import org.testng.annotations.Test;
 
+import static org.mockito.Mockito.mock;
+
 
 public class RealtimeSegmentConverterTest {
+  private static final File TEMP_DIR = new File(FileUtils.getTempDirectory(), "RealtimeSegmentConverterTest");
+  private static final String SEGMENT_NAME = "testSegment";
+  private static final int NUM_ROWS = 1000;
+
+  private static final String SORTED_COLUMN = "sortedColumn";
+  private static final String INVERTED_INDEX_COLUMN = "invertedIndexColumn";
+  private static final String RAW_STRING_COLUMN = "rawStringColumn";
+  private static final String BYTES_COLUMN = "bytesColumn";
+  private static final String MV_COLUMN = "mvColumn";
+  private static final String METRIC_COLUMN = "metricColumn";
+  private static final String RAW_METRIC_COLUMN = "rawMetricColumn";
 
   @Test
   public void testNoVirtualColumnsInSchema() {
@@ -73,4 +109,161 @@ public class RealtimeSegmentConverterTest {
     Schema newSchema = converter.getUpdatedSchema(schema);
     Assert.assertEquals(newSchema.getColumnNames().size(), 5);
   }
+
+  @Test
+  public void testBuildByColumnMatchesBuildByRow()
+      throws Exception {
+    Schema schema = new Schema();
+    schema.addField(new DimensionFieldSpec(SORTED_COLUMN, FieldSpec.DataType.INT, true));
+    schema.addField(new DimensionFieldSpec(INVERTED_INDEX_COLUMN, FieldSpec.DataType.STRING, true));
+    schema.addField(new DimensionFieldSpec(RAW_STRING_COLUMN, FieldSpec.DataType.STRING, true));
+    schema.addField(new DimensionFieldSpec(BYTES_COLUMN, FieldSpec.DataType.BYTES, true));
+    schema.addField(new DimensionFieldSpec(MV_COLUMN, FieldSpec.DataType.INT, false));
+    schema.addField(new MetricFieldSpec(METRIC_COLUMN, FieldSpec.DataType.LONG));
+    schema.addField(new MetricFieldSpec(RAW_METRIC_COLUMN, FieldSpec.DataType.DOUBLE));
+    List<String> invertedIndexColumns = Arrays.asList(INVERTED_INDEX_COLUMN, MV_COLUMN);
+    List<String> noDictionaryColumns = Arrays.asList(RAW_STRING_COLUMN, RAW_METRIC_COLUMN);
+
+    // The consuming segment keeps an inverted index on the sorted column to iterate the documents in sorted order
+    Set<String> mutableInvertedIndexColumns = new HashSet<>(invertedIndexColumns);
+    mutableInvertedIndexColumns.add(SORTED_COLUMN);
+    MutableSegmentImpl mutableSegment = MutableSegmentImplTestUtils
+        .createMutableSegmentImpl(schema, new HashSet<>(noDictionaryColumns), Collections.emptySet(),
+            mutableInvertedIndexColumns, false, true);
+    CompositeTransformer recordTransformer = CompositeTransformer.getDefaultTransformer(schema);
+    Random random = new Random();
+    for (int i = 0; i < NUM_ROWS; i++) {
+      GenericRow row = new GenericRow();
+      row.putValue(SORTED_COLUMN, random.nextInt(10));
+      // Leave some of the values out to generate null values
+      if (random.nextInt(10) != 0) {
+        row.putValue(INVERTED_INDEX_COLUMN, "value" + random.nextInt(20));
+      }
+      row.putValue(RAW_STRING_COLUMN, "rawValue" + random.nextInt());
+      if (random.nextInt(10) != 0) {
+        byte[] bytes = new byte[random.nextInt(8) + 1];
+        random.nextBytes(bytes);
+        row.putValue(BYTES_COLUMN, bytes);
+      }
+      if (random.nextInt(10) != 0) {
+        Object[] values = new Object[random.nextInt(3) + 1];
+        for (int j = 0; j < values.length; j++) {
+          values[j] = random.nextInt(50);
+        }
+        row.putValue(MV_COLUMN, values);
+      }
+      if (random.nextInt(10) != 0) {
+        row.putValue(METRIC_COLUMN, (long) random.nextInt(100));
+      }
+      row.putValue(RAW_METRIC_COLUMN, random.nextDouble());
+      Assert.assertTrue(mutableSegment.index(recordTransformer.transform(row), null));
+    }
+
+    TableConfig tableConfig = new TableConfigBuilder(TableType.REALTIME).setTableName("testTable").build();
+    ServerMetrics serverMetrics = mock(ServerMetrics.class);
+    File rowBasedOutputDir = new File(TEMP_DIR, "rowBased");
+    File columnBasedOutputDir = new File(TEMP_DIR, "columnBased");
+    try {
+      new RealtimeSegmentConverter(mutableSegment, rowBasedOutputDir.getAbsolutePath(), schema, "testTable",
+          tableConfig, SEGMENT_NAME, SORTED_COLUMN, invertedIndexColumns, noDictionaryColumns,
+          Collections.emptyList(), true).build(null, serverMetrics, false);
+      new RealtimeSegmentConverter(mutableSegment, columnBasedOutputDir.getAbsolutePath(), schema, "testTable",
+          tableConfig, SEGMENT_NAME, SORTED_COLUMN, invertedIndexColumns, noDictionaryColumns,
+          Collections.emptyList(), true).build(null, serverMetrics, true);
+    } finally {
+      mutableSegment.destroy();
+    }
+
+    File rowBasedIndexDir = new File(rowBasedOutputDir, SEGMENT_NAME);
+    File columnBasedIndexDir = new File(columnBasedOutputDir, SEGMENT_NAME);
+    SegmentMetadataImpl rowBasedSegmentMetadata = new SegmentMetadataImpl(rowBasedIndexDir);
+    SegmentMetadataImpl columnBasedSegmentMetadata = new SegmentMetadataImpl(columnBasedIndexDir);
+    Assert.assertEquals(columnBasedSegmentMetadata.getTotalDocs(), NUM_ROWS);
+    Assert.assertEquals(rowBasedSegmentMetadata.getTotalDocs(), NUM_ROWS);
+    for (FieldSpec fieldSpec : schema.getAllFieldSpecs()) {
+      String column = fieldSpec.getName();
+      // NOTE: ColumnMetadata.equals() compares the strings by reference, so compare the fields individually
+      ColumnMetadata expectedColumnMetadata = rowBasedSegmentMetadata.getColumnMetadataFor(column);
+      ColumnMetadata actualColumnMetadata = columnBasedSegmentMetadata.getColumnMetadataFor(column);
+      Assert.assertEquals(actualColumnMetadata.getCardinality(), expectedColumnMetadata.getCardinality(), column);
+      Assert.assertEquals(actualColumnMetadata.getTotalDocs(), expectedColumnMetadata.getTotalDocs(), column);
+      Assert.assertEquals(actualColumnMetadata.getBitsPerElement(), expectedColumnMetadata.getBitsPerElement(),
+          column);
+      Assert.assertEquals(actualColumnMetadata.isSorted(), expectedColumnMetadata.isSorted(), column);
+      Assert.assertEquals(actualColumnMetadata.hasDictionary(), expectedColumnMetadata.hasDictionary(), column);
+      Assert.assertEquals(actualColumnMetadata.hasInvertedIndex(), expectedColumnMetadata.hasInvertedIndex(), column);
+      Assert.assertEquals(actualColumnMetadata.getMaxNumberOfMultiValues(),
+          expectedColumnMetadata.getMaxNumberOfMultiValues(), column);
+      Assert.assertEquals(actualColumnMetadata.getTotalNumberOfEntries(),
+          expectedColumnMetadata.getTotalNumberOfEntries(), column);
+      Assert.assertEquals(actualColumnMetadata.getColumnMaxLength(), expectedColumnMetadata.getColumnMaxLength(),
+          column);
+    }
+    Assert.assertTrue(columnBasedSegmentMetadata.getColumnMetadataFor(SORTED_COLUMN).isSorted());
+
+    IndexLoadingConfig indexLoadingConfig = new IndexLoadingConfig();
+    indexLoadingConfig.setInvertedIndexColumns(new HashSet<>(invertedIndexColumns));
+    ImmutableSegment rowBasedSegment = ImmutableSegmentLoader.load(rowBasedIndexDir, indexLoadingConfig);
+    ImmutableSegment columnBasedSegment = ImmutableSegmentLoader.load(columnBasedIndexDir, indexLoadingConfig);
+    try {
+      for (FieldSpec fieldSpec : schema.getAllFieldSpecs()) {
+        compareColumn(rowBasedSegment, columnBasedSegment, fieldSpec);
+      }
+    } finally {
+      rowBasedSegment.destroy();
+      columnBasedSegment.destroy();
+    }
+  }
+
+  private static void compareColumn(ImmutableSegment expectedSegment, ImmutableSegment actualSegment,
+      FieldSpec fieldSpec) {
+    String column = fieldSpec.getName();
+    PinotSegmentColumnReader expectedReader = new PinotSegmentColumnReader(expectedSegment, column);
+    PinotSegmentColumnReader actualReader = new PinotSegmentColumnReader(actualSegment, column);
+    Assert.assertEquals(actualReader.hasDictionary(), expectedReader.hasDictionary(), column);
+    for (int docId = 0; docId < NUM_ROWS; docId++) {
+      if (fieldSpec.isSingleValueField()) {
+        Object expectedValue = expectedReader.readSV(docId, fieldSpec.getDataType());
+        Object actualValue = actualReader.readSV(docId, fieldSpec.getDataType());
+        if (fieldSpec.getDataType() == FieldSpec.DataType.BYTES) {
+          Assert.assertEquals((byte[]) actualValue, (byte[]) expectedValue, column);
+        } else {
+          Assert.assertEquals(actualValue, expectedValue, column);
+        }
+        if (expectedReader.hasDictionary()) {
+          Assert.assertEquals(actualReader.getDictionaryId(docId), expectedReader.getDictionaryId(docId), column);
+        }
+      } else {
+        Assert.assertEquals(actualReader.readMV(docId), expectedReader.readMV(docId), column);
+      }
+    }
+
+    DataSource expectedDataSource = expectedSegment.getDataSource(column);
+    DataSource actualDataSource = actualSegment.getDataSource(column);
+    InvertedIndexReader expectedInvertedIndex = expectedDataSource.getInvertedIndex();
+    InvertedIndexReader actualInvertedIndex = actualDataSource.getInvertedIndex();
+    if (expectedInvertedIndex == null) {
+      Assert.assertNull(actualInvertedIndex, column);
+    } else {
+      Assert.assertNotNull(actualInvertedIndex, column);
+      int cardinality = expectedDataSource.getDictionary().length();
+      for (int dictId = 0; dictId < cardinality; dictId++) {
+        Assert.assertEquals(actualInvertedIndex.getDocIds(dictId), expectedInvertedIndex.getDocIds(dictId), column);
+      }
+    }
+
+    NullValueVectorReader expectedNullValueVector = expectedDataSource.getNullValueVector();
+    NullValueVectorReader actualNullValueVector = actualDataSource.getNullValueVector();
+    if (expectedNullValueVector == null) {
+      Assert.assertNull(actualNullValueVector, column);
+    } else {
+      Assert.assertNotNull(actualNullValueVector, column);
+      Assert.assertEquals(actualNullValueVector.getNullBitmap(), expectedNullValueVector.getNullBitmap(), column);
+    }
+  }
+
+  @AfterClass
+  public void tearDown() {
+    FileUtils.deleteQuietly(TEMP_DIR);
+  }
 }
@@ -29,6 +29,9 @@ public class KafkaConsumerFactory extends StreamConsumerFactory {
 
   @Override
   public PartitionLevelConsumer createPartitionLevelConsumer(String clientId, int partition) {
+    if (_streamConfig.isSharedConsumerEnabled()) {
+      return new KafkaSharedPartitionLevelConsumer(clientId, _streamConfig, partition);
+    }
     return new KafkaPartitionLevelConsumer(clientId, _streamConfig, partition);
   }
 
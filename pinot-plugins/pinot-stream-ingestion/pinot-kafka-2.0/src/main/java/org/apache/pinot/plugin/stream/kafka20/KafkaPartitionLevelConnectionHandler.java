@@ -51,14 +51,21 @@ public abstract class KafkaPartitionLevelConnectionHandler {
     _clientId = clientId;
     _partition = partition;
     _topic = _config.getKafkaTopicName();
+    _consumer = new KafkaConsumer<>(getConsumerProperties(streamConfig, _config));
+    _topicPartition = new TopicPartition(_topic, _partition);
+    _consumer.assign(Collections.singletonList(_topicPartition));
+  }
+
+  /**
+   * Returns the properties to create a {@link KafkaConsumer} for the given stream.
+   */
+  static Properties getConsumerProperties(StreamConfig streamConfig, KafkaPartitionLevelStreamConfig config) {
     Properties consumerProp = new Properties();
     consumerProp.putAll(streamConfig.getStreamConfigsMap());
-    consumerProp.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, _config.getBootstrapHosts());
+    consumerProp.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, config.getBootstrapHosts());
     consumerProp.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class.getName());
     consumerProp.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, BytesDeserializer.class.getName());
-    _consumer = new KafkaConsumer<>(consumerProp);
-    _topicPartition = new TopicPartition(_topic, _partition);
-    _consumer.assign(Collections.singletonList(_topicPartition));
+    return consumerProp;
   }
 
   public void close()
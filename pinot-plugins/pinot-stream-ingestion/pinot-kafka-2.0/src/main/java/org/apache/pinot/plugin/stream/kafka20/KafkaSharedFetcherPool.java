@@ -0,0 +1,390 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.plugin.stream.kafka20;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.InvalidOffsetException;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.RecordTooLargeException;
+import org.apache.kafka.common.errors.TopicAuthorizationException;
+import org.apache.kafka.common.errors.WakeupException;
+import org.apache.kafka.common.utils.Bytes;
+import org.apache.pinot.spi.stream.StreamConfigProperties;
+import org.apache.pinot.spi.stream.TransientConsumerException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Pool of fetch threads, each owning a single {@link KafkaConsumer}, onto which the partition level consumers of the
+ * same Kafka cluster are multiplexed.
+ * <p>Each fetch thread polls all of its assigned partitions, and dispatches the polled records to the
+ * {@link PartitionQueue} of each partition, from which the {@link KafkaSharedPartitionLevelConsumer}s serve their
+ * fetches. A partition is paused on its fetch thread until its consumer requests an offset, and whenever its queue is
+ * full, so that slow partitions do not buffer unbounded records.
+ * <p>Errors attributed to specific partitions (e.g. offset out of range, unauthorized topic) are only reported to the
+ * consumers of these partitions, and these partitions are paused until their consumers seek again, so that a failing
+ * partition does not block the other partitions of the fetch thread.
+ * <p>Pools are shared by consumer properties and reference counted: the first registered partition sets the number of
+ * fetch threads, and the pool is shut down once its last partition is released.
+ * <p>NOTE: Only the Kafka connections and the fetching are shared. Decoding and indexing of the fetched records still
+ * run on the consuming thread of each partition, so the number of consuming threads still grows with the number of
+ * partitions.
+ */
+public class KafkaSharedFetcherPool {
+  private static final Logger LOGGER = LoggerFactory.getLogger(KafkaSharedFetcherPool.class);
+  private static final Map<Properties, KafkaSharedFetcherPool> POOLS = new HashMap<>();
+  private static final AtomicInteger FETCHER_ID_GENERATOR = new AtomicInteger();
+
+  private static final long POLL_TIMEOUT_MILLIS = 100L;
+  // Max number of polled record batches buffered for a partition before the partition is paused
+  private static final int MAX_BUFFERED_BATCHES_PER_PARTITION = 2;
+
+  private final Properties _consumerProperties;
+  private final List<Fetcher> _fetchers = new ArrayList<>();
+  // Guarded by POOLS
+  private int _numPartitions;
+
+  private KafkaSharedFetcherPool(Properties consumerProperties, int numFetchers) {
+    _consumerProperties = consumerProperties;
+    for (int i = 0; i < numFetchers; i++) {
+      _fetchers.add(new Fetcher());
+    }
+  }
+
+  /**
+   * Registers a partition to the pool for the given consumer properties (creating the pool if needed), and returns the
+   * queue to fetch the records of the partition from. The queue must be released with {@link #release(PartitionQueue)}.
+   */
+  public static PartitionQueue register(Properties consumerProperties, int numFetchers, TopicPartition topicPartition) {
+    Properties poolKey = getPoolKey(consumerProperties);
+    synchronized (POOLS) {
+      KafkaSharedFetcherPool pool = POOLS.get(poolKey);
+      if (pool == null) {
+        // Build the Kafka consumers from the pool key only, so that the consumers do not carry the table specific
+        // configs of the first registered partition
+        pool = new KafkaSharedFetcherPool(poolKey, numFetchers);
+        POOLS.put(poolKey, pool);
+        LOGGER.info("Created shared fetcher pool with {} fetchers for brokers: {}", numFetchers,
+            poolKey.get(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG));
+      }
+      pool._numPartitions++;
+      return pool.getFetcherForPartition(topicPartition).register(topicPartition, pool, poolKey);
+    }
+  }
+
+  /**
+   * Releases the partition of the given queue from its fetch thread, and shuts down the pool if it was the last
+   * partition of the pool.
+   */
+  public static void release(PartitionQueue partitionQueue) {
+    synchronized (POOLS) {
+      partitionQueue._fetcher.unregister(partitionQueue._topicPartition);
+      KafkaSharedFetcherPool pool = partitionQueue._pool;
+      if (--pool._numPartitions == 0) {
+        for (Fetcher fetcher : pool._fetchers) {
+          fetcher.shutDown();
+        }
+        POOLS.remove(partitionQueue._poolKey);
+        LOGGER.info("Shut down shared fetcher pool for brokers: {}",
+            pool._consumerProperties.get(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG));
+      }
+    }
+  }
+
+  /**
+   * Pinot specific stream configs (e.g. topic name, flush thresholds) are ignored by the Kafka consumer, so they are
+   * excluded from the pool key to share the pool across the tables consuming from the same cluster. The pool key is
+   * also used as the properties of the Kafka consumers of the pool.
+   */
+  private static Properties getPoolKey(Properties consumerProperties) {
+    Properties poolKey = new Properties();
+    for (Map.Entry<Object, Object> entry : consumerProperties.entrySet()) {
+      String key = entry.getKey().toString();
+      if (!key.startsWith(StreamConfigProperties.STREAM_PREFIX + StreamConfigProperties.DOT_SEPARATOR) && !key
+          .startsWith("realtime.")) {
+        poolKey.put(entry.getKey(), entry.getValue());
+      }
+    }
+    return poolKey;
+  }
+
+  /**
+   * Returns the least loaded fetcher not consuming the partition yet. A partition can only be assigned once to a Kafka
+   * consumer, so an extra fetcher is added in the rare case of all fetchers consuming the partition (e.g. multiple
+   * tables consuming the same topic).
+   */
+  private Fetcher getFetcherForPartition(TopicPartition topicPartition) {
+    Fetcher selectedFetcher = null;
+    for (Fetcher fetcher : _fetchers) {
+      if (!fetcher._partitionQueues.containsKey(topicPartition) && (selectedFetcher == null
+          || fetcher._partitionQueues.size() < selectedFetcher._partitionQueues.size())) {
+        selectedFetcher = fetcher;
+      }
+    }
+    if (selectedFetcher == null) {
+      selectedFetcher = new Fetcher();
+      _fetchers.add(selectedFetcher);
+    }
+    return selectedFetcher;
+  }
+
+  /**
+   * Fetch thread which polls all of its assigned partitions with a single Kafka consumer.
+   */
+  private class Fetcher implements Runnable {
+    final Map<TopicPartition, PartitionQueue> _partitionQueues = new ConcurrentHashMap<>();
+    final Consumer<String, Bytes> _consumer;
+    final Thread _thread;
+    volatile boolean _assignmentChanged;
+    volatile boolean _shutDown;
+
+    Fetcher() {
+      _consumer = new KafkaConsumer<>(_consumerProperties);
+      _thread = new Thread(this, "KafkaSharedFetcher-" + FETCHER_ID_GENERATOR.getAndIncrement());
+      _thread.setDaemon(true);
+      _thread.start();
+    }
+
+    PartitionQueue register(TopicPartition topicPartition, KafkaSharedFetcherPool pool, Properties poolKey) {
+      PartitionQueue partitionQueue = new PartitionQueue(topicPartition, this, pool, poolKey);
+      _partitionQueues.put(topicPartition, partitionQueue);
+      _assignmentChanged = true;
+      _consumer.wakeup();
+      return partitionQueue;
+    }
+
+    void unregister(TopicPartition topicPartition) {
+      _partitionQueues.remove(topicPartition);
+      _assignmentChanged = true;
+      _consumer.wakeup();
+    }
+
+    void shutDown() {
+      _shutDown = true;
+      _consumer.wakeup();
+    }
+
+    @Override
+    public void run() {
+      try {
+        while (!_shutDown) {
+          try {
+            fetch();
+          } catch (WakeupException e) {
+            // Woken up for assignment change, seek or shut down
+          } catch (Exception e) {
+            Set<TopicPartition> failedPartitions = getFailedPartitions(e);
+            if (failedPartitions != null && !failedPartitions.isEmpty()) {
+              LOGGER.warn("Caught exception while fetching partitions: {} from Kafka in thread: {}", failedPartitions,
+                  _thread.getName(), e);
+              for (TopicPartition topicPartition : failedPartitions) {
+                PartitionQueue partitionQueue = _partitionQueues.get(topicPartition);
+                if (partitionQueue != null) {
+                  partitionQueue.setFailed(e);
+                }
+              }
+            } else {
+              LOGGER.warn("Caught exception while fetching from Kafka in thread: {}", _thread.getName(), e);
+              for (PartitionQueue partitionQueue : _partitionQueues.values()) {
+                partitionQueue.setException(e);
+              }
+              Thread.sleep(POLL_TIMEOUT_MILLIS);
+            }
+          }
+        }
+      } catch (InterruptedException e) {
+        LOGGER.warn("Interrupted fetch thread: {}", _thread.getName());
+      } finally {
+        _consumer.close();
+      }
+    }
+
+    /**
+     * Returns the partitions the given exception is attributed to, or {@code null} if the exception cannot be
+     * attributed to specific partitions (e.g. connection error), in which case all partitions are affected.
+     */
+    private Set<TopicPartition> getFailedPartitions(Exception e) {
+      if (e instanceof InvalidOffsetException) {
+        return ((InvalidOffsetException) e).partitions();
+      }
+      if (e instanceof RecordTooLargeException && ((RecordTooLargeException) e).recordTooLargePartitions() != null) {
+        return ((RecordTooLargeException) e).recordTooLargePartitions().keySet();
+      }
+      if (e instanceof TopicAuthorizationException) {
+        Set<String> unauthorizedTopics = ((TopicAuthorizationException) e).unauthorizedTopics();
+        Set<TopicPartition> failedPartitions = new HashSet<>();
+        for (TopicPartition topicPartition : _partitionQueues.keySet()) {
+          if (unauthorizedTopics.contains(topicPartition.topic())) {
+            failedPartitions.add(topicPartition);
+          }
+        }
+        return failedPartitions;
+      }
+      return null;
+    }
+
+    private void fetch()
+        throws InterruptedException {
+      if (_assignmentChanged) {
+        _assignmentChanged = false;
+        // Partitions already assigned keep their position and pause state
+        _consumer.assign(new HashSet<>(_partitionQueues.keySet()));
+      }
+      Set<TopicPartition> assignment = _consumer.assignment();
+      if (assignment.isEmpty()) {
+        Thread.sleep(POLL_TIMEOUT_MILLIS);
+        return;
+      }
+
+      List<TopicPartition> partitionsToPause = new ArrayList<>();
+      List<TopicPartition> partitionsToResume = new ArrayList<>();
+      for (PartitionQueue partitionQueue : _partitionQueues.values()) {
+        TopicPartition topicPartition = partitionQueue._topicPartition;
+        if (!assignment.contains(topicPartition)) {
+          continue;
+        }
+        synchronized (partitionQueue) {
+          if (partitionQueue._seekOffset >= 0) {
+            _consumer.seek(topicPartition, partitionQueue._seekOffset);
+            partitionQueue._seekOffset = -1;
+            partitionQueue._appliedGeneration = partitionQueue._requestedGeneration;
+          }
+          if (partitionQueue._appliedGeneration > 0 && !partitionQueue._failed
+              && partitionQueue._batches.size() < MAX_BUFFERED_BATCHES_PER_PARTITION) {
+            partitionsToResume.add(topicPartition);
+          } else {
+            partitionsToPause.add(topicPartition);
+          }
+        }
+      }
+      _consumer.pause(partitionsToPause);
+      _consumer.resume(partitionsToResume);
+
+      ConsumerRecords<String, Bytes> consumerRecords = _consumer.poll(Duration.ofMillis(POLL_TIMEOUT_MILLIS));
+      for (TopicPartition topicPartition : consumerRecords.partitions()) {
+        PartitionQueue partitionQueue = _partitionQueues.get(topicPartition);
+        if (partitionQueue != null) {
+          partitionQueue.add(consumerRecords.records(topicPartition));
+        }
+      }
+    }
+  }
+
+  /**
+   * Queue of the records polled for a partition by its fetch thread.
+   * <p>Each seek starts a new generation, and the records polled before the seek is applied on the fetch thread are
+   * discarded, so that the queue only serves records from the last requested offset. A partition failed on its own is
+   * paused until the next seek.
+   */
+  public static class PartitionQueue {
+    private final TopicPartition _topicPartition;
+    private final Fetcher _fetcher;
+    private final KafkaSharedFetcherPool _pool;
+    private final Properties _poolKey;
+    private final ArrayDeque<List<ConsumerRecord<String, Bytes>>> _batches = new ArrayDeque<>();
+
+    private long _seekOffset = -1;
+    private int _requestedGeneration;
+    private int _appliedGeneration;
+    private Exception _exception;
+    private boolean _failed;
+
+    private PartitionQueue(TopicPartition topicPartition, Fetcher fetcher, KafkaSharedFetcherPool pool,
+        Properties poolKey) {
+      _topicPartition = topicPartition;
+      _fetcher = fetcher;
+      _pool = pool;
+      _poolKey = poolKey;
+    }
+
+    /**
+     * Requests the fetch thread to fetch the partition from the given offset, and discards the buffered records.
+     */
+    public void seek(long offset) {
+      synchronized (this) {
+        _seekOffset = offset;
+        _requestedGeneration++;
+        _batches.clear();
+        _exception = null;
+        _failed = false;
+      }
+      _fetcher._consumer.wakeup();
+    }
+
+    /**
+     * Returns the next batch of polled records, or an empty list if no records are polled within the timeout.
+     */
+    public synchronized List<ConsumerRecord<String, Bytes>> poll(long timeoutMillis)
+        throws InterruptedException {
+      long deadline = System.currentTimeMillis() + timeoutMillis;
+      while (_batches.isEmpty() && _exception == null) {
+        long remainingTimeMillis = deadline - System.currentTimeMillis();
+        if (remainingTimeMillis <= 0) {
+          return Collections.emptyList();
+        }
+        wait(remainingTimeMillis);
+      }
+      if (_exception != null) {
+        Exception exception = _exception;
+        _exception = null;
+        throw new TransientConsumerException(exception);
+      }
+      return _batches.poll();
+    }
+
+    private synchronized void add(List<ConsumerRecord<String, Bytes>> records) {
+      // Records polled before the last seek was applied
+      if (_appliedGeneration != _requestedGeneration) {
+        return;
+      }
+      _batches.add(records);
+      notifyAll();
+    }
+
+    private synchronized void setException(Exception exception) {
+      _exception = exception;
+      notifyAll();
+    }
+
+    /**
+     * Sets the exception attributed to this partition, and pauses the partition until the next seek.
+     */
+    private synchronized void setFailed(Exception exception) {
+      _failed = true;
+      setException(exception);
+    }
+  }
+}
@@ -0,0 +1,97 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.plugin.stream.kafka20;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.utils.Bytes;
+import org.apache.pinot.spi.stream.MessageBatch;
+import org.apache.pinot.spi.stream.PartitionLevelConsumer;
+import org.apache.pinot.spi.stream.StreamConfig;
+import org.apache.pinot.spi.stream.TransientConsumerException;
+
+
+/**
+ * {@link PartitionLevelConsumer} which fetches the messages of its partition from a {@link KafkaSharedFetcherPool},
+ * instead of holding its own Kafka consumer and connection.
+ * <p>The fetch thread keeps fetching ahead from the offset of the last fetch, so the consumer only seeks when the
+ * requested start offset does not follow the previously returned messages.
+ */
+public class KafkaSharedPartitionLevelConsumer implements PartitionLevelConsumer {
+  private final KafkaSharedFetcherPool.PartitionQueue _partitionQueue;
+
+  // Offset following the last returned message, or -1 if the next fetch needs to seek
+  private long _nextOffset = -1;
+  private boolean _closed;
+
+  public KafkaSharedPartitionLevelConsumer(String clientId, StreamConfig streamConfig, int partition) {
+    KafkaPartitionLevelStreamConfig config = new KafkaPartitionLevelStreamConfig(streamConfig);
+    _partitionQueue = KafkaSharedFetcherPool
+        .register(KafkaPartitionLevelConnectionHandler.getConsumerProperties(streamConfig, config),
+            streamConfig.getSharedConsumerNumFetchers(), new TopicPartition(config.getKafkaTopicName(), partition));
+  }
+
+  @Override
+  public synchronized MessageBatch fetchMessages(long startOffset, long endOffset, int timeoutMillis)
+      throws TimeoutException {
+    if (startOffset != _nextOffset) {
+      _partitionQueue.seek(startOffset);
+      _nextOffset = startOffset;
+    }
+
+    List<ConsumerRecord<String, Bytes>> records;
+    try {
+      records = _partitionQueue.poll(timeoutMillis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new TransientConsumerException(e);
+    } catch (TransientConsumerException e) {
+      // The partition is paused on failure, so the next fetch needs to seek to resume it
+      _nextOffset = -1;
+      throw e;
+    }
+
+    // Filter messages that are either null or have an offset ∉ [startOffset, endOffset]
+    List<ConsumerRecord<String, Bytes>> filteredRecords = new ArrayList<>(records.size());
+    for (ConsumerRecord<String, Bytes> record : records) {
+      if (record == null || record.offset() < startOffset) {
+        continue;
+      }
+      if (endOffset != -1 && record.offset() >= endOffset) {
+        // Messages beyond the end offset are dropped, so the next fetch needs to seek back
+        _nextOffset = -1;
+        break;
+      }
+      filteredRecords.add(record);
+      _nextOffset = record.offset() + 1;
+    }
+    return new KafkaMessageBatch(filteredRecords);
+  }
+
+  @Override
+  public synchronized void close() {
+    if (!_closed) {
+      _closed = true;
+      KafkaSharedFetcherPool.release(_partitionQueue);
+    }
+  }
+}
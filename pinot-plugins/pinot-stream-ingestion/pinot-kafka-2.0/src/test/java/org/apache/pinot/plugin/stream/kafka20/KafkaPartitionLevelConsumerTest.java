@@ -22,6 +22,7 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.Properties;
 import java.util.concurrent.TimeoutException;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
 import org.apache.kafka.clients.producer.KafkaProducer;
 import org.apache.kafka.clients.producer.ProducerConfig;
 import org.apache.kafka.clients.producer.ProducerRecord;
@@ -34,6 +35,7 @@ import org.apache.pinot.spi.stream.PartitionLevelConsumer;
 import org.apache.pinot.spi.stream.StreamConfig;
 import org.apache.pinot.spi.stream.StreamConsumerFactory;
 import org.apache.pinot.spi.stream.StreamConsumerFactoryProvider;
+import org.apache.pinot.spi.stream.TransientConsumerException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.testng.Assert;
@@ -296,6 +298,127 @@ public class KafkaPartitionLevelConsumerTest {
     }
   }
 
+  @Test
+  public void testSharedConsumer()
+      throws Exception {
+    String streamType = "kafka";
+    String streamKafkaBrokerList = "127.0.0.1:" + kafkaCluster.getKafkaServerPort(0);
+    String streamKafkaConsumerType = "simple";
+    String clientId = "clientId";
+    String tableNameWithType = "tableName_REALTIME";
+
+    Map<String, String> streamConfigMap = new HashMap<>();
+    streamConfigMap.put("streamType", streamType);
+    streamConfigMap.put("stream.kafka.topic.name", TEST_TOPIC_2);
+    streamConfigMap.put("stream.kafka.broker.list", streamKafkaBrokerList);
+    streamConfigMap.put("stream.kafka.consumer.type", streamKafkaConsumerType);
+    streamConfigMap.put("stream.kafka.consumer.factory.class.name", getKafkaConsumerFactoryName());
+    streamConfigMap.put("stream.kafka.decoder.class.name", "decoderClass");
+    streamConfigMap.put("stream.kafka.consumer.shared.enabled", "true");
+    streamConfigMap.put("stream.kafka.consumer.shared.num.fetchers", "1");
+    StreamConfig streamConfig = new StreamConfig(tableNameWithType, streamConfigMap);
+
+    StreamConsumerFactory streamConsumerFactory = StreamConsumerFactoryProvider.create(streamConfig);
+    // Both partitions are multiplexed onto the same fetch thread
+    PartitionLevelConsumer consumer0 = streamConsumerFactory.createPartitionLevelConsumer(clientId, 0);
+    PartitionLevelConsumer consumer1 = streamConsumerFactory.createPartitionLevelConsumer(clientId, 1);
+    Assert.assertTrue(consumer0 instanceof KafkaSharedPartitionLevelConsumer);
+
+    // Consume both partitions in turns until the end
+    long[] offsets = new long[2];
+    PartitionLevelConsumer[] consumers = {consumer0, consumer1};
+    long deadline = System.currentTimeMillis() + 60_000L;
+    while ((offsets[0] < NUM_MSG_PRODUCED_PER_PARTITION || offsets[1] < NUM_MSG_PRODUCED_PER_PARTITION)
+        && System.currentTimeMillis() < deadline) {
+      for (int partition = 0; partition < 2; partition++) {
+        MessageBatch batch = consumers[partition].fetchMessages(offsets[partition], -1, 1000);
+        for (int i = 0; i < batch.getMessageCount(); i++) {
+          byte[] msg = (byte[]) batch.getMessageAtIndex(i);
+          Assert.assertEquals(new String(msg), "sample_msg_" + offsets[partition]);
+          Assert.assertEquals(batch.getNextStreamMessageOffsetAtIndex(i), offsets[partition] + 1);
+          offsets[partition]++;
+        }
+      }
+    }
+    Assert.assertEquals(offsets[0], NUM_MSG_PRODUCED_PER_PARTITION);
+    Assert.assertEquals(offsets[1], NUM_MSG_PRODUCED_PER_PARTITION);
+
+    // Seek back to some random range
+    MessageBatch batch;
+    do {
+      batch = consumer0.fetchMessages(10, 35, 1000);
+    } while (batch.getMessageCount() == 0 && System.currentTimeMillis() < deadline);
+    Assert.assertTrue(batch.getMessageCount() > 0 && batch.getMessageCount() <= 25);
+    for (int i = 0; i < batch.getMessageCount(); i++) {
+      Assert.assertEquals(new String((byte[]) batch.getMessageAtIndex(i)), "sample_msg_" + (10 + i));
+    }
+
+    consumer0.close();
+    consumer1.close();
+  }
+
+  @Test
+  public void testSharedConsumerWithFailingPartition()
+      throws Exception {
+    String streamType = "kafka";
+    String streamKafkaBrokerList = "127.0.0.1:" + kafkaCluster.getKafkaServerPort(0);
+    String streamKafkaConsumerType = "simple";
+    String clientId = "clientId";
+    String tableNameWithType = "tableName_REALTIME";
+
+    Map<String, String> streamConfigMap = new HashMap<>();
+    streamConfigMap.put("streamType", streamType);
+    streamConfigMap.put("stream.kafka.topic.name", TEST_TOPIC_2);
+    streamConfigMap.put("stream.kafka.broker.list", streamKafkaBrokerList);
+    streamConfigMap.put("stream.kafka.consumer.type", streamKafkaConsumerType);
+    streamConfigMap.put("stream.kafka.consumer.factory.class.name", getKafkaConsumerFactoryName());
+    streamConfigMap.put("stream.kafka.decoder.class.name", "decoderClass");
+    streamConfigMap.put("stream.kafka.consumer.shared.enabled", "true");
+    streamConfigMap.put("stream.kafka.consumer.shared.num.fetchers", "1");
+    // Fail on out of range offsets instead of resetting the offset
+    streamConfigMap.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "none");
+    StreamConfig streamConfig = new StreamConfig(tableNameWithType, streamConfigMap);
+
+    StreamConsumerFactory streamConsumerFactory = StreamConsumerFactoryProvider.create(streamConfig);
+    // Both partitions are multiplexed onto the same fetch thread
+    PartitionLevelConsumer consumer0 = streamConsumerFactory.createPartitionLevelConsumer(clientId, 0);
+    PartitionLevelConsumer consumer1 = streamConsumerFactory.createPartitionLevelConsumer(clientId, 1);
+
+    // Partition 0 keeps fetching from an out of range offset, which should not affect partition 1
+    long outOfRangeOffset = 10 * NUM_MSG_PRODUCED_PER_PARTITION;
+    int numFailures = 0;
+    long offset = 0;
+    long deadline = System.currentTimeMillis() + 60_000L;
+    while ((numFailures == 0 || offset < NUM_MSG_PRODUCED_PER_PARTITION) && System.currentTimeMillis() < deadline) {
+      try {
+        MessageBatch batch = consumer0.fetchMessages(outOfRangeOffset, -1, 100);
+        Assert.assertEquals(batch.getMessageCount(), 0);
+      } catch (TransientConsumerException e) {
+        numFailures++;
+      }
+      MessageBatch batch = consumer1.fetchMessages(offset, -1, 1000);
+      for (int i = 0; i < batch.getMessageCount(); i++) {
+        Assert.assertEquals(new String((byte[]) batch.getMessageAtIndex(i)), "sample_msg_" + offset);
+        offset++;
+      }
+    }
+    Assert.assertTrue(numFailures > 0);
+    Assert.assertEquals(offset, NUM_MSG_PRODUCED_PER_PARTITION);
+
+    // Partition 0 should recover once seeking to a valid offset
+    MessageBatch batch;
+    do {
+      batch = consumer0.fetchMessages(0, NUM_MSG_PRODUCED_PER_PARTITION, 1000);
+    } while (batch.getMessageCount() == 0 && System.currentTimeMillis() < deadline);
+    Assert.assertTrue(batch.getMessageCount() > 0);
+    for (int i = 0; i < batch.getMessageCount(); i++) {
+      Assert.assertEquals(new String((byte[]) batch.getMessageAtIndex(i)), "sample_msg_" + i);
+    }
+
+    consumer0.close();
+    consumer1.close();
+  }
+
   protected String getKafkaConsumerFactoryName() {
     return KafkaConsumerFactory.class.getName();
   }
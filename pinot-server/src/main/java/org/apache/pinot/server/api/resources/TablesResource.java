@@ -54,6 +54,7 @@ import org.apache.pinot.common.utils.TarGzCompressionUtils;
 import org.apache.pinot.core.data.manager.InstanceDataManager;
 import org.apache.pinot.core.data.manager.SegmentDataManager;
 import org.apache.pinot.core.data.manager.TableDataManager;
+import org.apache.pinot.core.indexsegment.immutable.ImmutableSegment;
 import org.apache.pinot.core.segment.index.metadata.SegmentMetadataImpl;
 import org.apache.pinot.server.api.access.AccessControl;
 import org.apache.pinot.server.api.access.AccessControlFactory;
@@ -223,6 +224,12 @@ public class TablesResource {
           Response.Status.NOT_FOUND);
     }
     try {
+      // Only serve the completed segments, consuming segments do not have a segment directory to tar
+      if (!(segmentDataManager.getSegment() instanceof ImmutableSegment)) {
+        throw new WebApplicationException(
+            String.format("Table %s segment %s is not an immutable segment", tableNameWithType, segmentName),
+            Response.Status.NOT_FOUND);
+      }
       // TODO Limit the number of concurrent downloads of segments because compression is an expensive operation.
       // Store the tar.gz segment file in the server's segmentTarDir folder with a unique file name.
       // Note that two clients asking the same segment file will result in the same tar.gz files being created twice.
@@ -27,6 +27,9 @@ public class NettyServerConfig {
   // Netty server port
   private static String NETTY_SERVER_PORT = "port";
 
+  // Whether to use the native epoll transport, falls back to NIO transport when the native library is not available
+  private static String NETTY_SERVER_NATIVE_TRANSPORT_ENABLED = "native.transport.enabled";
+
   private Configuration _serverNettyConfig;
 
   public NettyServerConfig(Configuration serverNettyConfig)
@@ -43,4 +46,11 @@ public class NettyServerConfig {
   public int getPort() {
     return _serverNettyConfig.getInt(NETTY_SERVER_PORT);
   }
+
+  /**
+   * @return Whether native transport is enabled
+   */
+  public boolean isNativeTransportEnabled() {
+    return _serverNettyConfig.getBoolean(NETTY_SERVER_NATIVE_TRANSPORT_ENABLED, false);
+  }
 }
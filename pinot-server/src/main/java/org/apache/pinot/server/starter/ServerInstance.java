@@ -33,6 +33,7 @@ import org.apache.pinot.core.query.executor.QueryExecutor;
 import org.apache.pinot.core.query.scheduler.QueryScheduler;
 import org.apache.pinot.core.query.scheduler.QuerySchedulerFactory;
 import org.apache.pinot.core.transport.QueryServer;
+import org.apache.pinot.server.conf.NettyServerConfig;
 import org.apache.pinot.server.conf.ServerConf;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -81,9 +82,11 @@ public class ServerInstance {
     _queryScheduler =
         QuerySchedulerFactory.create(serverConf.getSchedulerConfig(), _queryExecutor, _serverMetrics, _latestQueryTime);
 
-    int queryServerPort = serverConf.getNettyConfig().getPort();
+    NettyServerConfig nettyServerConfig = serverConf.getNettyConfig();
+    int queryServerPort = nettyServerConfig.getPort();
     LOGGER.info("Initializing query server on port: {}", queryServerPort);
-    _queryServer = new QueryServer(queryServerPort, _queryScheduler, _serverMetrics);
+    _queryServer = new QueryServer(queryServerPort, _queryScheduler, _serverMetrics,
+        nettyServerConfig.isNativeTransportEnabled());
 
     LOGGER.info("Initializing transform functions");
     Set<Class<TransformFunction>> transformFunctionClasses = new HashSet<>();
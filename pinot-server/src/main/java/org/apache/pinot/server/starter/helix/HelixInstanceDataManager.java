@@ -92,7 +92,7 @@ public class HelixInstanceDataManager implements InstanceDataManager {
     }
 
     // Initialize the table data manager provider
-    TableDataManagerProvider.init(_instanceDataManagerConfig);
+    TableDataManagerProvider.init(_instanceDataManagerConfig, _helixManager, _serverMetrics);
 
     LOGGER.info("Initialized Helix instance data manager");
   }
@@ -78,6 +78,21 @@ public class HelixInstanceDataManagerConfig implements InstanceDataManagerConfig
   // The metric ServerGauge.REALTIME_OFFHEAP_MEMORY_USED should indicate how much memory is needed.
   private static final String DIRECT_REALTIME_OFFHEAP_ALLOCATION = "realtime.alloc.offheap.direct";
 
+  // Whether the stream messages of LLC consuming segments should be decoded and transformed on a separate thread, which
+  // also prefetches the next message batch, so that fetching and decoding overlap with indexing.
+  private static final String REALTIME_PIPELINED_CONSUMPTION = "realtime.consumption.pipelined";
+  // Max number of decoded messages buffered between the decoding and indexing threads in pipelined consumption.
+  private static final String REALTIME_PIPELINE_BUFFER_SIZE = "realtime.consumption.pipeline.buffer.size";
+  private static final int DEFAULT_REALTIME_PIPELINE_BUFFER_SIZE = 1024;
+
+  // Whether completed LLC segments should be downloaded from the peer servers hosting them (ONLINE in the external view)
+  // before falling back to the download URL (controller or deep store).
+  private static final String PEER_SEGMENT_DOWNLOAD_ENABLED = "realtime.peer.segment.download.enabled";
+
+  // Max size of the idle direct buffers kept by the server-wide pool to recycle across consuming segments. The pool is
+  // disabled if not positive.
+  private static final String REALTIME_OFFHEAP_BUFFER_POOL_MAX_BYTES = "realtime.offheap.buffer.pool.max.bytes";
+
   // Number of simultaneous segments that can be refreshed on one server.
   // Segment refresh works by loading the old as well as new versions of segments in memory, assigning
   // new incoming queries to use the new version. The old version is dropped when all the queries that
@@ -175,6 +190,27 @@ public class HelixInstanceDataManagerConfig implements InstanceDataManagerConfig
     return _instanceDataManagerConfiguration.getBoolean(DIRECT_REALTIME_OFFHEAP_ALLOCATION, false);
   }
 
+  @Override
+  public boolean isRealtimePipelinedConsumption() {
+    return _instanceDataManagerConfiguration.getBoolean(REALTIME_PIPELINED_CONSUMPTION, false);
+  }
+
+  @Override
+  public int getRealtimePipelineBufferSize() {
+    return _instanceDataManagerConfiguration
+        .getInt(REALTIME_PIPELINE_BUFFER_SIZE, DEFAULT_REALTIME_PIPELINE_BUFFER_SIZE);
+  }
+
+  @Override
+  public boolean isPeerSegmentDownloadEnabled() {
+    return _instanceDataManagerConfiguration.getBoolean(PEER_SEGMENT_DOWNLOAD_ENABLED, false);
+  }
+
+  @Override
+  public long getRealtimeOffHeapBufferPoolMaxBytes() {
+    return _instanceDataManagerConfiguration.getLong(REALTIME_OFFHEAP_BUFFER_POOL_MAX_BYTES, -1L);
+  }
+
   public boolean shouldReloadConsumingSegment() {
     return _instanceDataManagerConfiguration
         .getBoolean(INSTANCE_RELOAD_CONSUMING_SEGMENT, Server.DEFAULT_RELOAD_CONSUMING_SEGMENT);
@@ -29,6 +29,7 @@ import javax.annotation.Nullable;
 public class RoutingConfig extends BaseJsonConfig {
   public static final String PARTITION_SEGMENT_PRUNER_TYPE = "partition";
   public static final String REPLICA_GROUP_INSTANCE_SELECTOR_TYPE = "replicaGroup";
+  public static final String LATENCY_AWARE_INSTANCE_SELECTOR_TYPE = "latencyAware";
 
   // Replaced by _segmentPrunerTypes and _instanceSelectorType
   @Deprecated
@@ -25,6 +25,8 @@ import org.apache.pinot.spi.annotations.InterfaceStability;
 
 /**
  * Interface for a consumer which fetches messages at the partition level of a stream, for given offsets
+ * <p>A consumer is used by a single partition, but may be multiplexed with other partitions onto shared fetch threads
+ * and connections (see {@link StreamConfig#isSharedConsumerEnabled()}).
  */
 @InterfaceAudience.Public
 @InterfaceStability.Stable
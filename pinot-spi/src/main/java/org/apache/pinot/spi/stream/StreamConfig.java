@@ -55,6 +55,8 @@ public class StreamConfig {
   public static final long DEFAULT_STREAM_CONNECTION_TIMEOUT_MILLIS = 30_000;
   public static final int DEFAULT_STREAM_FETCH_TIMEOUT_MILLIS = 5_000;
 
+  public static final int DEFAULT_SHARED_CONSUMER_NUM_FETCHERS = 2;
+
   private static final String SIMPLE_CONSUMER_TYPE_STRING = "simple";
 
   private final String _type;
@@ -69,6 +71,9 @@ public class StreamConfig {
   private final long _connectionTimeoutMillis;
   private final int _fetchTimeoutMillis;
 
+  private final boolean _sharedConsumerEnabled;
+  private final int _sharedConsumerNumFetchers;
+
   private final int _flushThresholdRows;
   private final long _flushThresholdTimeMillis;
   private final long _flushSegmentDesiredSizeBytes;
@@ -161,6 +166,26 @@ public class StreamConfig {
     }
     _fetchTimeoutMillis = fetchTimeoutMillis;
 
+    String sharedConsumerEnabledKey =
+        StreamConfigProperties.constructStreamProperty(_type, StreamConfigProperties.SHARED_CONSUMER_ENABLED);
+    _sharedConsumerEnabled = Boolean.parseBoolean(streamConfigMap.get(sharedConsumerEnabledKey));
+
+    int sharedConsumerNumFetchers = DEFAULT_SHARED_CONSUMER_NUM_FETCHERS;
+    String sharedConsumerNumFetchersKey =
+        StreamConfigProperties.constructStreamProperty(_type, StreamConfigProperties.SHARED_CONSUMER_NUM_FETCHERS);
+    String sharedConsumerNumFetchersValue = streamConfigMap.get(sharedConsumerNumFetchersKey);
+    if (sharedConsumerNumFetchersValue != null) {
+      try {
+        sharedConsumerNumFetchers = Integer.parseInt(sharedConsumerNumFetchersValue);
+        Preconditions.checkState(sharedConsumerNumFetchers > 0);
+      } catch (Exception e) {
+        LOGGER.warn("Invalid config {}: {}, defaulting to: {}", sharedConsumerNumFetchersKey,
+            sharedConsumerNumFetchersValue, DEFAULT_SHARED_CONSUMER_NUM_FETCHERS);
+        sharedConsumerNumFetchers = DEFAULT_SHARED_CONSUMER_NUM_FETCHERS;
+      }
+    }
+    _sharedConsumerNumFetchers = sharedConsumerNumFetchers;
+
     _flushThresholdRows = extractFlushThresholdRows(streamConfigMap);
     _flushThresholdTimeMillis = extractFlushThresholdTimeMillis(streamConfigMap);
 
@@ -281,6 +306,17 @@ public class StreamConfig {
     return _fetchTimeoutMillis;
   }
 
+  /**
+   * Returns whether the partition level consumers of the stream should share fetch threads and connections.
+   */
+  public boolean isSharedConsumerEnabled() {
+    return _sharedConsumerEnabled;
+  }
+
+  public int getSharedConsumerNumFetchers() {
+    return _sharedConsumerNumFetchers;
+  }
+
   public int getFlushThresholdRows() {
     return _flushThresholdRows;
   }
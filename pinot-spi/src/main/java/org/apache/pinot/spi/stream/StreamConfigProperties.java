@@ -44,6 +44,14 @@ public class StreamConfigProperties {
   public static final String DECODER_PROPS_PREFIX = "decoder.prop";
   public static final String GROUP_ID = "hlc.group.id";
 
+  /**
+   * Shared consumer mode for low level consumers. When enabled (and supported by the consumer factory), the partition
+   * level consumers of the stream are multiplexed onto a small pool of fetch threads and connections, instead of
+   * holding one connection per partition.
+   */
+  public static final String SHARED_CONSUMER_ENABLED = "consumer.shared.enabled";
+  public static final String SHARED_CONSUMER_NUM_FETCHERS = "consumer.shared.num.fetchers";
+
   /**
    * Time threshold that will keep the realtime segment open for before we complete the segment
    */
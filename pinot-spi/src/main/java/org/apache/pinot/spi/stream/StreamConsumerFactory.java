@@ -38,6 +38,8 @@ public abstract class StreamConsumerFactory {
 
   /**
    * Creates a partition level consumer which can fetch messages from a partitioned stream
+   * <p>If {@link StreamConfig#isSharedConsumerEnabled()} is set, factories supporting it may return a consumer backed
+   * by a fetcher shared with other partitions, in which case closing the consumer only releases its partition.
    * @param clientId a client id to identify the creator of this consumer
    * @param partition the partition id of the partition for which this consumer is being created
    * @return